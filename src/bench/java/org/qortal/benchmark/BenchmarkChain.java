@@ -0,0 +1,83 @@
+package org.qortal.benchmark;
+
+import org.qortal.account.PrivateKeyAccount;
+import org.qortal.block.Block;
+import org.qortal.data.block.BlockData;
+import org.qortal.data.transaction.TransactionData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.test.common.BlockUtils;
+import org.qortal.test.common.Common;
+import org.qortal.test.common.TransactionUtils;
+import org.qortal.transaction.Transaction;
+import org.qortal.transaction.Transaction.TransactionType;
+
+/**
+ * Benchmark fixtures built on the unit tests' chain, i.e. <tt>test-settings-v2.json</tt> and test accounts.
+ * <p>
+ * Each benchmark fork gets its own in-memory repository, so fixtures are rebuilt per trial.
+ */
+public class BenchmarkChain implements AutoCloseable {
+
+	/** Test accounts used as transaction senders, to stay within unconfirmed transactions limit */
+	private static final String[] SENDER_NAMES = { "alice", "bob", "chloe", "dilbert" };
+	private static final int TRANSACTIONS_PER_SENDER = 20;
+
+	public static final int MAX_TRANSACTION_COUNT = SENDER_NAMES.length * TRANSACTIONS_PER_SENDER;
+
+	private final Repository repository;
+
+	public BenchmarkChain() throws DataException {
+		Common.useDefaultSettings();
+
+		this.repository = RepositoryManager.getRepository();
+	}
+
+	public Repository getRepository() {
+		return this.repository;
+	}
+
+	/**
+	 * Mints a block containing <tt>transactionCount</tt> PAYMENT transactions, returning it reloaded from repository
+	 * with transactions and AT states already fetched.
+	 */
+	public Block mintBlock(int transactionCount) throws DataException {
+		if (transactionCount > MAX_TRANSACTION_COUNT)
+			throw new IllegalArgumentException(String.format("No more than %d transactions per block", MAX_TRANSACTION_COUNT));
+
+		for (int i = 0; i < transactionCount; ++i) {
+			PrivateKeyAccount sender = Common.getTestAccount(this.repository, SENDER_NAMES[i % SENDER_NAMES.length]);
+
+			TransactionData transactionData = TransactionUtils.randomTransaction(this.repository, sender, TransactionType.PAYMENT, true);
+			TransactionUtils.signAndImportValid(this.repository, transactionData, sender);
+		}
+
+		BlockUtils.mintBlock(this.repository);
+
+		BlockData blockData = this.repository.getBlockRepository().getLastBlock();
+		Block block = new Block(this.repository, blockData);
+		block.getTransactions();
+		block.getATStates();
+
+		return block;
+	}
+
+	/** Returns a signed PAYMENT transaction, not imported. */
+	public Transaction signedPayment() throws DataException {
+		PrivateKeyAccount sender = Common.getTestAccount(this.repository, "alice");
+
+		TransactionData transactionData = TransactionUtils.randomTransaction(this.repository, sender, TransactionType.PAYMENT, true);
+		Transaction transaction = Transaction.fromData(this.repository, transactionData);
+		transaction.sign(sender);
+
+		return transaction;
+	}
+
+	@Override
+	public void close() throws DataException {
+		this.repository.close();
+		Common.closeRepository();
+	}
+
+}
@@ -0,0 +1,71 @@
+package org.qortal.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.qortal.crypto.Crypto;
+import org.qortal.crypto.MemoryPoW;
+import org.qortal.data.transaction.TransactionData;
+import org.qortal.repository.DataException;
+import org.qortal.transaction.ChatTransaction;
+import org.qortal.transform.TransformationException;
+import org.qortal.transform.transaction.TransactionTransformer;
+
+import java.util.concurrent.TimeUnit;
+
+/** Transaction signature verification and memory-hard proof-of-work verification, as used by CHAT/MESSAGE transactions. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CryptoBenchmark {
+
+	private static final int POW_DIFFICULTY = 8; // leading zero bits
+
+	private byte[] publicKey;
+	private byte[] signature;
+	private byte[] signedBytes;
+
+	private byte[] powData;
+	private int powNonce;
+	private long[] powWorkBuffer;
+
+	@Setup(Level.Trial)
+	public void setup() throws DataException, TransformationException {
+		try (BenchmarkChain chain = new BenchmarkChain()) {
+			TransactionData transactionData = chain.signedPayment().getTransactionData();
+
+			this.publicKey = transactionData.getCreatorPublicKey();
+			this.signature = transactionData.getSignature();
+			this.signedBytes = TransactionTransformer.toBytesForSigning(transactionData);
+		}
+
+		this.powData = this.signedBytes;
+		this.powNonce = MemoryPoW.compute2(this.powData, ChatTransaction.POW_BUFFER_SIZE, POW_DIFFICULTY);
+		this.powWorkBuffer = new long[ChatTransaction.POW_BUFFER_SIZE / 8];
+	}
+
+	@Benchmark
+	public boolean verifySignature() {
+		return Crypto.verify(this.publicKey, this.signature, this.signedBytes);
+	}
+
+	@Benchmark
+	public byte[] digest() {
+		return Crypto.digest(this.signedBytes);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public boolean memoryPoWVerify() {
+		return MemoryPoW.verify2(this.powData, ChatTransaction.POW_BUFFER_SIZE, POW_DIFFICULTY, this.powNonce);
+	}
+
+	/** As {@link #memoryPoWVerify()} but reusing work buffer, to separate allocation/zeroing cost from hashing. */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public boolean memoryPoWVerifyReusedBuffer() {
+		return MemoryPoW.verify2(this.powData, this.powWorkBuffer, ChatTransaction.POW_BUFFER_SIZE, POW_DIFFICULTY, this.powNonce);
+	}
+
+}
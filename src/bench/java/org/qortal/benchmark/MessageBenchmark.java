@@ -0,0 +1,122 @@
+package org.qortal.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.qortal.arbitrary.ArbitraryDataFile;
+import org.qortal.block.Block;
+import org.qortal.crypto.Crypto;
+import org.qortal.network.message.ArbitraryDataFileMessage;
+import org.qortal.network.message.BlockV2Message;
+import org.qortal.network.message.Message;
+import org.qortal.network.message.MessageException;
+import org.qortal.network.message.PingMessage;
+import org.qortal.network.message.TransactionMessage;
+import org.qortal.repository.DataException;
+import org.qortal.transform.TransformationException;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/** Network message framing: header, checksum and payload decoding, as done for each received message. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageBenchmark {
+
+	private static final int MEGABYTE = 1024 * 1024;
+
+	private BenchmarkChain chain;
+
+	private byte[] pingMessageBytes;
+	private byte[] transactionMessageBytes;
+	private Message blockV2Message;
+	private byte[] blockV2MessageBytes;
+	private byte[] megabyte;
+	private byte[] chunkMessageBytes;
+	private byte[] crc32cChunkMessageBytes;
+
+	@Setup(Level.Trial)
+	public void setup() throws DataException, TransformationException, MessageException {
+		this.chain = new BenchmarkChain();
+
+		Message pingMessage = new PingMessage();
+		pingMessage.setId(1);
+		this.pingMessageBytes = pingMessage.toBytes();
+
+		this.transactionMessageBytes = new TransactionMessage(this.chain.signedPayment().getTransactionData()).toBytes();
+
+		Block block = this.chain.mintBlock(BenchmarkChain.MAX_TRANSACTION_COUNT);
+		this.blockV2Message = new BlockV2Message(block);
+		this.blockV2MessageBytes = this.blockV2Message.toBytes();
+
+		Random random = new Random(0);
+		this.megabyte = new byte[MEGABYTE];
+		random.nextBytes(this.megabyte);
+
+		byte[] signature = new byte[64];
+		random.nextBytes(signature);
+		// Fresh message for each, as serializing releases chunk's data
+		this.chunkMessageBytes = chunkMessage(signature).toBytes(false);
+		this.crc32cChunkMessageBytes = chunkMessage(signature).toBytes(true);
+	}
+
+	private ArbitraryDataFileMessage chunkMessage(byte[] signature) throws DataException {
+		ArbitraryDataFileMessage message = new ArbitraryDataFileMessage(signature, new ArbitraryDataFile(this.megabyte, signature, false));
+		message.setId(1);
+		return message;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws DataException {
+		this.chain.close();
+	}
+
+	@Benchmark
+	public Message pingFromByteBuffer() throws MessageException {
+		return Message.fromByteBuffer(ByteBuffer.wrap(this.pingMessageBytes).asReadOnlyBuffer());
+	}
+
+	@Benchmark
+	public Message transactionFromByteBuffer() throws MessageException {
+		return Message.fromByteBuffer(ByteBuffer.wrap(this.transactionMessageBytes).asReadOnlyBuffer());
+	}
+
+	@Benchmark
+	public Message blockV2FromByteBuffer() throws MessageException {
+		return Message.fromByteBuffer(ByteBuffer.wrap(this.blockV2MessageBytes).asReadOnlyBuffer());
+	}
+
+	@Benchmark
+	public byte[] blockV2ToBytes() throws MessageException {
+		return this.blockV2Message.toBytes();
+	}
+
+	/** Message checksum cost per MB, as used by legacy peers */
+	@Benchmark
+	public byte[] sha256ChecksumPerMegabyte() {
+		return Crypto.digest(this.megabyte);
+	}
+
+	/** Message checksum cost per MB, for self-verifying payloads between peers that negotiated CRC32C checksums */
+	@Benchmark
+	public long crc32cChecksumPerMegabyte() {
+		CRC32C crc32c = new CRC32C();
+		crc32c.update(this.megabyte);
+		return crc32c.getValue();
+	}
+
+	@Benchmark
+	public Message chunkFromByteBuffer() throws MessageException {
+		return Message.fromByteBuffer(ByteBuffer.wrap(this.chunkMessageBytes).asReadOnlyBuffer());
+	}
+
+	@Benchmark
+	public Message crc32cChunkFromByteBuffer() throws MessageException {
+		return Message.fromByteBuffer(ByteBuffer.wrap(this.crc32cChunkMessageBytes).asReadOnlyBuffer(), true);
+	}
+
+}
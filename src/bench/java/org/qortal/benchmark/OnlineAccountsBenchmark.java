@@ -0,0 +1,70 @@
+package org.qortal.benchmark;
+
+import io.druid.extendedset.intset.ConciseSet;
+import org.openjdk.jmh.annotations.*;
+import org.qortal.transform.block.BlockTransformer;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/** Encoding of blocks' online accounts as ConciseSet of account indexes. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OnlineAccountsBenchmark {
+
+	/** Number of known reward-shares that online accounts are indexed against */
+	private static final int KNOWN_ACCOUNTS_COUNT = 1 << 17;
+
+	@Param({ "100", "1000", "10000" })
+	public int onlineAccountsCount;
+
+	private List<Integer> accountIndexes;
+	private ConciseSet onlineAccounts;
+	private byte[] encodedOnlineAccounts;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		// Fixed seed so runs are comparable
+		Random random = new Random(this.onlineAccountsCount);
+
+		// Distinct, sorted, as when minting
+		this.accountIndexes = random.ints(0, KNOWN_ACCOUNTS_COUNT)
+				.distinct()
+				.limit(this.onlineAccountsCount)
+				.sorted()
+				.boxed()
+				.collect(Collectors.toList());
+
+		this.onlineAccounts = this.build();
+		this.encodedOnlineAccounts = BlockTransformer.encodeOnlineAccounts(this.onlineAccounts);
+	}
+
+	/** Building set of online accounts as done when minting. */
+	@Benchmark
+	public ConciseSet build() {
+		return new ConciseSet().convert(this.accountIndexes);
+	}
+
+	@Benchmark
+	public byte[] encode() {
+		return BlockTransformer.encodeOnlineAccounts(this.onlineAccounts);
+	}
+
+	@Benchmark
+	public ConciseSet decode() {
+		return BlockTransformer.decodeOnlineAccounts(this.encodedOnlineAccounts);
+	}
+
+	/** Decoding as done by block validation/processing, which then looks up reward-shares by index. */
+	@Benchmark
+	public int[] decodeToArray() {
+		return BlockTransformer.decodeOnlineAccounts(this.encodedOnlineAccounts).toArray();
+	}
+
+}
@@ -0,0 +1,101 @@
+package org.qortal.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.qortal.block.Block;
+import org.qortal.data.transaction.TransactionData;
+import org.qortal.repository.DataException;
+import org.qortal.transaction.Transaction;
+import org.qortal.transform.TransformationException;
+import org.qortal.transform.block.BlockTransformation;
+import org.qortal.transform.block.BlockTransformer;
+import org.qortal.transform.transaction.TransactionTransformer;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Block and transaction (de)serialization. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransformerBenchmark {
+
+	@Param({ "0", "10", "80" })
+	public int transactionCount;
+
+	private BenchmarkChain chain;
+	private Block block;
+	private byte[] blockBytes;
+	private byte[] blockBytesV2;
+
+	private TransactionData transactionData;
+	private byte[] transactionBytes;
+
+	@Setup(Level.Trial)
+	public void setup() throws DataException, TransformationException {
+		this.chain = new BenchmarkChain();
+
+		this.block = this.chain.mintBlock(this.transactionCount);
+		this.blockBytes = BlockTransformer.toBytes(this.block);
+		this.blockBytesV2 = BlockTransformer.toBytesV2(this.block);
+
+		this.transactionData = this.chain.signedPayment().getTransactionData();
+		this.transactionBytes = TransactionTransformer.toBytes(this.transactionData);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws DataException {
+		this.chain.close();
+	}
+
+	@Benchmark
+	public byte[] blockToBytes() throws TransformationException {
+		return BlockTransformer.toBytes(this.block);
+	}
+
+	@Benchmark
+	public byte[] blockToBytesV2() throws TransformationException {
+		return BlockTransformer.toBytesV2(this.block);
+	}
+
+	/** As {@link #blockToBytesV2()} but with each transaction serialized afresh, like a block's first serialization. */
+	@Benchmark
+	public byte[] blockToBytesV2Uncached() throws TransformationException, DataException {
+		List<Transaction> transactions = this.block.getTransactions();
+		for (Transaction transaction : transactions)
+			transaction.getTransactionData().setSerializedBytes(null);
+
+		return BlockTransformer.toBytesV2(this.block);
+	}
+
+	@Benchmark
+	public BlockTransformation blockFromBytes() throws TransformationException {
+		return BlockTransformer.fromBytes(this.blockBytes);
+	}
+
+	@Benchmark
+	public BlockTransformation blockFromBytesV2() throws TransformationException {
+		return BlockTransformer.fromByteBufferV2(ByteBuffer.wrap(this.blockBytesV2));
+	}
+
+	@Benchmark
+	public byte[] transactionToBytes() throws TransformationException {
+		this.transactionData.setSerializedBytes(null);
+
+		return TransactionTransformer.toBytes(this.transactionData);
+	}
+
+	@Benchmark
+	public byte[] transactionToBytesCached() throws TransformationException {
+		return TransactionTransformer.toBytes(this.transactionData);
+	}
+
+	@Benchmark
+	public TransactionData transactionFromBytes() throws TransformationException {
+		return TransactionTransformer.fromBytes(this.transactionBytes);
+	}
+
+}
@@ -60,6 +60,9 @@ public class RepositoryMaintenance {
 		try (final Repository repository = RepositoryManager.getRepository()) {
 			repository.performPeriodicMaintenance(null);
 
+			// Nothing else is using the repository, so also shrink it with a full CHECKPOINT DEFRAG when closing
+			RepositoryManager.setRequestedCheckpoint(Boolean.FALSE);
+
 			LOGGER.info("Repository periodic maintenance completed");
 		} catch (DataException | TimeoutException e) {
 			LOGGER.error("Repository periodic maintenance failed", e);
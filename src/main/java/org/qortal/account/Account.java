@@ -218,12 +218,27 @@ public class Account {
 	 */
 	public boolean canMint(boolean isGroupValidated) throws DataException {
 		AccountData accountData = this.repository.getAccountRepository().getAccount(this.address);
-		NameRepository nameRepository = this.repository.getNameRepository();
-		GroupRepository groupRepository = this.repository.getGroupRepository();
-		String myAddress = accountData.getAddress();
-
 		int blockchainHeight = this.repository.getBlockRepository().getBlockchainHeight();
 
+		return canMint(this.repository, accountData, blockchainHeight, isGroupValidated);
+	}
+
+	/** Returns whether account can be considered a "minting account", using already fetched account data.
+	 * <p>
+	 * Useful when checking many accounts, e.g. a batch of online accounts, whose data was fetched in one query.
+	 *
+	 * @param accountData account's data from repository
+	 * @param blockchainHeight height to check against, usually current blockchain height
+	 * @param isGroupValidated true if this account has already been validated for MINTER Group membership
+	 * @return true if account can be considered "minting account"
+	 * @throws DataException
+	 * @see #canMint(boolean)
+	 */
+	public static boolean canMint(Repository repository, AccountData accountData, int blockchainHeight, boolean isGroupValidated) throws DataException {
+		NameRepository nameRepository = repository.getNameRepository();
+		GroupRepository groupRepository = repository.getGroupRepository();
+		String myAddress = accountData.getAddress();
+
 		int levelToMint;
 
 		if( blockchainHeight >= BlockChain.getInstance().getIgnoreLevelForRewardShareHeight() ) {
@@ -21,6 +21,7 @@ public enum ApiError {
 	NON_PRODUCTION(6, 403),
 	BLOCKCHAIN_NEEDS_SYNC(7, 503),
 	NO_TIME_SYNC(8, 503),
+	REPOSITORY_BUSY(9, 503),
 
 	// VALIDATION
 	INVALID_SIGNATURE(101, 400),
@@ -1,13 +1,19 @@
 package org.qortal.api;
 
 import org.qortal.globalization.Translator;
+import org.qortal.repository.RepositoryBusyException;
 
 import javax.servlet.http.HttpServletRequest;
+import java.sql.SQLTimeoutException;
 
 public enum ApiExceptionFactory {
 	INSTANCE;
 
 	public ApiException createException(HttpServletRequest request, ApiError apiError, Throwable throwable, Object... args) {
+		// Saturated API repository sessions, or a query that took too long, are temporary so report them as such
+		if (apiError == ApiError.REPOSITORY_ISSUE && isRepositoryBusy(throwable))
+			apiError = ApiError.REPOSITORY_BUSY;
+
 		String message = Translator.INSTANCE.translate("ApiError", request.getLocale().getLanguage(), apiError.name(), args);
 		return new ApiException(apiError.getStatus(), apiError.getCode(), message, throwable);
 	}
@@ -20,4 +26,12 @@ public enum ApiExceptionFactory {
 		return new ApiException(apiError.getStatus(), apiError.getCode(), message, null);
 	}
 
+	private static boolean isRepositoryBusy(Throwable throwable) {
+		for (Throwable cause = throwable; cause != null; cause = cause.getCause())
+			if (cause instanceof RepositoryBusyException || cause instanceof SQLTimeoutException)
+				return true;
+
+		return false;
+	}
+
 }
@@ -44,51 +44,30 @@ public class HTMLParser {
     }
 
     public void addAdditionalHeaderTags() {
+        // Most pages only need the tags inserting into their <head> element, which doesn't require a full parse
+        if (!this.isIdentifierRewriteRequired()) {
+            int insertionIndex = HTMLParser.findHeadInsertionIndex(this.data);
+            if (insertionIndex >= 0) {
+                byte[] headerTags = this.getHeaderTags().getBytes(StandardCharsets.UTF_8);
+                byte[] result = new byte[this.data.length + headerTags.length];
+                System.arraycopy(this.data, 0, result, 0, insertionIndex);
+                System.arraycopy(headerTags, 0, result, insertionIndex, headerTags.length);
+                System.arraycopy(this.data, insertionIndex, result, insertionIndex + headerTags.length, this.data.length - insertionIndex);
+                this.data = result;
+                return;
+            }
+        }
+
         String fileContents = new String(data);
         Document document = Jsoup.parse(fileContents);
         Elements head = document.getElementsByTag("head");
         if (!head.isEmpty()) {
-            // Add q-apps script tag
-            String qAppsScriptElement = String.format("<script src=\"/apps/q-apps.js?time=%d\">", System.currentTimeMillis());
-            head.get(0).prepend(qAppsScriptElement);
-
-            // Add q-apps gateway script tag if in gateway mode
-            if (Objects.equals(this.qdnContext, "gateway")) {
-                String qAppsGatewayScriptElement = String.format("<script src=\"/apps/q-apps-gateway.js?time=%d\">", System.currentTimeMillis());
-                head.get(0).prepend(qAppsGatewayScriptElement);
-            }
-
-            // Escape and add vars
-            String qdnContext = this.qdnContext != null ? this.qdnContext.replace("\\", "").replace("\"","\\\"") : "";
-            String service = this.service.toString().replace("\\", "").replace("\"","\\\"");
-            String name = this.resourceId != null ? this.resourceId.replace("\\", "").replace("\"","\\\"") : "";
-            String identifier = this.identifier != null ? this.identifier.replace("\\", "").replace("\"","\\\"") : "";
-            String path = this.path != null ? this.path.replace("\\", "").replace("\"","\\\"") : "";
-            String theme = this.theme != null ? this.theme.replace("\\", "").replace("\"","\\\"") : "";
-            String lang = this.lang != null ? this.lang.replace("\\", "").replace("\"", "\\\"") : "";
-            String qdnBase = this.qdnBase != null ? this.qdnBase.replace("\\", "").replace("\"","\\\"") : "";
-            String qdnBaseWithPath = this.qdnBaseWithPath != null ? this.qdnBaseWithPath.replace("\\", "").replace("\"","\\\"") : "";
-            String qdnContextVar = String.format(
-                "<script>var _qdnContext=\"%s\"; var _qdnTheme=\"%s\"; var _qdnLang=\"%s\"; var _qdnService=\"%s\"; var _qdnName=\"%s\"; var _qdnIdentifier=\"%s\"; var _qdnPath=\"%s\"; var _qdnBase=\"%s\"; var _qdnBaseWithPath=\"%s\";</script>",
-                qdnContext, theme, lang, service, name, identifier, path, qdnBase, qdnBaseWithPath
-              );
-            head.get(0).prepend(qdnContextVar);
-
-            // Add base href tag
-            // Exclude the path if this request was routed back to the index automatically
-            String baseHref = this.usingCustomRouting ? this.qdnBase : this.qdnBaseWithPath;
-            String baseElement = String.format("<base href=\"%s/\">", baseHref);
-            head.get(0).prepend(baseElement);
-
-            // Add meta charset tag
-            String metaCharsetElement = "<meta charset=\"UTF-8\">";
-            head.get(0).prepend(metaCharsetElement);
-
+            head.get(0).prepend(this.getHeaderTags());
         }
         
         // For render context with non-default identifier, modify all relative script and link tags
         // to include the identifier query parameter (base tag doesn't reliably preserve query params)
-        if (Objects.equals(this.qdnContext, "render") && this.identifier != null && !this.identifier.isBlank() && !this.identifier.equals("default")) {
+        if (this.isIdentifierRewriteRequired()) {
             String encodedIdentifier = URLEncoder.encode(this.identifier, StandardCharsets.UTF_8);
             
             // Modify script tags
@@ -122,6 +101,157 @@ public class HTMLParser {
         this.data = html.getBytes();
     }
 
+    private boolean isIdentifierRewriteRequired() {
+        return Objects.equals(this.qdnContext, "render") && this.identifier != null && !this.identifier.isBlank() && !this.identifier.equals("default");
+    }
+
+    /**
+     * Builds the tags that are added to the start of the <head> element, in order.
+     */
+    private String getHeaderTags() {
+        StringBuilder headerTags = new StringBuilder(1024);
+
+        // Add meta charset tag
+        headerTags.append("<meta charset=\"UTF-8\">");
+
+        // Add base href tag
+        // Exclude the path if this request was routed back to the index automatically
+        String baseHref = this.usingCustomRouting ? this.qdnBase : this.qdnBaseWithPath;
+        headerTags.append(String.format("<base href=\"%s/\">", baseHref));
+
+        // Escape and add vars
+        String qdnContext = this.qdnContext != null ? this.qdnContext.replace("\\", "").replace("\"","\\\"") : "";
+        String service = this.service.toString().replace("\\", "").replace("\"","\\\"");
+        String name = this.resourceId != null ? this.resourceId.replace("\\", "").replace("\"","\\\"") : "";
+        String identifier = this.identifier != null ? this.identifier.replace("\\", "").replace("\"","\\\"") : "";
+        String path = this.path != null ? this.path.replace("\\", "").replace("\"","\\\"") : "";
+        String theme = this.theme != null ? this.theme.replace("\\", "").replace("\"","\\\"") : "";
+        String lang = this.lang != null ? this.lang.replace("\\", "").replace("\"", "\\\"") : "";
+        String qdnBase = this.qdnBase != null ? this.qdnBase.replace("\\", "").replace("\"","\\\"") : "";
+        String qdnBaseWithPath = this.qdnBaseWithPath != null ? this.qdnBaseWithPath.replace("\\", "").replace("\"","\\\"") : "";
+        headerTags.append(String.format(
+            "<script>var _qdnContext=\"%s\"; var _qdnTheme=\"%s\"; var _qdnLang=\"%s\"; var _qdnService=\"%s\"; var _qdnName=\"%s\"; var _qdnIdentifier=\"%s\"; var _qdnPath=\"%s\"; var _qdnBase=\"%s\"; var _qdnBaseWithPath=\"%s\";</script>",
+            qdnContext, theme, lang, service, name, identifier, path, qdnBase, qdnBaseWithPath
+        ));
+
+        // Add q-apps gateway script tag if in gateway mode
+        if (Objects.equals(this.qdnContext, "gateway")) {
+            headerTags.append(String.format("<script src=\"/apps/q-apps-gateway.js?time=%d\"></script>", System.currentTimeMillis()));
+        }
+
+        // Add q-apps script tag
+        headerTags.append(String.format("<script src=\"/apps/q-apps.js?time=%d\"></script>", System.currentTimeMillis()));
+
+        return headerTags.toString();
+    }
+
+    /**
+     * Scans the start of a document for an explicit <head> opening tag, without parsing it.
+     * Only a BOM, whitespace, comments, doctype/processing instructions and the <html> tag
+     * may come first; anything else means the head is implied, so the document must be parsed.
+     *
+     * @return the index just after the <head> tag, or -1 if it wasn't found
+     */
+    static int findHeadInsertionIndex(byte[] data) {
+        int i = 0;
+
+        // Skip UTF-8 byte order mark
+        if (data.length >= 3 && (data[0] & 0xFF) == 0xEF && (data[1] & 0xFF) == 0xBB && (data[2] & 0xFF) == 0xBF) {
+            i = 3;
+        }
+
+        while (i < data.length) {
+            byte b = data[i];
+            if (b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f') {
+                i++;
+                continue;
+            }
+            if (b != '<') {
+                // Text content before the head
+                return -1;
+            }
+
+            if (HTMLParser.startsWithIgnoreCase(data, i, "<!--")) {
+                int end = HTMLParser.indexOf(data, i + 4, "-->");
+                if (end < 0) {
+                    return -1;
+                }
+                i = end + 3;
+                continue;
+            }
+
+            boolean isHead = HTMLParser.isTag(data, i, "<head");
+            if (!isHead && !HTMLParser.isTag(data, i, "<html") && !HTMLParser.startsWithIgnoreCase(data, i, "<!")
+                    && !HTMLParser.startsWithIgnoreCase(data, i, "<?")) {
+                // Some other element, so the head is implied
+                return -1;
+            }
+
+            int end = HTMLParser.findTagEnd(data, i + 1);
+            if (end < 0) {
+                return -1;
+            }
+            if (isHead) {
+                return end + 1;
+            }
+            i = end + 1;
+        }
+
+        return -1;
+    }
+
+    private static boolean isTag(byte[] data, int index, String tag) {
+        if (!HTMLParser.startsWithIgnoreCase(data, index, tag)) {
+            return false;
+        }
+        // Make sure this isn't a longer tag name, such as <header>
+        int next = index + tag.length();
+        if (next >= data.length) {
+            return false;
+        }
+        byte b = data[next];
+        return b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+    }
+
+    private static int findTagEnd(byte[] data, int index) {
+        // Attribute values may contain '>', so skip quoted strings
+        byte quote = 0;
+        for (int i = index; i < data.length; i++) {
+            byte b = data[i];
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWithIgnoreCase(byte[] data, int index, String prefix) {
+        if (index + prefix.length() > data.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase((char) data[index + i]) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] data, int index, String target) {
+        for (int i = index; i <= data.length - target.length(); i++) {
+            if (HTMLParser.startsWithIgnoreCase(data, i, target)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     public static boolean isHtmlFile(String path) {
         if (path.endsWith(".html") || path.endsWith(".htm") || path.isEmpty()) {
             return true;
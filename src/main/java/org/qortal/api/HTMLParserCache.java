@@ -0,0 +1,133 @@
+package org.qortal.api;
+
+import org.qortal.settings.Settings;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory LRU cache of HTML pages that have already been rewritten by {@link HTMLParser},
+ * so that popular QDN sites don't need to be re-parsed on every request.
+ *
+ * Each entry remembers the size and modification time of the file it was built from,
+ * so it is ignored as soon as the underlying resource is rebuilt. Entries are also
+ * removed explicitly via invalidate() when a resource's cache is rebuilt.
+ *
+ * Note that the q-apps script tags contain a timestamp, which is reused for as long as
+ * a page remains cached. That's fine as the scripts can only change when the core restarts.
+ */
+public class HTMLParserCache {
+
+    private static HTMLParserCache instance;
+
+    private final long maxSize;
+    private final long maxEntrySize;
+    private long totalSize = 0;
+
+    // Access-ordered, so the eldest entry is always the least recently used
+    private final LinkedHashMap<String, CachedPage> pages = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static class CachedPage {
+        private final Path filePath;
+        private final long lastModified;
+        private final long fileSize;
+        private final byte[] data;
+
+        private CachedPage(Path filePath, long lastModified, long fileSize, byte[] data) {
+            this.filePath = filePath;
+            this.lastModified = lastModified;
+            this.fileSize = fileSize;
+            this.data = data;
+        }
+    }
+
+    public HTMLParserCache(long maxSize) {
+        this.maxSize = maxSize;
+        // Don't let a single large page flush everything else out
+        this.maxEntrySize = maxSize / 8;
+    }
+
+    public static synchronized HTMLParserCache getInstance() {
+        if (instance == null) {
+            instance = new HTMLParserCache(Settings.getInstance().getHtmlParserCacheSize());
+        }
+        return instance;
+    }
+
+    public static String buildKey(Path filePath, Object... parameters) {
+        StringBuilder key = new StringBuilder(filePath.toString());
+        for (Object parameter : parameters) {
+            // Null and empty strings are treated differently by HTMLParser, so must be distinct here too
+            key.append('\n').append(parameter == null ? "\0" : parameter.toString());
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return the rewritten page, or null if it isn't cached or the file has changed since
+     */
+    public synchronized byte[] get(String key, long lastModified, long fileSize) {
+        CachedPage page = this.pages.get(key);
+        if (page == null) {
+            return null;
+        }
+        if (page.lastModified != lastModified || page.fileSize != fileSize) {
+            this.remove(key);
+            return null;
+        }
+        return page.data;
+    }
+
+    public synchronized void put(String key, Path filePath, long lastModified, long fileSize, byte[] data) {
+        if (data.length > this.maxEntrySize) {
+            return;
+        }
+
+        this.remove(key);
+        this.pages.put(key, new CachedPage(filePath, lastModified, fileSize, data));
+        this.totalSize += data.length;
+
+        Iterator<Map.Entry<String, CachedPage>> iterator = this.pages.entrySet().iterator();
+        while (this.totalSize > this.maxSize && iterator.hasNext()) {
+            this.totalSize -= iterator.next().getValue().data.length;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Removes all pages built from files inside the given directory
+     */
+    public synchronized void invalidate(Path directory) {
+        Iterator<Map.Entry<String, CachedPage>> iterator = this.pages.entrySet().iterator();
+        while (iterator.hasNext()) {
+            CachedPage page = iterator.next().getValue();
+            if (page.filePath.startsWith(directory)) {
+                this.totalSize -= page.data.length;
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        this.pages.clear();
+        this.totalSize = 0;
+    }
+
+    public synchronized int size() {
+        return this.pages.size();
+    }
+
+    public synchronized long getTotalSize() {
+        return this.totalSize;
+    }
+
+    private void remove(String key) {
+        CachedPage page = this.pages.remove(key);
+        if (page != null) {
+            this.totalSize -= page.data.length;
+        }
+    }
+
+}
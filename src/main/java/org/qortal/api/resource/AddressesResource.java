@@ -76,7 +76,7 @@ public class AddressesResource {
 		if (!Crypto.isValidAddress(address))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			AccountData accountData = repository.getAccountRepository().getAccount(address);
 			// Not found?
 			if (accountData == null)
@@ -113,7 +113,7 @@ public class AddressesResource {
 		}
 		else {
 			// All other node types request data from local db
-			try (final Repository repository = RepositoryManager.getRepository()) {
+			try (final Repository repository = RepositoryManager.getApiRepository()) {
 				accountData = repository.getAccountRepository().getAccount(address);
 			} catch (DataException e) {
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
@@ -163,7 +163,7 @@ public class AddressesResource {
 		List<OnlineAccountData> onlineAccounts = OnlineAccountsManager.getInstance().getOnlineAccounts();
 
 		// Map OnlineAccountData entries to OnlineAccount via reward-share data
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			List<ApiOnlineAccount> apiOnlineAccounts = new ArrayList<>();
 
 			for (OnlineAccountData onlineAccountData : onlineAccounts) {
@@ -197,7 +197,7 @@ public class AddressesResource {
 	public List<OnlineAccountLevel> getOnlineAccountsByLevel() {
 		List<OnlineAccountData> onlineAccounts = OnlineAccountsManager.getInstance().getOnlineAccounts();
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			List<OnlineAccountLevel> onlineAccountLevels = new ArrayList<>();
 
 			// Prepopulate all levels
@@ -263,7 +263,7 @@ public class AddressesResource {
 		if (!Crypto.isValidAddress(address))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			Account account = new Account(repository, address);
 
 			if (assetId == null)
@@ -296,7 +296,7 @@ public class AddressesResource {
 		if (!Crypto.isValidAddress(address))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			AccountData accountData = repository.getAccountRepository().getAccount(address);
 
 			if (accountData == null)
@@ -340,7 +340,7 @@ public class AddressesResource {
 		if (publicKey.length != Transformer.PUBLIC_KEY_LENGTH)
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_PUBLIC_KEY);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			return Crypto.toAddress(publicKey);
 		} catch (ApiException e) {
 			throw e;
@@ -371,7 +371,7 @@ public class AddressesResource {
 			) @QueryParam("offset") Integer offset, @Parameter(
 				ref = "reverse"
 			) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			return repository.getAccountRepository().findRewardShares(mintingAccounts, recipientAccounts, addresses, limit, offset, reverse);
 		} catch (DataException e) {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
@@ -476,7 +476,7 @@ public class AddressesResource {
 	)
 	@ApiErrors({ApiError.INVALID_ADDRESS, ApiError.REPOSITORY_ISSUE})
 	public List<AccountPenaltyData> getAccountsWithPenalties() {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 
 			List<AccountData> accounts = repository.getAccountRepository().getPenaltyAccounts();
 			List<AccountPenaltyData> penalties = accounts.stream().map(a -> new AccountPenaltyData(a.getAddress(), a.getBlocksMintedPenalty())).collect(Collectors.toList());
@@ -500,7 +500,7 @@ public class AddressesResource {
 	)
 	@ApiErrors({ApiError.INVALID_ADDRESS, ApiError.REPOSITORY_ISSUE})
 	public AccountPenaltyStats getPenaltyStats() {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 
 			List<AccountData> accounts = repository.getAccountRepository().getPenaltyAccounts();
 			return AccountPenaltyStats.fromAccounts(accounts);
@@ -645,7 +645,7 @@ public class AddressesResource {
 		if (!Crypto.isValidAddress(address))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			SponsorshipReport report = repository.getAccountRepository().getSponsorshipReport(address, realRewardShareRecipients);
 			// Not found?
 			if (report == null)
@@ -676,7 +676,7 @@ public class AddressesResource {
 		if (!Crypto.isValidAddress(address))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 
 			// get sponsor
 			Optional<String> sponsor = repository.getAccountRepository().getSponsor(address);
@@ -715,7 +715,7 @@ public class AddressesResource {
 		if (!Crypto.isValidAddress(address))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 
 			// get sponsorship report for minter, fetch a list of one minter
 			SponsorshipReport report = repository.getAccountRepository().getMintershipReport(address, account -> List.of(account));
@@ -772,7 +772,7 @@ public class AddressesResource {
 
 	public List<AddressLevelPairing> getAddressLevelPairings(@PathParam("minLevel") int minLevel) {
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 
 			// get the level address pairings
 			List<AddressLevelPairing> pairings = repository.getAccountRepository().getAddressLevelPairings(minLevel);
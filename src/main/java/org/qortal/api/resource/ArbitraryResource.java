@@ -150,7 +150,7 @@ public class ArbitraryResource {
 			@Parameter(description = "Include status") @QueryParam("includestatus") Boolean includeStatus,
 			@Parameter(description = "Include metadata") @QueryParam("includemetadata") Boolean includeMetadata) {
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 
 			// Treat empty identifier as null
 			if (identifier != null && identifier.isEmpty()) {
@@ -229,7 +229,7 @@ public class ArbitraryResource {
 			@Parameter(ref = "offset") @QueryParam("offset") Integer offset,
 			@Parameter(ref = "reverse") @QueryParam("reverse") Boolean reverse) {
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 
 			// Treat empty identifier as null
 			if (identifier != null && identifier.isEmpty()) {
@@ -300,7 +300,7 @@ public class ArbitraryResource {
 			@Parameter(ref = "offset") @QueryParam("offset") Integer offset,
 			@Parameter(ref = "reverse") @QueryParam("reverse") Boolean reverse) {
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 
 			boolean usePrefixOnly = Boolean.TRUE.equals(prefixOnly);
 			boolean ignoreCase = Boolean.TRUE.equals(caseInsensitive);
@@ -533,7 +533,7 @@ public class ArbitraryResource {
 		List<TransactionType> txTypes = new ArrayList<>();
 		txTypes.add(TransactionType.ARBITRARY);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			List<byte[]> signatures = repository.getTransactionRepository().getSignaturesMatchingCriteria(startBlock, blockLimit, txGroupId, txTypes,
 					service, name, address, confirmationStatus, limit, offset, reverse);
 
@@ -84,7 +84,7 @@ public class AssetsResource {
 	) @QueryParam("offset") Integer offset, @Parameter(
 		ref = "reverse"
 	) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			List<AssetData> assets = repository.getAssetRepository().getAllAssets(limit, offset, reverse);
 
 			if (includeData == null || !includeData)
@@ -119,7 +119,7 @@ public class AssetsResource {
 		if (assetId == null && (assetName == null || assetName.isEmpty()))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_CRITERIA);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			AssetData assetData = null;
 
 			if (assetId != null)
@@ -172,7 +172,7 @@ public class AssetsResource {
 		if (balanceOrdering == null)
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_CRITERIA);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			for (long assetId : assetIds)
 				if (!repository.getAssetRepository().assetExists(assetId))
 					throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ASSET_ID);
@@ -333,7 +333,7 @@ public class AssetsResource {
 	) @QueryParam("offset") Integer offset, @Parameter(
 		ref = "reverse"
 	) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			if (!repository.getAssetRepository().assetExists(assetId))
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ASSET_ID);
 
@@ -378,7 +378,7 @@ public class AssetsResource {
 	) @QueryParam("offset") Integer offset, @Parameter(
 		ref = "reverse"
 	) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			if (!repository.getAssetRepository().assetExists(assetId))
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ASSET_ID);
 
@@ -422,7 +422,7 @@ public class AssetsResource {
 	) @QueryParam("offset") Integer offset, @Parameter(
 		ref = "reverse"
 	) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			if (assetIds.isEmpty())
 				assetIds = Collections.singletonList(Asset.QORT);
 			else
@@ -476,7 +476,7 @@ public class AssetsResource {
 	) @QueryParam("offset") Integer offset, @Parameter(
 		ref = "reverse"
 	) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			if (!repository.getAssetRepository().assetExists(assetId))
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ASSET_ID);
 
@@ -527,7 +527,7 @@ public class AssetsResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ORDER_ID, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			OrderData orderData = repository.getAssetRepository().fromOrderId(orderId);
 			if (orderData == null)
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.ORDER_UNKNOWN);
@@ -574,7 +574,7 @@ public class AssetsResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ORDER_ID, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			OrderData orderData = repository.getAssetRepository().fromOrderId(orderId);
 			if (orderData == null)
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.ORDER_UNKNOWN);
@@ -616,7 +616,7 @@ public class AssetsResource {
 		if (!Crypto.isValidAddress(address))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			AccountData accountData = repository.getAccountRepository().getAccount(address);
 
 			if (accountData == null)
@@ -665,7 +665,7 @@ public class AssetsResource {
 		if (!Crypto.isValidAddress(address))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			AccountData accountData = repository.getAccountRepository().getAccount(address);
 
 			if (accountData == null)
@@ -721,7 +721,7 @@ public class AssetsResource {
 	) @QueryParam("offset") Integer offset, @Parameter(
 		ref = "reverse"
 	) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			if (!repository.getAssetRepository().assetExists(assetId))
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ASSET_ID);
 
@@ -762,7 +762,7 @@ public class AssetsResource {
 	) @QueryParam("offset") Integer offset, @Parameter(
 		ref = "reverse"
 	) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			if (!repository.getAssetRepository().assetExists(assetId))
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ASSET_ID);
 
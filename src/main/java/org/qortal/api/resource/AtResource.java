@@ -99,7 +99,7 @@ public class AtResource {
 		if (limit != null && limit > 100)
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_CRITERIA);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			return repository.getATRepository().getATsByFunctionality(codeHash, isExecutable, limit, offset, reverse);
 		} catch (ApiException e) {
 			throw e;
@@ -125,7 +125,7 @@ public class AtResource {
 		ApiError.REPOSITORY_ISSUE
 	})
 	public ATData getByAddress(@PathParam("ataddress") String atAddress) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			return repository.getATRepository().fromATAddress(atAddress);
 		} catch (ApiException e) {
 			throw e;
@@ -171,7 +171,7 @@ public class AtResource {
 		atNameByHash.put(Base58.encode(PirateChainACCTv3.CODE_BYTES_HASH), PirateChainACCTv3.NAME);
 		atNameByHash.put("5xwLAjTo1RyKLQS5gM1TvUvDR53H2ARCGyNwyyGcDp4q", "escrow v1-lite");
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			List<ATData> allExecutableATs = repository.getATRepository().getAllExecutableATs();
 
 			for( ATData executableAT : allExecutableATs) {
@@ -220,7 +220,7 @@ public class AtResource {
 		ApiError.REPOSITORY_ISSUE
 	})
 	public byte[] getDataByAddress(@PathParam("ataddress") String atAddress) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			ATStateData atStateData = repository.getATRepository().getLatestATState(atAddress);
 			byte[] stateData = atStateData.getStateData();
 
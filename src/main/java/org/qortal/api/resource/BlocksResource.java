@@ -86,7 +86,7 @@ public class BlocksResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_SIGNATURE, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 		    // Check the database first
 			BlockData blockData = repository.getBlockRepository().fromSignature(signature);
 			if (blockData != null) {
@@ -135,7 +135,7 @@ public class BlocksResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_SIGNATURE, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 
 			// Default to version 1
 			if (version == null) {
@@ -221,7 +221,7 @@ public class BlocksResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_SIGNATURE, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			// Check if the block exists in either the database or archive
 			int height = repository.getBlockRepository().getHeightFromSignature(signature);
 			if (height == 0) {
@@ -266,7 +266,7 @@ public class BlocksResource {
 		ApiError.REPOSITORY_ISSUE
 	})
 	public BlockData getFirstBlock() {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			// Check the database first
 			BlockData blockData = repository.getBlockRepository().fromHeight(1);
 			if (blockData != null) {
@@ -305,7 +305,7 @@ public class BlocksResource {
 		ApiError.REPOSITORY_ISSUE
 	})
 	public BlockData getLastBlock(@QueryParam("includeOnlineSignatures") Boolean includeOnlineSignatures) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			BlockData blockData = repository.getBlockRepository().getLastBlock();
 
 			if (includeOnlineSignatures == null || !includeOnlineSignatures) {
@@ -346,7 +346,7 @@ public class BlocksResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_SIGNATURE, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			BlockData childBlockData = null;
 
 			// Check if block exists in database
@@ -397,7 +397,7 @@ public class BlocksResource {
 		ApiError.REPOSITORY_ISSUE
 	})
 	public int getHeight() {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			return repository.getBlockRepository().getBlockchainHeight();
 		} catch (DataException e) {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
@@ -433,7 +433,7 @@ public class BlocksResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_SIGNATURE, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			// Firstly check the database
 			BlockData blockData = repository.getBlockRepository().fromSignature(signature);
 			if (blockData != null) {
@@ -474,7 +474,7 @@ public class BlocksResource {
 	})
 	public BlockData getByHeight(@PathParam("height") int height,
 								 @QueryParam("includeOnlineSignatures") Boolean includeOnlineSignatures) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			// Firstly check the database
 			BlockData blockData = repository.getBlockRepository().fromHeight(height);
 			if (blockData != null) {
@@ -520,7 +520,7 @@ public class BlocksResource {
 			ApiError.BLOCK_UNKNOWN, ApiError.REPOSITORY_ISSUE
 	})
 	public BlockMintingInfo getBlockMintingInfoByHeight(@PathParam("height") int height) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			// Try the database
 			BlockData blockData = repository.getBlockRepository().fromHeight(height);
 			if (blockData == null) {
@@ -594,7 +594,7 @@ public class BlocksResource {
 	})
 	public BlockData getByTimestamp(@PathParam("timestamp") long timestamp,
 									@QueryParam("includeOnlineSignatures") Boolean includeOnlineSignatures) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			BlockData blockData = null;
 
 			// Try the Blocks table
@@ -655,7 +655,7 @@ public class BlocksResource {
 										 @Parameter(ref = "count") @QueryParam("count") int count,
 										 @Parameter(ref = "reverse") @QueryParam("reverse") Boolean reverse,
 										 @QueryParam("includeOnlineSignatures") Boolean includeOnlineSignatures) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			List<BlockData> blocks = new ArrayList<>();
 			boolean shouldReverse = (reverse != null && reverse);
 
@@ -714,7 +714,7 @@ public class BlocksResource {
 		if (!Crypto.isValidAddress(address))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			// Get public key from address
 			AccountData accountData = repository.getAccountRepository().getAccount(address);
 			if (accountData == null || accountData.getPublicKey() == null)
@@ -773,7 +773,7 @@ public class BlocksResource {
 			) @QueryParam("offset") Integer offset, @Parameter(
 				ref = "reverse"
 			) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			for (String address : addresses)
 				if (!Crypto.isValidAddress(address))
 					throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
@@ -818,7 +818,7 @@ public class BlocksResource {
 		if ((startHeight != null && startHeight < 1) || (endHeight != null && endHeight < 1) || (count != null && count < 1))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_CRITERIA);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 
 			/*
 			 * start	end		count		result
@@ -917,7 +917,7 @@ public class BlocksResource {
 	})
 	public Set<DecodedOnlineAccountData> getOnlineAccounts(@PathParam("height") int height) {
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 
 			// get block from database
 			BlockData blockData = repository.getBlockRepository().fromHeight(height);
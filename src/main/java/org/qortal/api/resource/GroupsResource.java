@@ -71,7 +71,7 @@ public class GroupsResource {
 	) @QueryParam("offset") Integer offset, @Parameter(
 		ref = "reverse"
 	) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			List<GroupData> allGroupData = repository.getGroupRepository().getAllGroups(limit, offset, reverse);
 			allGroupData.forEach(groupData -> {
 				try {
@@ -116,7 +116,7 @@ public class GroupsResource {
 	) @QueryParam("offset") Integer offset, @Parameter(
 			ref = "reverse"
 	) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			List<GroupBalanceData> allGroupData = repository.getGroupRepository().getGroupMemberBalances(limit, offset, reverse);
 
 			try {
@@ -151,7 +151,7 @@ public class GroupsResource {
 		if (!Crypto.isValidAddress(owner))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			List<GroupData> groups = repository.getGroupRepository().getGroupsByOwner(owner);
 			try {
 				Map<String, String> primaryNamesByOwner = repository.getNameRepository().getPrimaryNamesByOwners(Collections.singletonList(owner));
@@ -188,7 +188,7 @@ public class GroupsResource {
 		if (!Crypto.isValidAddress(member))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			List<GroupData> allGroupData;
 			if (Boolean.TRUE.equals(ownerOnly)) {
 				allGroupData = repository.getGroupRepository().getGroupsByOwner(member);
@@ -251,7 +251,7 @@ public class GroupsResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_CRITERIA);
 		if (after != null && after < 1500000000000L)
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_CRITERIA);
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			List<GroupKickSummaryData> list = repository.getTransactionRepository().getGroupKicks(address, groupId, before, after, limit, offset, reverse);
 			return list.stream()
 					.map(k -> new GroupKickInfo(k.getMember(), k.getGroupId(), k.getReason(), k.getTimestamp()))
@@ -277,7 +277,7 @@ public class GroupsResource {
 	)
 	@ApiErrors({ApiError.REPOSITORY_ISSUE})
 	public GroupData getGroupData(@PathParam("groupid") int groupId) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			GroupData groupData = repository.getGroupRepository().fromGroupId(groupId);
 			if (groupData == null)
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.GROUP_UNKNOWN);
@@ -313,7 +313,7 @@ public class GroupsResource {
 	public GroupMembers getGroup(@PathParam("groupid") int groupId, @QueryParam("onlyAdmins") Boolean onlyAdmins,
 			@Parameter(ref = "limit") @QueryParam("limit") Integer limit, @Parameter(ref = "offset") @QueryParam("offset") Integer offset,
 			@Parameter(ref="reverse") @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			if (!repository.getGroupRepository().groupExists(groupId))
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.GROUP_UNKNOWN);
 
@@ -935,7 +935,7 @@ public class GroupsResource {
 	)
 	@ApiErrors({ApiError.REPOSITORY_ISSUE})
 	public List<GroupInviteData> getInvitesByInvitee(@PathParam("address") String invitee) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			return repository.getGroupRepository().getInvitesByInvitee(invitee);
 		} catch (DataException e) {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
@@ -958,7 +958,7 @@ public class GroupsResource {
 	)
 	@ApiErrors({ApiError.REPOSITORY_ISSUE})
 	public List<GroupInviteData> getInvitesByGroupId(@PathParam("groupid") int groupId) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			return repository.getGroupRepository().getInvitesByGroupId(groupId);
 		} catch (DataException e) {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
@@ -981,7 +981,7 @@ public class GroupsResource {
 	)
 	@ApiErrors({ApiError.REPOSITORY_ISSUE})
 	public List<GroupJoinRequestData> getJoinRequests(@PathParam("groupid") int groupId) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			return repository.getGroupRepository().getGroupJoinRequests(groupId);
 		} catch (DataException e) {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
@@ -1007,7 +1007,7 @@ public class GroupsResource {
 		if (!Crypto.isValidAddress(address))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			return repository.getGroupRepository().getJoinRequestsByJoiner(address);
 		} catch (DataException e) {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
@@ -1034,7 +1034,7 @@ public class GroupsResource {
 		if (!Crypto.isValidAddress(address))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			List<GroupData> groups = repository.getGroupRepository().getGroupsByAdmin(address);
 			if (groups.isEmpty())
 				return new ArrayList<>();
@@ -1079,7 +1079,7 @@ public class GroupsResource {
 	)
 	@ApiErrors({ApiError.REPOSITORY_ISSUE})
 	public List<GroupBanData> getBans(@PathParam("groupid") int groupId) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			return repository.getGroupRepository().getGroupBans(groupId);
 		} catch (DataException e) {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
@@ -1198,7 +1198,7 @@ public class GroupsResource {
 	) @QueryParam("limit") Integer limit, @Parameter(
 			ref = "offset"
 	) @QueryParam("offset") Integer offset) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 
 			return repository.getGroupRepository().getBanCountsForYear( year, limit, offset );
 		} catch (DataException e) {
@@ -1226,7 +1226,7 @@ public class GroupsResource {
 	) @QueryParam("limit") Integer limit, @Parameter(
 			ref = "offset"
 	) @QueryParam("offset") Integer offset) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 
 			return repository.getGroupRepository().getKickCountsForYear( year, limit, offset );
 		} catch (DataException e) {
@@ -1254,7 +1254,7 @@ public class GroupsResource {
 	) @QueryParam("limit") Integer limit, @Parameter(
 			ref = "offset"
 	) @QueryParam("offset") Integer offset) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 
 			return repository.getGroupRepository().getJoinCountsForYear( year, limit, offset );
 		} catch (DataException e) {
@@ -1282,7 +1282,7 @@ public class GroupsResource {
 	) @QueryParam("limit") Integer limit, @Parameter(
 			ref = "offset"
 	) @QueryParam("offset") Integer offset) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 
 			return repository.getGroupRepository().getLeaveCountsForYear( year, limit, offset );
 		} catch (DataException e) {
@@ -62,7 +62,7 @@ public class NamesResource {
 										 @Parameter(ref = "limit") @QueryParam("limit") Integer limit,
 										 @Parameter(ref = "offset") @QueryParam("offset") Integer offset,
 										 @Parameter(ref="reverse") @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 
 			return repository.getNameRepository().getAllNames(after, limit, offset, reverse);
 		} catch (DataException e) {
@@ -90,7 +90,7 @@ public class NamesResource {
 		if (!Crypto.isValidAddress(address))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			List<NameData> names;
 
 			if (Settings.getInstance().isLite()) {
@@ -181,7 +181,7 @@ public class NamesResource {
 		if (!Crypto.isValidAddress(address))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 
 			if (Settings.getInstance().isLite()) {
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.UNAUTHORIZED);
@@ -217,7 +217,7 @@ public class NamesResource {
 	)
 	@ApiErrors({ApiError.NAME_UNKNOWN, ApiError.REPOSITORY_ISSUE})
 	public NameData getName(@PathParam("name") String name) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			NameData nameData;
 			String reducedName = Unicode.sanitize(name);
 
@@ -260,7 +260,7 @@ public class NamesResource {
 									  @Parameter(ref = "limit") @QueryParam("limit") Integer limit,
 									  @Parameter(ref = "offset") @QueryParam("offset") Integer offset,
 									  @Parameter(ref="reverse") @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			if (query == null) {
 				throw ApiExceptionFactory.INSTANCE.createCustomException(request, ApiError.INVALID_CRITERIA, "Missing query");
 			}
@@ -523,7 +523,7 @@ public class NamesResource {
 	@ApiErrors({ApiError.REPOSITORY_ISSUE})
 	public List<NameData> getNamesForSale(@Parameter(ref = "limit") @QueryParam("limit") Integer limit, @Parameter(ref = "offset") @QueryParam("offset") Integer offset,
 			@Parameter(ref="reverse") @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			return repository.getNameRepository().getNamesForSale(limit, offset, reverse);
 		} catch (DataException e) {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
@@ -22,6 +22,7 @@ import org.qortal.controller.Synchronizer;
 import org.qortal.controller.Synchronizer.SynchronizationResult;
 import org.qortal.data.block.BlockSummaryData;
 import org.qortal.data.network.PeerData;
+import org.qortal.network.MessageDispatcher;
 import org.qortal.network.Network;
 import org.qortal.network.NetworkData;
 import org.qortal.network.Peer;
@@ -310,6 +311,30 @@ public class PeersResource {
 		return Network.getInstance().getStatsSnapshot();
 	}
 
+	@GET
+	@Path("/messagestats")
+	@Operation(
+		summary = "Fetch queue and handling statistics per incoming message type",
+		responses = {
+			@ApiResponse(
+				content = @Content(
+					mediaType = MediaType.APPLICATION_JSON,
+					array = @ArraySchema(
+						schema = @Schema(
+							implementation = MessageDispatcher.MessageTypeStats.class
+						)
+					)
+				)
+			)
+		}
+	)
+	@SecurityRequirement(name = "apiKey")
+	public List<MessageDispatcher.MessageTypeStats> getMessageStats(@HeaderParam(Security.API_KEY_HEADER) String apiKey) {
+		Security.checkApiCallAllowed(request);
+
+		return Network.getInstance().getMessageDispatchStats();
+	}
+
 	@POST
 	@Operation(
 		summary = "Add new peer address",
@@ -40,6 +40,8 @@ import org.qortal.repository.DataException;
 import org.qortal.repository.ReindexManager;
 import org.qortal.repository.Repository;
 import org.qortal.repository.RepositoryManager;
+import org.qortal.repository.hsqldb.HSQLDBMaintenanceScheduler;
+import org.qortal.repository.hsqldb.HSQLDBQueryProfiler;
 import org.qortal.settings.Settings;
 import org.qortal.data.system.SystemInfo;
 import org.qortal.utils.Base58;
@@ -960,6 +962,80 @@ public class AdminResource {
 		}
 	}
 
+	@GET
+	@Path("/repository/queries")
+	@Operation(
+		summary = "Fetch per-SQL repository query statistics, most total time first.",
+		description = "Times are in microseconds. Requires \"repositoryProfilingEnabled\" setting, otherwise returns an empty list.",
+		responses = {
+			@ApiResponse(
+				content = @Content(
+					mediaType = MediaType.APPLICATION_JSON,
+					array = @ArraySchema(
+						schema = @Schema(
+							implementation = HSQLDBQueryProfiler.QueryStats.class
+						)
+					)
+				)
+			)
+		}
+	)
+	@SecurityRequirement(name = "apiKey")
+	public List<HSQLDBQueryProfiler.QueryStats> getRepositoryQueryStats(@HeaderParam(Security.API_KEY_HEADER) String apiKey,
+			@Parameter(ref = "limit") @QueryParam("limit") Integer limit) {
+		Security.checkApiCallAllowed(request);
+
+		List<HSQLDBQueryProfiler.QueryStats> queryStats = HSQLDBQueryProfiler.getInstance().getStats();
+
+		if (limit != null && limit > 0 && limit < queryStats.size())
+			return queryStats.subList(0, limit);
+
+		return queryStats;
+	}
+
+	@DELETE
+	@Path("/repository/queries")
+	@Operation(
+		summary = "Reset per-SQL repository query statistics.",
+		responses = {
+			@ApiResponse(
+				description = "\"true\"",
+				content = @Content(mediaType = MediaType.TEXT_PLAIN, schema = @Schema(type = "string"))
+			)
+		}
+	)
+	@SecurityRequirement(name = "apiKey")
+	public String resetRepositoryQueryStats(@HeaderParam(Security.API_KEY_HEADER) String apiKey) {
+		Security.checkApiCallAllowed(request);
+
+		HSQLDBQueryProfiler.getInstance().reset();
+
+		return "true";
+	}
+
+	@GET
+	@Path("/repository/maintenance")
+	@Operation(
+		summary = "Fetch repository checkpoint gate contention and maintenance progress.",
+		description = "Times are in microseconds, unless noted.",
+		responses = {
+			@ApiResponse(
+				content = @Content(
+					mediaType = MediaType.APPLICATION_JSON,
+					schema = @Schema(
+						implementation = HSQLDBMaintenanceScheduler.MaintenanceStats.class
+					)
+				)
+			)
+		}
+	)
+	@SecurityRequirement(name = "apiKey")
+	public HSQLDBMaintenanceScheduler.MaintenanceStats getRepositoryMaintenanceStats(@HeaderParam(Security.API_KEY_HEADER) String apiKey) {
+		Security.checkApiCallAllowed(request);
+
+		return HSQLDBMaintenanceScheduler.getInstance().getStats();
+	}
+
 	@POST
 	@Path("/repository/checkpoint")
 	@Operation(
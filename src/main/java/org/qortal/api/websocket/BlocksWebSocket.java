@@ -91,7 +91,7 @@ public class BlocksWebSocket extends ApiWebSocket implements Listener {
 				return;
 			}
 
-			try (final Repository repository = RepositoryManager.getRepository()) {
+			try (final Repository repository = RepositoryManager.getApiRepository()) {
 				int height = repository.getBlockRepository().getHeightFromSignature(signature);
 				if (height == 0) {
 					sendError(session, ApiError.BLOCK_UNKNOWN);
@@ -126,7 +126,7 @@ public class BlocksWebSocket extends ApiWebSocket implements Listener {
 			return;
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
 			List<BlockSummaryData> blockSummaries = repository.getBlockRepository().getBlockSummaries(height, height);
 			if (blockSummaries == null || blockSummaries.isEmpty()) {
 				sendError(session, ApiError.BLOCK_UNKNOWN);
@@ -1,83 +1,294 @@
 package org.qortal.arbitrary;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.qortal.arbitrary.metadata.ArbitraryDataMetadataDigest;
 import org.qortal.repository.DataException;
 import org.qortal.utils.Base58;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Computes a SHA-256 digest of a directory's files, including their relative paths.
+ *
+ * The digest is a single hash over every path and file in sorted order, so it can't
+ * be assembled from per-file hashes. Instead, when the directory has a .qortal folder,
+ * the last result is stored in .qortal/digest along with a fingerprint of every file's
+ * path, size and modification time. If none of those have changed, the stored hash is
+ * reused and nothing needs to be read. Otherwise files are read ahead in parallel
+ * whilst being hashed in order, which keeps the result identical.
+ */
 public class ArbitraryDataDigest {
 
+    private static final Logger LOGGER = LogManager.getLogger(ArbitraryDataDigest.class);
+
+    // Buffer size: 256KB - reduces system calls while being memory-friendly for all machines
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final int READ_THREADS = 4;
+
+    // Number of batches of files that can be read ahead of the one being hashed
+    private static final int READ_AHEAD = 8;
+
+    // Maximum size of a batch. Files above this size are streamed rather than read ahead,
+    // to bound memory usage
+    private static final long MAX_READ_AHEAD_SIZE = 1024 * 1024L;
+
+    private static final int MAX_BATCH_FILES = 256;
+
+    // Files modified this recently may change again without their size or modification
+    // time changing (on filesystems with coarse timestamps), so the result isn't stored
+    private static final long MIN_FILE_AGE = 2000L;
+
+    private static final byte FINGERPRINT_VERSION = 1;
+
     private final Path path;
     private byte[] hash;
 
+    private static class FileEntry {
+        private final Path path;
+        private final byte[] pathBytes;
+        private final long size;
+        private final long lastModified;
+
+        private FileEntry(Path path, byte[] pathBytes, long size, long lastModified) {
+            this.path = path;
+            this.pathBytes = pathBytes;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
     public ArbitraryDataDigest(Path path) {
         this.path = path;
     }
 
     public void compute() throws IOException, DataException {
-        // Buffer size: 256KB - reduces system calls while being memory-friendly for all machines
-        final int BUFFER_SIZE = 256 * 1024;
-        
-        List<Path> allPaths = Files.walk(path)
-            .filter(Files::isRegularFile)
-            .sorted()
-            .collect(Collectors.toList());
-    
-        Path basePathAbsolute = this.path.toAbsolutePath();
-    
-        MessageDigest sha256;
-        try {
-            sha256 = MessageDigest.getInstance("SHA-256");
-        } catch (NoSuchAlgorithmException e) {
-            throw new DataException("SHA-256 hashing algorithm unavailable");
+        final long startTime = System.currentTimeMillis();
+
+        List<FileEntry> entries = this.listFiles();
+        byte[] fingerprint = this.fingerprint(entries);
+
+        // Only keep a stored digest in directories that already have a .qortal folder,
+        // so that we never add one to a user's own files
+        ArbitraryDataMetadataDigest metadata = null;
+        if (Files.isDirectory(this.path.resolve(".qortal"))) {
+            metadata = new ArbitraryDataMetadataDigest(this.path);
+            try {
+                metadata.read();
+                if (metadata.getHash() != null && Arrays.equals(fingerprint, metadata.getFingerprint())) {
+                    this.hash = metadata.getHash();
+                    return;
+                }
+            } catch (IOException | DataException e) {
+                // No usable digest stored, so compute a new one
+            }
         }
-    
-        // Reuse buffer across files to reduce allocations
-        byte[] buffer = new byte[BUFFER_SIZE];
-        
-        for (Path path : allPaths) {
+
+        this.hash = this.hashFiles(entries);
+
+        if (metadata != null) {
+            boolean recentlyModified = entries.stream().anyMatch(e -> e.lastModified > startTime - MIN_FILE_AGE);
+            if (recentlyModified) {
+                return;
+            }
+            try {
+                metadata.setFingerprint(fingerprint);
+                metadata.setHash(this.hash);
+                metadata.write();
+            } catch (IOException | DataException e) {
+                LOGGER.debug("Unable to store digest for path {}: {}", this.path, e.getMessage());
+            }
+        }
+    }
+
+    private List<FileEntry> listFiles() throws IOException {
+        // Collect the attributes whilst walking, to avoid reading them again for each file
+        Map<Path, BasicFileAttributes> allPaths = new TreeMap<>();
+        Files.walkFileTree(this.path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                if (attributes.isRegularFile()) {
+                    allPaths.put(file, attributes);
+                }
+                else if (attributes.isSymbolicLink() && Files.isRegularFile(file)) {
+                    // Links to files are included too, as they always have been
+                    allPaths.put(file, Files.readAttributes(file, BasicFileAttributes.class));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        Path basePathAbsolute = this.path.toAbsolutePath();
+
+        List<FileEntry> entries = new ArrayList<>(allPaths.size());
+        for (Map.Entry<Path, BasicFileAttributes> pathEntry : allPaths.entrySet()) {
+            Path path = pathEntry.getKey();
+
             // We need to work with paths relative to the base path, to ensure the same hash
             // is generated on different systems
             Path relativePath = basePathAbsolute.relativize(path.toAbsolutePath());
-    
+
             // Exclude Qortal folder since it can be different each time
             // We only care about hashing the actual user data
             if (relativePath.startsWith(".qortal/")) {
                 continue;
             }
-    
+
             // Account for \ VS / : Linux VS Windows
             String pathString = relativePath.toString();
             if (relativePath.getFileSystem().toString().contains("Windows")) {
                 pathString = pathString.replace("\\", "/");
             }
-    
-            // Hash path
-            byte[] filePathBytes = pathString.getBytes(StandardCharsets.UTF_8);
-            sha256.update(filePathBytes);
-    
-            try (InputStream in = Files.newInputStream(path)) {
-                int bytesRead;
-                while ((bytesRead = in.read(buffer)) != -1) {
-                    sha256.update(buffer, 0, bytesRead);
+
+            BasicFileAttributes attributes = pathEntry.getValue();
+            entries.add(new FileEntry(path, pathString.getBytes(StandardCharsets.UTF_8),
+                    attributes.size(), attributes.lastModifiedTime().to(TimeUnit.MILLISECONDS)));
+        }
+        return entries;
+    }
+
+    private byte[] fingerprint(List<FileEntry> entries) throws DataException {
+        MessageDigest sha256 = getSha256();
+        sha256.update(FINGERPRINT_VERSION);
+
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + Long.BYTES * 2);
+        for (FileEntry entry : entries) {
+            buffer.clear();
+            buffer.putInt(entry.pathBytes.length).putLong(entry.size).putLong(entry.lastModified);
+            sha256.update(buffer.array());
+            sha256.update(entry.pathBytes);
+        }
+        return sha256.digest();
+    }
+
+    private byte[] hashFiles(List<FileEntry> entries) throws IOException, DataException {
+        MessageDigest sha256 = getSha256();
+
+        // Reuse buffer across files to reduce allocations
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        List<List<FileEntry>> batches = batchFiles(entries);
+
+        int threadCount = Math.max(1, Math.min(READ_THREADS, batches.size()));
+        ExecutorService readPool = Executors.newFixedThreadPool(threadCount, r -> {
+            Thread t = new Thread(r);
+            t.setName("DigestReader-" + t.getId());
+            t.setDaemon(true);
+            return t;
+        });
+
+        try {
+            List<Future<List<byte[]>>> futures = new ArrayList<>(batches.size());
+            for (int i = 0; i < batches.size(); i++) {
+                // Keep the next few batches queued up, so that reading overlaps with hashing
+                while (futures.size() < batches.size() && futures.size() <= i + READ_AHEAD) {
+                    List<FileEntry> next = batches.get(futures.size());
+                    futures.add(next.get(0).size <= MAX_READ_AHEAD_SIZE ? readPool.submit(() -> readFiles(next)) : null);
+                }
+
+                List<FileEntry> batch = batches.get(i);
+                Future<List<byte[]>> future = futures.set(i, null);
+
+                if (future != null) {
+                    List<byte[]> allData = future.get();
+                    for (int j = 0; j < batch.size(); j++) {
+                        // Hash path
+                        sha256.update(batch.get(j).pathBytes);
+                        sha256.update(allData.get(j));
+                    }
+                    continue;
+                }
+
+                // Large files are in a batch on their own, and are streamed
+                FileEntry entry = batch.get(0);
+                sha256.update(entry.pathBytes);
+                try (InputStream in = Files.newInputStream(entry.path)) {
+                    int bytesRead;
+                    while ((bytesRead = in.read(buffer)) != -1) {
+                        sha256.update(buffer, 0, bytesRead);
+                    }
                 }
             }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataException("Interrupted whilst computing digest");
+
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new DataException(String.format("Unable to compute digest: %s", e.getCause().getMessage()));
+
+        } finally {
+            readPool.shutdownNow();
+        }
+
+        return sha256.digest();
+    }
+
+    /**
+     * Groups consecutive small files into batches of up to MAX_READ_AHEAD_SIZE bytes,
+     * so that each read task has enough work to be worth handing to another thread.
+     * Files larger than that are placed in a batch of their own.
+     */
+    private static List<List<FileEntry>> batchFiles(List<FileEntry> entries) {
+        List<List<FileEntry>> batches = new ArrayList<>();
+        List<FileEntry> batch = new ArrayList<>();
+        long batchSize = 0;
+
+        for (FileEntry entry : entries) {
+            if (!batch.isEmpty() && (batchSize + entry.size > MAX_READ_AHEAD_SIZE || batch.size() >= MAX_BATCH_FILES)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchSize = 0;
+            }
+            batch.add(entry);
+            batchSize += entry.size;
         }
-    
-        this.hash = sha256.digest();
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
     }
-    
+
+    private static List<byte[]> readFiles(List<FileEntry> batch) throws IOException {
+        List<byte[]> allData = new ArrayList<>(batch.size());
+        for (FileEntry entry : batch) {
+            allData.add(Files.readAllBytes(entry.path));
+        }
+        return allData;
+    }
+
+    private static MessageDigest getSha256() throws DataException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new DataException("SHA-256 hashing algorithm unavailable");
+        }
+    }
+
 
     public boolean isHashValid(byte[] hash) {
         return Arrays.equals(hash, this.hash);
@@ -1,13 +1,15 @@
 package org.qortal.arbitrary;
 
-import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -19,6 +21,7 @@ import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
 import static java.util.Arrays.stream;
+import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -26,6 +29,7 @@ import java.util.TreeMap;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -35,6 +39,7 @@ import static java.util.stream.Collectors.toMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.qortal.arbitrary.metadata.ArbitraryDataTransactionMetadata;
+import org.qortal.controller.arbitrary.ArbitraryDataHostedIndex;
 import org.qortal.crypto.Crypto;
 import org.qortal.data.transaction.ArbitraryTransactionData;
 import org.qortal.repository.DataException;
@@ -77,8 +82,14 @@ public class ArbitraryDataFile {
     public static final long MAX_FILE_SIZE = 2L * 1024 * 1024 * 1024; // 2 GiB
     protected static final int MAX_CHUNK_SIZE = 1 * 1024 * 1024; // 1MiB
     public static final int CHUNK_SIZE = 512 * 1024; // 0.5MiB
+
+    // Maximum number of threads used to split a file into chunks
+    private static final int SPLIT_THREADS = 4;
     public static int SHORT_DIGEST_LENGTH = 8;
 
+    // Suffix of file kept next to a chunk, holding the checksum for sending it in a network message
+    public static final String CHECKSUM_SIDECAR_SUFFIX = ".msgsum";
+
     protected Path filePath;
     protected byte[] fileContent;
     private boolean useTemporaryFile;
@@ -145,7 +156,11 @@ public class ArbitraryDataFile {
             outputStream.write(fileContent);
             this.filePath = outputFilePath;
 
-            ArbitraryDataFolderSizeEstimator.getInstance().add(FilesystemUtils.getDiskUsage(outputFile));
+            long diskUsage = FilesystemUtils.getDiskUsage(outputFile);
+            ArbitraryDataFolderSizeEstimator.getInstance().add(diskUsage);
+            if (!this.useTemporaryFile) {
+                ArbitraryDataHostedIndex.getInstance().addBytes(this.signature, diskUsage);
+            }
         } catch (IOException e) {
             this.delete();
             throw new DataException(String.format("Unable to write data with hash %s: %s", this.hash58, e.getMessage()));
@@ -347,51 +362,114 @@ public class ArbitraryDataFile {
         return hashes;
     }
 
+    /**
+     * Splits the file into chunks of chunkSize bytes (the last chunk may be smaller).
+     *
+     * Chunks are read, hashed and written in parallel using positional reads from a single
+     * FileChannel into reused direct buffers, so that no chunk data is copied onto the heap.
+     * Memory-mapping the input was avoided because mappings can't be released deterministically,
+     * and a multi-gigabyte file would hold thousands of them until the next GC.
+     *
+     * The resulting chunk list is always in file order, regardless of the order in which
+     * the chunks were processed.
+     *
+     * @return the number of chunks, or 0 if the file doesn't need splitting
+     */
     public int split(int chunkSize) throws DataException {
-        try {
+        File file = this.getFile();
+        this.chunks = new ArrayList<>();
 
-            File file = this.getFile();
-            byte[] buffer = new byte[chunkSize];
-            this.chunks = new ArrayList<>();
+        if (file == null) {
+            return 0;
+        }
+        if (!file.exists()) {
+            throw new DataException("Unable to split file into chunks: file doesn't exist");
+        }
+        if (file.length() <= chunkSize) {
+            // No need to split into chunks if we're already below the chunk size
+            return 0;
+        }
 
-            if (file != null) {
-                if (file.exists() && file.length() <= chunkSize) {
-                    // No need to split into chunks if we're already below the chunk size
-                    return 0;
-                }
+        final long fileSize = file.length();
+        final int totalChunks = (int) ((fileSize + chunkSize - 1) / chunkSize);
+        final int threadCount = Math.max(1, Math.min(SPLIT_THREADS, Math.min(Runtime.getRuntime().availableProcessors(), totalChunks)));
 
-                try (FileInputStream fileInputStream = new FileInputStream(file);
-                     BufferedInputStream bis = new BufferedInputStream(fileInputStream)) {
-
-                    int numberOfBytes;
-                    while ((numberOfBytes = bis.read(buffer)) > 0) {
-                        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-                            out.write(buffer, 0, numberOfBytes);
-                            out.flush();
-
-                            ArbitraryDataFileChunk chunk = new ArbitraryDataFileChunk(out.toByteArray(), this.signature);
-                            chunk.save();
-                            ValidationResult validationResult = chunk.isValid();
-                            if (validationResult == ValidationResult.OK) {
-                                  // Clear fileContent after saving - data is now on disk and can be reloaded if needed
-                            chunk.clearFileContent();
-                                this.chunks.add(chunk);
-                            } else {
-                                throw new DataException(String.format("Chunk %s is invalid", chunk));
-                            }
-                          
-                            
-                        }
+        // One direct buffer per thread, returned to the pool after each chunk
+        BlockingQueue<ByteBuffer> bufferPool = new LinkedBlockingQueue<>();
+        for (int i = 0; i < threadCount; i++) {
+            bufferPool.add(ByteBuffer.allocateDirect(chunkSize));
+        }
+
+        ExecutorService splitPool = Executors.newFixedThreadPool(threadCount, r -> {
+            Thread t = new Thread(r);
+            t.setName("ChunkSplitter-" + t.getId());
+            t.setDaemon(true);
+            return t;
+        });
+
+        try (FileChannel inputChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            List<Future<ArbitraryDataFileChunk>> futures = new ArrayList<>(totalChunks);
+            for (int i = 0; i < totalChunks; i++) {
+                final long position = (long) i * chunkSize;
+                final int length = (int) Math.min(chunkSize, fileSize - position);
+                futures.add(splitPool.submit(() -> {
+                    ByteBuffer buffer = bufferPool.take();
+                    try {
+                        return this.writeChunk(inputChannel, position, length, buffer);
+                    } finally {
+                        bufferPool.add(buffer);
                     }
-                }
+                }));
+            }
+
+            for (Future<ArbitraryDataFileChunk> future : futures) {
+                this.chunks.add(future.get());
             }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataException("Interrupted while splitting file into chunks");
+
         } catch (Exception e) {
+            LOGGER.debug("Unable to split file {}: {}", this.filePath, e.getMessage());
             throw new DataException("Unable to split file into chunks");
+
+        } finally {
+            splitPool.shutdownNow();
         }
 
         return this.chunks.size();
     }
 
+    private ArbitraryDataFileChunk writeChunk(FileChannel inputChannel, long position, int length, ByteBuffer buffer) throws IOException, DataException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (inputChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+
+        String chunkHash58 = Base58.encode(Crypto.digest(buffer.duplicate()));
+        Path outputFilePath = getOutputFilePath(chunkHash58, this.signature, true);
+        try (FileChannel outputChannel = FileChannel.open(outputFilePath,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                outputChannel.write(buffer);
+            }
+        }
+
+        long diskUsage = FilesystemUtils.getDiskUsage(outputFilePath.toFile());
+        ArbitraryDataFolderSizeEstimator.getInstance().add(diskUsage);
+        ArbitraryDataHostedIndex.getInstance().addBytes(this.signature, diskUsage);
+
+        ArbitraryDataFileChunk chunk = ArbitraryDataFileChunk.fromHash58(chunkHash58, this.signature);
+        if (chunk.isValid() != ValidationResult.OK) {
+            throw new DataException(String.format("Chunk %s is invalid", chunk));
+        }
+        return chunk;
+    }
+
     /**
      * Joins all chunks into a single file using parallel pre-reading
      * and computes the file hash incrementally during the write process.
@@ -565,8 +643,12 @@ public class ArbitraryDataFile {
                     long diskUsage = FilesystemUtils.getDiskUsage(this.filePath.toFile());
 
                     Files.delete(this.filePath);
+                    deleteChecksumSidecar(this.filePath);
 
                     ArbitraryDataFolderSizeEstimator.getInstance().subtract(diskUsage);
+                    if (!this.useTemporaryFile) {
+                        ArbitraryDataHostedIndex.getInstance().subtractBytes(this.signature, diskUsage);
+                    }
                     this.cleanupFilesystem();
                     LOGGER.debug("Deleted file {}", this.filePath);
                     return true;
@@ -932,6 +1014,41 @@ public class ArbitraryDataFile {
         return this.chunks;
     }
 
+    /**
+     * Opens a stream over the complete file's contents, without joining the chunks on disk.
+     * The complete file is used if it exists, otherwise the chunks are read in order.
+     * Each chunk is only opened once the previous one has been fully read.
+     *
+     * @return input stream, or null if the data isn't fully available locally
+     * @throws IOException if the complete file can't be opened
+     */
+    public InputStream openInputStream() throws IOException {
+        if (this.exists()) {
+            return Files.newInputStream(this.filePath);
+        }
+        if (this.chunks == null || this.chunks.isEmpty() || !this.allChunksExist()) {
+            return null;
+        }
+
+        Iterator<ArbitraryDataFileChunk> iterator = new ArrayList<>(this.chunks).iterator();
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                try {
+                    return Files.newInputStream(iterator.next().getFilePath());
+                } catch (IOException e) {
+                    // Unwrapped again by callers reading the stream
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
     public byte[] chunkHashes() throws DataException {
         if (this.chunks != null && !this.chunks.isEmpty()) {
             // Return null if we only have one chunk, with the same hash as the parent
@@ -1005,6 +1122,27 @@ public class ArbitraryDataFile {
         return this.filePath;
     }
 
+    /** Returns path of the file holding this file's network message checksum, or null if this file isn't on disk. */
+    public Path getChecksumSidecarPath() {
+        return getChecksumSidecarPath(this.filePath);
+    }
+
+    public static Path getChecksumSidecarPath(Path filePath) {
+        if (filePath == null) {
+            return null;
+        }
+        return filePath.resolveSibling(filePath.getFileName().toString() + CHECKSUM_SIDECAR_SUFFIX);
+    }
+
+    /** Deletes checksum file kept next to file at <tt>filePath</tt>, if any. */
+    public static void deleteChecksumSidecar(Path filePath) {
+        try {
+            Files.deleteIfExists(getChecksumSidecarPath(filePath));
+        } catch (IOException e) {
+            LOGGER.debug("Couldn't delete checksum file for {}: {}", filePath, e.getMessage());
+        }
+    }
+
  public byte[] digest() {
     // Return cached digest if available (avoids re-hashing large files)
     if (this.cachedDigest != null) {
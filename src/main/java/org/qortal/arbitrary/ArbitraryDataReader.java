@@ -1,8 +1,12 @@
 package org.qortal.arbitrary;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InvalidObjectException;
+import java.io.UncheckedIOException;
 import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
@@ -11,13 +15,18 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
@@ -28,9 +37,11 @@ import javax.crypto.spec.SecretKeySpec;
 import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.qortal.api.HTMLParserCache;
 import org.qortal.arbitrary.ArbitraryDataFile.ResourceIdType;
 import org.qortal.arbitrary.exception.DataNotPublishedException;
 import org.qortal.arbitrary.exception.MissingDataException;
+import org.qortal.arbitrary.metadata.ArbitraryDataTransactionMetadata;
 import org.qortal.arbitrary.misc.Service;
 import org.qortal.controller.arbitrary.ArbitraryDataBuildManager;
 import org.qortal.controller.arbitrary.ArbitraryDataManager;
@@ -38,6 +49,7 @@ import org.qortal.crypto.AES;
 import org.qortal.data.transaction.ArbitraryTransactionData;
 import org.qortal.data.transaction.ArbitraryTransactionData.Compression;
 import org.qortal.data.transaction.ArbitraryTransactionData.DataType;
+import org.qortal.data.transaction.ArbitraryTransactionData.Method;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
 import org.qortal.repository.RepositoryManager;
@@ -55,6 +67,12 @@ public class ArbitraryDataReader {
 
     private static final Logger LOGGER = LogManager.getLogger(ArbitraryDataReader.class);
 
+    // Buffer size used when streaming a resource without building it
+    private static final int STREAM_BUFFER_SIZE = 256 * 1024;
+
+    // Enough bytes to check a streamed file's encryption prefix
+    private static final int STREAM_PREFIX_LENGTH = 64;
+
     private final String resourceId;
     private final ResourceIdType resourceIdType;
     private final Service service;
@@ -255,6 +273,9 @@ public class ArbitraryDataReader {
             
             this.validate();
 
+            // Any pages rewritten from the previous build are now out of date
+            HTMLParserCache.getInstance().invalidate(this.uncompressedPath);
+
         } catch (DataNotPublishedException e) {
             if (e.getMessage() != null) {
                 // Log the message only, to avoid spamming the logs with a full stack trace
@@ -273,6 +294,143 @@ public class ArbitraryDataReader {
         }
     }
 
+    /**
+     * openSingleFileStream
+     *
+     * Opens a single file resource directly from local storage, by chaining the chunk files,
+     * AES decryption and unzipping in a single pass. No intermediate files are written, so the
+     * first bytes can be served immediately, whilst the cache is built later via loadAsynchronously().
+     * Missing data is never requested from here.
+     *
+     * The raw data is hashed as it is read, and the stream throws an IOException once the end
+     * of the file is reached if it doesn't match the transaction's data hash.
+     *
+     * @return the file's stream, or null if the resource isn't a locally available single file
+     */
+    public SingleFileStream openSingleFileStream() throws DataException {
+        if (!Settings.getInstance().isQdnEnabled() || !this.service.isStreamable()) {
+            return null;
+        }
+        if (this.resourceIdType != ResourceIdType.NAME && this.resourceIdType != ResourceIdType.SIGNATURE) {
+            return null;
+        }
+
+        ArbitraryTransactionData transactionData = this.fetchLatestTransactionData();
+        if (transactionData == null || transactionData.getMethod() != Method.PUT || transactionData.getDataType() != DataType.DATA_HASH) {
+            return null;
+        }
+        if (ListUtils.isNameBlocked(transactionData.getName())) {
+            return null;
+        }
+
+        Compression compression = transactionData.getCompression();
+        if (compression != Compression.ZIP && compression != Compression.NONE) {
+            return null;
+        }
+
+        ArbitraryDataFile arbitraryDataFile = ArbitraryDataFile.fromTransactionData(transactionData);
+        ArbitraryDataTransactionMetadata metadata = arbitraryDataFile.getMetadata();
+        if (metadata == null || metadata.getFiles() == null || metadata.getFiles().size() != 1) {
+            // Only single file resources can be streamed
+            return null;
+        }
+
+        byte[] secret = transactionData.getSecret();
+        if (secret == null && this.secret58 != null) {
+            secret = Base58.decode(this.secret58);
+        }
+        if (secret == null || secret.length != Transformer.AES256_LENGTH) {
+            return this.openSingleFileStream(arbitraryDataFile, transactionData, metadata, null, null);
+        }
+
+        SecretKey aesKey = new SecretKeySpec(secret, 0, secret.length, "AES");
+        SingleFileStream stream = this.openSingleFileStream(arbitraryDataFile, transactionData, metadata, aesKey, "AES/CBC/PKCS5Padding");
+        if (stream == null) {
+            // Fall back to default AES params (necessary for legacy resource support)
+            stream = this.openSingleFileStream(arbitraryDataFile, transactionData, metadata, aesKey, "AES");
+        }
+        return stream;
+    }
+
+    private SingleFileStream openSingleFileStream(ArbitraryDataFile arbitraryDataFile, ArbitraryTransactionData transactionData,
+                                                  ArbitraryDataTransactionMetadata metadata, SecretKey aesKey, String algorithm) {
+        InputStream stream = null;
+        try {
+            InputStream rawStream = arbitraryDataFile.openInputStream();
+            if (rawStream == null) {
+                // We don't have all the data
+                return null;
+            }
+
+            DigestInputStream digestStream = new DigestInputStream(rawStream, MessageDigest.getInstance("SHA-256"));
+            stream = new BufferedInputStream(digestStream, STREAM_BUFFER_SIZE);
+
+            if (aesKey != null) {
+                stream = AES.createDecryptingInputStream(algorithm, aesKey, stream);
+            }
+
+            String filename = metadata.getFiles().get(0);
+            if (transactionData.getCompression() == Compression.ZIP) {
+                ZipInputStream zipStream = new ZipInputStream(stream);
+                stream = zipStream;
+
+                // Single files are zipped inside an enclosing folder, so skip directory entries
+                ZipEntry zipEntry = zipStream.getNextEntry();
+                while (zipEntry != null && zipEntry.isDirectory()) {
+                    zipEntry = zipStream.getNextEntry();
+                }
+                if (zipEntry == null) {
+                    LOGGER.debug("No file found when streaming {} using algorithm {}", this.resourceId, algorithm);
+                    stream.close();
+                    return null;
+                }
+                filename = Paths.get(zipEntry.getName()).getFileName().toString();
+            }
+
+            BufferedInputStream contentStream = new BufferedInputStream(stream, STREAM_BUFFER_SIZE);
+            stream = contentStream;
+
+            // Peek at the start of the file, as full validation is skipped when streaming
+            contentStream.mark(STREAM_PREFIX_LENGTH);
+            byte[] prefix = contentStream.readNBytes(STREAM_PREFIX_LENGTH);
+            contentStream.reset();
+            Service.ValidationResult result = this.service.validateEncryptionPrefix(prefix);
+            if (result != Service.ValidationResult.OK) {
+                LOGGER.debug("Unable to stream {}: {}", this.resourceId, result);
+                stream.close();
+                return null;
+            }
+
+            return new SingleFileStream(filename, contentStream, digestStream, transactionData.getData());
+
+        } catch (GeneralSecurityException | IOException | UncheckedIOException e) {
+            LOGGER.debug("Unable to stream {} using algorithm {}: {}", this.resourceId, algorithm, e.getMessage());
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException e2) {
+                    // Ignore
+                }
+            }
+            return null;
+        }
+    }
+
+    private ArbitraryTransactionData fetchLatestTransactionData() throws DataException {
+        try (final Repository repository = RepositoryManager.getRepository()) {
+            byte[] signature;
+            if (this.resourceIdType == ResourceIdType.NAME) {
+                signature = repository.getArbitraryRepository().getLatestSignature(this.service, this.resourceId, this.identifier);
+            } else {
+                signature = Base58.decode(this.resourceId);
+            }
+            if (signature == null) {
+                return null;
+            }
+            return repository.getArbitraryRepository().getSingleTransactionBySignature(signature);
+        }
+    }
+
     private void preExecute() throws DataException {
         ArbitraryDataBuildManager.getInstance().setBuildInProgress(true);
 
@@ -738,6 +896,75 @@ public class ArbitraryDataReader {
     }
 
 
+    /**
+     * A single file, decrypted and decompressed on the fly.
+     * Once the end of the file has been reached, any remaining raw data (such as a zip file's
+     * central directory) is read so that the hash of the complete raw file can be verified.
+     */
+    public static class SingleFileStream extends FilterInputStream {
+
+        private final String filename;
+        private final DigestInputStream digestStream;
+        private final byte[] expectedHash;
+        private boolean verified = false;
+
+        private SingleFileStream(String filename, InputStream contentStream, DigestInputStream digestStream, byte[] expectedHash) {
+            super(contentStream);
+            this.filename = filename;
+            this.digestStream = digestStream;
+            this.expectedHash = expectedHash;
+        }
+
+        public String getFilename() {
+            return this.filename;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                int b = super.read();
+                if (b == -1) {
+                    this.verify();
+                }
+                return b;
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            try {
+                int bytesRead = super.read(buffer, offset, length);
+                if (bytesRead == -1) {
+                    this.verify();
+                }
+                return bytesRead;
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void verify() throws IOException {
+            if (this.verified) {
+                return;
+            }
+
+            // Hash whatever raw data hasn't been needed by the decompressor
+            byte[] buffer = new byte[8192];
+            while (this.digestStream.read(buffer) != -1) {
+                // Nothing to do - the digest is updated as we read
+            }
+
+            if (!Arrays.equals(this.digestStream.getMessageDigest().digest(), this.expectedHash)) {
+                // The invalid file will be deleted when the resource is next built
+                throw new IOException("Unable to validate complete file hash");
+            }
+            this.verified = true;
+        }
+    }
+
+
     public void setTransactionData(ArbitraryTransactionData transactionData) {
         this.transactionData = transactionData;
     }
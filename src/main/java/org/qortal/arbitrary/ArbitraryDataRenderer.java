@@ -6,11 +6,15 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.server.Request;
 import org.qortal.api.HTMLParser;
+import org.qortal.api.HTMLParserCache;
 import org.qortal.arbitrary.ArbitraryDataFile.ResourceIdType;
 import org.qortal.arbitrary.exception.MissingDataException;
 import org.qortal.arbitrary.misc.Service;
 import org.qortal.controller.Controller;
+import org.qortal.controller.arbitrary.ArbitraryDataHostedIndex;
+import org.qortal.repository.DataException;
 import org.qortal.settings.Settings;
 
 import javax.servlet.ServletContext;
@@ -28,6 +32,7 @@ import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -86,6 +91,11 @@ public class ArbitraryDataRenderer {
             arbitraryDataReader.setSecret58(secret58); // Optional, used for loading encrypted file hashes only
 
             if (!arbitraryDataReader.isCachedDataAvailable()) {
+                // Single files can be served straight from the chunks, whilst the cache is built in the background
+                if (this.service != Service.APP && this.streamSingleFile(arbitraryDataReader)) {
+                    return response;
+                }
+
                 // If async is requested, show a loading screen whilst build is in progress
                 if (async) {
                     arbitraryDataReader.loadAsynchronously(false, 10);
@@ -120,6 +130,9 @@ public class ArbitraryDataRenderer {
         if (path == null) {
             return ArbitraryDataRenderer.getResponse(response, 404, "Error 404: File Not Found");
         }
+
+        // Keep the hosted data index up to date, so that viewed data is evicted last
+        this.recordAccess();
         String unzippedPath = path.toString();
 
         // Set path automatically for single file resources (except for apps, which handle routing differently)
@@ -168,17 +181,27 @@ public class ArbitraryDataRenderer {
             }
 
             if (HTMLParser.isHtmlFile(filename)) {
-                // HTML file - needs to be parsed
-                byte[] data = Files.readAllBytes(filePath); // TODO: limit file size that can be read into memory
-                String encodedResourceId;
-
-                if (resourceIdType == ResourceIdType.NAME) {
-                    encodedResourceId = resourceId.replace(" ", "%20");
-                } else {
-                    encodedResourceId = resourceId;
+                // HTML file - needs to be parsed, unless it has already been rewritten for the same parameters
+                BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+                long lastModified = attributes.lastModifiedTime().toMillis();
+                String cacheKey = HTMLParserCache.buildKey(filePath, resourceIdType, resourceId, service, identifier,
+                        inPath, prefix, includeResourceIdInPrefix, qdnContext, theme, lang, usingCustomRouting);
+                byte[] htmlData = HTMLParserCache.getInstance().get(cacheKey, lastModified, attributes.size());
+
+                if (htmlData == null) {
+                    byte[] data = Files.readAllBytes(filePath); // TODO: limit file size that can be read into memory
+                    String encodedResourceId;
+
+                    if (resourceIdType == ResourceIdType.NAME) {
+                        encodedResourceId = resourceId.replace(" ", "%20");
+                    } else {
+                        encodedResourceId = resourceId;
+                    }
+                    HTMLParser htmlParser = new HTMLParser(encodedResourceId, inPath, prefix, includeResourceIdInPrefix, data, qdnContext, service, identifier, theme, usingCustomRouting, lang);
+                    htmlParser.addAdditionalHeaderTags();
+                    htmlData = htmlParser.getData();
+                    HTMLParserCache.getInstance().put(cacheKey, filePath, lastModified, attributes.size(), htmlData);
                 }
-                HTMLParser htmlParser = new HTMLParser(encodedResourceId, inPath, prefix, includeResourceIdInPrefix, data, qdnContext, service, identifier, theme, usingCustomRouting, lang);
-                htmlParser.addAdditionalHeaderTags();
                 response.addHeader(
                     "Content-Security-Policy",
                     "default-src 'self' 'unsafe-inline' 'unsafe-eval'; " +
@@ -191,8 +214,8 @@ public class ArbitraryDataRenderer {
                     "connect-src 'self' wss: blob:;"
                 );
                 response.setContentType(context.getMimeType(filename));
-                response.setContentLength(htmlParser.getData().length);
-                response.getOutputStream().write(htmlParser.getData());
+                response.setContentLength(htmlData.length);
+                response.getOutputStream().write(htmlData);
             }
             else {
                 // Regular file - can be streamed directly
@@ -219,6 +242,70 @@ public class ArbitraryDataRenderer {
         return ArbitraryDataRenderer.getResponse(response, 404, "Error 404: File Not Found");
     }
 
+    private boolean streamSingleFile(ArbitraryDataReader arbitraryDataReader) throws DataException {
+        ArbitraryDataReader.SingleFileStream inputStream = arbitraryDataReader.openSingleFileStream();
+        if (inputStream == null) {
+            return false;
+        }
+
+        try (inputStream) {
+            String filename = inputStream.getFilename();
+            if (HTMLParser.isHtmlFile(filename)) {
+                // HTML files need to be parsed, so must be served from the built data
+                return false;
+            }
+
+            response.addHeader("Content-Security-Policy", "default-src 'self'");
+            response.setContentType(context.getMimeType(filename));
+            int bytesRead;
+            byte[] buffer = new byte[10240];
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+                response.getOutputStream().write(buffer, 0, bytesRead);
+            }
+
+        } catch (IOException e) {
+            if (!response.isCommitted()) {
+                // Nothing has been sent yet, so fall back to building the resource
+                LOGGER.debug("Unable to stream {} {}: {}", service, resourceId, e.getMessage());
+                response.reset();
+                return false;
+            }
+            // Too late to report an error via the status code, so break the connection rather than leave a truncated body looking complete
+            LOGGER.warn("Error when streaming {} {}: {}", service, resourceId, e.getMessage());
+            this.abortResponse(e);
+            return true;
+        }
+
+        this.recordAccess();
+
+        // Build the cache in the background, for subsequent requests
+        arbitraryDataReader.loadAsynchronously(false, 10);
+        return true;
+    }
+
+    private void abortResponse(Throwable cause) {
+        Request baseRequest = Request.getBaseRequest(this.request);
+        if (baseRequest != null) {
+            baseRequest.getHttpChannel().abort(cause);
+        }
+    }
+
+    private void recordAccess() {
+        ArbitraryDataHostedIndex hostedIndex = ArbitraryDataHostedIndex.getInstance();
+        switch (this.resourceIdType) {
+            case NAME:
+                hostedIndex.recordNameAccess(this.resourceId);
+                break;
+
+            case SIGNATURE:
+                hostedIndex.recordAccess(this.resourceId);
+                break;
+
+            default:
+                break;
+        }
+    }
+
     private String getFilename(String directory, String userPath) {
         if (userPath == null || userPath.endsWith("/") || userPath.isEmpty()) {
             // Locate index file
@@ -0,0 +1,71 @@
+package org.qortal.arbitrary.metadata;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.qortal.repository.DataException;
+import org.qortal.utils.Base58;
+
+import java.nio.file.Path;
+
+/**
+ * Remembers the last digest computed for a directory, along with a fingerprint
+ * of the path, size and modification time of every file that went into it.
+ */
+public class ArbitraryDataMetadataDigest extends ArbitraryDataQortalMetadata {
+
+    private byte[] fingerprint;
+    private byte[] hash;
+
+    public ArbitraryDataMetadataDigest(Path filePath) {
+        super(filePath);
+
+    }
+
+    @Override
+    protected String fileName() {
+        return "digest";
+    }
+
+    @Override
+    protected void readJson() throws DataException, JSONException {
+        if (this.jsonString == null) {
+            throw new DataException("Digest JSON string is null");
+        }
+
+        JSONObject digest = new JSONObject(this.jsonString);
+        if (digest.has("fingerprint")) {
+            this.fingerprint = Base58.decode(digest.getString("fingerprint"));
+        }
+        if (digest.has("hash")) {
+            this.hash = Base58.decode(digest.getString("hash"));
+        }
+    }
+
+    @Override
+    protected void buildJson() {
+        JSONObject digest = new JSONObject();
+        digest.put("fingerprint", Base58.encode(this.fingerprint));
+        digest.put("hash", Base58.encode(this.hash));
+
+        this.jsonString = digest.toString(2);
+        LOGGER.trace("Digest metadata: {}", this.jsonString);
+    }
+
+
+    public void setFingerprint(byte[] fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public byte[] getFingerprint() {
+        return this.fingerprint;
+    }
+
+    public void setHash(byte[] hash) {
+        this.hash = hash;
+    }
+
+    public byte[] getHash() {
+        return this.hash;
+    }
+
+}
@@ -232,12 +232,9 @@ public enum Service {
 
         // Validate private data for single file resources
         if (this.single) {
-            String dataString = new String(data, StandardCharsets.UTF_8);
-            if (this.isPrivate && !dataString.startsWith(encryptedDataPrefix) && !dataString.startsWith(encryptedGroupDataPrefix)) {
-                return ValidationResult.DATA_NOT_ENCRYPTED;
-            }
-            if (!this.isPrivate && (dataString.startsWith(encryptedDataPrefix) || dataString.startsWith(encryptedGroupDataPrefix))) {
-                return ValidationResult.DATA_ENCRYPTED;
+            ValidationResult result = this.validateEncryptionPrefix(data);
+            if (result != ValidationResult.OK) {
+                return result;
             }
         }
 
@@ -263,6 +260,32 @@ public enum Service {
         return this.requiresValidation || this.single;
     }
 
+    /**
+     * Checks that the start of a single file resource's data is (or isn't) encrypted, as required by this service.
+     * Only the first few bytes are needed, so this can be used on data that is still being streamed.
+     */
+    public ValidationResult validateEncryptionPrefix(byte[] data) {
+        if (!this.single) {
+            return ValidationResult.OK;
+        }
+        String dataString = new String(data, StandardCharsets.UTF_8);
+        if (this.isPrivate && !dataString.startsWith(encryptedDataPrefix) && !dataString.startsWith(encryptedGroupDataPrefix)) {
+            return ValidationResult.DATA_NOT_ENCRYPTED;
+        }
+        if (!this.isPrivate && (dataString.startsWith(encryptedDataPrefix) || dataString.startsWith(encryptedGroupDataPrefix))) {
+            return ValidationResult.DATA_ENCRYPTED;
+        }
+        return ValidationResult.OK;
+    }
+
+    /**
+     * Returns true if this service's data can be served without building it first, i.e. the
+     * only validation needed is the single file count and encryption prefix checks.
+     */
+    public boolean isStreamable() {
+        return !this.requiresValidation;
+    }
+
     public Long getMaxSize() {
         return this.maxSize;
     }
@@ -1097,6 +1097,39 @@ public class Block {
 		return true;
 	}
 
+	/**
+	 * Returns whether this block's signatures, and those of its transactions, are valid.
+	 * <p>
+	 * Unlike {@link #isSignatureValid()}, transactions' proof-of-work nonces aren't checked, as some depend on chain state.
+	 * Hence this doesn't use the repository once transactions are loaded, so can be called from other threads,
+	 * e.g. to verify archived blocks ahead of processing them.
+	 *
+	 * @return true if minter, transactions and transaction creator signatures are valid, false otherwise
+	 * @throws DataException
+	 */
+	public boolean areSignaturesValid() throws DataException {
+		if (!this.minter.verify(this.blockData.getMinterSignature(), BlockTransformer.getBytesForMinterSignature(this.blockData)))
+			return false;
+
+		List<Transaction> transactions = this.getTransactions();
+
+		for (Transaction transaction : transactions) {
+			// AT-Transactions aren't signed
+			if (transaction.getTransactionData().getType() == TransactionType.AT)
+				continue;
+
+			if (!transaction.isCreatorSignatureValid())
+				return false;
+		}
+
+		try {
+			byte[] bytes = BlockTransformer.getBytesForTransactionsSignature(this.blockData.getMinterSignature(), transactions);
+			return this.minter.verify(this.blockData.getTransactionsSignature(), bytes);
+		} catch (TransformationException e) {
+			return false;
+		}
+	}
+
 	/**
 	 * Returns whether Block's timestamp is valid.
 	 * <p>
@@ -1656,6 +1689,58 @@ public class Block {
 	 * @throws DataException
 	 */
 	public void process() throws DataException {
+		this.runBatched(this::processBlock);
+	}
+
+	private interface BlockOperation {
+		void run() throws DataException;
+	}
+
+	/**
+	 * Runs block processing/orphaning with balances kept in memory and saves batched up, if enabled.
+	 * <p>
+	 * Both are written just before anything could read them, and when we're done.
+	 */
+	private void runBatched(BlockOperation operation) throws DataException {
+		final boolean batchSaves = Settings.getInstance().isBlockSaveBatchingEnabled();
+		final boolean useBalanceLedger = Settings.getInstance().isBlockBalanceLedgerEnabled();
+
+		if (!batchSaves && !useBalanceLedger) {
+			operation.run();
+			return;
+		}
+
+		if (batchSaves)
+			this.repository.setBatchedSaves(true);
+
+		if (useBalanceLedger)
+			this.repository.setBalanceLedger(true);
+
+		try {
+			operation.run();
+		} catch (DataException | RuntimeException e) {
+			try {
+				this.endBatching(batchSaves, useBalanceLedger);
+			} catch (DataException e2) {
+				e.addSuppressed(e2);
+			}
+			throw e;
+		}
+
+		this.endBatching(batchSaves, useBalanceLedger);
+	}
+
+	private void endBatching(boolean batchSaves, boolean useBalanceLedger) throws DataException {
+		try {
+			if (useBalanceLedger)
+				this.repository.setBalanceLedger(false);
+		} finally {
+			if (batchSaves)
+				this.repository.setBatchedSaves(false);
+		}
+	}
+
+	private void processBlock() throws DataException {
 		// Set our block's height
 		int blockchainHeight = this.repository.getBlockRepository().getBlockchainHeight();
 		this.blockData.setHeight(blockchainHeight + 1);
@@ -1984,6 +2069,10 @@ public class Block {
 	 * @throws DataException
 	 */
 	public void orphan() throws DataException {
+		this.runBatched(this::orphanBlock);
+	}
+
+	private void orphanBlock() throws DataException {
 		LOGGER.trace(() -> String.format("Orphaning block %d", this.blockData.getHeight()));
 
 		// Log some debugging info relating to the block weight calculation
@@ -73,6 +73,7 @@ import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -116,6 +117,9 @@ public class Controller extends Thread {
 	private final String[] savedArgs;
 
 	private ExecutorService callbackExecutor = Executors.newFixedThreadPool(4);
+	/** Scheduled repository maintenance can take many minutes, so it runs here instead of main loop */
+	private final ExecutorService repositoryMaintenanceExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("Repository maintenance", Thread.NORM_PRIORITY));
+	private Future<?> repositoryMaintenanceFuture = null;
 	private volatile boolean notifyGroupMembershipChange = false;
 
 	/** Latest blocks on our chain. Note: tail/last is the latest block. */
@@ -875,22 +879,10 @@ public class Controller extends Thread {
 								Translator.INSTANCE.translate("SysTray", "PERFORMING_DB_MAINTENANCE"),
 								MessageType.INFO);
 
-					LOGGER.info("Starting scheduled repository maintenance. This can take a while...");
-					int attempts = 0;
-					while (attempts <= 5) {
-						try (final Repository repository = RepositoryManager.getRepository()) {
-							attempts++;
-
-							// Timeout if the database isn't ready for maintenance after 60 seconds
-							long timeout = 60 * 1000L;
-							repository.performPeriodicMaintenance(timeout);
-
-							LOGGER.info("Scheduled repository maintenance completed");
-							break;
-						} catch (DataException | TimeoutException e) {
-							LOGGER.info("Scheduled repository maintenance failed. Retrying up to 5 times...", e);
-						}
-					}
+					if (repositoryMaintenanceFuture == null || repositoryMaintenanceFuture.isDone())
+						repositoryMaintenanceFuture = repositoryMaintenanceExecutor.submit(this::performScheduledRepositoryMaintenance);
+					else
+						LOGGER.info("Skipping scheduled repository maintenance as previous maintenance is still running");
 
 					// Get a new random interval
 					repositoryMaintenanceInterval = getRandomRepositoryMaintenanceInterval();
@@ -1048,6 +1040,25 @@ public class Controller extends Thread {
 		return (new Random().nextLong() % (maxInterval - minInterval)) + minInterval;
 	}
 
+	private void performScheduledRepositoryMaintenance() {
+		LOGGER.info("Starting scheduled repository maintenance. This can take a while...");
+		int attempts = 0;
+		while (attempts <= 5 && !isStopping && !Thread.currentThread().isInterrupted()) {
+			try (final Repository repository = RepositoryManager.getRepository()) {
+				attempts++;
+
+				// Timeout if the database isn't ready for each maintenance step after 60 seconds
+				long timeout = 60 * 1000L;
+				repository.performPeriodicMaintenance(timeout);
+
+				LOGGER.info("Scheduled repository maintenance completed");
+				break;
+			} catch (DataException | TimeoutException e) {
+				LOGGER.info("Scheduled repository maintenance failed. Retrying up to 5 times...", e);
+			}
+		}
+	}
+
 	/**
 	 * Export current trade bot states and minting accounts.
 	 */
@@ -1272,6 +1283,9 @@ public class Controller extends Thread {
 				LOGGER.info("Shutting down TradeBot");
 				TradeBot.getInstance().shutdown();
 
+				LOGGER.info("Shutting down repository maintenance");
+				repositoryMaintenanceExecutor.shutdownNow();
+
 				// Shutdown database cache timers before closing repository
 				LOGGER.info("Shutting down database cache timers");
 				HSQLDBCacheUtils.shutdown();
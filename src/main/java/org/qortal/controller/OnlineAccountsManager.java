@@ -1,6 +1,5 @@
 package org.qortal.controller;
 
-import com.google.common.hash.HashCode;
 import com.google.common.primitives.Longs;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -20,12 +19,14 @@ import org.qortal.network.Peer;
 import org.qortal.network.message.GetOnlineAccountsV3Message;
 import org.qortal.network.message.Message;
 import org.qortal.network.message.OnlineAccountsV3Message;
+import org.qortal.repository.AccountRepository.RewardShareMinterData;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
 import org.qortal.repository.RepositoryManager;
 import org.qortal.settings.Settings;
 import org.qortal.transform.Transformer;
 import org.qortal.utils.Base58;
+import org.qortal.utils.ByteArray;
 import org.qortal.utils.Groups;
 import org.qortal.utils.NTP;
 import org.qortal.utils.NamedThreadFactory;
@@ -34,6 +35,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class OnlineAccountsManager {
@@ -74,6 +76,11 @@ public class OnlineAccountsManager {
 
     private static final long ONLINE_ACCOUNTS_COMPUTE_INITIAL_SLEEP_INTERVAL = 30 * 1000L; // ms
 
+    /**
+     * How many queued online accounts we validate together, fetching their reward-shares in one query.
+     */
+    private static final int ONLINE_ACCOUNTS_IMPORT_BATCH_SIZE = 500;
+
     // MemoryPoW - mainnet
     public static final int POW_BUFFER_SIZE = 1024 * 1024; // bytes
     public static final int POW_DIFFICULTY_V1 = 18; // leading zero bits
@@ -85,11 +92,16 @@ public class OnlineAccountsManager {
     public static final int POW_DIFFICULTY_TESTNET = 5; // leading zero bits
 
     // IMPORTANT: if we ever need to dynamically modify the buffer size using a feature trigger, the
-    // pre-allocated buffer below will NOT work, and we should instead use a dynamically allocated
-    // one for the transition period.
-    private static long[] POW_VERIFY_WORK_BUFFER = new long[getPoWBufferSize() / 8];
+    // pre-allocated per-thread buffers below will NOT work, and we should instead use dynamically allocated
+    // ones for the transition period.
+    private static final ThreadLocal<long[]> POW_VERIFY_WORK_BUFFER = ThreadLocal.withInitial(() -> new long[getPoWBufferSize() / 8]);
 
     private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(4, new NamedThreadFactory("OnlineAccounts", Thread.NORM_PRIORITY));
+    /**
+     * Verifies signatures and MemoryPoW nonces of imported online accounts, with each thread reusing its own MemoryPoW work buffer.
+     */
+    private final ExecutorService verifyExecutor = Executors.newFixedThreadPool(Settings.getInstance().getOnlineAccountsVerifyPoolSize(),
+            new NamedThreadFactory("OnlineAccountsVerify", Thread.NORM_PRIORITY));
     private volatile boolean isStopping = false;
 
     private final Set<OnlineAccountData> onlineAccountsImportQueue = ConcurrentHashMap.newKeySet();
@@ -100,8 +112,18 @@ public class OnlineAccountsManager {
     private final Map<Long, Set<OnlineAccountData>> currentOnlineAccounts = new ConcurrentHashMap<>();
     /**
      * Cache of hash-summary of 'current' online accounts, keyed by timestamp, then leading byte of public key.
+     * <p>
+     * Each hash is the XOR of public keys with that timestamp and leading byte, so it is updated as accounts
+     * are added or removed, rather than rebuilt. Hashes are replaced, not modified, as they might be being sent to peers.
      */
     private final Map<Long, Map<Byte, byte[]>> currentOnlineAccountsHashes = new ConcurrentHashMap<>();
+    /**
+     * Number of public keys in each of the hashes above, so hashes can be dropped once they cover no public keys.
+     * Guarded by {@link #currentOnlineAccountsHashesLock}, as are updates to the hashes, and additions/removals
+     * of current online accounts, so each hash always matches its set of accounts.
+     */
+    private final Map<Long, Map<Byte, Integer>> currentOnlineAccountsHashCounts = new HashMap<>();
+    private final Object currentOnlineAccountsHashesLock = new Object();
 
     /**
      * Cache of online accounts for latest blocks - not necessarily 'current' / now.
@@ -230,6 +252,7 @@ public class OnlineAccountsManager {
     public void shutdown() {
         isStopping = true;
         executor.shutdownNow();
+        verifyExecutor.shutdownNow();
     }
 
     // Testing support
@@ -267,7 +290,7 @@ public class OnlineAccountsManager {
             return;
         }
 
-        this.currentOnlineAccounts.clear();
+        this.clearCurrentOnlineAccounts();
         addAccounts(replacementAccounts);
     }
 
@@ -288,36 +311,40 @@ public class OnlineAccountsManager {
             // Imported online accounts are candidates for the next block, so validate against that height.
             int nextBlockHeight = blockHeight + 1;
 
-            List<String> mintingGroupMemberAddresses
-                = Groups.getAllMembers(
+            Set<String> mintingGroupMemberAddresses = new HashSet<>(
+                Groups.getAllMembers(
                     repository.getGroupRepository(),
                     Groups.getGroupIdsToMint(BlockChain.getInstance(), nextBlockHeight)
+                )
             );
 
+            // Current online accounts, indexed by timestamp then by themselves, so queued copies can be found without scanning
+            Map<Long, Map<OnlineAccountData, OnlineAccountData>> currentOnlineAccountsIndex = new HashMap<>();
+
+            List<OnlineAccountData> onlineAccountsBatch = new ArrayList<>(ONLINE_ACCOUNTS_IMPORT_BATCH_SIZE);
+
             for (OnlineAccountData onlineAccountData : this.onlineAccountsImportQueue) {
                 if (isStopping)
                     return;
 
                 // Skip only if the cached entry is valid for the signature scheme active at the next block.
-                Set<OnlineAccountData> onlineAccounts = this.currentOnlineAccounts.get(onlineAccountData.getTimestamp());
-                if (onlineAccounts != null && onlineAccounts.contains(onlineAccountData)
-                        && onlineAccounts.stream().anyMatch(existingAccount -> existingAccount.equals(onlineAccountData) && isSignatureValidForHeight(existingAccount, nextBlockHeight))) {
+                OnlineAccountData existingAccount = currentOnlineAccountsIndex
+                        .computeIfAbsent(onlineAccountData.getTimestamp(), this::indexCurrentOnlineAccounts)
+                        .get(onlineAccountData);
+                if (existingAccount != null && isSignatureValidForHeight(existingAccount, nextBlockHeight)) {
                     // We have already validated this online account
                     onlineAccountsImportQueue.remove(onlineAccountData);
                     continue;
                 }
 
-                boolean isValid = this.isValidCurrentAccount(repository, mintingGroupMemberAddresses, onlineAccountData, nextBlockHeight);
-                if (isValid) {
-                    // OnlineAccountData equality ignores signatures, so remove stale legacy/V2 variants first.
-                    removeCurrentOnlineAccount(onlineAccountData);
-                    onlineAccountsToAdd.add(onlineAccountData);
-                }
+                onlineAccountsBatch.add(onlineAccountData);
 
-                // Don't remove from the queue yet - we'll do this at the end of the process
-                // This prevents duplicates being added to the queue whilst it's being processed
-                onlineAccountsToRemove.add(onlineAccountData);
+                if (onlineAccountsBatch.size() >= ONLINE_ACCOUNTS_IMPORT_BATCH_SIZE)
+                    this.importOnlineAccountsBatch(repository, mintingGroupMemberAddresses, onlineAccountsBatch, nextBlockHeight, onlineAccountsToAdd, onlineAccountsToRemove);
             }
+
+            if (!onlineAccountsBatch.isEmpty() && !isStopping)
+                this.importOnlineAccountsBatch(repository, mintingGroupMemberAddresses, onlineAccountsBatch, nextBlockHeight, onlineAccountsToAdd, onlineAccountsToRemove);
         } catch (DataException e) {
             LOGGER.error("Repository issue while verifying online accounts", e);
 
@@ -330,6 +357,32 @@ public class OnlineAccountsManager {
         }
     }
 
+    private Map<OnlineAccountData, OnlineAccountData> indexCurrentOnlineAccounts(long timestamp) {
+        Set<OnlineAccountData> onlineAccounts = this.currentOnlineAccounts.get(timestamp);
+        if (onlineAccounts == null)
+            return Collections.emptyMap();
+
+        Map<OnlineAccountData, OnlineAccountData> onlineAccountsIndex = new HashMap<>(onlineAccounts.size() * 2);
+        for (OnlineAccountData onlineAccountData : onlineAccounts)
+            onlineAccountsIndex.put(onlineAccountData, onlineAccountData);
+
+        return onlineAccountsIndex;
+    }
+
+    private void importOnlineAccountsBatch(Repository repository, Set<String> mintingGroupMemberAddresses, List<OnlineAccountData> onlineAccountsBatch, int blockHeight,
+            Set<OnlineAccountData> onlineAccountsToAdd, Set<OnlineAccountData> onlineAccountsToRemove) throws DataException {
+        for (OnlineAccountData onlineAccountData : this.validateCurrentAccounts(repository, mintingGroupMemberAddresses, onlineAccountsBatch, blockHeight)) {
+            // OnlineAccountData equality ignores signatures, so remove stale legacy/V2 variants first.
+            removeCurrentOnlineAccount(onlineAccountData);
+            onlineAccountsToAdd.add(onlineAccountData);
+        }
+
+        // Don't remove from the queue yet - we'll do this at the end of the process
+        // This prevents duplicates being added to the queue whilst it's being processed
+        onlineAccountsToRemove.addAll(onlineAccountsBatch);
+        onlineAccountsBatch.clear();
+    }
+
     /**
      * Check if supplied onlineAccountData is superior (i.e. has a nonce value) than existing record.
      * Two entries are considered equal even if the nonce differs, to prevent multiple variations
@@ -389,60 +442,140 @@ public class OnlineAccountsManager {
         return inplaceArray;
     }
 
-    private static boolean isValidCurrentAccount(Repository repository, List<String> mintingGroupMemberAddresses, OnlineAccountData onlineAccountData, int blockHeight) throws DataException {
+    /**
+     * Returns those of passed online accounts that are valid, checking them as a batch.
+     * <p>
+     * Reward-shares and their minting accounts are fetched using one query for the whole batch.
+     * Signatures and MemoryPoW nonces, the expensive checks, are verified in parallel.
+     */
+    private List<OnlineAccountData> validateCurrentAccounts(Repository repository, Set<String> mintingGroupMemberAddresses, List<OnlineAccountData> onlineAccounts, int blockHeight) throws DataException {
         final Long now = NTP.getTime();
         if (now == null)
-            return false;
+            return Collections.emptyList();
 
-        byte[] rewardSharePublicKey = onlineAccountData.getPublicKey();
-        long onlineAccountTimestamp = onlineAccountData.getTimestamp();
+        List<OnlineAccountData> recentAccounts = new ArrayList<>(onlineAccounts.size());
+        for (OnlineAccountData onlineAccountData : onlineAccounts) {
+            byte[] rewardSharePublicKey = onlineAccountData.getPublicKey();
+            long onlineAccountTimestamp = onlineAccountData.getTimestamp();
 
-        // Check timestamp is 'recent' here
-        if (Math.abs(onlineAccountTimestamp - now) > getOnlineTimestampModulus() * 2) {
-            LOGGER.trace(() -> String.format("Rejecting online account %s with out of range timestamp %d", Base58.encode(rewardSharePublicKey), onlineAccountTimestamp));
-            return false;
-        }
+            // Check timestamp is 'recent' here
+            if (Math.abs(onlineAccountTimestamp - now) > getOnlineTimestampModulus() * 2) {
+                LOGGER.trace(() -> String.format("Rejecting online account %s with out of range timestamp %d", Base58.encode(rewardSharePublicKey), onlineAccountTimestamp));
+                continue;
+            }
 
-        // Check timestamp is a multiple of online timestamp modulus
-        if (onlineAccountTimestamp % getOnlineTimestampModulus() != 0) {
-            LOGGER.trace(() -> String.format("Rejecting online account %s with invalid timestamp %d", Base58.encode(rewardSharePublicKey), onlineAccountTimestamp));
-            return false;
-        }
+            // Check timestamp is a multiple of online timestamp modulus
+            if (onlineAccountTimestamp % getOnlineTimestampModulus() != 0) {
+                LOGGER.trace(() -> String.format("Rejecting online account %s with invalid timestamp %d", Base58.encode(rewardSharePublicKey), onlineAccountTimestamp));
+                continue;
+            }
 
-        // Verify signature
-        boolean isSignatureValid = isSignatureValidForHeight(onlineAccountData, blockHeight);
-        if (!isSignatureValid) {
-            LOGGER.trace(() -> String.format("Rejecting invalid online account %s", Base58.encode(rewardSharePublicKey)));
-            return false;
+            recentAccounts.add(onlineAccountData);
         }
 
-        // Qortal: check online account is actually reward-share
-        RewardShareData rewardShareData = repository.getAccountRepository().getRewardShare(rewardSharePublicKey);
-        if (rewardShareData == null) {
-            // Reward-share doesn't even exist - probably not a good sign
-            LOGGER.trace(() -> String.format("Rejecting unknown online reward-share public key %s", Base58.encode(rewardSharePublicKey)));
-            return false;
-        }
-        // reject account address that are not in the MINTER Group
-        else if( !mintingGroupMemberAddresses.contains(rewardShareData.getMinter())) {
-            LOGGER.trace(() -> String.format("Rejecting online reward-share that is not in MINTER Group, account %s", rewardShareData.getMinter()));
-            return false;
-        }
+        // Verify signatures
+        List<OnlineAccountData> signedAccounts = this.verifyInParallel(recentAccounts, onlineAccountData -> {
+            if (isSignatureValidForHeight(onlineAccountData, blockHeight))
+                return true;
 
-        Account mintingAccount = new Account(repository, rewardShareData.getMinter());
-        if (!mintingAccount.canMint(true)) {  // group validation is a few lines above
-            // Minting-account component of reward-share can no longer mint - disregard
-            LOGGER.trace(() -> String.format("Rejecting online reward-share with non-minting account %s", mintingAccount.getAddress()));
+            LOGGER.trace(() -> String.format("Rejecting invalid online account %s", Base58.encode(onlineAccountData.getPublicKey())));
             return false;
+        });
+
+        if (signedAccounts.isEmpty())
+            return signedAccounts;
+
+        // Qortal: check online accounts are actually reward-shares, fetching their minting accounts at the same time
+        List<byte[]> rewardSharePublicKeys = signedAccounts.stream().map(OnlineAccountData::getPublicKey).collect(Collectors.toList());
+        Map<ByteArray, RewardShareMinterData> rewardShareMinters = new HashMap<>();
+        for (RewardShareMinterData rewardShareMinter : repository.getAccountRepository().getRewardSharesWithMinters(rewardSharePublicKeys))
+            rewardShareMinters.put(ByteArray.wrap(rewardShareMinter.rewardShareData.getRewardSharePublicKey()), rewardShareMinter);
+
+        int blockchainHeight = repository.getBlockRepository().getBlockchainHeight();
+        // Several reward-shares can have the same minting account
+        Map<String, Boolean> mintingAccountsCanMint = new HashMap<>();
+
+        List<OnlineAccountData> mintingAccounts = new ArrayList<>(signedAccounts.size());
+        for (OnlineAccountData onlineAccountData : signedAccounts) {
+            byte[] rewardSharePublicKey = onlineAccountData.getPublicKey();
+
+            RewardShareMinterData rewardShareMinter = rewardShareMinters.get(ByteArray.wrap(rewardSharePublicKey));
+            if (rewardShareMinter == null) {
+                // Reward-share doesn't even exist - probably not a good sign
+                LOGGER.trace(() -> String.format("Rejecting unknown online reward-share public key %s", Base58.encode(rewardSharePublicKey)));
+                continue;
+            }
+
+            String minter = rewardShareMinter.rewardShareData.getMinter();
+
+            // reject account address that are not in the MINTER Group
+            if (!mintingGroupMemberAddresses.contains(minter)) {
+                LOGGER.trace(() -> String.format("Rejecting online reward-share that is not in MINTER Group, account %s", minter));
+                continue;
+            }
+
+            Boolean canMint = mintingAccountsCanMint.get(minter);
+            if (canMint == null) {
+                canMint = Account.canMint(repository, rewardShareMinter.minterAccountData, blockchainHeight, true); // group validation is a few lines above
+                mintingAccountsCanMint.put(minter, canMint);
+            }
+
+            if (!canMint) {
+                // Minting-account component of reward-share can no longer mint - disregard
+                LOGGER.trace(() -> String.format("Rejecting online reward-share with non-minting account %s", minter));
+                continue;
+            }
+
+            mintingAccounts.add(onlineAccountData);
         }
 
         // Validate mempow
-        if (!getInstance().verifyMemoryPoW(onlineAccountData, POW_VERIFY_WORK_BUFFER)) {
-            LOGGER.trace(() -> String.format("Rejecting online reward-share for account %s due to invalid PoW nonce", mintingAccount.getAddress()));
+        return this.verifyInParallel(mintingAccounts, onlineAccountData -> {
+            if (this.verifyMemoryPoW(onlineAccountData, POW_VERIFY_WORK_BUFFER.get()))
+                return true;
+
+            LOGGER.trace(() -> String.format("Rejecting online reward-share for account %s due to invalid PoW nonce",
+                    rewardShareMinters.get(ByteArray.wrap(onlineAccountData.getPublicKey())).rewardShareData.getMinter()));
             return false;
+        });
+    }
+
+    /**
+     * Returns those of passed online accounts that pass <tt>verification</tt>, which is run using verifier threads.
+     * <p>
+     * Returns empty list if interrupted, e.g. due to shutdown.
+     */
+    private List<OnlineAccountData> verifyInParallel(List<OnlineAccountData> onlineAccounts, Predicate<OnlineAccountData> verification) {
+        if (onlineAccounts.isEmpty())
+            return Collections.emptyList();
+
+        List<Callable<Boolean>> verifications = new ArrayList<>(onlineAccounts.size());
+        for (OnlineAccountData onlineAccountData : onlineAccounts)
+            verifications.add(() -> verification.test(onlineAccountData));
+
+        List<OnlineAccountData> verifiedAccounts = new ArrayList<>(onlineAccounts.size());
+        try {
+            List<Future<Boolean>> results = this.verifyExecutor.invokeAll(verifications);
+
+            for (int i = 0; i < onlineAccounts.size(); ++i) {
+                OnlineAccountData onlineAccountData = onlineAccounts.get(i);
+
+                try {
+                    if (results.get(i).get())
+                        verifiedAccounts.add(onlineAccountData);
+                } catch (ExecutionException e) {
+                    LOGGER.warn(() -> String.format("Unable to verify online account %s: %s", Base58.encode(onlineAccountData.getPublicKey()), e.getMessage()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        } catch (RejectedExecutionException e) {
+            // We're shutting down
+            return Collections.emptyList();
         }
 
-        return true;
+        return verifiedAccounts;
     }
 
     /**
@@ -473,50 +606,17 @@ public class OnlineAccountsManager {
         return true;
     }
 
-    /** Adds accounts, maybe rebuilds hashes, returns whether any new accounts were added / hashes rebuilt. */
+    /** Adds accounts, updating hashes, returns whether any new accounts were added / hashes updated. */
     private boolean addAccounts(Collection<OnlineAccountData> onlineAccountsToAdd) {
-        // For keeping track of which hashes to rebuild
-        Map<Long, Set<Byte>> hashesToRebuild = new HashMap<>();
-
-        for (OnlineAccountData onlineAccountData : onlineAccountsToAdd) {
-            boolean isNewEntry = this.addAccount(onlineAccountData);
+        boolean haveNewEntries = false;
 
-            if (isNewEntry)
-                hashesToRebuild.computeIfAbsent(onlineAccountData.getTimestamp(), k -> new HashSet<>()).add(onlineAccountData.getPublicKey()[0]);
-        }
+        for (OnlineAccountData onlineAccountData : onlineAccountsToAdd)
+            if (this.addAccount(onlineAccountData))
+                haveNewEntries = true;
 
-        if (hashesToRebuild.isEmpty())
+        if (!haveNewEntries)
             return false;
 
-        for (var entry : hashesToRebuild.entrySet()) {
-            Long timestamp = entry.getKey();
-
-            LOGGER.trace(() -> String.format("Rehashing for timestamp %d and leading bytes %s",
-                            timestamp,
-                            entry.getValue().stream().sorted(Byte::compareUnsigned).map(leadingByte -> String.format("%02x", leadingByte)).collect(Collectors.joining(", "))
-                    )
-            );
-
-            for (Byte leadingByte : entry.getValue()) {
-                byte[] pubkeyHash = currentOnlineAccounts.get(timestamp).stream()
-                        .map(OnlineAccountData::getPublicKey)
-                        .filter(publicKey -> leadingByte == publicKey[0])
-                        .reduce(null, OnlineAccountsManager::xorByteArrayInPlace);
-
-                currentOnlineAccountsHashes.computeIfAbsent(timestamp, k -> new ConcurrentHashMap<>()).put(leadingByte, pubkeyHash);
-
-                LOGGER.trace(() -> String.format("Rebuilt hash %s for timestamp %d and leading byte %02x using %d public keys",
-                        HashCode.fromBytes(pubkeyHash),
-                        timestamp,
-                        leadingByte,
-                        currentOnlineAccounts.get(timestamp).stream()
-                                .map(OnlineAccountData::getPublicKey)
-                                .filter(publicKey -> leadingByte == publicKey[0])
-                                .count()
-                ));
-            }
-        }
-
         LOGGER.trace(String.format("we have online accounts for timestamps: %s", String.join(", ", this.currentOnlineAccounts.keySet().stream().map(l -> Long.toString(l)).collect(Collectors.joining(", ")))));
 
         return true;
@@ -525,19 +625,25 @@ public class OnlineAccountsManager {
     private boolean addAccount(OnlineAccountData onlineAccountData) {
         byte[] rewardSharePublicKey = onlineAccountData.getPublicKey();
         long onlineAccountTimestamp = onlineAccountData.getTimestamp();
+        boolean isNewEntry;
 
-        Set<OnlineAccountData> onlineAccounts = this.currentOnlineAccounts.computeIfAbsent(onlineAccountTimestamp, k -> ConcurrentHashMap.newKeySet());
+        synchronized (this.currentOnlineAccountsHashesLock) {
+            Set<OnlineAccountData> onlineAccounts = this.currentOnlineAccounts.computeIfAbsent(onlineAccountTimestamp, k -> ConcurrentHashMap.newKeySet());
 
-        boolean isSuperiorEntry = isOnlineAccountsDataSuperior(onlineAccountData);
-        if (isSuperiorEntry)
-            // Remove existing inferior entry so it can be re-added below (it's likely the existing copy is missing a nonce value)
-            onlineAccounts.removeIf(a -> Arrays.equals(a.getPublicKey(), onlineAccountData.getPublicKey()));
+            boolean isSuperiorEntry = isOnlineAccountsDataSuperior(onlineAccountData);
+            if (isSuperiorEntry)
+                // Remove existing inferior entry so it can be re-added below (it's likely the existing copy is missing a nonce value)
+                this.removeCurrentOnlineAccounts(onlineAccounts, rewardSharePublicKey);
 
-        boolean isNewEntry = onlineAccounts.add(onlineAccountData);
+            isNewEntry = onlineAccounts.add(onlineAccountData);
 
-        if (isNewEntry)
+            if (isNewEntry)
+                this.updateCurrentOnlineAccountsHash(onlineAccountTimestamp, rewardSharePublicKey, true);
+        }
+
+        if (isNewEntry) {
             LOGGER.trace(() -> String.format("Added online account %s with timestamp %d", Base58.encode(rewardSharePublicKey), onlineAccountTimestamp));
-        else
+        } else
             LOGGER.trace(() -> String.format("Not updating existing online account %s with timestamp %d", Base58.encode(rewardSharePublicKey), onlineAccountTimestamp));
 
         return isNewEntry;
@@ -548,7 +654,78 @@ public class OnlineAccountsManager {
         if (onlineAccounts == null)
             return;
 
-        onlineAccounts.removeIf(account -> Arrays.equals(account.getPublicKey(), onlineAccountData.getPublicKey()));
+        this.removeCurrentOnlineAccounts(onlineAccounts, onlineAccountData.getPublicKey());
+    }
+
+    /** Removes all entries with <tt>publicKey</tt> from timestamp's set of current online accounts, updating hashes. */
+    private void removeCurrentOnlineAccounts(Set<OnlineAccountData> onlineAccounts, byte[] publicKey) {
+        synchronized (this.currentOnlineAccountsHashesLock) {
+            for (OnlineAccountData onlineAccountData : onlineAccounts)
+                if (Arrays.equals(onlineAccountData.getPublicKey(), publicKey) && onlineAccounts.remove(onlineAccountData))
+                    this.updateCurrentOnlineAccountsHash(onlineAccountData.getTimestamp(), publicKey, false);
+        }
+    }
+
+    private void clearCurrentOnlineAccounts() {
+        synchronized (this.currentOnlineAccountsHashesLock) {
+            this.currentOnlineAccounts.clear();
+            this.currentOnlineAccountsHashes.clear();
+            this.currentOnlineAccountsHashCounts.clear();
+        }
+    }
+
+    /**
+     * Adds, or removes, <tt>publicKey</tt> to/from hash for its timestamp and leading byte.
+     * <p>
+     * As XOR is its own inverse, both are the same operation.
+     * <p>
+     * Caller must hold {@link #currentOnlineAccountsHashesLock}, having just added/removed the account itself.
+     */
+    private void updateCurrentOnlineAccountsHash(long timestamp, byte[] publicKey, boolean isAdding) {
+        Byte leadingByte = publicKey[0];
+
+        synchronized (this.currentOnlineAccountsHashesLock) {
+            Map<Byte, Integer> counts = this.currentOnlineAccountsHashCounts.computeIfAbsent(timestamp, k -> new HashMap<>());
+            Map<Byte, byte[]> hashes = this.currentOnlineAccountsHashes.computeIfAbsent(timestamp, k -> new ConcurrentHashMap<>());
+
+            int count = counts.getOrDefault(leadingByte, 0) + (isAdding ? 1 : -1);
+
+            if (count > 0) {
+                byte[] hash = hashes.get(leadingByte);
+                hashes.put(leadingByte, xorByteArrayInPlace(hash != null ? hash.clone() : null, publicKey));
+                counts.put(leadingByte, count);
+            } else {
+                hashes.remove(leadingByte);
+                counts.remove(leadingByte);
+            }
+        }
+
+        LOGGER.trace(() -> String.format("Updated hash for timestamp %d and leading byte %02x", timestamp, leadingByte));
+    }
+
+    /**
+     * Checks incrementally updated hashes against hashes rebuilt from current online accounts, logging any that differ.
+     * <p>
+     * Only called when debugging, as it is what incremental updates avoid doing.
+     * Caller must hold {@link #currentOnlineAccountsHashesLock}, so any mismatch is a bug, not an update in progress.
+     */
+    private void checkCurrentOnlineAccountsHashes() {
+        for (var entry : this.currentOnlineAccounts.entrySet()) {
+            Long timestamp = entry.getKey();
+
+            Map<Byte, byte[]> rebuiltHashes = new HashMap<>();
+            for (OnlineAccountData onlineAccountData : entry.getValue()) {
+                byte[] publicKey = onlineAccountData.getPublicKey();
+                rebuiltHashes.compute(publicKey[0], (k, hash) -> xorByteArrayInPlace(hash, publicKey));
+            }
+
+            Map<Byte, byte[]> hashes = this.currentOnlineAccountsHashes.getOrDefault(timestamp, Collections.emptyMap());
+
+            boolean isConsistent = hashes.size() == rebuiltHashes.size()
+                    && rebuiltHashes.entrySet().stream().allMatch(rebuilt -> Arrays.equals(rebuilt.getValue(), hashes.get(rebuilt.getKey())));
+            if (!isConsistent)
+                LOGGER.warn("Online accounts hashes for timestamp {} didn't match online accounts", timestamp);
+        }
     }
 
     private static boolean isSignatureValidForHeight(OnlineAccountData onlineAccountData, int blockHeight) {
@@ -569,8 +746,14 @@ public class OnlineAccountsManager {
             return;
 
         final long cutoffThreshold = now - MAX_CACHED_TIMESTAMP_SETS * getOnlineTimestampModulus();
-        this.currentOnlineAccounts.keySet().removeIf(timestamp -> timestamp < cutoffThreshold);
-        this.currentOnlineAccountsHashes.keySet().removeIf(timestamp -> timestamp < cutoffThreshold);
+        synchronized (this.currentOnlineAccountsHashesLock) {
+            this.currentOnlineAccounts.keySet().removeIf(timestamp -> timestamp < cutoffThreshold);
+            this.currentOnlineAccountsHashes.keySet().removeIf(timestamp -> timestamp < cutoffThreshold);
+            this.currentOnlineAccountsHashCounts.keySet().removeIf(timestamp -> timestamp < cutoffThreshold);
+
+            if (LOGGER.isDebugEnabled())
+                this.checkCurrentOnlineAccountsHashes();
+        }
 
         final long signatureCutoffThreshold = now - MAX_CACHED_SIGNATURE_TIMESTAMP_SETS * getOnlineTimestampModulus();
         this.verifiedOnlineAccountSignatures.keySet().removeIf(timestamp -> timestamp < signatureCutoffThreshold);
@@ -754,7 +937,7 @@ public class OnlineAccountsManager {
                 // Make sure to verify before adding
                 if (verifyMemoryPoW(ourOnlineAccountData, null)) {
                     // Replace stale legacy/V2 variants with the newly generated signature.
-                    onlineAccounts.removeIf(a -> Arrays.equals(a.getPublicKey(), publicKey));
+                    this.removeCurrentOnlineAccounts(onlineAccounts, publicKey);
                     ourOnlineAccounts.add(ourOnlineAccountData);
                 } else {
                     LOGGER.warn("Computed nonce failed local verification for account {} timestamp {} nonce {} (difficulty {}, buffer {})",
@@ -969,7 +1152,7 @@ public class OnlineAccountsManager {
 
     public void removeAllOnlineAccounts() {
         LOGGER.warn("removeAllOnlineAccounts() called - clearing current online accounts cache", new IllegalStateException("removeAllOnlineAccounts caller trace"));
-        this.currentOnlineAccounts.clear();
+        this.clearCurrentOnlineAccounts();
         this.verifiedOnlineAccountSignatures.clear();
     }
 
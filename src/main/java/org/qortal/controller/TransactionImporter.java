@@ -20,11 +20,14 @@ import org.qortal.transaction.Transaction;
 import org.qortal.transform.TransformationException;
 import org.qortal.utils.Base58;
 import org.qortal.utils.NTP;
+import org.qortal.utils.NamedThreadFactory;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
@@ -52,6 +55,8 @@ public class TransactionImporter extends Thread {
     private static final int MAX_SIGNATURE_DB_BATCH = 200;
     /** How long before a known-existing signature is rechecked (cleared from cache) */
     private static final long KNOWN_SIGNATURE_RECHECK_INTERVAL = 5 * 60 * 1000L; // 5 minutes
+    /** Number of threads verifying incoming transactions ahead of import */
+    private static final int VERIFIER_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
 
     /** Minimum time before considering an invalid unconfirmed transaction as "stale" */
     public static final long INVALID_TRANSACTION_STALE_TIMEOUT = 30 * 60 * 1000L; // ms
@@ -74,6 +79,17 @@ public class TransactionImporter extends Thread {
     /** Cached list of unconfirmed transactions, used when counting per creator. This is replaced regularly */
     public static List<TransactionData> unconfirmedTransactionsCache = null;
 
+    /** Outcome of checking an incoming transaction ahead of import */
+    private enum IncomingTransactionStatus {
+        VALID,
+        EXPIRED,
+        TOO_NEW,
+        INVALID_SIGNATURE
+    }
+
+    /** Verifies incoming transactions' signatures in parallel. Work is bounded by size of incoming transactions queue. */
+    private final ExecutorService transactionVerifierExecutor = Executors.newFixedThreadPool(VERIFIER_THREADS, new NamedThreadFactory("Transaction-verifier", Thread.NORM_PRIORITY));
+
     public TransactionImporter() {
         signatureMessageScheduler.scheduleAtFixedRate(this::processNetworkTransactionSignaturesMessage, 60, 1, TimeUnit.SECONDS);
         getTransactionMessageScheduler.scheduleAtFixedRate(this::processNetworkGetTransactionMessages, 60, 1, TimeUnit.SECONDS);
@@ -95,8 +111,7 @@ public class TransactionImporter extends Thread {
                 Thread.sleep(500L);
 
                 // Process incoming transactions queue
-                validateTransactionsInQueue();
-                importTransactionsInQueue();
+                processIncomingTransactions();
 
                 // Clean up invalid incoming transactions list
                 cleanupInvalidTransactionsList(NTP.getTime());
@@ -117,6 +132,7 @@ public class TransactionImporter extends Thread {
             getUnconfirmedTransactionsMessageScheduler.shutdownNow();
             signatureMessageScheduler.shutdownNow();
             getTransactionReplyExecutor.shutdownNow();
+            transactionVerifierExecutor.shutdownNow();
 
             if (!getTransactionMessageScheduler.awaitTermination(5, TimeUnit.SECONDS)) {
                 LOGGER.warn("getTransactionMessageScheduler did not terminate in time");
@@ -130,6 +146,9 @@ public class TransactionImporter extends Thread {
             if (!getTransactionReplyExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
                 LOGGER.warn("getTransactionReplyExecutor did not terminate in time");
             }
+            if (!transactionVerifierExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                LOGGER.warn("transactionVerifierExecutor did not terminate in time");
+            }
         } catch (InterruptedException e) {
             LOGGER.warn("Interrupted while waiting for TransactionImporter schedulers to terminate", e);
             Thread.currentThread().interrupt();
@@ -139,6 +158,21 @@ public class TransactionImporter extends Thread {
 
     // Incoming transactions queue
 
+    /**
+     * Verifies transactions in the incoming queue, then imports those that are valid, up to a limit per call.
+     * <p>
+     * Called regularly by importer thread, but also usable by tests and benchmarks to drive importing directly.
+     */
+    public void processIncomingTransactions() {
+        validateTransactionsInQueue();
+        importTransactionsInQueue();
+    }
+
+    /** Returns number of transactions in incoming queue, whether verified or not. */
+    public int getIncomingTransactionCount() {
+        return this.incomingTransactions.size();
+    }
+
     private boolean incomingTransactionQueueContains(byte[] signature) {
         synchronized (incomingTransactions) {
             return incomingTransactions.keySet().stream().anyMatch(t -> Arrays.equals(t.getSignature(), signature));
@@ -163,9 +197,13 @@ public class TransactionImporter extends Thread {
     }
 
     /**
-     * Validate the signatures of any transactions pending import, then update their
-     * entries in the queue to mark them as valid/invalid.
-     *
+     * Verify any transactions pending import, then update their entries in the queue
+     * to mark them as valid, or remove them if invalid.
+     * <p>
+     * Signatures, proof-of-work nonces and other checks that don't depend on chain state
+     * are run in parallel on {@link #transactionVerifierExecutor}, so that a burst of incoming transactions
+     * doesn't hold up the serial, stateful import that follows.
+     * <p>
      * No database lock is required.
      */
     private void validateTransactionsInQueue() {
@@ -174,29 +212,27 @@ public class TransactionImporter extends Thread {
             return;
         }
 
+        Long now = NTP.getTime();
+        if (now == null) {
+            return;
+        }
+
         try (final Repository repository = RepositoryManager.getRepository()) {
             // Take a snapshot of incomingTransactions, so we don't need to lock it while processing
             Map<TransactionData, Boolean> incomingTransactionsCopy = Map.copyOf(this.incomingTransactions);
 
-            int unvalidatedCount = Collections.frequency(incomingTransactionsCopy.values(), Boolean.FALSE);
-            int validatedCount = 0;
-
-            if (unvalidatedCount > 0) {
-                LOGGER.debug("Validating signatures in incoming transactions queue (size {})...", unvalidatedCount);
-            }
-
-            // A list of all currently pending transactions that have valid signatures
-            List<Transaction> sigValidTransactions = new ArrayList<>();
-
-            // A list of signatures that became valid in this round
-            List<byte[]> newlyValidSignatures = new ArrayList<>();
-
             boolean isLiteNode = Settings.getInstance().isLite();
 
             // We need the latest block in order to check for expired transactions
             BlockData latestBlock = Controller.getInstance().getChainTip();
+            Long latestBlockTimestamp = latestBlock != null ? latestBlock.getTimestamp() : null;
+
+            // Transactions being verified, and their pending results, in the same order
+            List<TransactionData> transactionsToVerify = new ArrayList<>();
+            List<Future<IncomingTransactionStatus>> pendingStatuses = new ArrayList<>();
+
+            int sigValidCount = 0;
 
-            // Signature validation round - does not require blockchain lock
             for (Map.Entry<TransactionData, Boolean> transactionEntry : incomingTransactionsCopy.entrySet()) {
                 // Quick exit?
                 if (isStopping) {
@@ -204,77 +240,135 @@ public class TransactionImporter extends Thread {
                 }
 
                 TransactionData transactionData = transactionEntry.getKey();
-                Transaction transaction = Transaction.fromData(repository, transactionData);
-                String signature58 = Base58.encode(transactionData.getSignature());
 
-                Long now = NTP.getTime();
-                if (now == null) {
-                    return;
-                }
+                // Already verified, so only expiry needs rechecking
+                if (Boolean.TRUE.equals(transactionEntry.getValue())) {
+                    if (isExpired(transactionData, latestBlockTimestamp, now)) {
+                        onIncomingTransactionStatus(transactionData, IncomingTransactionStatus.EXPIRED, now);
+                        continue;
+                    }
 
-                // Drop expired transactions before they are considered "sig valid"
-                if (latestBlock != null && transaction.getDeadline() <= latestBlock.getTimestamp()) {
-                    LOGGER.debug("Removing expired {} transaction {} from import queue", transactionData.getType().name(), signature58);
-                    removeIncomingTransaction(transactionData.getSignature());
-                    invalidUnconfirmedTransactions.put(signature58, (now + EXPIRED_TRANSACTION_RECHECK_INTERVAL));
+                    sigValidCount++;
                     continue;
                 }
 
-                // Only validate signature if we haven't already done so
-                Boolean isSigValid = transactionEntry.getValue();
-                if (!Boolean.TRUE.equals(isSigValid)) {
-                    if (isLiteNode) {
-                        // Lite nodes can't easily validate transactions, so for now we will have to assume that everything is valid
-                        sigValidTransactions.add(transaction);
-                        newlyValidSignatures.add(transactionData.getSignature());
-                        // Add mark signature as valid if transaction still exists in import queue
-                        incomingTransactions.computeIfPresent(transactionData, (k, v) -> Boolean.TRUE);
-                        continue;
-                    }
+                Transaction transaction = Transaction.fromData(repository, transactionData);
 
-                    if (!transaction.isSignatureValid()) {
-                        LOGGER.debug("Ignoring {} transaction {} with invalid signature", transactionData.getType().name(), signature58);
-                        removeIncomingTransaction(transactionData.getSignature());
-
-                        // Also add to invalidIncomingTransactions map
-                        now = NTP.getTime();
-                        if (now != null) {
-                            Long expiry = now + INVALID_TRANSACTION_RECHECK_INTERVAL;
-                            LOGGER.trace("Adding invalid transaction {} to invalidUnconfirmedTransactions...", signature58);
-                            // Add to invalidUnconfirmedTransactions so that we don't keep requesting it
-                            invalidUnconfirmedTransactions.put(signature58, expiry);
-                        }
+                transactionsToVerify.add(transactionData);
+                pendingStatuses.add(this.transactionVerifierExecutor.submit(() -> verifyIncomingTransaction(transaction, isLiteNode, latestBlockTimestamp, now)));
+            }
 
-                        // We're done with this transaction
-                        continue;
-                    }
+            if (!transactionsToVerify.isEmpty()) {
+                LOGGER.debug("Verifying incoming transactions queue (size {})...", transactionsToVerify.size());
+            }
 
-                    // Count the number that were validated in this round, for logging purposes
-                    validatedCount++;
+            int validatedCount = 0;
 
-                    // Add mark signature as valid if transaction still exists in import queue
-                    incomingTransactions.computeIfPresent(transactionData, (k, v) -> Boolean.TRUE);
+            for (int i = 0; i < transactionsToVerify.size(); ++i) {
+                // Quick exit?
+                if (isStopping) {
+                    return;
+                }
 
-                    // Signature validated in this round
-                    newlyValidSignatures.add(transactionData.getSignature());
+                TransactionData transactionData = transactionsToVerify.get(i);
 
-                } else {
-                    LOGGER.trace(() -> String.format("Transaction %s known to have valid signature", Base58.encode(transactionData.getSignature())));
+                IncomingTransactionStatus status;
+                try {
+                    status = pendingStatuses.get(i).get();
+                } catch (ExecutionException e) {
+                    LOGGER.debug(String.format("Unable to verify %s transaction %s", transactionData.getType().name(), Base58.encode(transactionData.getSignature())), e.getCause());
+                    status = IncomingTransactionStatus.INVALID_SIGNATURE;
                 }
 
-                // Signature valid - add to shortlist
-                sigValidTransactions.add(transaction);
+                onIncomingTransactionStatus(transactionData, status, now);
+
+                if (status == IncomingTransactionStatus.VALID) {
+                    // Count the number that were validated in this round, for logging purposes
+                    validatedCount++;
+                    sigValidCount++;
+                }
             }
 
-            if (unvalidatedCount > 0) {
-                LOGGER.debug("Finished validating signatures in incoming transactions queue (valid this round: {}, total pending import: {})...", validatedCount, sigValidTransactions.size());
+            if (!transactionsToVerify.isEmpty()) {
+                LOGGER.debug("Finished verifying incoming transactions queue (valid this round: {}, total pending import: {})...", validatedCount, sigValidCount);
             }
 
+        } catch (InterruptedException e) {
+            // Shutting down
+            Thread.currentThread().interrupt();
         } catch (DataException e) {
             LOGGER.error("Repository issue while processing incoming transactions", e);
         }
     }
 
+    /**
+     * Returns whether incoming transaction is worth importing, going by checks that don't need chain state,
+     * i.e. signature, any proof-of-work nonce, and timestamp.
+     * <p>
+     * Called on {@link #transactionVerifierExecutor} threads. Transaction signature checks,
+     * including nonces, don't use the repository, so it's safe for <tt>transaction</tt> to hold another thread's.
+     */
+    private static IncomingTransactionStatus verifyIncomingTransaction(Transaction transaction, boolean isLiteNode, Long latestBlockTimestamp, long now) {
+        TransactionData transactionData = transaction.getTransactionData();
+
+        // Drop expired transactions before they are considered "sig valid"
+        if (isExpired(transactionData, latestBlockTimestamp, now)) {
+            return IncomingTransactionStatus.EXPIRED;
+        }
+
+        // Transactions with a timestamp too far into future would only fail import
+        if (transactionData.getTimestamp() > now + Settings.getInstance().getMaxTransactionTimestampFuture()) {
+            return IncomingTransactionStatus.TOO_NEW;
+        }
+
+        // Lite nodes can't easily validate transactions, so for now we will have to assume that everything is valid
+        if (isLiteNode) {
+            return IncomingTransactionStatus.VALID;
+        }
+
+        return transaction.isSignatureValid() ? IncomingTransactionStatus.VALID : IncomingTransactionStatus.INVALID_SIGNATURE;
+    }
+
+    private static boolean isExpired(TransactionData transactionData, Long latestBlockTimestamp, long now) {
+        long deadline = Transaction.getDeadline(transactionData);
+        return now >= deadline || (latestBlockTimestamp != null && deadline <= latestBlockTimestamp);
+    }
+
+    /** Updates incoming transaction's entry in queue, following verification. */
+    private void onIncomingTransactionStatus(TransactionData transactionData, IncomingTransactionStatus status, long now) {
+        switch (status) {
+            case VALID:
+                // Add mark signature as valid if transaction still exists in import queue
+                incomingTransactions.computeIfPresent(transactionData, (k, v) -> Boolean.TRUE);
+                break;
+
+            case EXPIRED: {
+                String signature58 = Base58.encode(transactionData.getSignature());
+                LOGGER.debug("Removing expired {} transaction {} from import queue", transactionData.getType().name(), signature58);
+                removeIncomingTransaction(transactionData.getSignature());
+                invalidUnconfirmedTransactions.put(signature58, (now + EXPIRED_TRANSACTION_RECHECK_INTERVAL));
+                break;
+            }
+
+            case TOO_NEW:
+                // Not added to invalidUnconfirmedTransactions, as transaction will become valid, and peers will offer it again
+                LOGGER.debug(() -> String.format("Removing %s transaction %s with future timestamp from import queue", transactionData.getType().name(), Base58.encode(transactionData.getSignature())));
+                removeIncomingTransaction(transactionData.getSignature());
+                break;
+
+            case INVALID_SIGNATURE: {
+                String signature58 = Base58.encode(transactionData.getSignature());
+                LOGGER.debug("Ignoring {} transaction {} with invalid signature", transactionData.getType().name(), signature58);
+                removeIncomingTransaction(transactionData.getSignature());
+
+                LOGGER.trace("Adding invalid transaction {} to invalidUnconfirmedTransactions...", signature58);
+                // Add to invalidUnconfirmedTransactions so that we don't keep requesting it
+                invalidUnconfirmedTransactions.put(signature58, now + INVALID_TRANSACTION_RECHECK_INTERVAL);
+                break;
+            }
+        }
+    }
+
     /**
      * Import any transactions in the queue that have valid signatures.
      *
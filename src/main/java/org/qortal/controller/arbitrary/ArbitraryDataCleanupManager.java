@@ -2,6 +2,7 @@ package org.qortal.controller.arbitrary;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.qortal.arbitrary.ArbitraryDataFile;
 import org.qortal.arbitrary.ArbitraryDataFolderSizeEstimator;
 import org.qortal.data.transaction.ArbitraryTransactionData;
 import org.qortal.data.transaction.TransactionData;
@@ -178,6 +179,9 @@ public class ArbitraryDataCleanupManager extends Thread {
 
 						boolean mostRecentTransaction = processedTransactions.add(new ArbitraryTransactionDataHashWrapper(arbitraryTransactionData));
 
+						// Make sure the hosted data index knows which name this data belongs to
+						ArbitraryDataHostedIndex.getInstance().setName(arbitraryTransactionData.getSignature(), arbitraryTransactionData.getName());
+
 						// Check if we have the complete file
 						boolean completeFileExists = ArbitraryTransactionUtils.completeFileExists(arbitraryTransactionData);
 
@@ -302,7 +306,7 @@ public class ArbitraryDataCleanupManager extends Thread {
 				// is allowed (ideally several hours) before treating a transaction as missing.
 				// this.checkForExpiredTransactions(repository);
 
-				// Delete additional data at random if we're over our storage limit
+				// Evict additional data if we're over our storage limit
 				// Use the DELETION_THRESHOLD so that we only start deleting once the hard limit is reached
 				// This also allows some headroom between the regular threshold (90%) and the hard
 				// limit, to avoid data getting into a fetch/delete loop.
@@ -312,7 +316,7 @@ public class ArbitraryDataCleanupManager extends Thread {
 
 					// Rate limit, to avoid repeated calls to calculateDirectorySize()
 					Thread.sleep(10000);
-					// Now delete some data at random
+					// Now delete the least valuable data
 					this.storageLimitReached();
 				}
 			}
@@ -370,7 +374,16 @@ public class ArbitraryDataCleanupManager extends Thread {
 
 		LOGGER.info("no storage space available, proceed to delete");
 
-		// Delete a batch of random chunks
+		ArbitraryDataHostedIndex hostedIndex = ArbitraryDataHostedIndex.getInstance();
+		if (hostedIndex.isLoaded()) {
+			// Free up enough space to get back under the deletion threshold, plus a batch's worth of headroom
+			long bytesToFree = ArbitraryDataStorageManager.getInstance().getBytesOverThreshold(DELETION_THRESHOLD)
+					+ CHUNK_DELETION_BATCH_SIZE * (long) ArbitraryDataFile.CHUNK_SIZE;
+			this.evictHostedResources(bytesToFree);
+			return;
+		}
+
+		// The hosted data index hasn't been built yet, so fall back to deleting a batch of random chunks
 		// This reduces the chance of too many nodes deleting the same chunk
 		// when they reach their storage limit
 		Path dataPath = Paths.get(Settings.getInstance().getDataPath());
@@ -384,6 +397,86 @@ public class ArbitraryDataCleanupManager extends Thread {
 		// FUTURE: consider reducing the expiry time of the reader cache
 	}
 
+	/**
+	 * Delete whole hosted resources in eviction order until enough space has been freed
+	 *
+	 * Resources are ordered by ArbitraryDataHostedIndex.getEvictionCandidates(), so rarely used
+	 * data is removed before popular data, and data from followed names is only removed once
+	 * nothing else is left. Original copies (indicated by an ".original" file) are never deleted.
+	 *
+	 * @param bytesToFree - the number of bytes to free up
+	 * @return the number of bytes freed
+	 */
+	private long evictHostedResources(long bytesToFree) {
+		ArbitraryDataHostedIndex hostedIndex = ArbitraryDataHostedIndex.getInstance();
+		Long now = NTP.getTime();
+		if (now == null || bytesToFree <= 0) {
+			return 0L;
+		}
+
+		long bytesFreed = 0L;
+		int resourcesDeleted = 0;
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			for (ArbitraryDataHostedIndex.HostedResource resource : hostedIndex.getEvictionCandidates(now, STALE_FILE_TIMEOUT)) {
+				if (isStopping || bytesFreed >= bytesToFree) {
+					break;
+				}
+
+				Path resourcePath = resource.getPath();
+
+				// If the directory contains an ".original" file, don't delete anything
+				// This indicates that the content was originally updated by this node and so
+				// could be the only copy that exists.
+				if (Files.exists(Paths.get(resourcePath.toString(), ".original"))) {
+					continue;
+				}
+
+				// Names are only learned as transactions are processed, so resolve any that are still unknown,
+				// to make sure that we never evict followed data ahead of everything else
+				if (resource.getName() == null) {
+					TransactionData transactionData = repository.getTransactionRepository().fromSignature(Base58.decode(resource.getSignature58()));
+					if (transactionData instanceof ArbitraryTransactionData) {
+						String name = ((ArbitraryTransactionData) transactionData).getName();
+						hostedIndex.setName(transactionData.getSignature(), name);
+						if (name != null && ListUtils.isFollowingName(name)) {
+							// Now that its name is known, this will be ordered after all unfollowed data next time
+							continue;
+						}
+					}
+				}
+
+				LOGGER.debug("Evicting resource {} ({}, {} hits) because we have reached max storage capacity...",
+						resource.getSignature58(), StringUtils.formatBytes(resource.getSize()), resource.getHitCount());
+
+				long diskUsage = 0L;
+				File[] files = resourcePath.toFile().listFiles();
+				if (files != null) {
+					for (File file : files) {
+						diskUsage += FilesystemUtils.getDiskUsage(file);
+					}
+				}
+
+				if (this.safeDeleteDirectory(resourcePath.toFile(), "storage limit reached")) {
+					ArbitraryDataFolderSizeEstimator.getInstance().subtract(diskUsage);
+					hostedIndex.remove(resource.getSignature58());
+					bytesFreed += diskUsage;
+					resourcesDeleted++;
+				}
+			}
+
+		} catch (DataException e) {
+			LOGGER.error("Repository issue when evicting hosted data", e);
+		}
+
+		if (resourcesDeleted > 0) {
+			ArbitraryDataStorageManager.getInstance().invalidateHostedTransactionsCache();
+		}
+
+		LOGGER.info("Evicted {} hosted resources, freeing {}", resourcesDeleted, StringUtils.formatBytes(bytesFreed));
+		return bytesFreed;
+	}
+
 	/**
 	 * Iteratively walk through given directory and delete a single random file
 	 *
@@ -441,8 +534,10 @@ public class ArbitraryDataCleanupManager extends Thread {
 
 				boolean success = randomItem.delete();
 				if (success) {
+					ArbitraryDataFile.deleteChecksumSidecar(randomItem.toPath());
 
 					ArbitraryDataFolderSizeEstimator.getInstance().subtract(diskUsage);
+					ArbitraryDataHostedIndex.getInstance().subtractBytes(randomItem.getParentFile().getName(), diskUsage);
 					try {
 						FilesystemUtils.safeDeleteEmptyParentDirectories(randomItem.toPath().getParent());
 					} catch (IOException e) {
@@ -937,7 +937,8 @@ public class ArbitraryDataFileManager extends Thread {
         String hash58 = adf.getHash58();
         byte[] hash = adf.getHash();
 
-       
+        // Frees a slot in the sender's request window, and updates its delivery rate (no-op if we didn't request it from this peer)
+        peer.getDownloadSpeedTracker().recordChunkDelivered(hash58, System.currentTimeMillis());
 
         // Get request timestamp BEFORE removing it (for download speed tracking)
         Long requestTime = arbitraryDataFileRequests.get(hash58);
@@ -1535,7 +1536,9 @@ public class ArbitraryDataFileManager extends Thread {
             
             // Priority 1: Check permanent storage
             if (arbitraryDataFile.exists()) {
-           
+
+                // Serving data to peers counts towards its popularity, so it is retained for longer
+                ArbitraryDataHostedIndex.getInstance().recordAccess(sig);
 
                 // Check if we recently sent this chunk to this peer (within 3 minutes)
                 String sendKey = hash58 + "|" + peer.getPeerData().getAddress().toString();
@@ -11,6 +11,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -30,7 +31,6 @@ import org.qortal.network.Peer;
 import org.qortal.network.PeerAddress;
 import org.qortal.network.PeerList;
 import org.qortal.network.PeerSendManagement;
-import org.qortal.network.PeerSendManager;
 import org.qortal.network.message.GetArbitraryDataFileMessage;
 import org.qortal.network.message.MessageException;
 import org.qortal.network.message.MessageType;
@@ -47,10 +47,8 @@ public class ArbitraryDataFileRequestThread {
     private static final Logger LOGGER = LogManager.getLogger(ArbitraryDataFileRequestThread.class);
 
     // Batching configuration
-    private static final int MAX_BATCH_SIZE = 40;        // Maximum chunks per batch
-    private static final int INITIAL_BATCH_SIZE = 10;    // Smaller first batch to avoid overloading bad peers
-    private static final long BATCH_RAMP_UP_MS = 5000L; // Use INITIAL_BATCH_SIZE until this many ms since fetch started
-    private static final long BATCH_INTERVAL_MS = 2000L;  // Interval between batches
+    // Number of chunks requested from each peer is limited by its request window - see PeerDownloadSpeedTracker
+    private static final long BATCH_INTERVAL_MS = 2000L;  // Interval between batches, also requested whenever a chunk arrives
     private static final long STALE_BATCH_TIMEOUT_MS = 300000L; // 5 minutes - remove batches that haven't completed
 
     // Inner class to track pending chunks with their available peers
@@ -101,6 +99,7 @@ public class ArbitraryDataFileRequestThread {
         final Map<String, PendingChunk> pendingChunks = new ConcurrentHashMap<>();
         int peerIndex = 0;  // Persists across batches for fair round-robin distribution
         AtomicBoolean initialBatchSent = new AtomicBoolean(false);  // Track if initial batch has been sent
+        AtomicBoolean refillScheduled = new AtomicBoolean(false);  // Track if a request after chunk arrival is pending
         volatile ArbitraryTransactionData transactionData = null;  // Cached transaction data to avoid repeated DB fetches
         volatile long lastUpdatedTime;  // Track when chunks were last added/modified
 
@@ -134,11 +133,30 @@ public class ArbitraryDataFileRequestThread {
     /**
      * Called when a chunk is successfully received and saved. Removes the chunk from the batch's
      * pending set so it is no longer retried. Called from ArbitraryDataFileManager.receivedArbitraryDataFile.
+     * <p>
+     * Arrival frees a slot in the sender's request window, so the batch's next requests are sent
+     * straight away, instead of waiting for the next scheduled run.
      */
     public void onChunkReceived(String signature58, String hash58) {
         SignatureBatch batch = signatureBatches.get(signature58);
         if (batch != null) {
             batch.pendingChunks.remove(hash58);
+
+            if (!batch.pendingChunks.isEmpty() && batch.refillScheduled.compareAndSet(false, true)) {
+                try {
+                    batchScheduler.execute(() -> {
+                        batch.refillScheduled.set(false);
+                        try {
+                            sendBatchForSignature(batch, ArbitraryDataFileManager.getInstance(), null);
+                        } catch (Exception e) {
+                            LOGGER.error("Error sending batch for signature {}: {}", batch.signature58, e.getMessage(), e);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // Shutting down
+                    batch.refillScheduled.set(false);
+                }
+            }
         }
     }
 
@@ -370,6 +388,7 @@ public class ArbitraryDataFileRequestThread {
                                         // Queue message through PeerSendManager (same as batch system)
                                         PeerSendManagement.getInstance().getOrCreateSendManager(peer, true)
                                             .queueMessage(message, metadataHash58);
+                                        peer.getDownloadSpeedTracker().recordChunkRequested(metadataHash58, System.currentTimeMillis());
                                     } catch (MessageException e) {
                                         LOGGER.error("Failed to queue immediate metadata request for hash {}: {}", 
                                             metadataHash58, e.getMessage());
@@ -532,7 +551,7 @@ public class ArbitraryDataFileRequestThread {
                 if (isNewBatch && batch.initialBatchSent.compareAndSet(false, true)) {
                     if (!batch.pendingChunks.isEmpty()) {
                         LOGGER.trace("Sending initial batch for signature {} with {} chunks", signature58, batch.pendingChunks.size());
-                        sendBatchForSignature(batch, INITIAL_BATCH_SIZE, arbitraryDataFileManager, true, null);
+                        sendBatchForSignature(batch, arbitraryDataFileManager, null);
                     } else {
                         // If no chunks yet, reset the flag so it can be sent later
                         batch.initialBatchSent.set(false);
@@ -709,11 +728,9 @@ public class ArbitraryDataFileRequestThread {
                                      batch.signature58, idleTime);
                     }
                 } else {
-                    // Send incremental batch (normal operation). Use smaller batch until ramp-up period has passed.
-                    int batchLimit = (elapsed >= BATCH_RAMP_UP_MS) ? MAX_BATCH_SIZE : INITIAL_BATCH_SIZE;
-                    LOGGER.trace("Sending incremental batch for signature {}: limit {} chunks (elapsed {}s)", 
-                            batch.signature58, batchLimit, elapsed / 1000);
-                            sendBatchForSignature(batch, batchLimit, ArbitraryDataFileManager.getInstance(), false, connectedPeers);
+                    // Send incremental batch (normal operation), e.g. after timeouts, or to peers with newly opened windows
+                    LOGGER.trace("Sending incremental batch for signature {} (elapsed {}s)", batch.signature58, elapsed / 1000);
+                    sendBatchForSignature(batch, ArbitraryDataFileManager.getInstance(), connectedPeers);
                 }
             }
         } catch (Exception e) {
@@ -722,234 +739,66 @@ public class ArbitraryDataFileRequestThread {
     }
 
     /**
-     * Selects a peer for a chunk using tier-based load balancing with capacity-proportional distribution.
-     * 
-     * Selection strategy:
-     * 1. Categorize peers by tier (based on hop count):
-     *    - Tier 1: Hops 0-1 (BEST - directly connected)
-     *    - Tier 2: Hops 2-3 (MEDIUM)
-     *    - Tier 3: Hops 4+ (WORST)
-     * 
-     * 2. Always select from best available tier (quality-first prioritization)
-     * 
-     * 3. Within tier, sort by CAPACITY-WEIGHTED load (not raw load):
-     *    - Fast peers can handle more chunks before being deprioritized
-     *    - Capacity = 1000.0 / RTT (chunks per second)
-     *    - Weighted load = currentLoad / capacity (normalized workload)
-     *    - Then RTT, queue size as tie-breakers
-     * 
-     * 4. No artificial per-batch load limits - only real queue capacity matters
-     *    (checked later in sendBatchForSignature using RTT-aware calculation)
-     * 
-     * This ensures:
-     * - Fast peers get proportionally more work than slow peers
-     * - Better quality peers always preferred over worse ones
-     * - Slow peers aren't excluded, just get less work
-     * - Load is balanced proportionally within each quality tier
-     * 
-     * @param chunk the chunk to assign
-     * @param peerSnapshots map of chunks to their available peers
-     * @param availablePeersMap map of PeerData to connected Peer objects
-     * @param chunksByPeer current assignment of chunks to peers (for load tracking)
-     * @param signature58 the file signature (for cooldown checking)
-     * @param adfm the ArbitraryDataFileManager instance
-     * @param now current timestamp (unused - kept for compatibility)
-     * @param staleThreshold threshold for "recent" data (unused - kept for compatibility)
-     * @return selected peer, or null if no peer available
+     * Returns peers we could request chunk from: connected peers that have it,
+     * excluding peers we've already asked for it, and peers in cooldown for this file.
      */
-    private Peer selectPeerWithLoadBalancing(
-            PendingChunk chunk,
-            Map<PendingChunk, List<Peer>> peerSnapshots,
-            Map<PeerData, Peer> availablePeersMap,
-            Map<Peer, List<PendingChunk>> chunksByPeer,
-            String signature58,
-            ArbitraryDataFileManager adfm,
-            Long now,
-            long staleThreshold) {
-        
-        // No artificial per-batch load limits - only real queue capacity matters
-        // Tiers are used for quality-based prioritization, not capacity limiting
-        
-        // Get chunk's hop count to determine preferred quality
-        Integer chunkHops = chunk.responseInfo.getRequestHops();
-        int hopCount = (chunkHops != null) ? chunkHops : 100; // Treat null as high hops
-        
-        // Collect all available peers for this chunk with their tier and metrics
-        List<PeerCandidate> tier1 = new ArrayList<>(); // Low hops (0-1)
-        List<PeerCandidate> tier2 = new ArrayList<>(); // Medium hops (2-3)
-        List<PeerCandidate> tier3 = new ArrayList<>(); // High hops (4+)
-        
-        Set<String> triedPeers = adfm.getTriedPeersForChunk(signature58, chunk.responseInfo.getHash58());
-        for (Peer peer : peerSnapshots.get(chunk)) {
-            Peer connectedPeer = availablePeersMap.get(peer.getPeerData());
-            if (connectedPeer == null) {
-                continue; // Skip disconnected peers
-            }
-            
-            String peerAddress = connectedPeer.getPeerData().getAddress().toString();
+    private List<Peer> getCandidatePeers(List<Peer> availablePeers, String signature58, String hash58, ArbitraryDataFileManager adfm) {
+        Set<String> triedPeers = adfm.getTriedPeersForChunk(signature58, hash58);
+        List<Peer> candidatePeers = new ArrayList<>(availablePeers.size());
+
+        for (Peer peer : availablePeers) {
+            String peerAddress = peer.getPeerData().getAddress().toString();
             if (triedPeers.contains(peerAddress)) {
-                continue; // Already tried this peer for this chunk (timeout or in-flight); retry from another peer
+                continue; // Already asked this peer for this chunk (timeout or in-flight); retry from another peer
             }
-            
+
             // Check if this peer is in cooldown for this file (sent invalid data for ANY chunk of this file before)
             if (adfm.isSignaturePeerInCooldown(signature58, peerAddress)) {
-                LOGGER.debug("Skipping peer {} for file {} - in 10min cooldown due to previous hash mismatch on this file", 
+                LOGGER.debug("Skipping peer {} for file {} - in 10min cooldown due to previous hash mismatch on this file",
                     peerAddress, signature58);
-                continue; // Skip this peer - they sent invalid data for this file before
-            }
-            
-            // Factor 1: Current load (chunks assigned in this batch)
-            int currentLoad = chunksByPeer.getOrDefault(connectedPeer, Collections.emptyList()).size();
-            
-            // Factor 2: Queue size (number of queued messages)
-            PeerSendManager sendManager = PeerSendManagement.getInstance().getOrCreateSendManager(connectedPeer, true);
-            int queueSize = sendManager.getQueueMessageSize() + connectedPeer.getSendQueueSize();
-            
-            // Factor 3: Round trip time (lower is better)
-            Long transferTime = connectedPeer.getDownloadSpeedTracker().getLatestRoundTripTime();
-            long roundTripTime = (transferTime != null && transferTime > 0) ? transferTime : Long.MAX_VALUE;
-            
-            // Skip peers with RTT > 10 seconds - they're too slow and would block download progress
-            // Peer will automatically get another chance after 10 seconds of inactivity (RTT reset)
-            final long MAX_USABLE_RTT_MS = 10_000L; // 10 seconds
-            if (roundTripTime != Long.MAX_VALUE && roundTripTime > MAX_USABLE_RTT_MS) {
-                LOGGER.debug("Skipping peer {} for chunk {} - RTT {}ms exceeds maximum usable threshold of {}ms (will retry after idle reset)",
-                    connectedPeer, chunk.responseInfo.getHash58(), roundTripTime, MAX_USABLE_RTT_MS);
-                continue; // Skip this peer temporarily
-            }
-            
-            // Create candidate
-            PeerCandidate candidate = new PeerCandidate(
-                connectedPeer, 
-                currentLoad, 
-                hopCount,
-                queueSize,
-                roundTripTime
-            );
-            
-            // Categorize by tier based on hop count - NO LOAD LIMITS
-            // All peers in a tier are eligible regardless of load
-            // Real queue capacity check happens later in sendBatchForSignature()
-            if (hopCount <= 1) {
-                // Tier 1: Low hops (0-1) - BEST quality
-                tier1.add(candidate);
-            } else if (hopCount <= 3) {
-                // Tier 2: Medium hops (2-3) - MEDIUM quality
-                tier2.add(candidate);
-            } else {
-                // Tier 3: High hops (4+) - WORST quality
-                tier3.add(candidate);
+                continue;
             }
+
+            candidatePeers.add(peer);
         }
-        
-       
-        
-        // Select from best available tier (quality-based prioritization)
-        List<PeerCandidate> selectedTier = null;
-        String tierName = "";
-        if (!tier1.isEmpty()) {
-            selectedTier = tier1;
-            tierName = "Tier1";
-        } else if (!tier2.isEmpty()) {
-            selectedTier = tier2;
-            tierName = "Tier2";
-        } else if (!tier3.isEmpty()) {
-            selectedTier = tier3;
-            tierName = "Tier3";
-        } else {
-            // No peers available for this chunk
-            return null;
-        }
-        
-        // Sort within tier by: capacity-weighted load, RTT, queue size, hop count
-        // CAPACITY-PROPORTIONAL: Fast peers can accumulate more chunks before being deprioritized
-        // Weighted load = currentLoad / capacity, where capacity = 1000.0 / RTT (chunks/sec)
-        selectedTier.sort((c1, c2) -> {
-            // 1. Calculate capacity-weighted load (normalized workload)
-            // Capacity = 1000 / RTT (chunks per second)
-            // Weighted load = currentLoad / capacity (how "full" the peer is relative to its speed)
-            // For peers with no RTT data (0 or Long.MAX_VALUE), assume a default RTT of 5000ms
-            // This gives them a fair chance to establish their actual RTT instead of being permanently penalized
-            final long DEFAULT_RTT_MS = 5000L;
-            
-            long effectiveRTT1 = (c1.roundTripTime != Long.MAX_VALUE && c1.roundTripTime > 0)
-                ? c1.roundTripTime : DEFAULT_RTT_MS;
-            long effectiveRTT2 = (c2.roundTripTime != Long.MAX_VALUE && c2.roundTripTime > 0)
-                ? c2.roundTripTime : DEFAULT_RTT_MS;
-            
-            double capacity1 = 1000.0 / effectiveRTT1;
-            double capacity2 = 1000.0 / effectiveRTT2;
-            
-            double weightedLoad1 = c1.currentLoad / capacity1;
-            double weightedLoad2 = c2.currentLoad / capacity2;
-            
-            // Lower weighted load wins (peer with more relative capacity available)
-            // This means fast peers naturally get more chunks before being deprioritized
-            // Direct comparison without epsilon - let Double.compare handle precision
-            int weightedLoadComparison = Double.compare(weightedLoad1, weightedLoad2);
-            if (weightedLoadComparison != 0) {
-                return weightedLoadComparison;
-            }
-            
-            // 2. Lower round trip time wins (tie-breaker when weighted loads are exactly equal)
-            //    This handles the case where both peers have 0 load and ensures fast peers are preferred
-            if (c1.roundTripTime != c2.roundTripTime) {
-                return Long.compare(c1.roundTripTime, c2.roundTripTime);
-            }
-            
-            // 3. Lower queue size wins (tie-breaker for same weighted load and RTT)
-            if (c1.queueSize != c2.queueSize) {
-                return Integer.compare(c1.queueSize, c2.queueSize);
-            }
-            
-            // 4. Lower hop count wins (final tie-breaker within tier)
-            if (c1.hopCount != c2.hopCount) {
-                return Integer.compare(c1.hopCount, c2.hopCount);
-            }
-            
-            // 5. Consistent ordering by address
-            return c1.peer.getPeerData().getAddress().toString()
-                    .compareTo(c2.peer.getPeerData().getAddress().toString());
-        });
-        
-        Peer selectedPeer = selectedTier.get(0).peer;
-        
-        return selectedPeer;
+
+        return candidatePeers;
     }
-    
+
     /**
-     * Helper class to track peer candidates for selection.
+     * Returns number of further messages we can queue for peer.
+     * Need to check both PeerSendManager queue and Peer sendQueue since messages flow:
+     * Batching → PeerSendManager.queue → Peer.sendQueue → network
      */
-    private static class PeerCandidate {
-        final Peer peer;
-        final int currentLoad;
-        final int hopCount;
-        final int queueSize;
-        final long roundTripTime; // Round trip time in ms (lower is better)
-        
-        PeerCandidate(Peer peer, int currentLoad, int hopCount, int queueSize, long roundTripTime) {
-            this.peer = peer;
-            this.currentLoad = currentLoad;
-            this.hopCount = hopCount;
-            this.queueSize = queueSize;
-            this.roundTripTime = roundTripTime;
+    private static int getSendQueueSpace(Peer peer) {
+        int sendManagerQueueSize = PeerSendManagement.getInstance().getOrCreateSendManager(peer, true).getQueueMessageSize();
+        int peerSendQueueSize = peer.getSendQueueSize();
+        int peerSendQueueCapacity = peer.getSendQueueCapacity();
+
+        int maxQueueSize = (int) (peerSendQueueCapacity * 0.8); // 80% safety margin
+        int availableQueueSpace = maxQueueSize - (sendManagerQueueSize + peerSendQueueSize);
+
+        if (availableQueueSpace <= 0) {
+            LOGGER.debug("REQUESTER QUEUE FULL: peer={}, PeerSendMgr={}, Peer.sendQueue={}/{}, SKIPPING",
+                peer, sendManagerQueueSize, peerSendQueueSize, peerSendQueueCapacity);
         }
+
+        return availableQueueSpace;
     }
 
     /**
      * Send a batch of chunks for a signature, distributing across available peers.
-     * Uses adaptive batch sizing based on peer RTT to prevent queue buildup.
-     * Each peer gets up to maxChunks of DIFFERENT chunks (no duplicates).
-     * Total sent can be maxChunks * numPeers.
-     * For initial batch, prioritizes peers by hop count (hop 0 = best, directly connected).
-     * 
+     * Each peer is sent only as many requests as its request window has room for, so fast peers
+     * get proportionally more chunks in flight than slow ones, and slow or failing peers aren't overloaded.
+     * Chunks whose requests timed out are retried from other peers, and near the end of the download,
+     * chunks still in flight may also be requested from a second peer.
+     *
      * @param batch the signature batch to process
-     * @param requestedMaxChunks requested maximum number of chunks to send per peer (may be reduced adaptively)
      * @param adfm the ArbitraryDataFileManager instance
-     * @param isInitialBatch true if this is the initial batch (uses hop-priority sorting), false for incremental batches
      * @param connectedPeersSnapshot optional snapshot of handshaked peers; if null, a fresh snapshot is taken (avoids repeated snapshots when caller passes one from processAllBatches)
+     * @see ChunkRequestPlanner
      */
-    private void sendBatchForSignature(SignatureBatch batch, int requestedMaxChunks, ArbitraryDataFileManager adfm, boolean isInitialBatch, PeerList connectedPeersSnapshot) {
+    private void sendBatchForSignature(SignatureBatch batch, ArbitraryDataFileManager adfm, PeerList connectedPeersSnapshot) {
         // Use cached transaction data, or fetch lazily on first use
         ArbitraryTransactionData transactionData = batch.transactionData;
         if (transactionData == null) {
@@ -979,209 +828,55 @@ public class ArbitraryDataFileRequestThread {
         // Use caller-provided snapshot when available (e.g. from processAllBatches) to avoid repeated getImmutableHandshakedPeers() per batch
         PeerList connectedPeers = connectedPeersSnapshot != null ? connectedPeersSnapshot : NetworkData.getInstance().getImmutableHandshakedPeers();
 
-        // Get all unrequested chunks
-        List<PendingChunk> unrequestedChunks = batch.pendingChunks.values().stream()
-                .filter(chunk -> !adfm.arbitraryDataFileRequests.containsKey(chunk.responseInfo.getHash58()))
-                .collect(Collectors.toList());
-
-        if (unrequestedChunks.isEmpty()) {
-            return;
-        }
-
-        // Create immutable snapshots once per chunk to avoid repeated allocations
-        // This prevents massive allocation pressure from getAvailablePeers() being called in loops
-        // Resolve Peer objects on-demand from connectedPeers (filters out disconnected peers)
-        Map<PendingChunk, List<Peer>> peerSnapshots = new HashMap<>();
-        for (PendingChunk chunk : unrequestedChunks) {
-            peerSnapshots.put(chunk, Collections.unmodifiableList(chunk.getAvailablePeers(connectedPeers)));
-        }
-
-        LOGGER.trace("Processing {} unrequested chunks for signature {}", unrequestedChunks.size(), batch.signature58);
-
-        // Get unique list of available connected peers
-        // Use Map keyed by PeerData for consistent deduplication (Peer.equals/hashCode may be inconsistent)
-        Map<PeerData, Peer> availablePeersMap = new HashMap<>();
-        for (PendingChunk chunk : unrequestedChunks) {
-            for (Peer peer : peerSnapshots.get(chunk)) {
-                // Verify peer is still connected
-                Peer connectedPeer = connectedPeers.get(peer.getPeerData());
-                if (connectedPeer != null) {
-                    // Use PeerData as key for consistent deduplication
-                    availablePeersMap.put(connectedPeer.getPeerData(), connectedPeer);
-                    LOGGER.trace("Peer {} is connected for signature {}", connectedPeer, batch.signature58);
-                } else {
-                    LOGGER.trace("Peer {} is NOT connected (skipping) for signature {}", peer, batch.signature58);
+        // Batch can be sent from scheduler and on chunk arrival - only plan one at a time, so chunks aren't requested twice
+        synchronized (batch) {
+            long now = System.currentTimeMillis();
+
+            List<ChunkRequestPlanner.ChunkState<Peer>> chunkStates = new ArrayList<>();
+            for (PendingChunk chunk : batch.pendingChunks.values()) {
+                String hash58 = chunk.responseInfo.getHash58();
+                List<Peer> availablePeers = chunk.getAvailablePeers(connectedPeers);
+
+                // Peers we're still waiting on for this chunk, i.e. requested and not yet timed out
+                int requestsInFlight = 0;
+                long lastRequestTime = 0L;
+                for (Peer peer : availablePeers) {
+                    Long requestTime = peer.getDownloadSpeedTracker().getRequestTime(hash58, now);
+                    if (requestTime != null) {
+                        requestsInFlight++;
+                        lastRequestTime = Math.max(lastRequestTime, requestTime);
+                    }
                 }
-            }
-        }
-
-        if (availablePeersMap.isEmpty()) {
-            LOGGER.trace("No connected peers available for signature {}", batch.signature58);
-            return;
-        }
-
-        // Sort peers for consistent ordering across batches
-        List<Peer> availablePeersList = new ArrayList<>(availablePeersMap.values());
-        availablePeersList.sort((p1, p2) -> 
-            p1.getPeerData().getAddress().toString().compareTo(p2.getPeerData().getAddress().toString())
-        );
-
-     
-
-        // Always use MAX_BATCH_SIZE - let per-peer capacity checks throttle individual peers
-        // The capacity-proportional load balancing and RTT-aware queue checks provide sufficient protection
-        int maxChunks = requestedMaxChunks;
 
-        // isInitialBatch is passed as parameter to correctly identify initial vs incremental batches
-        // (The flag batch.initialBatchSent is already set to true before calling this method for initial batches)
+                boolean isRequested = adfm.arbitraryDataFileRequests.containsKey(hash58);
+                List<Peer> candidatePeers = getCandidatePeers(availablePeers, batch.signature58, hash58, adfm);
 
-        // Get current time and stale threshold for priority system (used by both initial and incremental batches)
-        Long now = NTP.getTime();
-        long staleThreshold = 5 * 1000; // 5 seconds in milliseconds
-
-        // Distribute chunks across peers
-        // Each chunk goes to ONE peer (no duplicates)
-        Map<Peer, List<PendingChunk>> chunksByPeer = new HashMap<>();
-
-        if (isInitialBatch) {
-            // For initial batch: process all chunks without sorting
-            // Hop count is incorporated into tier-based peer selection
-            
-            for (PendingChunk chunk : unrequestedChunks) {
-                Peer selectedPeer = selectPeerWithLoadBalancing(
-                    chunk,
-                    peerSnapshots,
-                    availablePeersMap,
-                    chunksByPeer,
-                    batch.signature58,
-                    adfm,
-                    now,
-                    staleThreshold
-                );
-                
-                if (selectedPeer != null) {
-                    chunksByPeer.computeIfAbsent(selectedPeer, k -> new ArrayList<>()).add(chunk);
-                } else {
-                    // No peer available (e.g. all tried for this chunk) - remove so we don't retry forever
-                    String hash58 = chunk.responseInfo.getHash58();
-                    batch.pendingChunks.remove(hash58);
-                    adfm.clearChunkReceived(hash58, batch.signature58);
-                }
-            }
-        } else {
-            // For subsequent batches: use same priority system as initial batch
-            // Prefer peers with recent data (latestArrivalTime <= 5 seconds)
-            // If all peers have stale data (> 5 seconds), fall back to hop count
-        
-            
-            for (PendingChunk chunk : unrequestedChunks) {
-                Peer selectedPeer = selectPeerWithLoadBalancing(
-                    chunk,
-                    peerSnapshots,
-                    availablePeersMap,
-                    chunksByPeer,
-                    batch.signature58,
-                    adfm,
-                    now,
-                    staleThreshold
-                );
-                
-                if (selectedPeer != null) {
-                    chunksByPeer.computeIfAbsent(selectedPeer, k -> new ArrayList<>()).add(chunk);
-                } else {
-                    String hash58 = chunk.responseInfo.getHash58();
-                    batch.pendingChunks.remove(hash58);
-                    adfm.clearChunkReceived(hash58, batch.signature58);
+                if (requestsInFlight == 0 && candidatePeers.isEmpty()) {
+                    if (!isRequested) {
+                        // No peer available (e.g. all tried for this chunk) - remove so we don't retry forever
+                        batch.pendingChunks.remove(hash58);
+                        adfm.clearChunkReceived(hash58, batch.signature58);
+                    }
+                    continue;
                 }
-            }
-        }
 
-        int totalSent = 0;
-        
-        // Maximum time we want to queue for each peer (in milliseconds)
-        // Prevents overwhelming slow peers with too many pending chunks
-        // Balanced to allow fast peers (≤3000ms) full batch, good peers (4000ms) get 30 chunks
-        final long MAX_QUEUE_DRAIN_TIME_MS = 120_000L; // 2 minutes of queued work
-
-        // Send up to maxChunks to EACH peer from their assigned list
-        for (Map.Entry<Peer, List<PendingChunk>> peerEntry : chunksByPeer.entrySet()) {
-            Peer peer = peerEntry.getKey();
-            
-            // Get RTT for time-based load calculation
-            // RTT represents round-trip time per chunk in milliseconds
-            Long rtt = peer.getDownloadSpeedTracker().getLatestRoundTripTime();
-            long effectiveRTT = (rtt != null && rtt > 0) ? rtt : 5000L; // Default 5s if no data yet
-            
-            // Check peer's queue capacity using RTT-aware calculation
-            // Need to check both PeerSendManager queue and Peer sendQueue since messages flow:
-            // Batching → PeerSendManager.queue → Peer.sendQueue → network
-            PeerSendManager sendManager = PeerSendManagement.getInstance().getOrCreateSendManager(peer, true);
-            int sendManagerQueueSize = sendManager.getQueueMessageSize();
-            int peerSendQueueSize = peer.getSendQueueSize();
-            int peerSendQueueCapacity = peer.getSendQueueCapacity();
-            
-            // Total pending messages = messages in PeerSendManager + messages in Peer.sendQueue
-            int totalPendingMessages = sendManagerQueueSize + peerSendQueueSize;
-            
-            // Calculate time-to-drain: how long will current queue take to complete?
-            // This is more meaningful than just counting messages
-            long queueDrainTimeMs = totalPendingMessages * effectiveRTT;
-            
-            // Skip peer if queue will take too long to drain (peer is genuinely busy)
-            if (queueDrainTimeMs >= MAX_QUEUE_DRAIN_TIME_MS) {
-                LOGGER.debug("REQUESTER QUEUE BUSY: peer={}, queue={}, RTT={}ms, drainTime={}s, SKIPPING", 
-                    peer, totalPendingMessages, effectiveRTT, queueDrainTimeMs / 1000);
-                continue; // Skip this peer, try again next batch
+                boolean isRetry = requestsInFlight == 0 && isRequested;
+                chunkStates.add(new ChunkRequestPlanner.ChunkState<>(hash58, candidatePeers, requestsInFlight, lastRequestTime, isRetry));
             }
-            
-            // Calculate how many chunks we can safely add without exceeding drain time threshold
-            // This ensures we don't queue more than MAX_QUEUE_DRAIN_TIME_MS worth of work
-            long remainingTimeMs = MAX_QUEUE_DRAIN_TIME_MS - queueDrainTimeMs;
-            int maxSafeChunks = (int) (remainingTimeMs / effectiveRTT);
-            
-            // Also respect physical queue capacity as a hard limit
-            int maxQueueSize = (int) (peerSendQueueCapacity * 0.8); // 80% safety margin
-            int availableQueueSpace = maxQueueSize - totalPendingMessages;
-            
-            if (availableQueueSpace <= 0) {
-                LOGGER.debug("REQUESTER QUEUE FULL: peer={}, PeerSendMgr={}, Peer.sendQueue={}/{}, total={}, capacity={}, SKIPPING", 
-                    peer, sendManagerQueueSize, peerSendQueueSize, peerSendQueueCapacity, 
-                    totalPendingMessages, peerSendQueueCapacity);
-                continue; // Physical queue is full
+
+            if (chunkStates.isEmpty()) {
+                return;
             }
 
-            // Take minimum of: requested batch size, time-based limit, physical space
-            // Minimum of 1 chunk ensures even slow peers can make progress without blocking downloads
-            int maxChunksForThisPeer = Math.max(1, Math.min(Math.min(maxChunks, maxSafeChunks), availableQueueSpace));
-            
-            LOGGER.trace("REQUESTER QUEUE STATUS: peer={}, PeerSendMgr={}, Peer.sendQueue={}/{}, queue={}, RTT={}ms, drainTime={}s, sendingChunks={}", 
-                peer, sendManagerQueueSize, peerSendQueueSize, peerSendQueueCapacity, 
-                totalPendingMessages, effectiveRTT, queueDrainTimeMs / 1000, maxChunksForThisPeer);
-            
-            List<PendingChunk> chunksForThisPeer = peerEntry.getValue().stream()
-                    .limit(maxChunksForThisPeer)
-                    .collect(Collectors.toList());
+            ChunkRequestPlanner<Peer> planner = new ChunkRequestPlanner<>(Peer::getDownloadSpeedTracker, ArbitraryDataFileRequestThread::getSendQueueSpace);
+            List<ChunkRequestPlanner.Assignment<Peer>> assignments = planner.plan(now, chunkStates, batch.pendingChunks.size());
+
+            LOGGER.trace("Requesting {} of {} pending chunks for signature {}", assignments.size(), batch.pendingChunks.size(), batch.signature58);
+
+            for (ChunkRequestPlanner.Assignment<Peer> assignment : assignments) {
+                Peer peer = assignment.getPeer();
+                String fileHash = assignment.getHash58();
 
-            int sentToThisPeer = 0;
-            for (PendingChunk chunk : chunksForThisPeer) {
-                // Re-check queue space before each message (in case it changed)
-                PeerSendManager currentSendManager = PeerSendManagement.getInstance().getOrCreateSendManager(peer, true);
-                int currentSendManagerQueueSize = currentSendManager.getQueueMessageSize();
-                int currentPeerSendQueueSize = peer.getSendQueueSize();
-                int currentTotalPending = currentSendManagerQueueSize + currentPeerSendQueueSize;
-                
-                // Check both time-based and physical capacity
-                long currentDrainTime = currentTotalPending * effectiveRTT;
-                int currentMaxQueueSize = (int) (peerSendQueueCapacity * 0.8);
-                
-                if (currentDrainTime >= MAX_QUEUE_DRAIN_TIME_MS || currentTotalPending >= currentMaxQueueSize) {
-                    LOGGER.trace("Peer {} queues reached limit (queue: {}, drainTime: {}s, physical: {}/{}), stopping batch send for signature {}", 
-                        peer, currentTotalPending, currentDrainTime / 1000, currentTotalPending, currentMaxQueueSize, batch.signature58);
-                    break; // Stop sending to this peer
-                }
-                
-                String fileHash = chunk.responseInfo.getHash58();
-                
                 byte[] fileHashBytes = Base58.decode(fileHash);
                 if (fileHashBytes == null) {
                     LOGGER.warn("Could not decode hash {}", fileHash);
@@ -1189,44 +884,44 @@ public class ArbitraryDataFileRequestThread {
                 }
 
                 // Atomically mark as requesting - only proceed if we win the race
-                // This prevents duplicate requests when multiple threads process the same chunk
+                // This prevents duplicate requests when another path (e.g. immediate metadata request) is requesting the same chunk
+                // Retries and deliberate duplicates replace the earlier request's timestamp
                 Long prev = adfm.arbitraryDataFileRequests.putIfAbsent(fileHash, NTP.getTime());
                 if (prev != null) {
-                    // Another thread already marked this as requesting - skip (chunk stays in pending for retry if that request times out)
-                    continue;
+                    if (!assignment.isDuplicate() && !assignment.getChunk().isRetry()) {
+                        continue;
+                    }
+                    adfm.arbitraryDataFileRequests.put(fileHash, NTP.getTime());
                 }
-                
+
                 // Separately add to guard map for delayed validation (separate concern)
                 adfm.addGuardTracking(fileHash);
 
                 try {
                     GetArbitraryDataFileMessage message = new GetArbitraryDataFileMessage(
                             transactionData.getSignature(), fileHashBytes);
-                    
-                    // Record that we're assigning work to this peer
-                    // This helps RTT reset work correctly - even if in-flight requests are slow,
-                    // the peer can recover after 10s of no new assignments
-                    peer.getDownloadSpeedTracker().recordChunkAssigned();
-                    
+
                     // Pass fileHash for tracking in PeerSendManager pipeline
                     PeerSendManagement.getInstance().getOrCreateSendManager(peer, true).queueMessage(message, fileHash);
-                    
+
+                    // Uses a slot in peer's request window until chunk arrives or request times out
+                    peer.getDownloadSpeedTracker().recordChunkRequested(fileHash, now);
+
                     adfm.recordChunkRequested(fileHash, batch.signature58, peer.getPeerData().getAddress().toString());
-                    sentToThisPeer++;
-                    totalSent++;
+                    if (assignment.isDuplicate()) {
+                        LOGGER.debug("Requested chunk {} from {} as well, near end of download for signature {}", fileHash, peer, batch.signature58);
+                    }
                     // Chunk stays in pendingChunks until we receive it (onChunkReceived) or cleanup expires the request
                 } catch (MessageException e) {
                     LOGGER.error("Failed to create or queue message for hash {}: {}", fileHash, e.getMessage());
-                    adfm.arbitraryDataFileRequests.remove(fileHash);
-                    adfm.removeGuardTracking(fileHash);
+                    if (prev == null) {
+                        adfm.arbitraryDataFileRequests.remove(fileHash);
+                        adfm.removeGuardTracking(fileHash);
+                    }
                     // Chunk stays in pendingChunks so we can retry from another peer
                 }
             }
-
-            
         }
-
-       
     }
 
 
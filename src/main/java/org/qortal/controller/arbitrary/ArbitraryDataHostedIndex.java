@@ -0,0 +1,473 @@
+package org.qortal.controller.arbitrary;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.qortal.settings.Settings;
+import org.qortal.utils.Base58;
+import org.qortal.utils.FilesystemUtils;
+import org.qortal.utils.ListUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Persistent index of the resources hosted in the data directory.
+ *
+ * Each hosted signature directory has an entry holding its disk usage, resource name
+ * (once known), last access time and hit count. Entries are kept up to date as files are
+ * written and deleted, and as resources are rendered or served to peers, so the cleanup
+ * manager can evict the least valuable data first instead of deleting files at random,
+ * and callers no longer need to walk the whole data tree to find hosted paths.
+ *
+ * The index is backed off to a JSON file in the export (qortal-backup) folder, and is
+ * rebuilt from the filesystem whenever that file is missing or a full recalculation is due.
+ */
+public class ArbitraryDataHostedIndex {
+
+    private static final Logger LOGGER = LogManager.getLogger(ArbitraryDataHostedIndex.class);
+
+    private static final String INDEX_FILENAME = "ArbitraryDataHostedIndex.json";
+
+    /** Each hit moves a resource this far forward in the eviction order, up to MAX_COUNTED_HITS */
+    private static final long HIT_RETENTION_BONUS = 60 * 60 * 1000L; // 1 hour
+
+    /** Cap on counted hits, so that formerly popular content can still age out eventually */
+    private static final long MAX_COUNTED_HITS = 24 * 7L; // up to 1 week of extra retention
+
+    /** Resources whose effective access times fall within the same bucket are evicted largest first */
+    private static final long EVICTION_BUCKET_SIZE = 60 * 60 * 1000L; // 1 hour
+
+    private static final Comparator<HostedResource> EVICTION_ORDER =
+            Comparator.comparingLong((HostedResource resource) -> resource.getEffectiveAccessTime() / EVICTION_BUCKET_SIZE)
+                    .thenComparing(Comparator.comparingLong(HostedResource::getSize).reversed());
+
+    private static ArbitraryDataHostedIndex instance;
+
+    private final Map<String, HostedResource> resources = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> signaturesByName = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded = false;
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    public static class HostedResource {
+        private final String signature58;
+        private volatile String name;
+        private final AtomicLong size = new AtomicLong(0);
+        private volatile long lastAccessed;
+        private final AtomicLong hitCount = new AtomicLong(0);
+
+        public HostedResource(String signature58, String name, long size, long lastAccessed, long hitCount) {
+            this.signature58 = signature58;
+            this.name = name;
+            this.size.set(size);
+            this.lastAccessed = lastAccessed;
+            this.hitCount.set(hitCount);
+        }
+
+        public String getSignature58() {
+            return this.signature58;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public long getSize() {
+            return this.size.get();
+        }
+
+        public long getLastAccessed() {
+            return this.lastAccessed;
+        }
+
+        public long getHitCount() {
+            return this.hitCount.get();
+        }
+
+        /**
+         * Last access time, pushed forward by the number of hits this resource has received.
+         * Frequently used resources therefore survive longer than ones that were only
+         * touched once, but every resource eventually becomes eligible for eviction.
+         */
+        public long getEffectiveAccessTime() {
+            return this.lastAccessed + Math.min(this.hitCount.get(), MAX_COUNTED_HITS) * HIT_RETENTION_BONUS;
+        }
+
+        public Path getPath() {
+            return ArbitraryDataHostedIndex.getResourcePath(this.signature58);
+        }
+    }
+
+    private ArbitraryDataHostedIndex() {
+    }
+
+    public static synchronized ArbitraryDataHostedIndex getInstance() {
+        if (instance == null)
+            instance = new ArbitraryDataHostedIndex();
+
+        return instance;
+    }
+
+
+    /* Filesystem */
+
+    public static Path getIndexFilePath() {
+        return Paths.get(Settings.getInstance().getExportPath(), INDEX_FILENAME);
+    }
+
+    public static Path getResourcePath(String signature58) {
+        String sig58First2Chars = signature58.substring(0, 2).toLowerCase();
+        String sig58Next2Chars = signature58.substring(2, 4).toLowerCase();
+        return Paths.get(Settings.getInstance().getDataPath(), sig58First2Chars, sig58Next2Chars, signature58);
+    }
+
+    /**
+     * Load the index from disk
+     *
+     * @return true if the index file existed and was loaded, false if it needs rebuilding
+     */
+    public synchronized boolean load() {
+        Path path = getIndexFilePath();
+        if (!Files.exists(path)) {
+            return false;
+        }
+
+        try {
+            String jsonString = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+            JSONArray jsonArray = new JSONArray(jsonString);
+
+            this.clear();
+            for (int i = 0; i < jsonArray.length(); i++) {
+                JSONObject json = jsonArray.getJSONObject(i);
+                String name = json.has("name") ? json.getString("name") : null;
+                this.put(new HostedResource(json.getString("signature"), name, json.getLong("size"),
+                        json.getLong("lastAccessed"), json.getLong("hits")));
+            }
+
+        } catch (IOException | JSONException e) {
+            LOGGER.info("Unable to load hosted data index: {}", e.getMessage());
+            return false;
+        }
+
+        this.loaded = true;
+        this.dirty.set(false);
+        LOGGER.info("Loaded hosted data index with {} resources", this.resources.size());
+        return true;
+    }
+
+    public synchronized void save() throws IOException {
+        JSONArray jsonArray = new JSONArray();
+        for (HostedResource resource : this.resources.values()) {
+            JSONObject json = new JSONObject();
+            json.put("signature", resource.signature58);
+            if (resource.name != null) {
+                json.put("name", resource.name);
+            }
+            json.put("size", resource.getSize());
+            json.put("lastAccessed", resource.lastAccessed);
+            json.put("hits", resource.getHitCount());
+            jsonArray.put(json);
+        }
+
+        // Write to a temporary file first, so that a crash can't leave a truncated index behind
+        Path path = getIndexFilePath();
+        Files.createDirectories(path.getParent());
+        Path tempPath = Paths.get(path + ".tmp");
+        Files.write(tempPath, jsonArray.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+
+        this.dirty.set(false);
+    }
+
+    public void saveIfDirty() {
+        if (!this.loaded || !this.dirty.get()) {
+            return;
+        }
+        try {
+            this.save();
+        } catch (IOException e) {
+            LOGGER.info("Unable to save hosted data index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuild the index by walking the data directory.
+     * Warning: this reads every hosted directory, so should only be called when the
+     * index file is missing, or as part of the scheduled directory size recalculation.
+     * Access statistics for resources that are still present are retained.
+     *
+     * @return total size of files in the data directory, found during the same walk, or -1 if it couldn't be walked
+     */
+    public synchronized long rebuild() {
+        Path dataPath = Paths.get(Settings.getInstance().getDataPath());
+        Path tempPath = Paths.get(Settings.getInstance().getTempDataPath());
+        String tempPathString = tempPath.toAbsolutePath().toString();
+        long now = System.currentTimeMillis();
+
+        LOGGER.info("Rebuilding hosted data index...");
+
+        // Disk usage of each hosted directory, in the order they were found
+        Map<Path, long[]> hostedSizes = new LinkedHashMap<>();
+        long[] totalSize = new long[1];
+
+        if (dataPath.toFile().exists()) {
+            try {
+                Files.walkFileTree(dataPath, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                        // Hosted directories are within 3 levels of the data directory, with names greater than 32 characters in length
+                        // Also exclude the _temp and _misc paths if present
+                        if (dataPath.relativize(dir).getNameCount() <= 3
+                                && !dir.toAbsolutePath().toString().contains(tempPathString)
+                                && !dir.toString().contains("_misc")
+                                && dir.getFileName().toString().length() > 32) {
+                            hostedSizes.put(dir, new long[1]);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (!attrs.isRegularFile()) {
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        totalSize[0] += attrs.size();
+
+                        long[] hostedSize = hostedSizes.get(file.getParent());
+                        if (hostedSize != null) {
+                            hostedSize[0] += FilesystemUtils.getDiskUsage(file.toFile());
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        // Files can be deleted while we're walking
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                LOGGER.info("Unable to walk through hosted data: {}", e.getMessage());
+                return -1L;
+            }
+        }
+
+        List<HostedResource> rebuilt = new ArrayList<>();
+        for (Map.Entry<Path, long[]> entry : hostedSizes.entrySet()) {
+            String signature58 = entry.getKey().getFileName().toString();
+            long size = entry.getValue()[0];
+            if (size == 0) {
+                continue;
+            }
+
+            HostedResource existing = this.resources.get(signature58);
+            if (existing != null) {
+                rebuilt.add(new HostedResource(signature58, existing.name, size, existing.lastAccessed, existing.getHitCount()));
+            }
+            else {
+                rebuilt.add(new HostedResource(signature58, null, size, now, 0));
+            }
+        }
+
+        this.clear();
+        rebuilt.forEach(this::put);
+
+        this.loaded = true;
+        this.dirty.set(true);
+        LOGGER.info("Rebuilt hosted data index with {} resources", this.resources.size());
+
+        return totalSize[0];
+    }
+
+
+    /* Updates */
+
+    private void put(HostedResource resource) {
+        this.resources.put(resource.signature58, resource);
+        if (resource.name != null) {
+            this.signaturesByName.computeIfAbsent(resource.name.toLowerCase(Locale.ROOT), k -> ConcurrentHashMap.newKeySet())
+                    .add(resource.signature58);
+        }
+    }
+
+    private void clear() {
+        this.resources.clear();
+        this.signaturesByName.clear();
+    }
+
+    /**
+     * Add bytes written to a resource's directory, creating its entry if needed
+     */
+    public void addBytes(byte[] signature, long bytes) {
+        if (signature == null || bytes <= 0) {
+            return;
+        }
+        String signature58 = Base58.encode(signature);
+        HostedResource resource = this.resources.computeIfAbsent(signature58,
+                k -> new HostedResource(k, null, 0, System.currentTimeMillis(), 0));
+        resource.size.addAndGet(bytes);
+        this.dirty.set(true);
+    }
+
+    /**
+     * Subtract bytes deleted from a resource's directory, removing its entry once empty
+     */
+    public void subtractBytes(byte[] signature, long bytes) {
+        if (signature == null) {
+            return;
+        }
+        this.subtractBytes(Base58.encode(signature), bytes);
+    }
+
+    public void subtractBytes(String signature58, long bytes) {
+        if (signature58 == null || bytes <= 0) {
+            return;
+        }
+        HostedResource resource = this.resources.get(signature58);
+        if (resource == null) {
+            return;
+        }
+        if (resource.size.addAndGet(-bytes) <= 0) {
+            this.remove(signature58);
+        }
+        this.dirty.set(true);
+    }
+
+    public void remove(String signature58) {
+        HostedResource resource = this.resources.remove(signature58);
+        if (resource != null && resource.name != null) {
+            Set<String> signatures = this.signaturesByName.get(resource.name.toLowerCase(Locale.ROOT));
+            if (signatures != null) {
+                signatures.remove(signature58);
+            }
+        }
+        this.dirty.set(true);
+    }
+
+    public void setName(byte[] signature, String name) {
+        if (signature == null || name == null) {
+            return;
+        }
+        HostedResource resource = this.resources.get(Base58.encode(signature));
+        if (resource == null || name.equals(resource.name)) {
+            return;
+        }
+        resource.name = name;
+        this.put(resource);
+        this.dirty.set(true);
+    }
+
+    /**
+     * Record a hit on a hosted resource, e.g. when a chunk is served to a peer.
+     * Resources that aren't hosted are ignored.
+     */
+    public void recordAccess(byte[] signature) {
+        if (signature == null) {
+            return;
+        }
+        this.recordAccess(Base58.encode(signature));
+    }
+
+    public void recordAccess(String signature58) {
+        HostedResource resource = this.resources.get(signature58);
+        if (resource == null) {
+            return;
+        }
+        resource.lastAccessed = System.currentTimeMillis();
+        resource.hitCount.incrementAndGet();
+        this.dirty.set(true);
+    }
+
+    /**
+     * Record a hit on all hosted resources published by a name, e.g. when rendering a website.
+     * Built resources can consist of several layers, so all of them are kept warm.
+     */
+    public void recordNameAccess(String name) {
+        if (name == null) {
+            return;
+        }
+        Set<String> signatures = this.signaturesByName.get(name.toLowerCase(Locale.ROOT));
+        if (signatures == null) {
+            return;
+        }
+        for (String signature58 : signatures) {
+            this.recordAccess(signature58);
+        }
+    }
+
+
+    /* Queries */
+
+    public boolean isLoaded() {
+        return this.loaded;
+    }
+
+    public int size() {
+        return this.resources.size();
+    }
+
+    public HostedResource get(String signature58) {
+        return this.resources.get(signature58);
+    }
+
+    public long getTotalSize() {
+        return this.resources.values().stream().mapToLong(HostedResource::getSize).sum();
+    }
+
+    public List<Path> getHostedPaths() {
+        return this.resources.values().stream()
+                .map(HostedResource::getPath)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Return hosted resources in the order in which they should be evicted.
+     *
+     * Resources from followed names are always placed after all others. Within each group,
+     * resources are ordered by effective access time (see HostedResource.getEffectiveAccessTime()),
+     * and resources that became cold at around the same time are evicted largest first,
+     * so that fewer deletions are needed to get back under the storage limit.
+     * Resources accessed within minIdleTime are excluded entirely.
+     *
+     * @param now - the current time
+     * @param minIdleTime - the minimum time since the last access before a resource can be evicted
+     * @return list of eviction candidates, most evictable first
+     */
+    public List<HostedResource> getEvictionCandidates(long now, long minIdleTime) {
+        Map<Boolean, List<HostedResource>> partitioned = this.resources.values().stream()
+                .filter(resource -> now - resource.lastAccessed > minIdleTime)
+                .collect(Collectors.partitioningBy(resource -> resource.name != null && ListUtils.isFollowingName(resource.name)));
+
+        List<HostedResource> candidates = new ArrayList<>(partitioned.get(false));
+        candidates.sort(EVICTION_ORDER);
+
+        List<HostedResource> followed = new ArrayList<>(partitioned.get(true));
+        followed.sort(EVICTION_ORDER);
+        candidates.addAll(followed);
+
+        return candidates;
+    }
+
+}
@@ -124,6 +124,9 @@ public class ArbitraryDataStorageManager extends Thread {
                     if (this.shouldCalculateDirectorySize(now)) {
                         this.getDataDirectorySize(now);
                     }
+
+                    // Persist hit counts and sizes so that eviction decisions survive a restart
+                    ArbitraryDataHostedIndex.getInstance().saveIfDirty();
                 } catch (Exception e) {
                     LOGGER.error(e.getMessage(), e);
                 }
@@ -140,6 +143,8 @@ public class ArbitraryDataStorageManager extends Thread {
         this.interrupt();
         instance = null;
 
+        ArbitraryDataHostedIndex.getInstance().saveIfDirty();
+
         if (scheduledTask != null) {
             scheduledTask.cancel(false);
         }
@@ -396,12 +401,18 @@ public class ArbitraryDataStorageManager extends Thread {
     }
 
     /**
-     * Warning: this method will walk through the entire data directory
+     * Returns the paths in the hosted data index, once it has been loaded or built.
+     * Warning: until then, this method will walk through the entire data directory
      * Do not call it too frequently as it could create high disk load
      * in environments with a large amount of hosted data.
      * @return a list of paths that are being hosted
      */
     public List<Path> findAllHostedPaths() {
+        ArbitraryDataHostedIndex hostedIndex = ArbitraryDataHostedIndex.getInstance();
+        if (hostedIndex.isLoaded()) {
+            return hostedIndex.getHostedPaths();
+        }
+
         Path dataPath = Paths.get(Settings.getInstance().getDataPath());
         Path tempPath = Paths.get(Settings.getInstance().getTempDataPath());
 
@@ -468,15 +479,22 @@ public class ArbitraryDataStorageManager extends Thread {
 
             // if it is time to recalculate
             if( this.recalculate.getAndSet(false) ) {
-                calculateDirectorySize();
+                // rebuilding the hosted data index walks the data directory, so gives us its size too
+                calculateDirectorySize(ArbitraryDataHostedIndex.getInstance().rebuild());
             }
             // if this is the first size check, then look at data file first
             else if( lastDirectorySizeCheck == 0 ) {
+                // load the hosted data index, or build it if this is the first run
+                long dataDirectorySize = -1L;
+                if (!ArbitraryDataHostedIndex.getInstance().load()) {
+                    dataDirectorySize = ArbitraryDataHostedIndex.getInstance().rebuild();
+                }
+
                 long totalSize = LongFileHandler.readLongWithDefault(DATA_FILE, -1L);
 
                 // if there is no data file, then calculate
                 if( totalSize < 0) {
-                    calculateDirectorySize();
+                    calculateDirectorySize(dataDirectorySize);
                 }
                 // if there is data, then set it to the estimator
                 else {
@@ -518,12 +536,22 @@ public class ArbitraryDataStorageManager extends Thread {
      * Calculate directory size and set it to the estimator.
      */
     public static void calculateDirectorySize() {
+        calculateDirectorySize(-1L);
+    }
+
+    /**
+     * @param dataDirectorySize size of data directory if already known, e.g. from rebuilding hosted data index, otherwise -1
+     */
+    private static void calculateDirectorySize(long dataDirectorySize) {
         long totalSize = 0;
 
-        // Calculate total size of data directory
-        LOGGER.info("Calculating data directory size...");
+        // Calculate total size of data directory, unless we already know it
         Path dataDirectoryPath = Paths.get(Settings.getInstance().getDataPath());
-        if (dataDirectoryPath.toFile().exists()) {
+        if (dataDirectorySize >= 0) {
+            totalSize += dataDirectorySize;
+        }
+        else if (dataDirectoryPath.toFile().exists()) {
+            LOGGER.info("Calculating data directory size...");
             totalSize += FileUtils.sizeOfDirectory(dataDirectoryPath.toFile());
         }
 
@@ -554,15 +582,23 @@ public class ArbitraryDataStorageManager extends Thread {
     }
 
     public boolean isStorageSpaceAvailable(double threshold) {
+        return this.getBytesOverThreshold(threshold) < 0;
+    }
+
+    /**
+     * Use the running total from the size estimator rather than the last periodic check,
+     * so that deletions are taken into account immediately.
+     *
+     * @param threshold - fraction of the storage capacity
+     * @return bytes used beyond the threshold (negative if below it), or 0 if capacity is unknown
+     */
+    public long getBytesOverThreshold(double threshold) {
         if (!this.isStorageCapacityCalculated()) {
-            return false;
+            return 0L;
         }
 
         long maxStorageCapacity = (long)((double)this.storageCapacity * threshold);
-        if (this.totalDirectorySize >= maxStorageCapacity) {
-            return false;
-        }
-        return true;
+        return ArbitraryDataFolderSizeEstimator.getInstance().get() - maxStorageCapacity;
     }
 
     public long storageCapacityPerName(double threshold) {
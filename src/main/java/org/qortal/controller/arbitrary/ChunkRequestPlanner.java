@@ -0,0 +1,195 @@
+package org.qortal.controller.arbitrary;
+
+import org.qortal.network.helper.PeerDownloadSpeedTracker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Plans which peers to request a resource's chunks from, within each peer's request window.
+ * <p>
+ * Each chunk goes to whichever of its candidate peers is expected to deliver it soonest, going by the peer's
+ * requests in flight (including those just planned) and its delivery rate. As request windows are capped by
+ * bandwidth-delay product, in-flight requests end up spread across peers in proportion to their bandwidth.
+ * Chunks whose earlier requests have timed out are planned first.
+ * <p>
+ * Near the end of a download, chunks still in flight are also requested from a second peer, once the first is
+ * taking longer than the second's usual round trip, so a single slow peer can't hold up completion.
+ * <p>
+ * Has no network dependencies, so it can also be driven by simulations, with <tt>P</tt> standing in for peers.
+ *
+ * @see PeerDownloadSpeedTracker
+ */
+public class ChunkRequestPlanner<P> {
+
+    /** Duplicate requests for chunks in flight once this few chunks of a resource remain */
+    public static final int TAIL_CHUNK_COUNT = 8;
+    /** Maximum peers asked for the same chunk at once */
+    public static final int MAX_REQUESTS_PER_CHUNK = 2;
+
+    /** A chunk still to be received */
+    public static class ChunkState<P> {
+        private final String hash58;
+        private final List<P> candidatePeers;
+        private final int requestsInFlight;
+        private final long lastRequestTime;
+        private final boolean isRetry;
+
+        /**
+         * @param hash58 chunk's hash
+         * @param candidatePeers peers we could ask for chunk, i.e. that have it, and we haven't asked already
+         * @param requestsInFlight number of peers we're currently waiting on for this chunk
+         * @param lastRequestTime when chunk was most recently requested, if <tt>requestsInFlight</tt> is non-zero
+         * @param isRetry true if chunk was requested before, but none of those requests are in flight now
+         */
+        public ChunkState(String hash58, List<P> candidatePeers, int requestsInFlight, long lastRequestTime, boolean isRetry) {
+            this.hash58 = hash58;
+            this.candidatePeers = candidatePeers;
+            this.requestsInFlight = requestsInFlight;
+            this.lastRequestTime = lastRequestTime;
+            this.isRetry = isRetry;
+        }
+
+        public String getHash58() {
+            return this.hash58;
+        }
+
+        public boolean isRetry() {
+            return this.isRetry;
+        }
+    }
+
+    /** A planned request */
+    public static class Assignment<P> {
+        private final ChunkState<P> chunk;
+        private final P peer;
+        private final boolean isDuplicate;
+
+        private Assignment(ChunkState<P> chunk, P peer, boolean isDuplicate) {
+            this.chunk = chunk;
+            this.peer = peer;
+            this.isDuplicate = isDuplicate;
+        }
+
+        public ChunkState<P> getChunk() {
+            return this.chunk;
+        }
+
+        public String getHash58() {
+            return this.chunk.hash58;
+        }
+
+        public P getPeer() {
+            return this.peer;
+        }
+
+        /** Returns true if chunk is already in flight from another peer. */
+        public boolean isDuplicate() {
+            return this.isDuplicate;
+        }
+    }
+
+    private final Function<P, PeerDownloadSpeedTracker> trackers;
+    private final ToIntFunction<P> queueSpace;
+
+    // Per plan
+    private final Map<P, Integer> availableWindows = new HashMap<>();
+    private final Map<P, Integer> plannedCounts = new HashMap<>();
+
+    /**
+     * @param trackers supplies each peer's download speed tracker
+     * @param queueSpace supplies any further limit on number of requests we can queue for each peer right now
+     */
+    public ChunkRequestPlanner(Function<P, PeerDownloadSpeedTracker> trackers, ToIntFunction<P> queueSpace) {
+        this.trackers = trackers;
+        this.queueSpace = queueSpace;
+    }
+
+    /**
+     * Returns requests to make now for a resource's <tt>chunks</tt>.
+     * <p>
+     * Planned requests count against peers' windows for the rest of this planner's use,
+     * so one planner can be used for several resources in turn.
+     *
+     * @param now current time, in the same timebase as peers' trackers
+     * @param chunks resource's chunks still to be received
+     * @param remainingChunkCount number of resource's chunks still to be received, including any not in <tt>chunks</tt>
+     */
+    public List<Assignment<P>> plan(long now, Collection<ChunkState<P>> chunks, int remainingChunkCount) {
+        List<Assignment<P>> assignments = new ArrayList<>();
+
+        // Chunks not in flight, with retries first
+        List<ChunkState<P>> chunksToRequest = chunks.stream()
+                .filter(chunk -> chunk.requestsInFlight == 0)
+                .sorted(Comparator.comparing(chunk -> !chunk.isRetry))
+                .collect(Collectors.toList());
+
+        for (ChunkState<P> chunk : chunksToRequest) {
+            P peer = this.choosePeer(now, chunk, false);
+            if (peer != null)
+                assignments.add(new Assignment<>(chunk, peer, false));
+        }
+
+        if (remainingChunkCount > TAIL_CHUNK_COUNT)
+            return assignments;
+
+        // Tail of download: longest waiting chunks first
+        List<ChunkState<P>> chunksToDuplicate = chunks.stream()
+                .filter(chunk -> chunk.requestsInFlight > 0 && chunk.requestsInFlight < MAX_REQUESTS_PER_CHUNK)
+                .sorted(Comparator.comparingLong(chunk -> chunk.lastRequestTime))
+                .collect(Collectors.toList());
+
+        for (ChunkState<P> chunk : chunksToDuplicate) {
+            P peer = this.choosePeer(now, chunk, true);
+            if (peer != null)
+                assignments.add(new Assignment<>(chunk, peer, true));
+        }
+
+        return assignments;
+    }
+
+    /** Returns candidate peer, with space in its window, expected to deliver chunk soonest, or null. */
+    private P choosePeer(long now, ChunkState<P> chunk, boolean isDuplicate) {
+        P bestPeer = null;
+        double bestDeliveryTime = Double.MAX_VALUE;
+
+        for (P peer : chunk.candidatePeers) {
+            PeerDownloadSpeedTracker tracker = this.trackers.apply(peer);
+
+            int availableWindow = this.availableWindows.computeIfAbsent(peer,
+                    p -> Math.min(tracker.getAvailableRequestWindow(now), this.queueSpace.applyAsInt(p)));
+            if (availableWindow <= 0)
+                continue;
+
+            // Only duplicate if existing request is taking longer than this peer usually would
+            if (isDuplicate) {
+                Long roundTripTime = tracker.getSmoothedRoundTripTime();
+                if (roundTripTime != null && now - chunk.lastRequestTime < roundTripTime)
+                    continue;
+            }
+
+            int queuedChunks = tracker.getInFlightCount() + this.plannedCounts.getOrDefault(peer, 0);
+            double deliveryTime = (queuedChunks + 1) / tracker.getDeliveryRate();
+
+            if (deliveryTime < bestDeliveryTime) {
+                bestPeer = peer;
+                bestDeliveryTime = deliveryTime;
+            }
+        }
+
+        if (bestPeer != null) {
+            this.availableWindows.merge(bestPeer, -1, Integer::sum);
+            this.plannedCounts.merge(bestPeer, 1, Integer::sum);
+        }
+
+        return bestPeer;
+    }
+
+}
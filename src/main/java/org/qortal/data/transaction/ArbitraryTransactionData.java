@@ -146,6 +146,7 @@ public class ArbitraryTransactionData extends TransactionData {
 
 	public void setNonce(int nonce) {
 		this.nonce = nonce;
+		this.clearSerializedBytes();
 	}
 
 	public int getSize() {
@@ -178,6 +179,7 @@ public class ArbitraryTransactionData extends TransactionData {
 
 	public void setData(byte[] data) {
 		this.data = data;
+		this.clearSerializedBytes();
 	}
 
 	public DataType getDataType() {
@@ -186,6 +188,7 @@ public class ArbitraryTransactionData extends TransactionData {
 
 	public void setDataType(DataType dataType) {
 		this.dataType = dataType;
+		this.clearSerializedBytes();
 	}
 
 	public byte[] getMetadataHash() {
@@ -194,6 +197,7 @@ public class ArbitraryTransactionData extends TransactionData {
 
 	public void setMetadataHash(byte[] metadataHash) {
 		this.metadataHash = metadataHash;
+		this.clearSerializedBytes();
 	}
 
 	public List<PaymentData> getPayments() {
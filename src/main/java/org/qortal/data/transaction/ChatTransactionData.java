@@ -74,6 +74,7 @@ public class ChatTransactionData extends TransactionData {
 
 	public void setNonce(int nonce) {
 		this.nonce = nonce;
+		this.clearSerializedBytes();
 	}
 
 	public String getRecipient() {
@@ -86,6 +87,7 @@ public class ChatTransactionData extends TransactionData {
 
 	public void setChatReference(byte[] chatReference) {
 		this.chatReference = chatReference;
+		this.clearSerializedBytes();
 	}
 
 	public byte[] getData() {
@@ -80,6 +80,7 @@ public class MessageTransactionData extends TransactionData {
 
 	public void setNonce(int nonce) {
 		this.nonce = nonce;
+		this.clearSerializedBytes();
 	}
 
 	public String getRecipient() {
@@ -59,6 +59,7 @@ public class PresenceTransactionData extends TransactionData {
 
 	public void setNonce(int nonce) {
 		this.nonce = nonce;
+		this.clearSerializedBytes();
 	}
 
 	public PresenceType getPresenceType() {
@@ -50,6 +50,7 @@ public class PublicizeTransactionData extends TransactionData {
 
 	public void setNonce(int nonce) {
 		this.nonce = nonce;
+		this.clearSerializedBytes();
 	}
 
 }
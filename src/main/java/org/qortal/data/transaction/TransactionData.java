@@ -88,6 +88,11 @@ public abstract class TransactionData {
 	@Schema(accessMode = AccessMode.READ_ONLY, hidden = true, description = "block height when transaction approved")
 	protected Integer approvalHeight;
 
+	// Serialized form of signed transaction, cached by TransactionTransformer
+	@XmlTransient
+	@Schema(hidden = true)
+	private transient volatile byte[] serializedBytes;
+
 	// Constructors
 
 	// For JAXB
@@ -127,6 +132,7 @@ public abstract class TransactionData {
 
 	public void setTimestamp(long timestamp) {
 		this.timestamp = timestamp;
+		this.serializedBytes = null;
 	}
 
 	public int getTxGroupId() {
@@ -139,6 +145,7 @@ public abstract class TransactionData {
 
 	public void setTxGroupId(int txGroupId) {
 		this.txGroupId = txGroupId;
+		this.serializedBytes = null;
 	}
 
 	public byte[] getReference() {
@@ -147,6 +154,7 @@ public abstract class TransactionData {
 
 	public void setReference(byte[] reference) {
 		this.reference = reference;
+		this.serializedBytes = null;
 	}
 
 	public byte[] getCreatorPublicKey() {
@@ -156,6 +164,7 @@ public abstract class TransactionData {
 	@XmlTransient
 	public void setCreatorPublicKey(byte[] creatorPublicKey) {
 		this.creatorPublicKey = creatorPublicKey;
+		this.serializedBytes = null;
 	}
 
 	public Long getFee() {
@@ -164,6 +173,7 @@ public abstract class TransactionData {
 
 	public void setFee(Long fee) {
 		this.fee = fee;
+		this.serializedBytes = null;
 	}
 
 	public byte[] getSignature() {
@@ -172,6 +182,7 @@ public abstract class TransactionData {
 
 	public void setSignature(byte[] signature) {
 		this.signature = signature;
+		this.serializedBytes = null;
 	}
 
 	public Integer getBlockHeight() {
@@ -210,6 +221,21 @@ public abstract class TransactionData {
 		this.approvalHeight = approvalHeight;
 	}
 
+	/** Returns cached serialized form, or null if not yet serialized or if a serialized property has since changed. */
+	public byte[] getSerializedBytes() {
+		return this.serializedBytes;
+	}
+
+	@XmlTransient
+	public void setSerializedBytes(byte[] serializedBytes) {
+		this.serializedBytes = serializedBytes;
+	}
+
+	/** Discards cached serialized form. Subclasses call this when changing a serialized property. */
+	protected void clearSerializedBytes() {
+		this.serializedBytes = null;
+	}
+
 	// JAXB special
 
 	@XmlElement(name = "creatorAddress")
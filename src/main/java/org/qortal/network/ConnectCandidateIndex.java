@@ -0,0 +1,267 @@
+package org.qortal.network;
+
+import com.google.common.net.InetAddresses;
+import org.qortal.data.network.PeerData;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Known peers, kept ordered as candidates for outbound connections.
+ * <p>
+ * Peers whose last connection attempt failed wait in a backoff set, ordered by when their backoff expires,
+ * and return to the candidate set once it has. Candidates are ordered by:
+ * <ol>
+ *     <li>whether their last connection attempt failed - peers that didn't fail come first</li>
+ *     <li>score - most recent successful connection, less a penalty for last measured ping</li>
+ *     <li>last connection attempt - least recently attempted first</li>
+ *     <li>random tie-break, so peers never connected to are tried in random order</li>
+ * </ol>
+ * Candidates are re-indexed whenever their connection attempt, connection or ping details change, so choosing
+ * the next candidate doesn't need to examine every known peer.
+ * <p>
+ * Reasons to skip a candidate that depend on current connections, like being already connected, are checked by
+ * the caller when choosing. To spread connections across networks, candidates in a subnet we're already connected
+ * to are passed over in favour of the next candidate from a different subnet, within a limit.
+ * <p>
+ * Thread-safe.
+ */
+public class ConnectCandidateIndex {
+
+    /** Score penalty per millisecond of ping, i.e. 1ms faster ping is worth connecting 1s more recently */
+    private static final long LATENCY_PENALTY_PER_MS = 1000L; // ms
+    /** Maximum candidates to pass over for being in an already connected subnet */
+    private static final int MAX_SUBNET_SKIPS = 16;
+
+    private static class Entry {
+        private final PeerData peerData;
+        private final String subnet;
+        private final long tieBreak;
+        private final long id;
+
+        private boolean lastAttemptFailed;
+        private long score;
+        private long lastAttempted;
+        private long backoffExpiry;
+        private Long latency;
+
+        private Entry(PeerData peerData, long tieBreak, long id) {
+            this.peerData = peerData;
+            this.subnet = getSubnet(peerData.getAddress());
+            this.tieBreak = tieBreak;
+            this.id = id;
+        }
+
+        /** Takes a copy of peer's details, as entry must not change while in a sorted set. */
+        private void refresh(long backoffPeriod) {
+            Long lastAttempted = this.peerData.getLastAttempted();
+            Long lastConnected = this.peerData.getLastConnected();
+
+            this.lastAttemptFailed = lastAttempted != null && (lastConnected == null || lastConnected < lastAttempted);
+            this.lastAttempted = lastAttempted != null ? lastAttempted : 0L;
+            this.backoffExpiry = this.lastAttemptFailed ? lastAttempted + backoffPeriod : 0L;
+
+            this.score = lastConnected != null ? lastConnected : 0L;
+            if (this.latency != null)
+                this.score -= this.latency * LATENCY_PENALTY_PER_MS;
+        }
+    }
+
+    private static final Comparator<Entry> CANDIDATE_ORDER = Comparator
+            .comparing((Entry entry) -> entry.lastAttemptFailed)
+            .thenComparing(entry -> entry.score, Comparator.reverseOrder())
+            .thenComparingLong(entry -> entry.lastAttempted)
+            .thenComparingLong(entry -> entry.tieBreak)
+            .thenComparingLong(entry -> entry.id);
+
+    private static final Comparator<Entry> BACKOFF_ORDER = Comparator
+            .comparingLong((Entry entry) -> entry.backoffExpiry)
+            .thenComparingLong(entry -> entry.id);
+
+    private final long backoffPeriod;
+    private final Random random = new Random();
+    private long nextId = 0;
+
+    /** All entries, keyed by case-insensitive host and port */
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final NavigableSet<Entry> candidates = new TreeSet<>(CANDIDATE_ORDER);
+    private final NavigableSet<Entry> backoffs = new TreeSet<>(BACKOFF_ORDER);
+
+    /**
+     * @param backoffPeriod how long, in milliseconds, to wait before retrying a peer after a failed connection attempt
+     */
+    public ConnectCandidateIndex(long backoffPeriod) {
+        this.backoffPeriod = backoffPeriod;
+    }
+
+    /** Adds peer, returning false if a peer with the same address is already known. */
+    public synchronized boolean add(PeerData peerData) {
+        String key = keyOf(peerData.getAddress());
+        if (this.entries.containsKey(key))
+            return false;
+
+        Entry entry = new Entry(peerData, this.random.nextLong(), this.nextId++);
+        this.entries.put(key, entry);
+        this.insert(entry);
+
+        return true;
+    }
+
+    public synchronized void addAll(Collection<PeerData> peers) {
+        for (PeerData peerData : peers)
+            this.add(peerData);
+    }
+
+    public synchronized boolean contains(PeerAddress peerAddress) {
+        return this.entries.containsKey(keyOf(peerAddress));
+    }
+
+    /** Returns known peer with same address, or null. */
+    public synchronized PeerData get(PeerAddress peerAddress) {
+        Entry entry = this.entries.get(keyOf(peerAddress));
+        return entry != null ? entry.peerData : null;
+    }
+
+    public synchronized void remove(PeerAddress peerAddress) {
+        Entry entry = this.entries.remove(keyOf(peerAddress));
+        if (entry != null)
+            this.extract(entry);
+    }
+
+    public synchronized void clear() {
+        this.entries.clear();
+        this.candidates.clear();
+        this.backoffs.clear();
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Re-indexes peer after its connection attempt or connection timestamps have changed.
+     * <p>
+     * Does nothing if <tt>peerData</tt> isn't the instance that was added, e.g. for inbound peers.
+     */
+    public synchronized void update(PeerData peerData) {
+        Entry entry = this.entries.get(keyOf(peerData.getAddress()));
+        if (entry == null || entry.peerData != peerData)
+            return;
+
+        this.extract(entry);
+        this.insert(entry);
+    }
+
+    /** Re-indexes peer using its latest ping, in milliseconds. */
+    public synchronized void updateLatency(PeerData peerData, long latency) {
+        Entry entry = this.entries.get(keyOf(peerData.getAddress()));
+        if (entry == null || entry.peerData != peerData)
+            return;
+
+        this.extract(entry);
+        entry.latency = latency;
+        this.insert(entry);
+    }
+
+    /**
+     * Returns best candidate for connection, or null if none.
+     * <p>
+     * Does not change candidate: caller is expected to set its last attempted timestamp and then call {@link #update(PeerData)}.
+     *
+     * @param now current timestamp, used to end expired backoffs
+     * @param isExcluded candidates to skip, e.g. those already connected
+     * @param connectedSubnets subnets, as returned by {@link #getSubnet(PeerAddress)}, to avoid if possible
+     */
+    public synchronized PeerData getCandidate(long now, Predicate<PeerData> isExcluded, Set<String> connectedSubnets) {
+        this.endExpiredBackoffs(now);
+
+        PeerData fallback = null;
+        int subnetSkips = 0;
+
+        for (Entry entry : this.candidates) {
+            if (isExcluded.test(entry.peerData))
+                continue;
+
+            if (!connectedSubnets.contains(entry.subnet))
+                return entry.peerData;
+
+            if (fallback == null)
+                fallback = entry.peerData;
+
+            if (++subnetSkips >= MAX_SUBNET_SKIPS)
+                break;
+        }
+
+        return fallback;
+    }
+
+    /**
+     * Returns peer still in backoff whose backoff ends soonest, or null if none.
+     * <p>
+     * For use when we have no connections at all, as being isolated is worse than retrying a peer that might still be down.
+     */
+    public synchronized PeerData getBackoffCandidate(long now, Predicate<PeerData> isExcluded) {
+        this.endExpiredBackoffs(now);
+
+        for (Entry entry : this.backoffs)
+            if (!isExcluded.test(entry.peerData))
+                return entry.peerData;
+
+        return null;
+    }
+
+    /** Returns number of candidates not in backoff, for diagnostics. */
+    public synchronized int getCandidateCount(long now) {
+        this.endExpiredBackoffs(now);
+
+        return this.candidates.size();
+    }
+
+    /**
+     * Returns the subnet that peer's address is in, for spreading connections: /16 for IPv4 and /32 for IPv6.
+     * Hostnames aren't resolved, so are treated as their own subnet.
+     */
+    public static String getSubnet(PeerAddress peerAddress) {
+        String host = peerAddress.getHost();
+
+        // Strip brackets from IPv6 literal
+        if (host.startsWith("[") && host.endsWith("]"))
+            host = host.substring(1, host.length() - 1);
+
+        if (!InetAddresses.isInetAddress(host))
+            return host.toLowerCase();
+
+        InetAddress address = InetAddresses.forString(host);
+        byte[] addressBytes = address.getAddress();
+        int prefixLength = address instanceof Inet4Address ? 2 : 4;
+
+        return (address instanceof Inet4Address ? "4:" : "6:") + Arrays.toString(Arrays.copyOf(addressBytes, prefixLength));
+    }
+
+    private void insert(Entry entry) {
+        entry.refresh(this.backoffPeriod);
+
+        if (entry.lastAttemptFailed)
+            this.backoffs.add(entry);
+        else
+            this.candidates.add(entry);
+    }
+
+    private void extract(Entry entry) {
+        if (!this.candidates.remove(entry))
+            this.backoffs.remove(entry);
+    }
+
+    /** Moves peers whose backoff has expired to candidates. */
+    private void endExpiredBackoffs(long now) {
+        while (!this.backoffs.isEmpty() && this.backoffs.first().backoffExpiry <= now)
+            this.candidates.add(this.backoffs.pollFirst());
+    }
+
+    private static String keyOf(PeerAddress peerAddress) {
+        return peerAddress.getHost().toLowerCase() + ":" + peerAddress.getPort();
+    }
+
+}
@@ -0,0 +1,100 @@
+package org.qortal.network;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Serialized message whose payload ends with the contents of a file, e.g. a QDN chunk.
+ * <p>
+ * Header bytes, up to and including any payload fields before the file's contents, are written from memory.
+ * File contents are then streamed straight to the socket using {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+ * so they're never copied onto the heap.
+ * <p>
+ * Written in several calls to {@link #writeTo(SocketChannel)} when the socket's send buffer fills.
+ * File is opened on first write, and closed once written, or by {@link #close()}.
+ */
+public class FileRegionFrame implements Closeable {
+
+    private final ByteBuffer header;
+    private final Path path;
+    private final long length;
+
+    private FileChannel fileChannel;
+    private long position = 0;
+
+    /**
+     * @param header serialized message, up to the start of file contents
+     * @param path file to append to header
+     * @param length number of bytes, from the start of file, to append
+     */
+    public FileRegionFrame(byte[] header, Path path, long length) {
+        this.header = ByteBuffer.wrap(header);
+        this.path = path;
+        this.length = length;
+    }
+
+    /** Returns total length of frame, in bytes. */
+    public long size() {
+        return this.header.capacity() + this.length;
+    }
+
+    /** Returns number of bytes still to be written. */
+    public long remaining() {
+        return this.header.remaining() + (this.length - this.position);
+    }
+
+    public boolean hasRemaining() {
+        return this.remaining() > 0;
+    }
+
+    /**
+     * Writes as much of the frame as socket will accept without blocking.
+     *
+     * @return number of bytes written, possibly zero
+     * @throws IOException if socket or file can't be used, or if file is shorter than expected
+     */
+    public long writeTo(SocketChannel socketChannel) throws IOException {
+        long bytesWritten = 0;
+
+        if (this.header.hasRemaining()) {
+            bytesWritten += socketChannel.write(this.header);
+
+            if (this.header.hasRemaining())
+                return bytesWritten;
+        }
+
+        if (this.position < this.length) {
+            if (this.fileChannel == null)
+                this.fileChannel = FileChannel.open(this.path, StandardOpenOption.READ);
+
+            long bytesTransferred = this.fileChannel.transferTo(this.position, this.length - this.position, socketChannel);
+
+            // Nothing transferred could just mean socket is busy, unless we've run out of file
+            if (bytesTransferred == 0 && this.position >= this.fileChannel.size())
+                throw new EOFException(String.format("File %s truncated to %d bytes, expected %d", this.path, this.position, this.length));
+
+            this.position += bytesTransferred;
+            bytesWritten += bytesTransferred;
+
+            if (this.position >= this.length)
+                this.close();
+        }
+
+        return bytesWritten;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.fileChannel != null) {
+            this.fileChannel.close();
+            this.fileChannel = null;
+        }
+    }
+
+}
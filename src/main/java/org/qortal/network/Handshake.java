@@ -7,6 +7,7 @@ import org.qortal.controller.Controller;
 import org.qortal.crypto.Crypto;
 import org.qortal.crypto.MemoryPoW;
 import org.qortal.network.message.*;
+import org.qortal.network.helper.PeerCapabilities;
 import org.qortal.settings.Settings;
 import org.qortal.utils.DaemonThreadFactory;
 import org.qortal.utils.NTP;
@@ -613,6 +614,8 @@ public enum Handshake {
 			} else {
 				capabilities.put("QDN", 0);
 			}
+			if (Settings.getInstance().isCrc32cMessageChecksumsEnabled())
+				capabilities.put(PeerCapabilities.CRC32C_CHECKSUMS, true);
 		}
 
 		Message helloMessage = useHelloV2
@@ -0,0 +1,303 @@
+package org.qortal.network;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.qortal.network.message.MessageType;
+import org.qortal.settings.Settings;
+import org.qortal.utils.ExecuteProduceConsume.Task;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Runs incoming message tasks on a shared executor, via a bounded queue per message type.
+ * <p>
+ * Up to <tt>maxRunners</tt> executor threads take turns at handling queued messages. Each message type has:
+ * <ul>
+ *     <li><b>queue size:</b> when full, the oldest queued message of that type is shed, as its sender is the most
+ *     likely to have given up waiting for a reply, and newer gossip generally supersedes older</li>
+ *     <li><b>concurrency limit:</b> maximum number of messages of that type being handled at once</li>
+ *     <li><b>weight:</b> share of handler turns when several types have messages queued</li>
+ * </ul>
+ * Turns are shared between types using stride scheduling, so a flood of one type, e.g. transaction gossip,
+ * can't starve other types, e.g. block summary requests from syncing peers.
+ * <p>
+ * Queue and handling times are recorded per message type, see {@link #getStats()}.
+ *
+ * @see Settings#getMaxThreadsForMessageType(MessageType)
+ * @see Settings#getMessageQueueWeight(MessageType)
+ * @see Settings#getMessageQueueSize(MessageType)
+ */
+public class MessageDispatcher {
+    private static final Logger LOGGER = LogManager.getLogger(MessageDispatcher.class);
+
+    /** Virtual time a type with weight 1 uses per turn */
+    private static final long STRIDE = 1 << 20;
+
+    /** Queue size, concurrency limit and weight for one message type */
+    public static class TypePolicy {
+        private final int queueSize;
+        private final int concurrencyLimit;
+        private final int weight;
+
+        public TypePolicy(int queueSize, int concurrencyLimit, int weight) {
+            this.queueSize = Math.max(1, queueSize);
+            this.concurrencyLimit = Math.max(1, concurrencyLimit);
+            this.weight = Math.max(1, weight);
+        }
+
+        /** Returns policy for <tt>messageType</tt> from settings. */
+        public static TypePolicy fromSettings(MessageType messageType) {
+            Settings settings = Settings.getInstance();
+            Integer maxThreads = settings.getMaxThreadsForMessageType(messageType);
+
+            return new TypePolicy(settings.getMessageQueueSize(messageType),
+                    maxThreads != null ? maxThreads : Integer.MAX_VALUE,
+                    settings.getMessageQueueWeight(messageType));
+        }
+    }
+
+    /** Per message type statistics, for diagnostics */
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class MessageTypeStats {
+        public MessageType messageType;
+        public int queued;
+        public int inFlight;
+        public long handled;
+        public long shed;
+        /** Milliseconds */
+        public long averageQueueTime;
+        /** Milliseconds */
+        public long maxQueueTime;
+        /** Milliseconds */
+        public long averageHandlingTime;
+        /** Milliseconds */
+        public long maxHandlingTime;
+
+        protected MessageTypeStats() {
+        }
+    }
+
+    private static class QueuedTask {
+        private final Task task;
+        private final Runnable onShed;
+        private final long queuedWhen;
+
+        private QueuedTask(Task task, Runnable onShed, long queuedWhen) {
+            this.task = task;
+            this.onShed = onShed;
+            this.queuedWhen = queuedWhen;
+        }
+    }
+
+    private static class TypeQueue {
+        private final TypePolicy policy;
+        private final ArrayDeque<QueuedTask> tasks = new ArrayDeque<>();
+        private int inFlight = 0;
+        /** Virtual time of this type's next turn */
+        private long pass = 0;
+
+        // Stats
+        private long handledCount = 0;
+        private long shedCount = 0;
+        private long totalQueueNanos = 0;
+        private long maxQueueNanos = 0;
+        private long totalHandlingNanos = 0;
+        private long maxHandlingNanos = 0;
+
+        private TypeQueue(TypePolicy policy) {
+            this.policy = policy;
+        }
+
+        private boolean isReady() {
+            return !this.tasks.isEmpty() && this.inFlight < this.policy.concurrencyLimit;
+        }
+    }
+
+    private final String name;
+    private final Executor executor;
+    private final int maxRunners;
+    private final Function<MessageType, TypePolicy> policies;
+
+    // All below guarded by this
+    private final Map<MessageType, TypeQueue> typeQueues = new EnumMap<>(MessageType.class);
+    private int runnerCount = 0;
+    /** Virtual time of most recent turn */
+    private long virtualTime = 0;
+    private boolean isShutdown = false;
+
+    /**
+     * @param name used in logging
+     * @param executor runs handler threads, usually shared with other tasks
+     * @param maxRunners maximum number of executor threads handling messages at once
+     * @param policies supplies each message type's queue size, concurrency limit and weight, when first used
+     */
+    public MessageDispatcher(String name, Executor executor, int maxRunners, Function<MessageType, TypePolicy> policies) {
+        this.name = name;
+        this.executor = executor;
+        this.maxRunners = Math.max(1, maxRunners);
+        this.policies = policies;
+    }
+
+    /**
+     * Queues <tt>task</tt> to handle a message of <tt>messageType</tt>.
+     *
+     * @param onShed called, if not null, if task is discarded without being run
+     */
+    public void submit(MessageType messageType, Task task, Runnable onShed) {
+        QueuedTask shedTask = null;
+        boolean startRunner = false;
+
+        synchronized (this) {
+            if (this.isShutdown) {
+                shedTask = new QueuedTask(task, onShed, 0L);
+            } else {
+                TypeQueue typeQueue = this.typeQueues.computeIfAbsent(messageType, type -> new TypeQueue(this.policies.apply(type)));
+
+                // Idle types don't accumulate turns
+                if (typeQueue.tasks.isEmpty())
+                    typeQueue.pass = Math.max(typeQueue.pass, this.virtualTime);
+
+                if (typeQueue.tasks.size() >= typeQueue.policy.queueSize) {
+                    shedTask = typeQueue.tasks.pollFirst();
+                    typeQueue.shedCount++;
+                }
+
+                typeQueue.tasks.addLast(new QueuedTask(task, onShed, System.nanoTime()));
+
+                if (this.runnerCount < this.maxRunners && typeQueue.isReady()) {
+                    this.runnerCount++;
+                    startRunner = true;
+                }
+            }
+        }
+
+        if (shedTask != null) {
+            LOGGER.debug("{} shed queued {} message task {}", this.name, messageType.name(), shedTask.task.getName());
+
+            if (shedTask.onShed != null)
+                shedTask.onShed.run();
+        }
+
+        if (startRunner)
+            this.startRunner();
+    }
+
+    /** Returns number of messages queued, of all types. */
+    public synchronized int getQueuedCount() {
+        return this.typeQueues.values().stream().mapToInt(typeQueue -> typeQueue.tasks.size()).sum();
+    }
+
+    /** Returns stats for each message type received so far. */
+    public synchronized List<MessageTypeStats> getStats() {
+        List<MessageTypeStats> allStats = new ArrayList<>(this.typeQueues.size());
+
+        for (Map.Entry<MessageType, TypeQueue> entry : this.typeQueues.entrySet()) {
+            TypeQueue typeQueue = entry.getValue();
+
+            MessageTypeStats stats = new MessageTypeStats();
+            stats.messageType = entry.getKey();
+            stats.queued = typeQueue.tasks.size();
+            stats.inFlight = typeQueue.inFlight;
+            stats.handled = typeQueue.handledCount;
+            stats.shed = typeQueue.shedCount;
+
+            if (typeQueue.handledCount > 0) {
+                stats.averageQueueTime = TimeUnit.NANOSECONDS.toMillis(typeQueue.totalQueueNanos / typeQueue.handledCount);
+                stats.averageHandlingTime = TimeUnit.NANOSECONDS.toMillis(typeQueue.totalHandlingNanos / typeQueue.handledCount);
+            }
+            stats.maxQueueTime = TimeUnit.NANOSECONDS.toMillis(typeQueue.maxQueueNanos);
+            stats.maxHandlingTime = TimeUnit.NANOSECONDS.toMillis(typeQueue.maxHandlingNanos);
+
+            allStats.add(stats);
+        }
+
+        return allStats;
+    }
+
+    /** Discards queued tasks, without calling their shed callbacks. Tasks already running are left to finish. */
+    public synchronized void shutdown() {
+        this.isShutdown = true;
+
+        for (TypeQueue typeQueue : this.typeQueues.values())
+            typeQueue.tasks.clear();
+    }
+
+    private void startRunner() {
+        try {
+            this.executor.execute(this::runTasks);
+        } catch (RejectedExecutionException e) {
+            // Executor is saturated or shutting down. Queued tasks will be picked up by other runners, or next submit().
+            synchronized (this) {
+                this.runnerCount--;
+            }
+
+            LOGGER.debug("{} executor rejected message handler", this.name);
+        }
+    }
+
+    private void runTasks() {
+        while (true) {
+            TypeQueue typeQueue;
+            QueuedTask queuedTask;
+
+            synchronized (this) {
+                typeQueue = this.nextTypeQueue();
+
+                if (typeQueue == null || Thread.currentThread().isInterrupted()) {
+                    this.runnerCount--;
+                    return;
+                }
+
+                queuedTask = typeQueue.tasks.pollFirst();
+                typeQueue.inFlight++;
+
+                this.virtualTime = typeQueue.pass;
+                typeQueue.pass += STRIDE / typeQueue.policy.weight;
+
+                long queueNanos = System.nanoTime() - queuedTask.queuedWhen;
+                typeQueue.totalQueueNanos += queueNanos;
+                typeQueue.maxQueueNanos = Math.max(typeQueue.maxQueueNanos, queueNanos);
+            }
+
+            long startTime = System.nanoTime();
+            try {
+                queuedTask.task.perform();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                LOGGER.warn("{} message task {} threw: {}", this.name, queuedTask.task.getName(), e.getMessage(), e);
+            } finally {
+                long handlingNanos = System.nanoTime() - startTime;
+
+                synchronized (this) {
+                    typeQueue.inFlight--;
+                    typeQueue.handledCount++;
+                    typeQueue.totalHandlingNanos += handlingNanos;
+                    typeQueue.maxHandlingNanos = Math.max(typeQueue.maxHandlingNanos, handlingNanos);
+                }
+            }
+        }
+    }
+
+    /** Returns type with queued tasks, below its concurrency limit, whose turn is next, or null. Must be called holding lock. */
+    private TypeQueue nextTypeQueue() {
+        TypeQueue nextTypeQueue = null;
+
+        for (TypeQueue typeQueue : this.typeQueues.values())
+            if (typeQueue.isReady() && (nextTypeQueue == null || typeQueue.pass < nextTypeQueue.pass))
+                nextTypeQueue = typeQueue;
+
+        return nextTypeQueue;
+    }
+
+}
@@ -116,6 +116,8 @@ public class Network {
     private long nextDisconnectionCheck = 0L;
 
     private final List<PeerData> allKnownPeers = new ArrayList<>();
+    /** Known peers ordered as outbound connection candidates, kept in step with <tt>allKnownPeers</tt> */
+    private final ConnectCandidateIndex connectCandidates = new ConnectCandidateIndex(CONNECT_FAILURE_BACKOFF);
     
     /**
      * Track whether the last peer selected was from the backoff list.
@@ -244,6 +246,8 @@ public class Network {
     private Thread schedulerThread;
     /** Message handling only (MessageTask, PingTask, ConnectTask, BroadcastTask). Never does I/O. */
     private ExecutorService networkWorkerPool;
+    /** Queues incoming messages per message type, in front of networkWorkerPool */
+    private final MessageDispatcher messageDispatcher;
     /** Scheduler state: when to try next connect. */
     private final AtomicLong nextConnectTaskTimestamp = new AtomicLong(0L);
     /** Scheduler state: when to do next broadcast. */
@@ -286,6 +290,9 @@ public class Network {
                 NETWORK_EPC_KEEPALIVE, TimeUnit.SECONDS,
                 new SynchronousQueue<Runnable>(),
                 new NamedThreadFactory("Network-Worker", Settings.getInstance().getNetworkThreadPriority()));
+
+        this.messageDispatcher = new MessageDispatcher("Network", this.networkWorkerPool,
+                Settings.getInstance().getNetworkMessageHandlerThreads(), MessageDispatcher.TypePolicy::fromSettings);
     }
 
     public void start() throws IOException, DataException {
@@ -352,6 +359,8 @@ public class Network {
                 }
             }
 
+            this.connectCandidates.addAll(this.allKnownPeers);
+
             LOGGER.debug("starting with {} known peers", this.allKnownPeers.size());
         }
 
@@ -398,6 +407,10 @@ public class Network {
         return this.threadsPerMessageType;
     }
 
+    public List<MessageDispatcher.MessageTypeStats> getMessageDispatchStats() {
+        return this.messageDispatcher.getStats();
+    }
+
     public int getTotalThreadCount() {
         synchronized (this) {
             return this.totalThreadCount;
@@ -774,12 +787,7 @@ public class Network {
             PeerData peerData = null;
 
             // Reuse an existing PeerData instance if it's already in the known peers list
-            synchronized (this.allKnownPeers) {
-                peerData = this.allKnownPeers.stream()
-                        .filter(knownPeerData -> knownPeerData.getAddress().equals(peerAddress))
-                        .findFirst()
-                        .orElse(null);
-            }
+            peerData = this.connectCandidates.get(peerAddress);
 
             if (peerData == null) {
                 // Not a known peer, so we need to create one
@@ -1049,29 +1057,11 @@ public class Network {
                     }
                 }
             }
-            // Drain read peers' pending messages to worker pool (outside selector lock to avoid deadlock)
+            // Drain read peers' pending messages to per-message-type queues (outside selector lock to avoid deadlock)
             for (Peer peer : readPeersThisRound) {
-                ExecuteProduceConsume.Task task;
-                while ((task = peer.getMessageTask(Peer.NETWORK)) != null) {
-                    final ExecuteProduceConsume.Task t = task;
-                    try {
-                        networkWorkerPool.execute(() -> {
-                            try {
-                                t.perform();
-                            } catch (InterruptedException e) {
-                                Thread.currentThread().interrupt();
-                            } catch (Exception e) {
-                                LOGGER.warn("Worker task threw: {}", e.getMessage(), e);
-                            }
-                        });
-                    } catch (java.util.concurrent.RejectedExecutionException e) {
-                        // Worker pool is full or shutting down - log and continue
-                        // Message will be lost but system remains stable
-                        LOGGER.warn("[{}] Worker pool rejected message task (pool full or shutting down)", 
-                                peer.getPeerConnectionId());
-                        break; // Stop draining this peer's queue
-                    }
-                }
+                MessageTask task;
+                while ((task = peer.getMessageTask(Peer.NETWORK)) != null)
+                    this.messageDispatcher.submit(task.getMessageType(), task, task::onShed);
             }
             // Sleep unconditionally at the end of every cycle to cap the loop at ~1000
             // iterations/sec. Without this, OP_WRITE staying armed (level-triggered EPOLLOUT)
@@ -1435,160 +1425,71 @@ public class Network {
     }
 
     private Peer getConnectablePeer(final Long now) throws InterruptedException {
-        // Find an address to connect to
-        List<PeerData> peers = this.getAllKnownPeers();
+        LOGGER.trace("ConnectedPeers: {}, Handshaked Peers: {} ", immutableConnectedPeers.size(), immutableHandshakedPeers.size());
 
-        try (Repository repository = RepositoryManager.tryRepository()) {
-            if (repository == null) {
-                LOGGER.warn("Unable to get repository connection : Network.getConnectablePeer()");
-                return null;
-            }
-        
-            LOGGER.trace("ConnectedPeers: {}, Handshaked Peers: {} ", immutableConnectedPeers.size(), immutableHandshakedPeers.size());
-            
-            // Check if we have any handshaked peers (inbound or outbound) - are we isolated?
-            boolean hasNoPeers = getImmutableHandshakedPeers().isEmpty();
-                
-            // Don't consider peers with recent connection failures
-            final long lastAttemptedThreshold = now - CONNECT_FAILURE_BACKOFF;
-            
-            // Save peers in backoff for later consideration if we're isolated
-            List<PeerData> peersInBackoff = new ArrayList<>();
-            if (hasNoPeers) {
-                peersInBackoff = peers.stream()
-                    .filter(peerData -> peerData.getLastAttempted() != null
-                        && (peerData.getLastConnected() == null
-                        || peerData.getLastConnected() < peerData.getLastAttempted())
-                        && peerData.getLastAttempted() > lastAttemptedThreshold)
-                    .collect(Collectors.toList());
-            }
-            
-            peers.removeIf(peerData -> peerData.getLastAttempted() != null
-                && (peerData.getLastConnected() == null
-                || peerData.getLastConnected() < peerData.getLastAttempted())
-                && peerData.getLastAttempted() > lastAttemptedThreshold);
+        // Check if we have any handshaked peers (inbound or outbound) - are we isolated?
+        boolean hasNoPeers = getImmutableHandshakedPeers().isEmpty();
 
-            // Don't consider peers that we know loop back to ourself
-            synchronized (this.selfPeers) {
-                peers.removeIf(isSelfPeer);
-            }
+        List<PeerAddress> selfAddresses = this.getSelfPeers();
+        List<Peer> connectedPeers = this.getImmutableConnectedPeers();
 
-            // Don't consider already connected peers (simple address match)
-            peers.removeIf(isConnectedPeer);
+        Map<String, Peer> connectedPeersByNodeId = new HashMap<>();
+        Set<String> connectedSubnets = new HashSet<>();
+        for (Peer peer : connectedPeers) {
+            if (peer.getPeersNodeId() != null)
+                connectedPeersByNodeId.putIfAbsent(peer.getPeersNodeId(), peer);
 
-            // CRITICAL FIX: Don't consider peers we're already connected to by nodeId
-            // This handles cases where we have an inbound connection on an ephemeral port
-            // but allKnownPeers has the listen port (common with peer discovery/persistence)
-            // EXCEPTION: For fixed peers, allow connection attempts if existing connection is wrong direction
-            peers.removeIf(peerData -> {
-                String peerAddress = peerData.getAddress().toString();
-                CachedNodeIdInfo cachedInfo = addressToNodeIdCache.get(peerAddress);
-                
-                if (cachedInfo != null) {
-                    // We know this peer's nodeId - check if already connected
-                    String candidateNodeId = cachedInfo.nodeId;
-                    Peer existingPeer = this.getImmutableConnectedPeers().stream()
-                            .filter(peer -> peer.getPeersNodeId() != null 
-                                   && peer.getPeersNodeId().equals(candidateNodeId))
-                            .findFirst()
-                            .orElse(null);
-                    
-                    if (existingPeer != null) {
-                        // Already connected to this nodeId - but check if direction is correct
-                        // For fixed peers, if direction is wrong, allow reconnection attempt
-                        if (isFixedPeer(peerData.getAddress())) {
-                            String ourNodeId = this.getOurNodeId();
-                            if (ourNodeId != null) {
-                                boolean weShouldBeOutbound = ourNodeId.compareTo(candidateNodeId) < 0;
-                                boolean directionCorrect = (existingPeer.isOutbound() == weShouldBeOutbound);
-                                
-                                if (!directionCorrect) {
-                                    // Fixed peer connected in wrong direction - allow connection attempt
-                                    // The direction enforcement will disconnect the wrong one
-                                    LOGGER.debug("Fixed peer {} (nodeId {}) connected in wrong direction, allowing outbound attempt",
-                                            peerAddress, candidateNodeId.substring(0, 8));
-                                    return false; // Don't filter out
-                                }
-                            }
-                        }
-                        
-                        LOGGER.debug("Skipping peer {} (nodeId {}) - already connected",
-                                peerAddress, candidateNodeId.substring(0, 8));
-                        return true;
-                    }
-                }
-                
-                return false;
-            });
+            connectedSubnets.add(ConnectCandidateIndex.getSubnet(peer.getPeerData().getAddress()));
+        }
 
-            // Don't consider peers with recent direction mismatches
-            // CRITICAL: Never skip fixed network peers (prevents isolation)
-            peers.removeIf(peerData -> {
-                // Fixed peers are always allowed, even if they have direction mismatches
-                if (isFixedPeer(peerData.getAddress())) {
-                    return false;
-                }
-                
-                // Try to resolve address to nodeId using cache
-                String peerAddress = peerData.getAddress().toString();
-                CachedNodeIdInfo cachedInfo = addressToNodeIdCache.get(peerAddress);
-                
-                if (cachedInfo != null) {
-                    // We know this peer's nodeId from previous handshake
-                    boolean shouldSkip = hasRecentDirectionMismatch(cachedInfo.nodeId);
-                    if (shouldSkip) {
-                        LOGGER.debug("Skipping peer {} (nodeId {}) due to recent direction mismatch",
-                                peerAddress, cachedInfo.nodeId.substring(0, 8));
-                    }
-                    return shouldSkip;
-                }
-                
-                // No cached nodeId - can't determine if mismatch, allow connection
-                // (First-time connection, or cache expired)
-                return false;
-            });
-
-            // Don't consider already connected peers (resolved address match)
-            // Disabled because this might be too slow if we end up waiting a long time for hostnames to resolve via DNS
-            // Which is ok because duplicate connections to the same peer are handled during handshaking
-            // peers.removeIf(isResolvedAsConnectedPeer);
-
-            // If we have no available peers but have peers in backoff, and we're isolated, retry them
-            // Being isolated is worse than retrying a peer that might still be down
-            if (peers.isEmpty() && !peersInBackoff.isEmpty() && hasNoPeers) {
-                // Filter out self and connected from backoff list
-                synchronized (this.selfPeers) {
-                    peersInBackoff.removeIf(isSelfPeer);
-                }
-                peersInBackoff.removeIf(isConnectedPeer);
-                
-                if (!peersInBackoff.isEmpty()) {
-                    peers = peersInBackoff;
-                    lastPeerWasFromBackoff = true;
-                    LOGGER.debug("No connected peers - retrying {} peer(s) in backoff period", peers.size());
-                }
-            } else {
-                lastPeerWasFromBackoff = false;
+        // Don't consider peers that we know loop back to ourself, or already connected peers (simple address match)
+        Predicate<PeerData> isSelfOrConnectedPeer = peerData -> {
+            PeerAddress peerAddress = peerData.getAddress();
+            return selfAddresses.stream().anyMatch(selfPeer -> selfPeer.equals(peerAddress))
+                    || connectedPeers.stream().anyMatch(peer -> peer.getPeerData().getAddress().equals(peerAddress));
+        };
+
+        // Also don't consider peers we're already connected to by nodeId, or with recent direction mismatches.
+        // Peers with recent connection failures are in backoff so aren't candidates.
+        // Resolved address matches aren't checked as waiting for hostnames to resolve via DNS might be too slow,
+        // which is ok because duplicate connections to the same peer are handled during handshaking.
+        Predicate<PeerData> isExcluded = isSelfOrConnectedPeer
+                .or(peerData -> this.isConnectedByNodeId(peerData, connectedPeersByNodeId))
+                .or(this::isInDirectionMismatchBackoff);
+
+        PeerData peerData = this.connectCandidates.getCandidate(now, isExcluded, connectedSubnets);
+
+        // If we have no available peers but have peers in backoff, and we're isolated, retry them
+        // Being isolated is worse than retrying a peer that might still be down
+        if (peerData == null && hasNoPeers) {
+            peerData = this.connectCandidates.getBackoffCandidate(now, isSelfOrConnectedPeer);
+            lastPeerWasFromBackoff = peerData != null;
+
+            if (peerData != null)
+                LOGGER.debug("No connected peers - retrying peer {} in backoff period", peerData.getAddress());
+        } else {
+            lastPeerWasFromBackoff = false;
+        }
+
+        if (peerData == null) {
+            if (hasNoPeers) {
+                LOGGER.debug("Isolated node: No connectable peers found!");
             }
+            return null;
+        }
 
-            // Any left?
-            if (peers.isEmpty()) {
-                if (hasNoPeers) {
-                    LOGGER.debug("Isolated node: No connectable peers found!");
-                }
+        try (Repository repository = RepositoryManager.tryRepository()) {
+            if (repository == null) {
+                LOGGER.warn("Unable to get repository connection : Network.getConnectablePeer()");
                 return null;
             }
 
-            // Pick random peer
-            int peerIndex = new Random().nextInt(peers.size());
-
-            // Pick candidate
-            PeerData peerData = peers.get(peerIndex);
             Peer newPeer = new Peer(peerData, Peer.NETWORK);
             newPeer.setIsDataPeer(false);
 
             // Update connection attempt info
             peerData.setLastAttempted(now);
+            this.connectCandidates.update(peerData);
             synchronized (this.allKnownPeers) {
                 repository.getNetworkRepository().save(peerData);
                 repository.saveChanges();
@@ -1599,8 +1500,74 @@ public class Network {
             LOGGER.error("Repository issue while finding a connectable peer", e);
             return null;
         }
+    }
 
-        
+    /**
+     * Returns true if we're already connected to candidate's nodeId, e.g. via an inbound connection
+     * on an ephemeral port while known peers has the listen port (common with peer discovery/persistence).
+     * <p>
+     * Exception: fixed peers connected in the wrong direction are allowed a connection attempt.
+     */
+    private boolean isConnectedByNodeId(PeerData peerData, Map<String, Peer> connectedPeersByNodeId) {
+        String peerAddress = peerData.getAddress().toString();
+        CachedNodeIdInfo cachedInfo = addressToNodeIdCache.get(peerAddress);
+        if (cachedInfo == null)
+            return false;
+
+        // We know this peer's nodeId - check if already connected
+        String candidateNodeId = cachedInfo.nodeId;
+        Peer existingPeer = connectedPeersByNodeId.get(candidateNodeId);
+        if (existingPeer == null)
+            return false;
+
+        // Already connected to this nodeId - but check if direction is correct
+        // For fixed peers, if direction is wrong, allow reconnection attempt
+        if (isFixedPeer(peerData.getAddress())) {
+            String ourNodeId = this.getOurNodeId();
+            if (ourNodeId != null) {
+                boolean weShouldBeOutbound = ourNodeId.compareTo(candidateNodeId) < 0;
+                boolean directionCorrect = (existingPeer.isOutbound() == weShouldBeOutbound);
+
+                if (!directionCorrect) {
+                    // Fixed peer connected in wrong direction - allow connection attempt
+                    // The direction enforcement will disconnect the wrong one
+                    LOGGER.debug("Fixed peer {} (nodeId {}) connected in wrong direction, allowing outbound attempt",
+                            peerAddress, candidateNodeId.substring(0, 8));
+                    return false;
+                }
+            }
+        }
+
+        LOGGER.debug("Skipping peer {} (nodeId {}) - already connected",
+                peerAddress, candidateNodeId.substring(0, 8));
+        return true;
+    }
+
+    /**
+     * Returns true if candidate had a recent direction mismatch.
+     * <p>
+     * CRITICAL: Never skips fixed network peers (prevents isolation)
+     */
+    private boolean isInDirectionMismatchBackoff(PeerData peerData) {
+        if (isFixedPeer(peerData.getAddress()))
+            return false;
+
+        // Try to resolve address to nodeId using cache
+        String peerAddress = peerData.getAddress().toString();
+        CachedNodeIdInfo cachedInfo = addressToNodeIdCache.get(peerAddress);
+
+        // No cached nodeId - can't determine if mismatch, allow connection
+        // (First-time connection, or cache expired)
+        if (cachedInfo == null)
+            return false;
+
+        // We know this peer's nodeId from previous handshake
+        boolean shouldSkip = hasRecentDirectionMismatch(cachedInfo.nodeId);
+        if (shouldSkip) {
+            LOGGER.debug("Skipping peer {} (nodeId {}) due to recent direction mismatch",
+                    peerAddress, cachedInfo.nodeId.substring(0, 8));
+        }
+        return shouldSkip;
     }
 
     public boolean connectPeer(Peer newPeer) throws InterruptedException {
@@ -1839,6 +1806,11 @@ public class Network {
 
         this.removeConnectedPeer(peer);
         this.channelsPendingWrite.remove(peer.getSocketChannel());
+
+        // Prefer faster peers when choosing future outbound connections
+        Long lastPing = peer.getLastPing();
+        if (peer.isOutbound() && lastPing != null)
+            this.connectCandidates.updateLatency(peer.getPeerData(), lastPing);
         
         // Clean up PeerSendManager immediately when peer disconnects
         // This prevents messages from being queued to a dead manager
@@ -1886,16 +1858,7 @@ public class Network {
 
         // Should be non-handshaking messages from now on
 
-        // Limit threads per message type and discard if there are already too many
-        Integer maxThreadsForMessageType = Settings.getInstance().getMaxThreadsForMessageType(message.getType());
-        if (maxThreadsForMessageType != null) {
-            Integer threadCount = threadsPerMessageType.get(message.getType());
-            if (threadCount != null && threadCount >= maxThreadsForMessageType) {
-                LOGGER.warn("Discarding {} message from peer {} (threads for type: {} >= limit {})",
-                        message.getType().name(), peer, threadCount, maxThreadsForMessageType);
-                return;
-            }
-        }
+        // Threads per message type are limited by messageDispatcher, which queues messages until there's room
 
         // Warn if necessary
         if (threadCountPerMessageTypeWarningThreshold != null) {
@@ -2280,6 +2243,7 @@ public class Network {
 
         // Make a note that we've successfully completed handshake (and when)
         peer.getPeerData().setLastConnected(NTP.getTime());
+        this.connectCandidates.update(peer.getPeerData());
 
         // Push to NetworkData for ALL peers (inbound or outbound)
         // We want to discover all QDN-capable peers regardless of who initiated Network connection
@@ -2593,6 +2557,7 @@ public class Network {
 
         synchronized (this.allKnownPeers) {
             numDeleted = this.allKnownPeers.removeIf(peerData -> peerData.getAddress().equals(peerAddress));
+            this.connectCandidates.remove(peerAddress);
         }
 
         disconnectPeer(peerAddress);
@@ -2606,6 +2571,7 @@ public class Network {
         synchronized (this.allKnownPeers) {
             numDeleted = this.allKnownPeers.size();
             this.allKnownPeers.clear();
+            this.connectCandidates.clear();
         }
 
         for (Peer peer : this.getImmutableConnectedPeers()) {
@@ -2767,6 +2733,7 @@ public class Network {
             for (PeerData peerData : peers) {
                 // Delete from known peer cache too
                 this.allKnownPeers.remove(peerData);
+                this.connectCandidates.remove(peerData.getAddress());
             }
         }
     }
@@ -2812,19 +2779,17 @@ public class Network {
         }
         List<PeerData> newPeers;
         synchronized (this.allKnownPeers) {
-            for (PeerData knownPeerData : this.allKnownPeers) {
-                // Filter out duplicates, without resolving via DNS
-                Predicate<PeerAddress> isKnownAddress = peerAddress -> knownPeerData.getAddress().equals(peerAddress);
-                peerAddresses.removeIf(isKnownAddress);
-            }
+            // Filter out duplicates, without resolving via DNS
+            peerAddresses.removeIf(this.connectCandidates::contains);
 
             if (peerAddresses.isEmpty()) {
                 return false;
             }
 
-            // Add leftover peer addresses to known peers list
+            // Add leftover peer addresses to known peers list, skipping any repeated addresses
             newPeers = peerAddresses.stream()
                     .map(peerAddress -> new PeerData(peerAddress, addedWhen, addedBy))
+                    .filter(this.connectCandidates::add)
                     .collect(Collectors.toList());
 
             this.allKnownPeers.addAll(newPeers);
@@ -2914,6 +2879,7 @@ public class Network {
             }
         }
         // Shutdown worker pool
+        this.messageDispatcher.shutdown();
         try {
             this.networkWorkerPool.shutdown();
             if (!this.networkWorkerPool.awaitTermination(5000, TimeUnit.MILLISECONDS)) {
@@ -113,6 +113,7 @@ public class Peer {
 
 	private final BlockingQueue<Message> sendQueue;
 	private ByteBuffer outputBuffer;
+	private FileRegionFrame outputFrame;
 	private String outputMessageType;
 	private int outputMessageId;
 	private long lastWriteProgressTime = System.currentTimeMillis();
@@ -304,6 +305,12 @@ public class Peer {
         return peerCapabilities == null ? null : peerCapabilities.getCapability(capName);
     }
 
+    /** Returns true if both we and peer offer CRC32C checksums, for messages whose payload carries its own hash. */
+    public boolean canUseCrc32cChecksums() {
+        return Settings.getInstance().isCrc32cMessageChecksumsEnabled()
+                && Boolean.TRUE.equals(this.getPeerCapability(PeerCapabilities.CRC32C_CHECKSUMS));
+    }
+
     public Handshake getHandshakeStatus() {
         synchronized (this.handshakingLock) {
             return this.handshakeStatus;
@@ -321,7 +328,7 @@ public class Peer {
      */
     public boolean hasStuckWrite(long timeoutMs) {
         // Only consider it stuck if there's actually data waiting to be written
-        if (this.outputBuffer == null || !this.outputBuffer.hasRemaining()) {
+        if (this.getOutputRemaining() == 0) {
             return false;
         }
         
@@ -334,16 +341,23 @@ public class Peer {
      * Useful for logging.
      */
     public String getStuckWriteInfo() {
-        if (this.outputBuffer == null) {
+        if (this.outputBuffer == null && this.outputFrame == null) {
             return null;
         }
         return String.format("type=%s, id=%d, remaining=%d bytes, stalled for %dms",
                 this.outputMessageType, 
                 this.outputMessageId,
-                this.outputBuffer.remaining(),
+                this.getOutputRemaining(),
                 System.currentTimeMillis() - this.lastWriteProgressTime);
     }
 
+    private long getOutputRemaining() {
+        if (this.outputFrame != null)
+            return this.outputFrame.remaining();
+
+        return this.outputBuffer != null ? this.outputBuffer.remaining() : 0;
+    }
+
     protected void setHandshakeStatus(Handshake handshakeStatus) {
         synchronized (this.handshakingLock) {
             // Never downgrade from COMPLETED - tryCompleteHandshake() is the sole authority for completion
@@ -821,7 +835,7 @@ public class Peer {
                     ByteBuffer readOnlyBuffer = this.byteBuffer.asReadOnlyBuffer().flip();
                     try {
                         long deserializeStart = System.nanoTime();
-                        message = Message.fromByteBuffer(readOnlyBuffer);
+                        message = Message.fromByteBuffer(readOnlyBuffer, this.canUseCrc32cChecksums());
                         long deserializeTime = System.nanoTime() - deserializeStart;
                         
                         // Log deserialization timing for ARBITRARY_DATA_FILE messages
@@ -919,13 +933,13 @@ public class Peer {
         // It is the responsibility of ChannelWriteTask's producer to produce only one call to writeChannel() at a time
 
         while (true) {
-            if (this.outputBuffer != null) {
+            if (this.outputBuffer != null || this.outputFrame != null) {
                 LOGGER.trace("[{}] outputBuffer not null - skipping message processing, continuing to write existing buffer: type={}, id={}, remaining={} bytes",
                         this.peerConnectionId, this.outputMessageType, this.outputMessageId, 
-                        this.outputBuffer != null ? this.outputBuffer.remaining() : 0);
+                        this.getOutputRemaining());
             }
             // If output byte buffer is null, fetch next message from queue (if any)
-            while (this.outputBuffer == null) {
+            while (this.outputBuffer == null && this.outputFrame == null) {
                 // Simple poll from bounded queue
                 Message message = this.sendQueue.poll();
 
@@ -936,17 +950,25 @@ public class Peer {
 
                 try {
                     long startTime = System.nanoTime();
-                    byte[] messageBytes = message.toBytes();
+                    long messageLength;
+                    if (message instanceof FileRegionMessageWrapper) {
+                        // Streamed from disk by socket writes below
+                        this.outputFrame = ((FileRegionMessageWrapper) message).frame;
+                        messageLength = this.outputFrame.size();
+                    } else {
+                        byte[] messageBytes = message.toBytes(this.canUseCrc32cChecksums());
+                        this.outputBuffer = ByteBuffer.wrap(messageBytes);
+                        messageLength = messageBytes.length;
+                    }
                     long toBytesTime = System.nanoTime() - startTime;
                     
-                    this.outputBuffer = ByteBuffer.wrap(messageBytes);
                     this.outputMessageType = message.getType().name();
                     this.outputMessageId = message.getId();
                     
                     // Log only for ARBITRARY_DATA_FILE messages (actual chunks)
                     if (message.getType() == MessageType.ARBITRARY_DATA_FILE) {
                         LOGGER.trace("RESPONDER NETWORK PREP: messageId={}, toBytes={}ms, bytes={}, peer={}", 
-                            this.outputMessageId, toBytesTime / 1_000_000.0, messageBytes.length, this);
+                            this.outputMessageId, toBytesTime / 1_000_000.0, messageLength, this);
                     }
                     // Decrement prefetch count when message is processed (data loaded, ready to send)
                     // This allows new prefetches to start as messages are consumed
@@ -961,7 +983,7 @@ public class Peer {
                     MessageStats messageStats = this.sentMessageStats.computeIfAbsent(message.getType(), k -> new MessageStats());
                     // Ideally these two operations would be atomic, we could pack 'count' in top X bits of the 64-bit long, but meh
                     messageStats.count.increment();
-                    messageStats.totalBytes.add(this.outputBuffer.limit());
+                    messageStats.totalBytes.add(messageLength);
                 } catch (MessageException e) {
                     // Something went wrong converting message to bytes, so discard but allow another round
                     // Still decrement prefetch count if it was an ArbitraryDataFileMessage
@@ -973,16 +995,18 @@ public class Peer {
                 }
             }
 
-            // If output byte buffer is not null, send from that
+            // If output byte buffer (or frame) is not null, send from that
             long socketWriteStart = System.nanoTime();
-            int bytesWritten = this.socketChannel.write(outputBuffer);
+            long bytesWritten = this.outputFrame != null
+                    ? this.outputFrame.writeTo(this.socketChannel)
+                    : this.socketChannel.write(outputBuffer);
             long socketWriteTime = System.nanoTime() - socketWriteStart;
             
             // Log for ARBITRARY_DATA_FILE
             if (this.outputMessageType != null && this.outputMessageType.equals("ARBITRARY_DATA_FILE")) {
                 LOGGER.trace("RESPONDER NETWORK WRITE: messageId={}, socketWrite={}ms, wroteBytes={}, remainingBytes={}", 
                     this.outputMessageId, socketWriteTime / 1_000_000.0, bytesWritten, 
-                    this.outputBuffer != null ? this.outputBuffer.remaining() : 0);
+                    this.getOutputRemaining());
             }
 
             // Update progress tracking
@@ -998,15 +1022,16 @@ public class Peer {
           
 
             // If we then exhaust the byte buffer, set it to null (otherwise loop and try to send more)
-            if (!this.outputBuffer.hasRemaining()) {
+            if (this.getOutputRemaining() == 0) {
                 this.outputMessageType = null;
                 this.outputMessageId = 0;
                 this.outputBuffer = null;
+                this.outputFrame = null;
             }
         }
     }
 
-    protected Task getMessageTask(int network) {
+    protected MessageTask getMessageTask(int network) {
         /*
          * If we are still handshaking and there is a message yet to be processed then
          * don't produce another message task. This allows us to process handshake
@@ -1402,6 +1427,16 @@ public class Peer {
             this.pendingMessages.clear();
         }
 
+        // Release chunk file if we were part way through streaming it
+        FileRegionFrame frame = this.outputFrame;
+        if (frame != null) {
+            try {
+                frame.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+
         if (this.socketChannel != null && this.socketChannel.isOpen()) {
             try {
                 String networkType = (this.peerType == Peer.NETWORKDATA) ? "NETWORKDATA" : "NETWORK";
@@ -1627,6 +1662,63 @@ public class Peer {
         }
     }
     
+    /**
+     * Send a message whose payload ends with the contents of a file, e.g. a QDN chunk.
+     *
+     * <p>Like {@link #sendPreSerializedMessage(int, MessageType, byte[], int)}, except that
+     * the file is streamed straight from disk to the socket by {@link #writeChannel()},
+     * instead of being loaded into memory first.
+     *
+     * @param messageId the message ID for tracking
+     * @param messageType the type of message
+     * @param frame serialized message header plus file region
+     * @return true if message was queued successfully, false if queue is full
+     * @throws IOException if socket is closed or invalid
+     *
+     * @see org.qortal.network.message.ArbitraryDataFileMessage#toFileRegionFrame()
+     */
+    public boolean sendFileRegionMessage(int messageId, MessageType messageType, FileRegionFrame frame) throws IOException {
+        if (this.socketChannel == null) {
+            if (!isStopping) {
+                this.disconnect("Socket channel is null");
+            }
+            throw new IOException("Socket channel is null");
+        }
+        if (!this.socketChannel.isOpen()) {
+            if (!isStopping) {
+                this.disconnect("Socket closed");
+            }
+            throw new IOException("Socket closed");
+        }
+
+        try {
+            Message wrapper = new FileRegionMessageWrapper(messageId, messageType, frame);
+
+            LOGGER.trace("[{}] Queuing file region {} message with ID {} to peer {}",
+                        this.peerConnectionId, messageType.name(), messageId, this);
+
+            // Enqueue FIRST, then set OP_WRITE (critical ordering)
+            boolean offered = this.sendQueue.offer(wrapper);
+            if (!offered) {
+                return false; // Queue full
+            }
+
+            switch (this.getPeerType()) {
+                case Peer.NETWORK:
+                    Network.getInstance().setInterestOps(this.socketChannel, SelectionKey.OP_WRITE);
+                    break;
+                case Peer.NETWORKDATA:
+                    NetworkData.getInstance().setInterestOps(this.socketChannel, SelectionKey.OP_WRITE);
+                    break;
+            }
+
+            return true;
+        } catch (Exception e) {
+            LOGGER.error("Error queuing file region message: {}", e.getMessage(), e);
+            return false;
+        }
+    }
+
     /**
      * Internal wrapper class for pre-serialized messages.
      * 
@@ -1666,5 +1758,23 @@ public class Peer {
             return preSerializedBytes;
         }
     }
-}
 
+    /**
+     * Internal wrapper class for messages streamed from a file.
+     *
+     * <p>{@link #writeChannel()} writes the frame directly, rather than calling toBytes().
+     */
+    private static class FileRegionMessageWrapper extends Message {
+        private final FileRegionFrame frame;
+
+        FileRegionMessageWrapper(int messageId, MessageType messageType, FileRegionFrame frame) {
+            super(messageId, messageType);
+            this.frame = frame;
+        }
+
+        @Override
+        public byte[] toBytes() throws MessageException {
+            throw new MessageException("File region message can only be written by streaming its frame");
+        }
+    }
+}
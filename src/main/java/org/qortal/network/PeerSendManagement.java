@@ -2,6 +2,7 @@ package org.qortal.network;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.qortal.settings.Settings;
 
 import java.util.Iterator;
 import java.util.Map;
@@ -16,9 +17,15 @@ public class PeerSendManagement {
 
     private final Map<String, PeerSendManager> peerSendManagers = new ConcurrentHashMap<>();
     private final ScheduledExecutorService cleaner;
+    /** Thread pools shared by all peers' send managers */
+    private final PeerSendScheduler scheduler;
 
     public PeerSendManager getOrCreateSendManager(Peer peer, boolean isNetworkDataPeer) {
-        return peerSendManagers.computeIfAbsent(peer.toString(), p -> new PeerSendManager(peer, isNetworkDataPeer));
+        return peerSendManagers.computeIfAbsent(peer.toString(), p -> new PeerSendManager(peer, isNetworkDataPeer, scheduler));
+    }
+
+    public PeerSendScheduler getScheduler() {
+        return scheduler;
     }
 
     /**
@@ -36,7 +43,7 @@ public class PeerSendManagement {
      * 
      * <p>This method should be called when a peer disconnects to ensure immediate cleanup of:
      * <ul>
-     *   <li>Background thread (PeerSendManager's executor)</li>
+     *   <li>Any disk I/O and send turns still waiting for the shared scheduler</li>
      *   <li>Queued messages (clearing memory)</li>
      *   <li>Any pending send operations</li>
      * </ul>
@@ -57,6 +64,7 @@ public class PeerSendManagement {
 
     private PeerSendManagement() {
         this.cleaner = Executors.newSingleThreadScheduledExecutor();
+        this.scheduler = new PeerSendScheduler(Settings.getInstance().getPeerSendDiskIOPoolSize(), Settings.getInstance().getPeerSendPoolSize());
 
         // Clean up stale hash tracking every 60s
         cleaner.scheduleAtFixedRate(() -> {
@@ -120,6 +128,7 @@ public class PeerSendManagement {
             }
         }
         peerSendManagers.clear();
+        scheduler.shutdown();
         LOGGER.info("PeerSendManagement shutdown complete");
     }
 
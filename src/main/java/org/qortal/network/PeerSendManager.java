@@ -2,18 +2,18 @@ package org.qortal.network;
 
 import java.io.IOException;
 import java.util.HashSet;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.qortal.network.message.ArbitraryDataFileMessage;
 import org.qortal.network.message.Message;
 import org.qortal.network.message.MessageException;
 import org.qortal.network.message.MessageType;
@@ -24,19 +24,22 @@ public class PeerSendManager {
 
     private static final long MAX_MESSAGE_AGE_MS = 30_000L; // 30 seconds - drop messages older than this to prevent sending stale data
     
-    // Two-stage pipeline architecture: disk I/O threads -> sender threads
-    private static final int DISK_IO_THREAD_COUNT_NETWORK = 1; // Blockchain peers: low chunk volume
-    private static final int DISK_IO_THREAD_COUNT_DATA = 2; // NetworkData peers: chunk streams (25–50/sec)
+    // Two-stage pipeline architecture: disk I/O turns -> send turns, run by node-wide PeerSendScheduler pools
+    private static final int DISK_IO_CONCURRENCY_NETWORK = 1; // Blockchain peers: low chunk volume
+    private static final int DISK_IO_CONCURRENCY_DATA = 2; // NetworkData peers: chunk streams (25–50/sec)
     private static final int PREFETCH_QUEUE_SIZE = 8; // 4MB memory overhead (8 × 500KB chunks) - balanced for single peer
-    private static final int SENDER_THREAD_COUNT = 2; // Number of parallel sender threads per peer
 
     private final Peer peer;
-    private final int diskIOThreadCount;
+    private final PeerSendScheduler scheduler;
+    private final int diskIOConcurrency;
     private final BlockingQueue<TimedMessage> queue = new PriorityBlockingQueue<>(2000); // Thread-safe priority queue for lazy loading
-    private final BlockingQueue<PreloadedMessage> preloadedQueue = new LinkedBlockingQueue<>(PREFETCH_QUEUE_SIZE); // Queue of pre-loaded chunks ready to send
-    private final ExecutorService diskIOExecutor; // Stage 1: Parallel disk I/O
-    private final ExecutorService executor; // Stage 2: Network send (non-blocking)
-    private static final AtomicInteger threadCount = new AtomicInteger(1);
+    private final Queue<PreloadedMessage> preloadedQueue = new ConcurrentLinkedQueue<>(); // Pre-loaded chunks ready to send, bounded by preloadSlots
+    private final AtomicInteger preloadSlots = new AtomicInteger(PREFETCH_QUEUE_SIZE); // Free space in preloadedQueue, reserved before loading
+    private final AtomicInteger diskIOTurns = new AtomicInteger(); // Disk I/O turns scheduled or running, up to diskIOConcurrency
+    private final AtomicBoolean sendTurn = new AtomicBoolean(); // Whether a send turn is scheduled or running
+    private long sendDeficit = 0; // Bytes we can still send, carried between send turns. Only used during our send turn.
+    private long lastQueueLogTime = System.currentTimeMillis(); // Only used during our send turn.
+    private volatile boolean isShutdown = false;
     
     // Hash tracking for efficient cleanup checks across all pipeline stages
     // Maps hash58 → timestamp when queued (allows O(1) lookup instead of O(n) queue scanning)
@@ -55,10 +58,13 @@ public class PeerSendManager {
      *
      * <p><b>Two-Stage Pipeline Architecture:</b>
      * <ul>
-     *   <li><b>Stage 1 - Disk I/O:</b> 1 thread (network peer) or 4 threads (data peer) read chunks from disk in parallel</li>
-     *   <li><b>Stage 2 - Network Send:</b> 2 threads send pre-loaded chunks over network with zero disk blocking</li>
+     *   <li><b>Stage 1 - Disk I/O:</b> up to 1 (network peer) or 2 (data peer) chunks read from disk in parallel</li>
+     *   <li><b>Stage 2 - Network Send:</b> pre-loaded chunks sent over network with zero disk blocking</li>
      * </ul>
      *
+     * <p>Both stages run on node-wide {@link PeerSendScheduler} thread pools, shared fairly between peers,
+     * so idle peers don't hold any threads.
+     *
      * <p>This class implements <b>lazy loading</b> for large messages (like chunk data).
      * Messages are created from {@link MessageFactory} instances only when they're about
      * to be sent, significantly reducing memory usage. For example:
@@ -70,183 +76,248 @@ public class PeerSendManager {
      * <p>This class is responsible for:
      * <ul>
      *   <li>Queuing messages with optional priority ordering.</li>
-     *   <li>Parallel disk I/O to hide latency (1 or 4 threads depending on peer type).</li>
-     *   <li>Non-blocking network transmission (2 threads).</li>
+     *   <li>Requesting disk I/O turns, 1 or 2 at a time depending on peer type, while there's room to preload.</li>
+     *   <li>Requesting send turns while there are preloaded messages.</li>
      *   <li>Gracefully shutting down when requested.</li>
      * </ul>
      *
      * <p>Internally uses:
      * <ul>
      *   <li>A {@code PriorityBlockingQueue} for thread-safe priority-based message queuing.</li>
-     *   <li>A {@code LinkedBlockingQueue} for pre-loaded messages ready to send.</li>
-     *   <li>Two {@code ExecutorService} instances: one for disk I/O, one for network send.</li>
+     *   <li>A bounded queue of pre-loaded messages ready to send.</li>
+     *   <li>A {@link PeerSendScheduler} shared by all peers: one pool for disk I/O, one for network send.</li>
      *   <li>A custom {@code TimedMessage} class implementing {@code Comparable} to track queue timing and scheduling.</li>
      *   <li>{@link MessageFactory} for lazy message creation from disk.</li>
      * </ul>
      *
      * <p>Usage typically involves calling {@code queueMessage()} or {@code queueMessageWithPriority()}
-     * to enqueue messages, while the internal workers process them asynchronously.
+     * to enqueue messages, while the scheduler's workers process them asynchronously.
      *
      * @see org.qortal.network.Peer
      * @see org.qortal.network.message.Message
      * @see MessageFactory
+     * @see PeerSendScheduler
      *
      * @since v5.0.1
      * @author Ice & Phil
      * @updated v5.0.3 - Added lazy loading support for large messages
      * @updated v5.0.8 - Refactored to two-stage pipeline architecture for 5-10× performance improvement
+     * @updated v6.1.8 - Pipeline stages run on shared, node-wide thread pools instead of per-peer threads
      */
-    public PeerSendManager(Peer peer, boolean isNetworkDataPeer) {
+    public PeerSendManager(Peer peer, boolean isNetworkDataPeer, PeerSendScheduler scheduler) {
         this.peer = peer;
-        this.diskIOThreadCount = isNetworkDataPeer ? DISK_IO_THREAD_COUNT_DATA : DISK_IO_THREAD_COUNT_NETWORK;
-
-        // Stage 1: Disk I/O thread pool (thread count depends on network vs data peer)
-        this.diskIOExecutor = Executors.newFixedThreadPool(this.diskIOThreadCount, r -> {
-            Thread t = new Thread(r);
-            t.setName("DiskIO-" + peer.getResolvedAddress().getHostString() + "-" + threadCount.getAndIncrement());
-            return t;
-        });
-        
-        // Stage 2: Sender thread pool (2 threads for network transmission)
-        this.executor = Executors.newFixedThreadPool(SENDER_THREAD_COUNT, r -> {
-            Thread t = new Thread(r);
-            t.setName("PeerSender-" + peer.getResolvedAddress().getHostString() + "-" + threadCount.getAndIncrement());
-            LOGGER.trace("Starting new sender thread: {}", peer.toString());
-            return t;
-        });
-        
-        start();
+        this.scheduler = scheduler;
+        this.diskIOConcurrency = isNetworkDataPeer ? DISK_IO_CONCURRENCY_DATA : DISK_IO_CONCURRENCY_NETWORK;
     }
-    
+
+    private boolean isPeerConnected() {
+        return peer.getSocketChannel() != null &&
+            peer.getSocketChannel().isOpen() &&
+            !peer.isStopping();
+    }
+
+    /**
+     * Requests another disk I/O turn, if there's a queued message, room to preload it,
+     * and we're not already using all our disk I/O concurrency.
+     *
+     * @since v6.1.8
+     */
+    private void scheduleDiskIO() {
+        while (!isShutdown && !queue.isEmpty() && preloadSlots.get() > 0) {
+            int turns = diskIOTurns.get();
+            if (turns >= diskIOConcurrency)
+                return;
+
+            if (diskIOTurns.compareAndSet(turns, turns + 1)) {
+                scheduler.scheduleDiskIO(this);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Requests a send turn, if there are preloaded messages and we don't have a send turn already.
+     *
+     * @since v6.1.8
+     */
+    private void scheduleSend() {
+        if (isShutdown || preloadedQueue.isEmpty())
+            return;
+
+        if (sendTurn.compareAndSet(false, true))
+            scheduler.scheduleSend(this);
+    }
+
+    /**
+     * Runs one disk I/O turn, called by a {@link PeerSendScheduler} disk I/O thread.
+     *
+     * @since v6.1.8
+     */
+    /* package */ void runDiskIOTurn() {
+        try {
+            if (!isShutdown)
+                preloadNextMessage();
+        } finally {
+            // Back of the line for our next turn, if we still have work
+            diskIOTurns.decrementAndGet();
+            scheduleDiskIO();
+        }
+    }
+
+    /**
+     * Runs one send turn, called by a {@link PeerSendScheduler} sender thread.
+     *
+     * @since v6.1.8
+     */
+    /* package */ void runSendTurn() {
+        try {
+            if (!isShutdown)
+                sendPreloadedMessages();
+        } finally {
+            // Back of the line for our next turn, if we still have work
+            sendTurn.set(false);
+            scheduleSend();
+        }
+    }
+
     /**
-     * Starts the disk I/O stage that prefetches chunks in parallel.
+     * Disk I/O stage: loads and serializes the highest priority queued message.
      * 
-     * <p>This is Stage 1 of the two-stage pipeline. Multiple threads read chunks from disk
+     * <p>This is Stage 1 of the two-stage pipeline. Disk I/O turns read chunks from disk
      * in parallel, hiding disk I/O latency. Pre-loaded chunks are placed into the
-     * {@code preloadedQueue} where they can be immediately sent by sender threads.
+     * {@code preloadedQueue} where they can be immediately sent by send turns.
      * 
      * <p>Benefits:
      * <ul>
      *   <li>Multiple concurrent disk reads hide 10-100ms disk latency (data peers)</li>
      *   <li>Sender threads never block on disk I/O</li>
      *   <li>Network continuously fed with data</li>
-     *   <li>Bounded memory usage (32 chunks × 500KB = 16MB max)</li>
+     *   <li>Bounded memory usage (8 chunks × 500KB = 4MB max per peer)</li>
      * </ul>
      *
      * @since v5.0.8
      * @author Ice
+     * @updated v6.1.8 - Loads one message per turn, instead of looping on a dedicated thread
      */
-    private void startDiskIOStage() {
-        for (int i = 0; i < this.diskIOThreadCount; i++) {
-            diskIOExecutor.submit(() -> {
-                while (!Thread.currentThread().isInterrupted()) {
-                    try {
-                        // Guard: stop processing if peer is no longer connected
-                        if (peer.getSocketChannel() == null || 
-                            !peer.getSocketChannel().isOpen() || 
-                            peer.isStopping()) {
-                            LOGGER.trace("Peer {} no longer connected in disk I/O stage, clearing {} queued messages", 
-                                       peer, queue.size());
-                            queue.clear();
-                            queuedHashes.clear(); // Allow request timeout to retry chunks from other peers
-                            return;
-                        }
-                        
-                        // Take metadata from original queue (blocks until available)
-                        TimedMessage timedMessage = queue.take();
-                        
-                        long currentTime = System.currentTimeMillis();
-                        
-                        // Drop messages based on age (time since queued)
-                        long age = currentTime - timedMessage.timestamp;
-                        if (age > MAX_MESSAGE_AGE_MS) {
-                            LOGGER.trace("Dropped stale message in disk I/O stage to peer {}: queued {}ms ago (exceeds max age of {}ms)", 
-                                       peer.toString(), age, MAX_MESSAGE_AGE_MS);
-                            // Remove from hash tracking when dropping stale message
-                            if (timedMessage.hash58 != null) {
-                                queuedHashes.remove(timedMessage.hash58);
-                                LOGGER.trace("Removed hash {} from tracking (message too old)", timedMessage.hash58);
-                            }
-                            continue;
-                        }
-                        
-                        // This is where blocking disk I/O happens (10-100ms on slow disks)
-                        // But with 8 parallel threads, we hide this latency
-                        long loadStart = System.currentTimeMillis();
-                        final Message message = timedMessage.createMessage();
-                        long messageCreateTime = System.currentTimeMillis() - loadStart;
-                        
-                        if (message == null) {
-                            LOGGER.warn("Failed to create message in disk I/O stage for peer: {}, skipping", peer.toString());
-                            // Remove from tracking if message creation failed
-                            if (timedMessage.hash58 != null) {
-                                queuedHashes.remove(timedMessage.hash58);
-                                LOGGER.trace("Removed hash {} from tracking (message creation failed)", timedMessage.hash58);
-                            }
-                            continue;
-                        }
-                        
-                        // Only log for ARBITRARY_DATA_FILE (actual chunks) to reduce log noise
-                        if (message.getType() == MessageType.ARBITRARY_DATA_FILE) {
-                            LOGGER.trace("RESPONDER DISK IO: messageId={}, diskLoadTime={}ms, threadId={}", 
-                                message.getId(), messageCreateTime, Thread.currentThread().getId());
-                        }
-                        
-                        // Check peer connection again before serializing
-                        if (peer.getSocketChannel() == null || 
-                            !peer.getSocketChannel().isOpen() || 
-                            peer.isStopping()) {
-                            LOGGER.debug("Peer {} socket closed during disk I/O, dropping message {}", peer, message.getId());
-                            continue;
-                        }
-                        
-                        // Pre-serialize the message (includes any remaining disk I/O)
-                        // This ensures sender threads have zero blocking operations
-                        long serializeStart = System.currentTimeMillis();
-                        byte[] messageBytes = message.toBytes();
-                        long serializeTime = System.currentTimeMillis() - serializeStart;
-                        
-                        if (messageBytes == null) {
-                            LOGGER.warn("Failed to serialize message {} in disk I/O stage", message.getId());
-                            continue;
-                        }
-                        
-                      
-                        
-                        // Create lightweight pre-loaded message (no Message reference!)
-                        PreloadedMessage preloaded = new PreloadedMessage(
-                            message.getId(),
-                            message.getType(),
-                            messageBytes,
-                            timedMessage.hash58  // Pass hash through pipeline
-                        );
-                        
-                        // Put into sender queue (blocks if queue is full - provides backpressure control)
-                        // This is intentional: if senders can't keep up, we slow down disk reads
-                        preloadedQueue.put(preloaded);
-                        
-                        long totalTime = System.currentTimeMillis() - loadStart;
-                        LOGGER.debug("Preloaded message {} from disk: create {}ms, serialize {}ms, total {}ms, queue size: {}", 
-                                    message.getId(), messageCreateTime, serializeTime, totalTime, preloadedQueue.size());
-                        
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        LOGGER.debug("Disk I/O stage interrupted for peer {}", peer);
-                        break;
-                    } catch (Exception e) {
-                        LOGGER.error("Error in disk I/O stage for peer {}: {}", peer, e.getMessage(), e);
-                    }
+    private void preloadNextMessage() {
+        // Guard: stop processing if peer is no longer connected
+        if (!isPeerConnected()) {
+            LOGGER.trace("Peer {} no longer connected in disk I/O stage, clearing {} queued messages", 
+                       peer, queue.size());
+            queue.clear();
+            queuedHashes.clear(); // Allow request timeout to retry chunks from other peers
+            return;
+        }
+
+        // Reserve room in preloadedQueue before loading anything
+        // This provides backpressure: if send turns can't keep up, we stop reading from disk until they free a slot
+        if (preloadSlots.getAndDecrement() <= 0) {
+            preloadSlots.incrementAndGet();
+            return;
+        }
+
+        boolean isPreloaded = false;
+        try {
+            // Take metadata from original queue
+            TimedMessage timedMessage = queue.poll();
+            if (timedMessage == null)
+                return;
+            
+            long currentTime = System.currentTimeMillis();
+            
+            // Drop messages based on age (time since queued)
+            long age = currentTime - timedMessage.timestamp;
+            if (age > MAX_MESSAGE_AGE_MS) {
+                LOGGER.trace("Dropped stale message in disk I/O stage to peer {}: queued {}ms ago (exceeds max age of {}ms)", 
+                           peer.toString(), age, MAX_MESSAGE_AGE_MS);
+                // Remove from hash tracking when dropping stale message
+                if (timedMessage.hash58 != null) {
+                    queuedHashes.remove(timedMessage.hash58);
+                    LOGGER.trace("Removed hash {} from tracking (message too old)", timedMessage.hash58);
+                }
+                return;
+            }
+            
+            // This is where blocking disk I/O happens (10-100ms on slow disks)
+            // But with parallel disk I/O turns, we hide this latency
+            long loadStart = System.currentTimeMillis();
+            final Message message = timedMessage.createMessage();
+            long messageCreateTime = System.currentTimeMillis() - loadStart;
+            
+            if (message == null) {
+                LOGGER.warn("Failed to create message in disk I/O stage for peer: {}, skipping", peer.toString());
+                // Remove from tracking if message creation failed
+                if (timedMessage.hash58 != null) {
+                    queuedHashes.remove(timedMessage.hash58);
+                    LOGGER.trace("Removed hash {} from tracking (message creation failed)", timedMessage.hash58);
                 }
-            });
+                return;
+            }
+            
+            // Only log for ARBITRARY_DATA_FILE (actual chunks) to reduce log noise
+            if (message.getType() == MessageType.ARBITRARY_DATA_FILE) {
+                LOGGER.trace("RESPONDER DISK IO: messageId={}, diskLoadTime={}ms, threadId={}", 
+                    message.getId(), messageCreateTime, Thread.currentThread().getId());
+            }
+            
+            // Check peer connection again before serializing
+            if (!isPeerConnected()) {
+                LOGGER.debug("Peer {} socket closed during disk I/O, dropping message {}", peer, message.getId());
+                return;
+            }
+            
+            // Pre-serialize the message (includes any remaining disk I/O)
+            // This ensures send turns have zero blocking operations
+            // Chunks on disk only have their header serialized, and are streamed from disk to socket when sent
+            long serializeStart = System.currentTimeMillis();
+            FileRegionFrame frame = null;
+            if (message instanceof ArbitraryDataFileMessage)
+                frame = ((ArbitraryDataFileMessage) message).toFileRegionFrame(peer.canUseCrc32cChecksums());
+
+            byte[] messageBytes = frame == null ? message.toBytes(peer.canUseCrc32cChecksums()) : null;
+            long serializeTime = System.currentTimeMillis() - serializeStart;
+            
+            if (frame == null && messageBytes == null) {
+                LOGGER.warn("Failed to serialize message {} in disk I/O stage", message.getId());
+                return;
+            }
+            
+            // Create lightweight pre-loaded message (no Message reference!)
+            PreloadedMessage preloaded = new PreloadedMessage(
+                message.getId(),
+                message.getType(),
+                messageBytes,
+                frame,
+                timedMessage.hash58  // Pass hash through pipeline
+            );
+            
+            // Put into sender queue, using the slot we reserved earlier
+            preloadedQueue.add(preloaded);
+            isPreloaded = true;
+            scheduleSend();
+            
+            long totalTime = System.currentTimeMillis() - loadStart;
+            LOGGER.debug("Preloaded message {} from disk: create {}ms, serialize {}ms, total {}ms, queue size: {}", 
+                        message.getId(), messageCreateTime, serializeTime, totalTime, preloadedQueue.size());
+            
+        } catch (Exception e) {
+            LOGGER.error("Error in disk I/O stage for peer {}: {}", peer, e.getMessage(), e);
+        } finally {
+            if (!isPreloaded)
+                preloadSlots.incrementAndGet();
         }
     }
 
     /**
-     * Starts the sender stage that transmits pre-loaded messages over the network.
+     * Send stage: transmits pre-loaded messages over the network.
+     *
+     * <p>This is Stage 2 of the two-stage pipeline. Send turns consume pre-loaded messages from the
+     * {@code preloadedQueue}. Since messages are already loaded from disk and serialized,
+     * sender threads perform ZERO blocking operations.
      *
-     * <p>This is Stage 2 of the two-stage pipeline. This method initializes sender threads that
-     * consume pre-loaded messages from the {@code preloadedQueue}. Since messages are already
-     * loaded from disk and serialized, sender threads perform ZERO blocking operations.
+     * <p>Each turn adds {@link PeerSendScheduler#SEND_QUANTUM} bytes to this peer's allowance,
+     * and sends messages while they fit (deficit round-robin), so peers sending big chunks
+     * don't crowd out peers sending small messages.
      * 
      * <p>Benefits:
      * <ul>
@@ -255,150 +326,143 @@ public class PeerSendManager {
      *   <li>5-10× throughput improvement on systems with slow disk I/O</li>
      * </ul>
      *
-     * <p>The method is invoked once in the constructor and should not be called again manually.
-     *
      * @since v5.0.1
      * @author Phil
      * @updated v5.0.2
      * @updater Ice
      * @updated v5.0.7 - Changed to multiple threads for parallel processing
      * @updated v5.0.8 - Refactored to two-stage pipeline (disk I/O separated from network send)
+     * @updated v6.1.8 - Sends up to a byte quantum per turn, instead of looping on dedicated threads
      */
-    private void startSenderStage() {
-        // Submit the sender task multiple times (once per thread in the pool)
-        // Each thread consumes pre-loaded messages from the shared queue
-        for (int i = 0; i < SENDER_THREAD_COUNT; i++) {
-            executor.submit(() -> {
-            // Periodic queue size logging for debugging
-            long lastLogTime = System.currentTimeMillis();
-            
-            while (!Thread.currentThread().isInterrupted()) {
-                try {
-                    // Guard: stop processing if peer is no longer connected
-                    if (peer.getSocketChannel() == null || 
-                        !peer.getSocketChannel().isOpen() || 
-                        peer.isStopping()) {
-                        LOGGER.trace("Peer {} no longer connected in sender stage, clearing {} preloaded messages", 
-                                   peer, preloadedQueue.size());
-                        preloadedQueue.clear();
-                        queuedHashes.clear(); // Allow request timeout to retry chunks from other peers
-                        return;
-                    }
-                    
-                    // Periodic queue size logging
-                    long now = System.currentTimeMillis();
-                    if (now - lastLogTime >= 10_000) {
-                        int inputQueueSize = queue.size();
-                        int preloadedQueueSize = preloadedQueue.size();
-                        if (inputQueueSize > 0 || preloadedQueueSize > 0) {
-                            LOGGER.trace("PeerSendManager for {} has {} pending, {} preloaded", 
-                                       peer, inputQueueSize, preloadedQueueSize);
-                        }
-                        lastLogTime = now;
-                    }
-                    
-                    // Take pre-loaded message (data already in memory - NO DISK I/O!)
-                    PreloadedMessage preloaded = preloadedQueue.take();
-                    
-                    // Calculate how long message waited in preload queue
-                    long queueWaitTotal = System.currentTimeMillis() - preloaded.timestamp;
-                    
-                    // Only log for ARBITRARY_DATA_FILE (actual chunks) to reduce log noise
-                    if (preloaded.messageType == MessageType.ARBITRARY_DATA_FILE) {
-                        LOGGER.trace("RESPONDER QUEUE WAIT: messageId={}, queuedFor={}ms (from creation to take)", 
-                            preloaded.messageId, queueWaitTotal);
-                    }
-                    
-                    // Check peer connection before attempting to send
-                    if (peer.getSocketChannel() == null || 
-                        !peer.getSocketChannel().isOpen() || 
-                        peer.isStopping()) {
-                        LOGGER.trace("Peer {} socket closed in sender stage, dropping message {}", 
-                                   peer, preloaded.messageId);
-                        continue; // Skip this message, continue with next
-                    }
-
-                    // Track send time (should be fast since no disk I/O)
-                    long sendStartTime = System.currentTimeMillis();
-
-                    // Try to send the pre-serialized message - never block the sender thread
-                    // This uses the optimized API that accepts pre-serialized bytes
-                    try {
-                        if (peer.sendPreSerializedMessage(
-                                preloaded.messageId, 
-                                preloaded.messageType,
-                                preloaded.serializedBytes, 
-                                0)) {  // timeout unused - pass 0
-                            
-                            // Remove hash from tracking AFTER successful send
-                            if (preloaded.hash58 != null) {
-                                queuedHashes.remove(preloaded.hash58);
-                                LOGGER.trace("Removed hash {} from tracking (successfully sent to peer {})",
-                                            preloaded.hash58, peer);
-                            }
-                            
-                            // Log timing stats for successful sends - only for ARBITRARY_DATA_FILE
-                            long totalTime = System.currentTimeMillis() - preloaded.timestamp;
-                            long sendTime = System.currentTimeMillis() - sendStartTime;
-                            if (preloaded.messageType == MessageType.ARBITRARY_DATA_FILE) {
-                                LOGGER.trace("RESPONDER CHUNK COMPLETE: messageId={}, queueWait={}ms, sendCall={}ms, TOTAL={}ms", 
-                                    preloaded.messageId, queueWaitTotal, sendTime, totalTime);
-                            }
-                        } else {
-                            // Backpressure (Peer.sendQueue full)
-                            // For simplicity, we drop the message since it's already been loaded
-                            // Alternative: could re-queue to preloadedQueue, but risks memory buildup
-                            LOGGER.trace("Backpressure for message {} to peer {}, dropping (already loaded)", 
-                                        preloaded.messageId, peer);
-                            // Remove from tracking since we're dropping it
-                            if (preloaded.hash58 != null) {
-                                queuedHashes.remove(preloaded.hash58);
-                                LOGGER.trace("Removed hash {} from tracking (dropped due to backpressure)", preloaded.hash58);
-                            }
-                            // Note: With 8 disk I/O threads and only 2 sender threads, this should be rare.
-                        }
-                    } catch (IOException e) {
-                        // TERMINAL — peer socket is closed
-                        LOGGER.debug("Peer {} socket closed in sender stage, dropping message {}", 
-                                   peer, preloaded.messageId);
-                        // Remove from tracking since peer is gone
-                        if (preloaded.hash58 != null) {
-                            queuedHashes.remove(preloaded.hash58);
-                        }
-                        return; // stop processing for this peer
-                    }
-                    
-                    // Message and serialized bytes will be garbage collected automatically
-                    
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    int lostMessages = preloadedQueue.size();
-                    LOGGER.debug("Caught InterruptedException in sender stage for peer {} - {} preloaded messages lost", 
-                                peer, lostMessages);
-                    break;
-                } catch (Exception e) {
-                    LOGGER.error("Unexpected error in sender stage for peer {}: {}", peer, e.getMessage(), e);
-                }
+    private void sendPreloadedMessages() {
+        // Guard: stop processing if peer is no longer connected
+        if (!isPeerConnected()) {
+            LOGGER.trace("Peer {} no longer connected in sender stage, clearing {} preloaded messages", 
+                       peer, preloadedQueue.size());
+            clearPreloadedQueue();
+            queuedHashes.clear(); // Allow request timeout to retry chunks from other peers
+            return;
+        }
+        
+        // Periodic queue size logging
+        long now = System.currentTimeMillis();
+        if (now - lastQueueLogTime >= 10_000) {
+            int inputQueueSize = queue.size();
+            int preloadedQueueSize = preloadedQueue.size();
+            if (inputQueueSize > 0 || preloadedQueueSize > 0) {
+                LOGGER.trace("PeerSendManager for {} has {} pending, {} preloaded", 
+                           peer, inputQueueSize, preloadedQueueSize);
+            }
+            lastQueueLogTime = now;
+        }
+
+        sendDeficit += PeerSendScheduler.SEND_QUANTUM;
+
+        try {
+            PreloadedMessage preloaded;
+            while ((preloaded = preloadedQueue.peek()) != null && preloaded.size() <= sendDeficit) {
+                // Take pre-loaded message (data already in memory - NO DISK I/O!)
+                preloadedQueue.poll();
+                preloadSlots.incrementAndGet();
+                sendDeficit -= preloaded.size();
+
+                if (!sendPreloadedMessage(preloaded))
+                    return; // stop processing for this peer
             }
-            });
+        } finally {
+            // Unused allowance isn't carried over once we've nothing left to send
+            if (preloadedQueue.isEmpty())
+                sendDeficit = 0;
+
+            // We've freed up room to preload more
+            scheduleDiskIO();
         }
     }
-    
+
     /**
-     * Starts both stages of the two-stage pipeline.
-     * 
-     * <p>Stage 1 (Disk I/O): 8 threads read chunks from disk in parallel
-     * <p>Stage 2 (Network Send): 2 threads send pre-loaded chunks over network
-     * 
-     * <p>This architecture eliminates blocking disk I/O from the network send path,
-     * improving throughput by 5-10× on systems with slow disk I/O (Raspberry Pi, HDDs).
+     * Sends one pre-loaded message.
      *
-     * @since v5.0.8
-     * @author Ice
+     * @return false if peer's socket is closed, true otherwise
+     *
+     * @since v6.1.8
      */
-    private void start() {
-        startDiskIOStage();
-        startSenderStage();
+    private boolean sendPreloadedMessage(PreloadedMessage preloaded) {
+        // Calculate how long message waited in preload queue
+        long queueWaitTotal = System.currentTimeMillis() - preloaded.timestamp;
+        
+        // Only log for ARBITRARY_DATA_FILE (actual chunks) to reduce log noise
+        if (preloaded.messageType == MessageType.ARBITRARY_DATA_FILE) {
+            LOGGER.trace("RESPONDER QUEUE WAIT: messageId={}, queuedFor={}ms (from creation to take)", 
+                preloaded.messageId, queueWaitTotal);
+        }
+        
+        // Check peer connection before attempting to send
+        if (!isPeerConnected()) {
+            LOGGER.trace("Peer {} socket closed in sender stage, dropping message {}", 
+                       peer, preloaded.messageId);
+            return true; // Skip this message, next turn will clear up
+        }
+
+        // Track send time (should be fast since no disk I/O)
+        long sendStartTime = System.currentTimeMillis();
+
+        // Try to send the pre-serialized message - never block the sender thread
+        // This uses the optimized API that accepts pre-serialized bytes
+        try {
+            boolean isQueued = preloaded.frame != null
+                    ? peer.sendFileRegionMessage(preloaded.messageId, preloaded.messageType, preloaded.frame)
+                    : peer.sendPreSerializedMessage(
+                        preloaded.messageId,
+                        preloaded.messageType,
+                        preloaded.serializedBytes,
+                        0);  // timeout unused - pass 0
+
+            if (isQueued) {
+                
+                // Remove hash from tracking AFTER successful send
+                if (preloaded.hash58 != null) {
+                    queuedHashes.remove(preloaded.hash58);
+                    LOGGER.trace("Removed hash {} from tracking (successfully sent to peer {})",
+                                preloaded.hash58, peer);
+                }
+                
+                // Log timing stats for successful sends - only for ARBITRARY_DATA_FILE
+                long totalTime = System.currentTimeMillis() - preloaded.timestamp;
+                long sendTime = System.currentTimeMillis() - sendStartTime;
+                if (preloaded.messageType == MessageType.ARBITRARY_DATA_FILE) {
+                    LOGGER.trace("RESPONDER CHUNK COMPLETE: messageId={}, queueWait={}ms, sendCall={}ms, TOTAL={}ms", 
+                        preloaded.messageId, queueWaitTotal, sendTime, totalTime);
+                }
+            } else {
+                // Backpressure (Peer.sendQueue full)
+                // For simplicity, we drop the message since it's already been loaded
+                // Alternative: could re-queue to preloadedQueue, but risks memory buildup
+                LOGGER.trace("Backpressure for message {} to peer {}, dropping (already loaded)", 
+                            preloaded.messageId, peer);
+                // Remove from tracking since we're dropping it
+                if (preloaded.hash58 != null) {
+                    queuedHashes.remove(preloaded.hash58);
+                    LOGGER.trace("Removed hash {} from tracking (dropped due to backpressure)", preloaded.hash58);
+                }
+            }
+        } catch (IOException e) {
+            // TERMINAL — peer socket is closed
+            LOGGER.debug("Peer {} socket closed in sender stage, dropping message {}", 
+                       peer, preloaded.messageId);
+            // Remove from tracking since peer is gone
+            if (preloaded.hash58 != null) {
+                queuedHashes.remove(preloaded.hash58);
+            }
+            return false;
+        }
+
+        // Message and serialized bytes will be garbage collected automatically
+        return true;
+    }
+
+    private void clearPreloadedQueue() {
+        while (preloadedQueue.poll() != null)
+            preloadSlots.incrementAndGet();
     }
 
 
@@ -528,7 +592,11 @@ public class PeerSendManager {
             if (hash58 != null) {
                 queuedHashes.remove(hash58);
             }
+            return;
         }
+
+        // Get in line for a disk I/O turn, if we're not in line already
+        scheduleDiskIO();
     }
 
     /**
@@ -640,8 +708,8 @@ public class PeerSendManager {
     /**
      * Shuts down the {@code PeerSendManager}, stopping all message processing and clearing both queues.
      *
-     * <p>This method immediately halts both the disk I/O and sender executor threads using
-     * {@code shutdownNow()} and clears any messages currently pending in both queues.
+     * <p>This method stops any further disk I/O and send turns for this peer (a turn that is
+     * already running finishes) and clears any messages currently pending in both queues.
      * After shutdown, no further message processing will occur, and the instance should
      * be considered unusable.
      *
@@ -651,13 +719,13 @@ public class PeerSendManager {
      * @since v5.0.1
      * @author Phil
      * @updated v5.0.8 - Now shuts down both disk I/O and sender thread pools
+     * @updated v6.1.8 - Thread pools are shared, so just stops this peer's turns
      */
     public void shutdown() {
+        isShutdown = true;
         queue.clear();
-        preloadedQueue.clear();
+        clearPreloadedQueue();
         queuedHashes.clear();  // Clear hash tracking
-        diskIOExecutor.shutdownNow();
-        executor.shutdownNow();
         LOGGER.debug("PeerSendManager shutdown complete for peer {}, cleared {} tracked hashes",
                     peer, queuedHashes.size());
     }
@@ -744,7 +812,8 @@ public class PeerSendManager {
      * the same chunks are being sent to multiple peers.
      * 
      * <p>Memory footprint: ~500 KB (serialized bytes) + ~20 bytes (metadata)
-     * vs. previous ~1 MB (Message object + serialized bytes)
+     * vs. previous ~1 MB (Message object + serialized bytes).
+     * Chunks on disk are held as a {@link FileRegionFrame} instead: ~100 bytes of header plus file path.
      *
      * @since v5.0.8
      * @author Ice
@@ -753,7 +822,8 @@ public class PeerSendManager {
     private static class PreloadedMessage {
         final int messageId;
         final MessageType messageType;
-        final byte[] serializedBytes;
+        final byte[] serializedBytes; // null if frame is used
+        final FileRegionFrame frame; // null if serializedBytes are used
         final long timestamp;
         final String hash58;  // Hash for tracking (null for non-tracked messages)
         
@@ -762,15 +832,22 @@ public class PeerSendManager {
          *
          * @param messageId the message ID for tracking and logging
          * @param messageType the type of message (for statistics and logging)
-         * @param serializedBytes pre-serialized message bytes (complete, ready to send)
+         * @param serializedBytes pre-serialized message bytes (complete, ready to send), or null if using frame
+         * @param frame serialized header plus file to stream, or null if using serializedBytes
          * @param hash58 Base58-encoded hash for tracking (null if not applicable)
          */
-        PreloadedMessage(int messageId, MessageType messageType, byte[] serializedBytes, String hash58) {
+        PreloadedMessage(int messageId, MessageType messageType, byte[] serializedBytes, FileRegionFrame frame, String hash58) {
             this.messageId = messageId;
             this.messageType = messageType;
             this.serializedBytes = serializedBytes;
+            this.frame = frame;
             this.timestamp = System.currentTimeMillis();
             this.hash58 = hash58;
         }
+
+        /** Returns number of bytes that will be sent. */
+        long size() {
+            return this.frame != null ? this.frame.size() : this.serializedBytes.length;
+        }
     }
 }
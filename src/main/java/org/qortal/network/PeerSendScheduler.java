@@ -0,0 +1,118 @@
+package org.qortal.network;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.qortal.utils.NamedThreadFactory;
+
+/**
+ * Node-wide thread pools that run the two-stage pipelines of all {@link PeerSendManager}s.
+ *
+ * <p>Rather than each peer having its own disk I/O and sender threads, which are idle most of the time,
+ * peers with work to do take turns on two fixed-size pools:
+ * <ul>
+ *   <li><b>Disk I/O:</b> each turn loads and serializes one queued message for a peer.</li>
+ *   <li><b>Network send:</b> each turn hands preloaded messages to a peer, up to a byte quantum.</li>
+ * </ul>
+ *
+ * <p>Peers join the back of a stage's ready queue each time they have work, so turns are round-robin between peers,
+ * regardless of how many messages each has queued. Send turns use deficit round-robin, so peers are
+ * treated fairly by bytes sent, not by message count. Each peer still orders its own messages by priority.
+ *
+ * @see PeerSendManager
+ * @see PeerSendManagement
+ *
+ * @since v6.1.8
+ */
+public class PeerSendScheduler {
+    private static final Logger LOGGER = LogManager.getLogger(PeerSendScheduler.class);
+
+    /** Bytes a peer can send per turn, carried over to its next turn if its next message is bigger. */
+    /* package */ static final int SEND_QUANTUM = 1024 * 1024; // Fits one 512KB chunk plus message overhead
+
+    private final BlockingQueue<PeerSendManager> diskIOReady = new LinkedBlockingQueue<>();
+    private final BlockingQueue<PeerSendManager> sendReady = new LinkedBlockingQueue<>();
+    private final ExecutorService diskIOExecutor;
+    private final ExecutorService senderExecutor;
+
+    /**
+     * Starts disk I/O and sender pools.
+     *
+     * @param diskIOThreadCount number of threads loading messages, e.g. chunks from disk
+     * @param senderThreadCount number of threads handing preloaded messages to peers
+     */
+    public PeerSendScheduler(int diskIOThreadCount, int senderThreadCount) {
+        this.diskIOExecutor = Executors.newFixedThreadPool(diskIOThreadCount, new NamedThreadFactory("PeerSendDiskIO", Thread.NORM_PRIORITY));
+        this.senderExecutor = Executors.newFixedThreadPool(senderThreadCount, new NamedThreadFactory("PeerSender", Thread.NORM_PRIORITY));
+
+        for (int i = 0; i < diskIOThreadCount; i++)
+            this.diskIOExecutor.execute(() -> runTurns(this.diskIOReady, PeerSendManager::runDiskIOTurn, "disk I/O"));
+
+        for (int i = 0; i < senderThreadCount; i++)
+            this.senderExecutor.execute(() -> runTurns(this.sendReady, PeerSendManager::runSendTurn, "sender"));
+    }
+
+    /** Adds a disk I/O turn for <tt>sendManager</tt>, behind any other peers already waiting. */
+    /* package */ void scheduleDiskIO(PeerSendManager sendManager) {
+        this.diskIOReady.add(sendManager);
+    }
+
+    /** Adds a send turn for <tt>sendManager</tt>, behind any other peers already waiting. */
+    /* package */ void scheduleSend(PeerSendManager sendManager) {
+        this.sendReady.add(sendManager);
+    }
+
+    /** Returns number of peers waiting for a disk I/O turn, for diagnostics. */
+    public int getDiskIOBacklog() {
+        return this.diskIOReady.size();
+    }
+
+    /** Returns number of peers waiting for a send turn, for diagnostics. */
+    public int getSendBacklog() {
+        return this.sendReady.size();
+    }
+
+    private static void runTurns(BlockingQueue<PeerSendManager> readyQueue, Consumer<PeerSendManager> turn, String stage) {
+        while (!Thread.currentThread().isInterrupted()) {
+            PeerSendManager sendManager;
+            try {
+                sendManager = readyQueue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            try {
+                turn.accept(sendManager);
+            } catch (Exception e) {
+                LOGGER.error("Unexpected error in {} stage for peer {}: {}", stage, sendManager.getPeer(), e.getMessage(), e);
+            }
+        }
+
+        LOGGER.debug("PeerSendScheduler {} thread stopped", stage);
+    }
+
+    /**
+     * Stops both pools. Messages still queued by peers are left for their {@link PeerSendManager#shutdown()}.
+     */
+    public void shutdown() {
+        this.diskIOExecutor.shutdownNow();
+        this.senderExecutor.shutdownNow();
+
+        this.diskIOReady.clear();
+        this.sendReady.clear();
+
+        try {
+            if (!this.diskIOExecutor.awaitTermination(5, TimeUnit.SECONDS) || !this.senderExecutor.awaitTermination(5, TimeUnit.SECONDS))
+                LOGGER.warn("PeerSendScheduler threads did not terminate in time");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -21,6 +21,9 @@ import java.util.stream.Collectors;
 @XmlAccessorType(XmlAccessType.FIELD)
 public class PeerCapabilities {
 
+    /** Peer accepts, and sends, CRC32C checksums on messages whose payload carries its own hash, e.g. QDN chunks */
+    public static final String CRC32C_CHECKSUMS = "CRC32C";
+
     // Empty Set of Peer Capabilities
     private Map<String, Object> capabilities;
 
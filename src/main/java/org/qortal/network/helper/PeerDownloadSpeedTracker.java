@@ -1,5 +1,9 @@
 package org.qortal.network.helper;
 
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
 /**
  * Tracks download speed metrics for a peer, specifically for tracking round trip times.
  *
@@ -10,12 +14,21 @@ package org.qortal.network.helper;
  *
  * <p>It is separate from PeerSpeedTracker which tracks transfer time estimates.
  *
- * <p>Not thread-safe — external synchronization is required if used concurrently.
+ * <p>It also sizes this peer's <b>request window</b> - the number of chunk requests we allow in flight -
+ * like a TCP congestion window. The window starts small, grows by one chunk per delivered chunk until
+ * its first timeout, then by one chunk per window's worth of deliveries, and halves when requests time out.
+ * It is also capped at a multiple of the peer's bandwidth-delay product (best recent delivery rate multiplied
+ * by lowest recent round trip time), so once extra requests only add queueing delay, the window stops growing.
+ * Request timeouts follow this peer's round trip times, as with TCP's retransmission timeout.
+ *
+ * <p>Not thread-safe — external synchronization is required if used concurrently,
+ * except for request window methods, which are synchronized.
  *
  * @since v5.0.4
  * @author Auto
  * @updated v5.0.8 - Added exponential moving average and idle reset
  * @updated v5.0.9 - Added assignment tracking to prevent slow in-flight requests from blocking peer recovery
+ * @updated v6.1.8 - Added request window
  */
 public class PeerDownloadSpeedTracker {
 
@@ -31,6 +44,40 @@ public class PeerDownloadSpeedTracker {
     // Allows degraded peers to recover quickly while preventing retry loops
     private static final long IDLE_RESET_MS = 14_000; // 14 seconds
 
+    // Request window
+    public static final int INITIAL_REQUEST_WINDOW = 4; // chunks - small to avoid overloading bad peers
+    public static final int MAX_REQUEST_WINDOW = 64; // chunks
+    private static final double BDP_WINDOW_GAIN = 2.0; // Window can be up to this multiple of bandwidth-delay product
+    private static final long DEFAULT_ROUND_TRIP_TIME = 5_000L; // ms, assumed until measured
+    private static final long MIN_REQUEST_TIMEOUT = 2_000L; // ms
+    private static final long MAX_REQUEST_TIMEOUT = 12_000L; // ms, as per ArbitraryDataManager.ARBITRARY_REQUEST_TIMEOUT
+    private static final long DELIVERY_RATE_FILTER_WINDOW = 10_000L; // ms - max delivery rate is forgotten after this long
+    // Min RTT is kept much longer, otherwise once our own queued requests inflate every RTT sample,
+    // queueing delay is mistaken for path delay and the window keeps growing
+    private static final long MIN_ROUND_TRIP_TIME_FILTER_WINDOW = 5 * 60 * 1000L; // ms
+
+    private static class InFlightRequest {
+        final long requestTime;
+        final long deliveredAtRequest; // deliveredCount when requested, for measuring delivery rate
+
+        InFlightRequest(long requestTime, long deliveredAtRequest) {
+            this.requestTime = requestTime;
+            this.deliveredAtRequest = deliveredAtRequest;
+        }
+    }
+
+    private final Map<String, InFlightRequest> inFlightRequests = new HashMap<>(); // keyed by chunk hash58
+    private double requestWindow = INITIAL_REQUEST_WINDOW;
+    private double slowStartThreshold = MAX_REQUEST_WINDOW;
+    private long deliveredCount = 0;
+    private long lastWindowReductionTime = 0L;
+    private Double smoothedRoundTripTime = null; // ms
+    private double roundTripTimeVariance = 0.0; // ms
+    private double maxDeliveryRate = 0.0; // chunks per ms
+    private long maxDeliveryRateTime = 0L;
+    private long minRoundTripTime = 0L; // ms, 0 = no data yet
+    private long minRoundTripTimeTime = 0L;
+
     /**
      * Constructs a {@code PeerDownloadSpeedTracker}.
      */
@@ -99,5 +146,137 @@ public class PeerDownloadSpeedTracker {
         
         return averageRoundTripTime;
     }
-}
 
+    /**
+     * Records that we requested chunk with <tt>hash58</tt> from this peer, using up one slot of its request window.
+     */
+    public synchronized void recordChunkRequested(String hash58, long now) {
+        this.inFlightRequests.put(hash58, new InFlightRequest(now, this.deliveredCount));
+        this.lastAssignedTime = now;
+    }
+
+    /**
+     * Records that this peer delivered chunk with <tt>hash58</tt>, freeing its request window slot and growing the window.
+     *
+     * @return false if we weren't waiting for this chunk from this peer, e.g. a relayed chunk, or request had timed out
+     */
+    public synchronized boolean recordChunkDelivered(String hash58, long now) {
+        InFlightRequest request = this.inFlightRequests.remove(hash58);
+        if (request == null)
+            return false;
+
+        long roundTripTime = Math.max(1L, now - request.requestTime);
+        this.deliveredCount++;
+
+        // Round trip time mean and variance, for request timeout (RFC 6298)
+        if (this.smoothedRoundTripTime == null) {
+            this.smoothedRoundTripTime = (double) roundTripTime;
+            this.roundTripTimeVariance = roundTripTime / 2.0;
+        } else {
+            this.roundTripTimeVariance = 0.75 * this.roundTripTimeVariance + 0.25 * Math.abs(this.smoothedRoundTripTime - roundTripTime);
+            this.smoothedRoundTripTime = 0.875 * this.smoothedRoundTripTime + 0.125 * roundTripTime;
+        }
+
+        // Chunks delivered while this one was in flight, over its round trip time
+        double deliveryRate = (double) (this.deliveredCount - request.deliveredAtRequest) / roundTripTime;
+        if (deliveryRate >= this.maxDeliveryRate || now - this.maxDeliveryRateTime > DELIVERY_RATE_FILTER_WINDOW) {
+            this.maxDeliveryRate = deliveryRate;
+            this.maxDeliveryRateTime = now;
+        }
+
+        if (this.minRoundTripTime == 0L || roundTripTime <= this.minRoundTripTime || now - this.minRoundTripTimeTime > MIN_ROUND_TRIP_TIME_FILTER_WINDOW) {
+            this.minRoundTripTime = roundTripTime;
+            this.minRoundTripTimeTime = now;
+        }
+
+        // Slow start, then additive increase
+        if (this.requestWindow < this.slowStartThreshold)
+            this.requestWindow += 1.0;
+        else
+            this.requestWindow += 1.0 / this.requestWindow;
+
+        double bandwidthDelayProduct = this.maxDeliveryRate * this.minRoundTripTime;
+        double windowCap = Math.max(INITIAL_REQUEST_WINDOW, BDP_WINDOW_GAIN * bandwidthDelayProduct);
+        this.requestWindow = Math.min(this.requestWindow, Math.min(windowCap, MAX_REQUEST_WINDOW));
+
+        return true;
+    }
+
+    /**
+     * Returns number of further chunks we can request from this peer right now.
+     * <p>
+     * Requests that have timed out are no longer counted as in flight, and shrink the window.
+     */
+    public synchronized int getAvailableRequestWindow(long now) {
+        this.expireRequests(now);
+
+        return Math.max(0, (int) this.requestWindow - this.inFlightRequests.size());
+    }
+
+    /**
+     * Returns when we requested chunk with <tt>hash58</tt> from this peer, or null if not in flight,
+     * including if request has timed out.
+     */
+    public synchronized Long getRequestTime(String hash58, long now) {
+        this.expireRequests(now);
+
+        InFlightRequest request = this.inFlightRequests.get(hash58);
+        return request != null ? request.requestTime : null;
+    }
+
+    /** Forgets request for chunk with <tt>hash58</tt> without penalty, e.g. if it couldn't be sent. */
+    public synchronized void cancelRequest(String hash58) {
+        this.inFlightRequests.remove(hash58);
+    }
+
+    public synchronized int getInFlightCount() {
+        return this.inFlightRequests.size();
+    }
+
+    /** Returns request window, in chunks. */
+    public synchronized double getRequestWindow() {
+        return this.requestWindow;
+    }
+
+    /** Returns best recent delivery rate in chunks per second, or an estimate based on initial window if not yet measured. */
+    public synchronized double getDeliveryRate() {
+        if (this.maxDeliveryRate > 0.0)
+            return this.maxDeliveryRate * 1000.0;
+
+        return INITIAL_REQUEST_WINDOW * 1000.0 / DEFAULT_ROUND_TRIP_TIME;
+    }
+
+    /** Returns smoothed round trip time of our requests, in milliseconds, or null if none delivered yet. */
+    public synchronized Long getSmoothedRoundTripTime() {
+        return this.smoothedRoundTripTime != null ? Math.round(this.smoothedRoundTripTime) : null;
+    }
+
+    /** Returns how long, in milliseconds, before a request to this peer is considered timed out. */
+    public synchronized long getRequestTimeout() {
+        if (this.smoothedRoundTripTime == null)
+            return MAX_REQUEST_TIMEOUT;
+
+        long timeout = Math.round(this.smoothedRoundTripTime + 4 * this.roundTripTimeVariance);
+        return Math.max(MIN_REQUEST_TIMEOUT, Math.min(timeout, MAX_REQUEST_TIMEOUT));
+    }
+
+    /** Removes timed out requests, halving window, at most once per round trip as they're probably from the same burst. */
+    private void expireRequests(long now) {
+        long requestTimeout = this.getRequestTimeout();
+
+        Iterator<InFlightRequest> iterator = this.inFlightRequests.values().iterator();
+        while (iterator.hasNext()) {
+            InFlightRequest request = iterator.next();
+            if (now - request.requestTime <= requestTimeout)
+                continue;
+
+            iterator.remove();
+
+            if (request.requestTime > this.lastWindowReductionTime) {
+                this.slowStartThreshold = Math.max(1.0, this.requestWindow / 2.0);
+                this.requestWindow = this.slowStartThreshold;
+                this.lastWindowReductionTime = now;
+            }
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package org.qortal.network.message;
 
+import com.google.common.primitives.Bytes;
 import com.google.common.primitives.Ints;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.qortal.arbitrary.ArbitraryDataFile;
+import org.qortal.network.FileRegionFrame;
 import org.qortal.network.Network;
 import org.qortal.repository.DataException;
 import org.qortal.transform.Transformer;
@@ -12,8 +14,17 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32C;
 
 public class ArbitraryDataFileMessage extends Message {
 
@@ -26,6 +37,9 @@ public class ArbitraryDataFileMessage extends Message {
 	private static final int DATA_SIZE_LENGTH = 4;
 	private static final int CHECKSUM_LENGTH = 4;
 	private static final int MAX_DATA_SIZE = 10 * 1024 * 1024; // 10MB
+	// Checksum sidecar: chunk length, then payload's SHA-256 checksum, then payload's CRC32C checksum
+	private static final int CHECKSUM_SIDECAR_LENGTH = 8 + CHECKSUM_LENGTH + CHECKSUM_LENGTH;
+	private static final int CHECKSUM_READ_BUFFER_SIZE = 64 * 1024;
 
 	private byte[] signature;
 	private ArbitraryDataFile arbitraryDataFile;
@@ -152,6 +166,14 @@ public class ArbitraryDataFileMessage extends Message {
 	 */
 	@Override
 	public byte[] toBytes() throws MessageException {
+		return this.toBytes(false);
+	}
+
+	/**
+	 * As {@link #toBytes()}, but with CRC32C checksum if recipient has negotiated them.
+	 */
+	@Override
+	public byte[] toBytes(boolean useCrc32cChecksum) throws MessageException {
 		if (this.arbitraryDataFile == null) {
 			throw new MessageException("Missing arbitrary data file");
 		}
@@ -185,7 +207,7 @@ public class ArbitraryDataFileMessage extends Message {
 		}
 
 		byte[] dataBytes = dataBytesStream.toByteArray();
-		byte[] checksumBytes = Message.generateChecksum(dataBytes);
+		byte[] checksumBytes = useCrc32cChecksum ? Message.generateCrc32cChecksum(dataBytes) : Message.generateChecksum(dataBytes);
 
 		// Calculate full message length
 		int messageLength = MAGIC_LENGTH + TYPE_LENGTH + HAS_ID_LENGTH;
@@ -223,6 +245,157 @@ public class ArbitraryDataFileMessage extends Message {
 		}
 	}
 
+	/**
+	 * Serializes message as a frame that streams chunk from disk straight to the socket,
+	 * without loading chunk into memory.
+	 * <p>
+	 * Payload checksum is read from a sidecar file kept next to the chunk, so chunk isn't read here either,
+	 * except when sidecar is missing, e.g. the first time chunk is sent.
+	 *
+	 * @return frame, or null if chunk isn't on disk, e.g. when relaying from memory, in which case use {@link #toBytes()}
+	 */
+	public FileRegionFrame toFileRegionFrame() throws MessageException {
+		return this.toFileRegionFrame(false);
+	}
+
+	/**
+	 * As {@link #toFileRegionFrame()}, but with CRC32C checksum if recipient has negotiated them.
+	 *
+	 * @return frame, or null if chunk isn't on disk, in which case use {@link #toBytes(boolean)}
+	 */
+	public FileRegionFrame toFileRegionFrame(boolean useCrc32cChecksum) throws MessageException {
+		if (this.arbitraryDataFile == null) {
+			throw new MessageException("Missing arbitrary data file");
+		}
+
+		// Payload includes signature, so sidecar checksum is only valid for chunk stored under the same signature
+		Path filePath = this.arbitraryDataFile.getFilePath();
+		if (filePath == null || !Arrays.equals(this.signature, this.arbitraryDataFile.getSignature()))
+			return null;
+
+		int headerLength = MAGIC_LENGTH + TYPE_LENGTH + HAS_ID_LENGTH;
+		headerLength += this.hasId() ? ID_LENGTH : 0;
+		headerLength += DATA_SIZE_LENGTH + CHECKSUM_LENGTH + Transformer.SIGNATURE_LENGTH + Transformer.INT_LENGTH;
+
+		long fileLength;
+		byte[] checksumBytes;
+		try {
+			fileLength = Files.size(filePath);
+
+			if (headerLength + fileLength > MAX_DATA_SIZE)
+				throw new MessageException(String.format("About to send message with length %d larger than allowed %d", headerLength + fileLength, MAX_DATA_SIZE));
+
+			checksumBytes = getPayloadChecksum(filePath, fileLength, useCrc32cChecksum);
+		} catch (IOException e) {
+			throw new MessageException(String.format("Unable to prepare chunk %s: %s", filePath, e.getMessage()), e);
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(headerLength);
+
+		header.put(Network.getInstance().getMessageMagic());
+		header.putInt(this.type.value);
+
+		if (this.hasId()) {
+			header.put((byte) 1);
+			header.putInt(this.id);
+		} else {
+			header.put((byte) 0);
+		}
+
+		header.putInt(Transformer.SIGNATURE_LENGTH + Transformer.INT_LENGTH + (int) fileLength);
+		header.put(checksumBytes);
+
+		// Start of payload, followed by chunk itself
+		header.put(this.signature);
+		header.putInt((int) fileLength);
+
+		return new FileRegionFrame(header.array(), filePath, fileLength);
+	}
+
+	/**
+	 * Returns payload checksum for chunk at <tt>filePath</tt>, from its sidecar file if valid,
+	 * otherwise by reading chunk, then saving sidecar for next time.
+	 * <p>
+	 * Chunks are named by their hash, so they don't change, and sidecar only needs to confirm chunk's length.
+	 * Sidecar holds both kinds of checksum, so it serves peers whether or not they've negotiated CRC32C checksums.
+	 * Sidecars from before CRC32C checksums are the wrong length, so are simply replaced.
+	 */
+	private byte[] getPayloadChecksum(Path filePath, long fileLength, boolean useCrc32cChecksum) throws IOException {
+		Path sidecarPath = ArbitraryDataFile.getChecksumSidecarPath(filePath);
+		int checksumOffset = useCrc32cChecksum ? CHECKSUM_LENGTH : 0;
+
+		try {
+			ByteBuffer sidecar = ByteBuffer.wrap(Files.readAllBytes(sidecarPath));
+
+			if (sidecar.capacity() == CHECKSUM_SIDECAR_LENGTH && sidecar.getLong() == fileLength) {
+				byte[] checksumBytes = new byte[CHECKSUM_LENGTH];
+				sidecar.position(sidecar.position() + checksumOffset);
+				sidecar.get(checksumBytes);
+				return checksumBytes;
+			}
+		} catch (NoSuchFileException e) {
+			// Not sent before
+		}
+
+		byte[] checksums = this.generatePayloadChecksums(filePath, fileLength);
+
+		ByteBuffer sidecar = ByteBuffer.allocate(CHECKSUM_SIDECAR_LENGTH);
+		sidecar.putLong(fileLength);
+		sidecar.put(checksums);
+
+		try {
+			Files.write(sidecarPath, sidecar.array());
+		} catch (IOException e) {
+			// We can still send chunk, but will have to read it again next time
+			LOGGER.debug("Unable to save checksum for chunk {}: {}", filePath, e.getMessage());
+		}
+
+		return Arrays.copyOfRange(checksums, checksumOffset, checksumOffset + CHECKSUM_LENGTH);
+	}
+
+	/**
+	 * Returns checksums of payload, as per {@link Message#generateChecksum(byte[])} followed by
+	 * {@link Message#generateCrc32cChecksum(byte[])}, streaming chunk from disk once for both.
+	 */
+	private byte[] generatePayloadChecksums(Path filePath, long fileLength) throws IOException {
+		MessageDigest sha256;
+		try {
+			sha256 = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-256 message digest not available");
+		}
+
+		CRC32C crc32c = new CRC32C();
+
+		byte[] payloadPrefix = Bytes.concat(this.signature, Ints.toByteArray((int) fileLength));
+		sha256.update(payloadPrefix);
+		crc32c.update(payloadPrefix);
+
+		ByteBuffer buffer = ByteBuffer.allocate(CHECKSUM_READ_BUFFER_SIZE);
+		long bytesRemaining = fileLength;
+
+		try (FileChannel fileChannel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+			while (bytesRemaining > 0) {
+				buffer.clear();
+				if (bytesRemaining < buffer.capacity())
+					buffer.limit((int) bytesRemaining);
+
+				int bytesRead = fileChannel.read(buffer);
+				if (bytesRead < 0)
+					throw new IOException(String.format("Chunk %s shorter than expected %d bytes", filePath, fileLength));
+
+				buffer.flip();
+				sha256.update(buffer);
+
+				buffer.rewind();
+				crc32c.update(buffer);
+				bytesRemaining -= bytesRead;
+			}
+		}
+
+		return Bytes.concat(Arrays.copyOfRange(sha256.digest(), 0, CHECKSUM_LENGTH), Ints.toByteArray((int) crc32c.getValue()));
+	}
+
 	public static Message fromByteBuffer(int id, ByteBuffer byteBuffer) throws MessageException {
 		byte[] signature = new byte[Transformer.SIGNATURE_LENGTH];
 		byteBuffer.get(signature);
@@ -9,6 +9,9 @@ import java.io.IOException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.zip.CRC32C;
 
 /**
  * Network message for sending over network, or unpacked data received from network.
@@ -31,6 +34,13 @@ import java.util.Arrays;
  * For subclasses where outgoing versions might be usefully cached, they can implement Clonable
  * as long if they are safe to use {@link Object#clone()}.
  * </p>
+ * <p></p>
+ * <p>
+ * Checksums are the first 4 bytes of the payload's SHA-256 digest. Payloads of some message types, e.g. QDN chunks,
+ * are already checked against their own hash by the recipient, so peers that both offer the
+ * {@link org.qortal.network.helper.PeerCapabilities#CRC32C_CHECKSUMS} capability use a cheaper CRC32C checksum
+ * for those types instead, just to catch framing errors.
+ * </p>
  */
 public abstract class Message {
 
@@ -44,6 +54,9 @@ public abstract class Message {
 
 	private static final int MAX_DATA_SIZE = 10 * 1024 * 1024; // 10MB
 
+	/** Message types whose payload is checked against its own hash by recipient */
+	private static final Set<MessageType> SELF_VERIFYING_TYPES = EnumSet.of(MessageType.ARBITRARY_DATA_FILE);
+
 	protected static final byte[] EMPTY_DATA_BYTES = new byte[0];
 	private static final ByteBuffer EMPTY_READ_ONLY_BYTE_BUFFER = ByteBuffer.wrap(EMPTY_DATA_BYTES).asReadOnlyBuffer();
 
@@ -90,6 +103,18 @@ public abstract class Message {
 	 * @throws MessageException if message could not be decoded or is invalid
 	 */
 	public static Message fromByteBuffer(ByteBuffer readOnlyBuffer) throws MessageException {
+		return fromByteBuffer(readOnlyBuffer, false);
+	}
+
+	/**
+	 * Attempt to read a message from byte buffer.
+	 *
+	 * @param readOnlyBuffer ByteBuffer containing bytes read from network
+	 * @param allowCrc32cChecksum true if sending peer has negotiated CRC32C checksums for self-verifying message types
+	 * @return null if no complete message can be read
+	 * @throws MessageException if message could not be decoded or is invalid
+	 */
+	public static Message fromByteBuffer(ByteBuffer readOnlyBuffer, boolean allowCrc32cChecksum) throws MessageException {
 		try {
 			// Read only enough bytes to cover Message "magic" preamble
 			byte[] messageMagic = new byte[MAGIC_LENGTH];
@@ -136,8 +161,7 @@ public abstract class Message {
 				dataSlice.limit(dataSize);
 
 				// Test checksum
-				byte[] actualChecksum = generateChecksum(dataSlice);
-				if (!Arrays.equals(expectedChecksum, actualChecksum))
+				if (!isChecksumValid(expectedChecksum, dataSlice, messageType, allowCrc32cChecksum))
 					throw new MessageException("Message checksum incorrect");
 
 				// Reset position after being consumed by generateChecksum
@@ -161,6 +185,35 @@ public abstract class Message {
 		return Arrays.copyOfRange(Crypto.digest(dataBuffer), 0, CHECKSUM_LENGTH);
 	}
 
+	/** Returns true if <tt>messageType</tt> can use CRC32C checksums, with peers that have negotiated them. */
+	public static boolean hasSelfVerifyingPayload(MessageType messageType) {
+		return SELF_VERIFYING_TYPES.contains(messageType);
+	}
+
+	protected static byte[] generateCrc32cChecksum(byte[] data) {
+		CRC32C crc32c = new CRC32C();
+		crc32c.update(data);
+		return Ints.toByteArray((int) crc32c.getValue());
+	}
+
+	protected static byte[] generateCrc32cChecksum(ByteBuffer dataBuffer) {
+		CRC32C crc32c = new CRC32C();
+		crc32c.update(dataBuffer);
+		return Ints.toByteArray((int) crc32c.getValue());
+	}
+
+	private static boolean isChecksumValid(byte[] expectedChecksum, ByteBuffer dataSlice, MessageType messageType, boolean allowCrc32cChecksum) {
+		if (allowCrc32cChecksum && hasSelfVerifyingPayload(messageType)) {
+			if (Arrays.equals(expectedChecksum, generateCrc32cChecksum(dataSlice)))
+				return true;
+
+			// Peer can still send SHA-256 checksums, e.g. message serialized before handshake completed
+			dataSlice.position(0);
+		}
+
+		return Arrays.equals(expectedChecksum, generateChecksum(dataSlice));
+	}
+
 	public void checkValidOutgoing() throws MessageException {
 		// We expect subclass to have initialized these
 		if (this.dataBytes == null)
@@ -209,6 +262,17 @@ public abstract class Message {
 		}
 	}
 
+	/**
+	 * Serializes message for a recipient that may have negotiated CRC32C checksums.
+	 * <p>
+	 * Subclasses of self-verifying message types override this to use CRC32C checksum when allowed.
+	 *
+	 * @param useCrc32cChecksum true if recipient has negotiated CRC32C checksums
+	 */
+	public byte[] toBytes(boolean useCrc32cChecksum) throws MessageException {
+		return this.toBytes();
+	}
+
 	public static <M extends Message> M cloneWithNewId(M message, int newId) {
 		M clone;
 
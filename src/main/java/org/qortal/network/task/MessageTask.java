@@ -6,6 +6,7 @@ import org.qortal.network.Network;
 import org.qortal.network.NetworkData;
 import org.qortal.network.Peer;
 import org.qortal.network.message.Message;
+import org.qortal.network.message.MessageType;
 import org.qortal.utils.ExecuteProduceConsume.Task;
 
 public class MessageTask implements Task {
@@ -26,6 +27,16 @@ public class MessageTask implements Task {
         return name;
     }
 
+    public MessageType getMessageType() {
+        return nextMessage.getType();
+    }
+
+    /** Called if message is discarded without being handled. */
+    public void onShed() {
+        // Allow peer's next handshaking message to be processed
+        peer.resetHandshakeMessagePending();
+    }
+
     @Override
     public void perform() throws InterruptedException {
         try {
@@ -2,6 +2,7 @@ package org.qortal.repository;
 
 import org.qortal.data.account.*;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -202,6 +203,23 @@ public interface AccountRepository {
 
 	public RewardShareData getRewardShare(byte[] rewardSharePublicKey) throws DataException;
 
+	static class RewardShareMinterData {
+		public final RewardShareData rewardShareData;
+		public final AccountData minterAccountData;
+
+		public RewardShareMinterData(RewardShareData rewardShareData, AccountData minterAccountData) {
+			this.rewardShareData = rewardShareData;
+			this.minterAccountData = minterAccountData;
+		}
+	}
+
+	/**
+	 * Returns reward-shares, along with their minting accounts, for many reward-share public keys in one query.
+	 * <p>
+	 * Unknown reward-share public keys are omitted from results.
+	 */
+	public List<RewardShareMinterData> getRewardSharesWithMinters(Collection<byte[]> rewardSharePublicKeys) throws DataException;
+
 	public List<byte[]> getRewardSharePublicKeys() throws DataException;
 
 	public boolean isRewardSharePublicKey(byte[] publicKey) throws DataException;
@@ -1,6 +1,7 @@
 package org.qortal.repository;
 
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.RateLimiter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.qortal.block.Block;
@@ -14,15 +15,26 @@ import org.qortal.settings.Settings;
 import org.qortal.transform.TransformationException;
 import org.qortal.transform.block.BlockTransformation;
 import org.qortal.transform.block.BlockTransformer;
+import org.qortal.utils.NamedThreadFactory;
 import org.qortal.utils.StringUtils;
 
 import java.io.ByteArrayOutputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class BlockArchiveWriter {
 
@@ -43,6 +55,15 @@ public class BlockArchiveWriter {
     public static final long DEFAULT_FILE_SIZE_TARGET_V1 = 100 * 1024 * 1024; // 100MiB
     public static final long DEFAULT_FILE_SIZE_TARGET_V2 = 10 * 1024 * 1024; // 10MiB
 
+    // Number of blocks serialized ahead of the one being written, to bound memory usage
+    private static final int SERIALIZE_AHEAD = 16;
+    private static final int SERIALIZE_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+    private static final long SYNCHRONIZER_WAIT = 1000L; // ms
+
+    // Marks the point at which a block couldn't be fetched
+    private static final Future<SerializedBlock> BLOCK_NOT_FOUND = CompletableFuture.completedFuture(null);
+
     private int startHeight;
     private final int endHeight;
     private final Integer serializationVersion;
@@ -145,149 +166,250 @@ public class BlockArchiveWriter {
             startHeight = 2;
         }
 
-        // Header bytes will store the block indexes
-        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
-        // Bytes will store the actual block data
-        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // Block data is streamed to a temporary file, as we don't know how long the header will be until we're done.
+        // Temporary filenames don't contain a hyphen, so BlockArchiveReader never mistakes them for archive files.
+        Path dataPath = archivePath.resolve(String.format("%d.data.tmp", startHeight));
 
-        LOGGER.info(String.format("Fetching blocks from height %d...", startHeight));
-        int i = 0;
-        while (headerBytes.size() + bytes.size() < this.fileSizeTarget) {
+        ExecutorService serializeExecutor = Executors.newFixedThreadPool(SERIALIZE_THREADS, new NamedThreadFactory("Archive-serializer", Thread.NORM_PRIORITY));
 
-            // pause, since this can be a long process and other processes need to execute
-            Thread.sleep(Settings.getInstance().getArchivingPause());
+        try (FileChannel dataChannel = FileChannel.open(dataPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Header bytes will store the block indexes
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
 
-            if (Controller.isStopping()) {
-                return BlockArchiveWriteResult.STOPPING;
-            }
+            // Blocks being serialized, in height order. Blocks are fetched on this thread, as the repository isn't thread-safe.
+            Deque<Future<SerializedBlock>> serializedBlocks = new ArrayDeque<>(SERIALIZE_AHEAD);
+            int nextHeight = startHeight;
+            boolean isFetchComplete = nextHeight > endHeight;
 
-            // wait until the Synchronizer stops
-            if( Synchronizer.getInstance().isSynchronizing() )
-                continue;
+            // Limits the rate of archive writes, so that other processes get a fair share of I/O
+            final long archivingRate = Settings.getInstance().getArchivingRate();
+            RateLimiter rateLimiter = archivingRate > 0 ? RateLimiter.create(archivingRate) : null;
 
-            int currentHeight = startHeight + i;
-            if (currentHeight > endHeight) {
-                break;
-            }
+            LOGGER.info(String.format("Fetching blocks from height %d...", startHeight));
+            int i = 0;
+            while (headerBytes.size() + dataChannel.position() < this.fileSizeTarget) {
+
+                if (Controller.isStopping()) {
+                    return BlockArchiveWriteResult.STOPPING;
+                }
 
-            //LOGGER.info("Fetching block {}...", currentHeight);
-
-            BlockData blockData = null;
-            List<TransactionData> transactions = null;
-            List<ATStateData> atStates = null;
-            byte[] atStatesHash = null;
-
-            switch (this.dataSource) {
-                case BLOCK_ARCHIVE:
-                    BlockTransformation archivedBlock = BlockArchiveReader.getInstance().fetchBlockAtHeight(currentHeight);
-                    if (archivedBlock != null) {
-                        blockData = archivedBlock.getBlockData();
-                        transactions = archivedBlock.getTransactions();
-                        atStates = archivedBlock.getAtStates();
-                        atStatesHash = archivedBlock.getAtStatesHash();
+                // Keep the next few blocks serializing
+                while (!isFetchComplete && serializedBlocks.size() < SERIALIZE_AHEAD) {
+                    // wait until the Synchronizer stops
+                    while (Synchronizer.getInstance().isSynchronizing()) {
+                        Thread.sleep(SYNCHRONIZER_WAIT);
+
+                        if (Controller.isStopping()) {
+                            return BlockArchiveWriteResult.STOPPING;
+                        }
                     }
-                    break;
 
-                case BLOCK_REPOSITORY:
-                default:
-                    blockData = repository.getBlockRepository().fromHeight(currentHeight);
+                    Block block = this.fetchBlock(nextHeight);
+                    if (block == null) {
+                        serializedBlocks.add(BLOCK_NOT_FOUND);
+                        isFetchComplete = true;
+                        break;
+                    }
+
+                    serializedBlocks.add(serializeExecutor.submit(() -> new SerializedBlock(block.getBlockData(), this.serialize(block))));
+
+                    nextHeight++;
+                    isFetchComplete = nextHeight > endHeight;
+                }
+
+                Future<SerializedBlock> serializedBlockFuture = serializedBlocks.poll();
+                if (serializedBlockFuture == null) {
+                    // No more blocks to archive
                     break;
+                }
+                if (serializedBlockFuture == BLOCK_NOT_FOUND) {
+                    return BlockArchiveWriteResult.BLOCK_NOT_FOUND;
+                }
+
+                SerializedBlock serializedBlock = waitForBlock(serializedBlockFuture);
+                BlockData blockData = serializedBlock.blockData;
+                byte[] blockBytes = serializedBlock.bytes;
+
+                // Write the signature and height into the BlockArchive table
+                BlockArchiveData blockArchiveData = new BlockArchiveData(blockData);
+                repository.getBlockArchiveRepository().save(blockArchiveData);
+                repository.saveChanges();
+
+                // Write block index to header
+                headerBytes.write(Ints.toByteArray((int) dataChannel.position()));
+
+                // Write block height, length and bytes
+                ByteBuffer blockBuffer = ByteBuffer.allocate(2 * Integer.BYTES + blockBytes.length);
+                blockBuffer.putInt(blockData.getHeight());
+                blockBuffer.putInt(blockBytes.length);
+                blockBuffer.put(blockBytes);
+                blockBuffer.flip();
+                while (blockBuffer.hasRemaining()) {
+                    dataChannel.write(blockBuffer);
+                }
+
+                if (rateLimiter != null) {
+                    rateLimiter.acquire(blockBuffer.limit());
+                }
+
+                // Log every 1000 blocks
+                if (this.shouldLogProgress && i % 1000 == 0) {
+                    LOGGER.info("Archived up to block height {}. Size of current file: {}", blockData.getHeight(), StringUtils.formatBytes(headerBytes.size() + dataChannel.position()));
+                }
+
+                i++;
+
             }
+            long totalLength = headerBytes.size() + dataChannel.position();
+            LOGGER.info("Total length of {} blocks is {}", i, StringUtils.formatBytes(totalLength));
 
-            if (blockData == null) {
-                return BlockArchiveWriteResult.BLOCK_NOT_FOUND;
+            // Validate file size, in case something went wrong
+            if (totalLength < fileSizeTarget && this.shouldEnforceFileSizeTarget) {
+                return BlockArchiveWriteResult.NOT_ENOUGH_BLOCKS;
             }
 
-            // Write the signature and height into the BlockArchive table
-            BlockArchiveData blockArchiveData = new BlockArchiveData(blockData);
-            repository.getBlockArchiveRepository().save(blockArchiveData);
-            repository.saveChanges();
+            // We have enough blocks to create a new file
+            int endHeight = startHeight + i - 1;
+            Path filePath = Paths.get(String.format("%s/%d-%d.dat", archivePath.toString(), startHeight, endHeight));
+            this.writeArchiveFile(filePath, endHeight, i, headerBytes, dataChannel);
 
-            // Build the block
-            Block block;
-            if (atStatesHash != null) {
-                block = new Block(repository, blockData, transactions, atStatesHash);
-            }
-            else if (atStates != null) {
-                block = new Block(repository, blockData, transactions, atStates);
-            }
-            else {
-                block = new Block(repository, blockData);
-            }
+            // Invalidate cache so that the rest of the app picks up the new file
+            BlockArchiveReader.getInstance().invalidateFileListCache();
 
-            // Write the block data to some byte buffers
-            int blockIndex = bytes.size();
-            // Write block index to header
-            headerBytes.write(Ints.toByteArray(blockIndex));
-            // Write block height
-            bytes.write(Ints.toByteArray(block.getBlockData().getHeight()));
-
-            // Get serialized block bytes
-            byte[] blockBytes;
-            switch (serializationVersion) {
-                case 1:
-                    blockBytes = BlockTransformer.toBytes(block);
-                    break;
+            this.writtenCount = i;
+            this.lastWrittenHeight = endHeight;
+            this.outputPath = filePath;
+            return BlockArchiveWriteResult.OK;
 
-                case 2:
-                    blockBytes = BlockTransformer.toBytesV2(block);
-                    break;
+        } finally {
+            serializeExecutor.shutdownNow();
+            Files.deleteIfExists(dataPath);
+        }
+    }
 
-                default:
-                    throw new DataException("Invalid serialization version");
-            }
+    private Block fetchBlock(int height) throws DataException {
+        BlockData blockData = null;
+        List<TransactionData> transactions = null;
+        List<ATStateData> atStates = null;
+        byte[] atStatesHash = null;
+
+        switch (this.dataSource) {
+            case BLOCK_ARCHIVE:
+                BlockTransformation archivedBlock = BlockArchiveReader.getInstance().fetchBlockAtHeight(height);
+                if (archivedBlock != null) {
+                    blockData = archivedBlock.getBlockData();
+                    transactions = archivedBlock.getTransactions();
+                    atStates = archivedBlock.getAtStates();
+                    atStatesHash = archivedBlock.getAtStatesHash();
+                }
+                break;
+
+            case BLOCK_REPOSITORY:
+            default:
+                blockData = repository.getBlockRepository().fromHeight(height);
+                break;
+        }
 
-            // Write block length
-            bytes.write(Ints.toByteArray(blockBytes.length));
-            // Write block bytes
-            bytes.write(blockBytes);
+        if (blockData == null) {
+            return null;
+        }
 
-            // Log every 1000 blocks
-            if (this.shouldLogProgress && i % 1000 == 0) {
-                LOGGER.info("Archived up to block height {}. Size of current file: {}", currentHeight, StringUtils.formatBytes(headerBytes.size() + bytes.size()));
-            }
+        // Build the block
+        Block block;
+        if (atStatesHash != null) {
+            block = new Block(repository, blockData, transactions, atStatesHash);
+        }
+        else if (atStates != null) {
+            block = new Block(repository, blockData, transactions, atStates);
+        }
+        else {
+            block = new Block(repository, blockData);
+        }
 
-            i++;
+        // Load anything still needed from the repository now, as blocks are serialized on other threads
+        block.getTransactions();
+        if (block.getAtStatesHash() == null) {
+            block.getATStates();
+        }
 
+        return block;
+    }
+
+    private byte[] serialize(Block block) throws TransformationException, DataException {
+        switch (serializationVersion) {
+            case 1:
+                return BlockTransformer.toBytes(block);
+
+            case 2:
+                return BlockTransformer.toBytesV2(block);
+
+            default:
+                throw new DataException("Invalid serialization version");
         }
-        int totalLength = headerBytes.size() + bytes.size();
-        LOGGER.info("Total length of {} blocks is {}", i, StringUtils.formatBytes(totalLength));
+    }
 
-        // Validate file size, in case something went wrong
-        if (totalLength < fileSizeTarget && this.shouldEnforceFileSizeTarget) {
-            return BlockArchiveWriteResult.NOT_ENOUGH_BLOCKS;
+    private static SerializedBlock waitForBlock(Future<SerializedBlock> serializedBlock) throws DataException, TransformationException, InterruptedException {
+        try {
+            return serializedBlock.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DataException)
+                throw (DataException) e.getCause();
+            if (e.getCause() instanceof TransformationException)
+                throw (TransformationException) e.getCause();
+
+            throw new DataException("Unable to serialize block", e.getCause());
         }
+    }
+
+    private void writeArchiveFile(Path filePath, int endHeight, int count, ByteArrayOutputStream headerBytes, FileChannel dataChannel) throws IOException {
+        // Write to a temporary file first, so that a partially written file is never picked up
+        Path tempFilePath = archivePath.resolve(String.format("%d_%d.tmp", startHeight, endHeight));
+
+        try (FileChannel fileChannel = FileChannel.open(tempFilePath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(6 * Integer.BYTES + headerBytes.size());
+            // Write version number
+            header.putInt(serializationVersion);
+            // Write start height
+            header.putInt(startHeight);
+            // Write end height
+            header.putInt(endHeight);
+            // Write total count
+            header.putInt(count);
+            // Write dynamic header (block indexes) segment length
+            header.putInt(headerBytes.size());
+            // Write dynamic header (block indexes) data
+            header.put(headerBytes.toByteArray());
+            // Write data segment (block data) length
+            header.putInt((int) dataChannel.position());
+            header.flip();
+            while (header.hasRemaining()) {
+                fileChannel.write(header);
+            }
+
+            // Write data
+            final long dataLength = dataChannel.position();
+            long transferred = 0;
+            while (transferred < dataLength) {
+                transferred += dataChannel.transferTo(transferred, dataLength - transferred, fileChannel);
+            }
+
+            fileChannel.force(false);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFilePath);
+            throw e;
+        }
+
+        Files.move(tempFilePath, filePath, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static class SerializedBlock {
+        private final BlockData blockData;
+        private final byte[] bytes;
 
-        // We have enough blocks to create a new file
-        int endHeight = startHeight + i - 1;
-        String filePath = String.format("%s/%d-%d.dat", archivePath.toString(), startHeight, endHeight);
-        FileOutputStream fileOutputStream = new FileOutputStream(filePath);
-        // Write version number
-        fileOutputStream.write(Ints.toByteArray(serializationVersion));
-        // Write start height
-        fileOutputStream.write(Ints.toByteArray(startHeight));
-        // Write end height
-        fileOutputStream.write(Ints.toByteArray(endHeight));
-        // Write total count
-        fileOutputStream.write(Ints.toByteArray(i));
-        // Write dynamic header (block indexes) segment length
-        fileOutputStream.write(Ints.toByteArray(headerBytes.size()));
-        // Write dynamic header (block indexes) data
-        headerBytes.writeTo(fileOutputStream);
-        // Write data segment (block data) length
-        fileOutputStream.write(Ints.toByteArray(bytes.size()));
-        // Write data
-        bytes.writeTo(fileOutputStream);
-        // Close the file
-        fileOutputStream.close();
-
-        // Invalidate cache so that the rest of the app picks up the new file
-        BlockArchiveReader.getInstance().invalidateFileListCache();
-
-        this.writtenCount = i;
-        this.lastWrittenHeight = endHeight;
-        this.outputPath = Paths.get(filePath);
-        return BlockArchiveWriteResult.OK;
+        private SerializedBlock(BlockData blockData, byte[] bytes) {
+            this.blockData = blockData;
+            this.bytes = bytes;
+        }
     }
 
     public int getWrittenCount() {
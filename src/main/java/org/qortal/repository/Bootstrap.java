@@ -16,6 +16,7 @@ import org.qortal.repository.hsqldb.HSQLDBRepositoryFactory;
 import org.qortal.settings.Settings;
 import org.qortal.utils.NTP;
 import org.qortal.utils.SevenZ;
+import org.qortal.utils.SplitXZ;
 
 import java.io.BufferedInputStream;
 import java.io.FileOutputStream;
@@ -275,7 +276,12 @@ public class Bootstrap {
             }
 
             LOGGER.info("Compressing...");
-            SevenZ.compress(compressedOutputPath.toString(), outputPath.toFile());
+            if (Settings.getInstance().isBootstrapSplitXZEnabled()) {
+                SplitXZ.compress(compressedOutputPath.toString(), outputPath.toFile());
+            }
+            else {
+                SevenZ.compress(compressedOutputPath.toString(), outputPath.toFile());
+            }
 
             LOGGER.info("Generating checksum file...");
             String checksum = Crypto.digestHexString(compressedOutputPath.toFile(), 1024*1024);
@@ -461,7 +467,13 @@ public class Bootstrap {
             FileUtils.deleteDirectory(outputPath.toFile());
 
             this.updateStatus("Extracting bootstrap...");
-            SevenZ.decompress(input.toString(), output.toFile());
+            // Bootstraps keep their .7z filename whichever format they are in, so check the contents
+            if (SplitXZ.isSplitXZ(input)) {
+                SplitXZ.decompress(input.toString(), output.toFile());
+            }
+            else {
+                SevenZ.decompress(input.toString(), output.toFile());
+            }
 
             if (!inputPath.toFile().exists()) {
                 throw new DataException("Extracted bootstrap doesn't exist");
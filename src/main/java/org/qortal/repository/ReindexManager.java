@@ -13,7 +13,14 @@ import org.qortal.transaction.Transaction;
 import org.qortal.transform.block.BlockTransformation;
 import org.qortal.utils.Base58;
 import org.qortal.utils.NTP;
-
+import org.qortal.utils.NamedThreadFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeoutException;
 
 public class ReindexManager {
@@ -25,6 +32,10 @@ public class ReindexManager {
     private final int pruneAndTrimBlockInterval = 2000;
     private final int maintenanceBlockInterval = 50000;
 
+    // Number of blocks decoded ahead of the one being processed, to bound memory usage
+    private static final int DECODE_AHEAD = 32;
+    private static final int DECODE_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
     private boolean resume = false;
 
     public ReindexManager() {
@@ -94,36 +105,66 @@ public class ReindexManager {
     private void processBlocks() throws DataException {
         LOGGER.info("Processing blocks...");
 
-        int height = this.repository.getBlockRepository().getBlockchainHeight();
-        while (true) {
-            height++;
+        // Blocks are decoded and have their signatures verified on other threads, as none of that depends
+        // on chain state. This thread is then left with validating and processing them, in order.
+        ExecutorService decodeExecutor = Executors.newFixedThreadPool(DECODE_THREADS, new NamedThreadFactory("Reindex-decoder", Thread.NORM_PRIORITY));
+        Deque<Future<Block>> decodedBlocks = new ArrayDeque<>(DECODE_AHEAD);
 
-            boolean processed = this.processBlock(height);
-            if (!processed) {
-                LOGGER.info("Block {} couldn't be processed. If this is the last archived block, then the process is complete.", height);
-                break; // TODO: check if complete
+        try {
+            int height = this.repository.getBlockRepository().getBlockchainHeight();
+            int nextDecodeHeight = height + 1;
+            while (true) {
+                height++;
+
+                // Keep the next few blocks decoding
+                while (decodedBlocks.size() < DECODE_AHEAD) {
+                    final int decodeHeight = nextDecodeHeight++;
+                    decodedBlocks.add(decodeExecutor.submit(() -> this.fetchBlock(decodeHeight)));
+                }
+
+                Block block = this.waitForBlock(decodedBlocks.poll(), height);
+
+                boolean processed = this.processBlock(height, block);
+                if (!processed) {
+                    LOGGER.info("Block {} couldn't be processed. If this is the last archived block, then the process is complete.", height);
+                    break; // TODO: check if complete
+                }
+
+                // Prune and trim regularly, leaving a buffer
+                if (height >= pruneAndTrimBlockInterval*2 && height % pruneAndTrimBlockInterval == 0) {
+                    int startHeight = Math.max(height - pruneAndTrimBlockInterval*2, 2);
+                    int endHeight = height - pruneAndTrimBlockInterval;
+                    LOGGER.info("Pruning and trimming blocks {} to {}...", startHeight, endHeight);
+                    this.repository.getATRepository().rebuildLatestAtStates(height - 250);
+                    this.repository.saveChanges();
+                    this.prune(startHeight, endHeight);
+                    this.trim(startHeight, endHeight);
+                }
+
+                // Run repository maintenance regularly, to keep blockchain.data size down
+                if (height % maintenanceBlockInterval == 0) {
+                    this.runRepositoryMaintenance();
+                }
             }
+        } finally {
+            decodeExecutor.shutdownNow();
+        }
+    }
 
-            // Prune and trim regularly, leaving a buffer
-            if (height >= pruneAndTrimBlockInterval*2 && height % pruneAndTrimBlockInterval == 0) {
-                int startHeight = Math.max(height - pruneAndTrimBlockInterval*2, 2);
-                int endHeight = height - pruneAndTrimBlockInterval;
-                LOGGER.info("Pruning and trimming blocks {} to {}...", startHeight, endHeight);
-                this.repository.getATRepository().rebuildLatestAtStates(height - 250);
-                this.repository.saveChanges();
-                this.prune(startHeight, endHeight);
-                this.trim(startHeight, endHeight);
-            }
+    private Block waitForBlock(Future<Block> decodedBlock, int height) throws DataException {
+        try {
+            return decodedBlock.get();
+        } catch (InterruptedException e) {
+            throw new DataException("Interrupted before complete");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DataException)
+                throw (DataException) e.getCause();
 
-            // Run repository maintenance regularly, to keep blockchain.data size down
-            if (height % maintenanceBlockInterval == 0) {
-                this.runRepositoryMaintenance();
-            }
+            throw new DataException(String.format("Unable to decode block at height %d", height), e.getCause());
         }
     }
 
-    private boolean processBlock(int height) throws DataException {
-        Block block = this.fetchBlock(height);
+    private boolean processBlock(int height, Block block) throws DataException {
         if (block == null) {
             return false;
         }
@@ -160,18 +201,31 @@ public class ReindexManager {
         return true;
     }
 
-    private Block fetchBlock(int height) {
+    /**
+     * Decodes archived block at given height, and verifies its signatures.
+     * <p>
+     * Called from decoder threads, so mustn't use the repository. The returned block
+     * holds a reference to it, but only uses it once processed on the main thread.
+     */
+    private Block fetchBlock(int height) throws DataException {
         BlockTransformation b = BlockArchiveReader.getInstance().fetchBlockAtHeight(height);
-        if (b != null) {
-            if (b.getAtStatesHash() != null) {
-                return new Block(this.repository, b.getBlockData(), b.getTransactions(), b.getAtStatesHash());
-            }
-            else {
-                return new Block(this.repository, b.getBlockData(), b.getTransactions(), b.getAtStates());
-            }
+        if (b == null) {
+            return null;
+        }
+
+        Block block;
+        if (b.getAtStatesHash() != null) {
+            block = new Block(this.repository, b.getBlockData(), b.getTransactions(), b.getAtStatesHash());
+        }
+        else {
+            block = new Block(this.repository, b.getBlockData(), b.getTransactions(), b.getAtStates());
+        }
+
+        if (!block.areSignaturesValid()) {
+            throw new DataException(String.format("Invalid block at height %d: signature incorrect", height));
         }
 
-        return null;
+        return block;
     }
 
     private void addToBlockArchive(BlockData blockData) throws DataException {
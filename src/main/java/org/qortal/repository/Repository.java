@@ -38,17 +38,26 @@ public interface Repository extends AutoCloseable {
 
 	public void discardChanges() throws DataException;
 
-	/**
-	 * Commit changes and immediately checkpoint to ensure durability.
-	 * Use this ONLY for critical state that must survive restarts (e.g., DatabaseInfo flags).
-	 * Regular transactions should use saveChanges() which relies on periodic checkpoints.
-	 */
-	public void saveChangesAndCheckpoint() throws DataException;
-
 	public void setSavepoint() throws DataException;
 
 	public void rollbackToSavepoint() throws DataException;
 
+	/**
+	 * Enables, or disables, batching of saves.
+	 * <p>
+	 * Whilst enabled, saves may be held back and written together, but always before anything
+	 * that could observe them is executed. Disabling writes any saves that are still pending.
+	 */
+	public void setBatchedSaves(boolean batchedSaves) throws DataException;
+
+	/**
+	 * Enables, or disables, in-memory tracking of account asset balances.
+	 * <p>
+	 * Whilst enabled, each balance is read once and changes are applied in memory, with net changes
+	 * written before anything that could observe them is executed. Disabling writes any changes that are still pending.
+	 */
+	public void setBalanceLedger(boolean useLedger) throws DataException;
+
 	@Override
 	public void close() throws DataException;
 
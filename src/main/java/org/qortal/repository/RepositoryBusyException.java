@@ -0,0 +1,16 @@
+package org.qortal.repository;
+
+/**
+ * Thrown when a repository session isn't available in time, e.g. when API sessions are saturated.
+ * <p>
+ * Callers should treat this as temporary and try again later.
+ */
+public class RepositoryBusyException extends DataException {
+
+	private static final long serialVersionUID = 4473525393562478409L;
+
+	public RepositoryBusyException(String message) {
+		super(message);
+	}
+
+}
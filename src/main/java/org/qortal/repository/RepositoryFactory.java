@@ -12,6 +12,17 @@ public interface RepositoryFactory {
 
 	public Repository tryRepository() throws DataException;
 
+	/**
+	 * Returns read-only repository session for serving API requests, separate from sessions used by core threads.
+	 * <p>
+	 * Defaults to a normal session for factories that don't support this.
+	 *
+	 * @throws RepositoryBusyException if no session becomes available in time
+	 */
+	public default Repository getApiRepository() throws DataException {
+		return this.getRepository();
+	}
+
 	public void close() throws DataException;
 
 	// Not ideal place for this but implementating class will know the answer without having to open a new DB session
@@ -57,6 +57,20 @@ public abstract class RepositoryManager {
 		return repositoryFactory.tryRepository();
 	}
 
+	/**
+	 * Returns read-only repository session for read-only API requests.
+	 * <p>
+	 * These come from their own, limited, pool so that API load can't starve block processing, synchronization, etc.
+	 *
+	 * @throws RepositoryBusyException if API sessions are saturated
+	 */
+	public static Repository getApiRepository() throws DataException {
+		if (repositoryFactory == null)
+			throw new DataException("No repository available");
+
+		return repositoryFactory.getApiRepository();
+	}
+
 	public static void closeRepositoryFactory() throws DataException {
 		repositoryFactory.close();
 		repositoryFactory = null;
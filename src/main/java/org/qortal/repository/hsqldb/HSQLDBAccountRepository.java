@@ -10,6 +10,7 @@ import org.qortal.repository.DataException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -393,6 +394,15 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public AccountBalanceData getBalance(String address, long assetId) throws DataException {
+		HSQLDBBalanceLedger balanceLedger = this.repository.getBalanceLedger();
+		if (balanceLedger != null) {
+			try {
+				return balanceLedger.getBalance(address, assetId);
+			} catch (SQLException e) {
+				throw new DataException("Unable to fetch account balance from repository", e);
+			}
+		}
+
 		String sql = "SELECT balance FROM AccountBalances WHERE account = ? AND asset_id = ? LIMIT 1";
 
 		try (ResultSet resultSet = this.repository.checkedExecute(sql, address, assetId)) {
@@ -578,6 +588,17 @@ public class HSQLDBAccountRepository implements AccountRepository {
 		if (deltaBalance == 0)
 			return;
 
+		// Apply change in memory if we're processing a block
+		HSQLDBBalanceLedger balanceLedger = this.repository.getBalanceLedger();
+		if (balanceLedger != null) {
+			try {
+				balanceLedger.modifyBalance(address, assetId, deltaBalance);
+			} catch (SQLException e) {
+				throw new DataException("Unable to modify account balance in repository", e);
+			}
+			return;
+		}
+
 		// If deltaBalance is negative then we assume AccountBalances & parent Accounts rows exist
 		if (deltaBalance < 0) {
 			// Perform actual balance change
@@ -751,6 +772,57 @@ public class HSQLDBAccountRepository implements AccountRepository {
 		}
 	}
 
+	@Override
+	public List<RewardShareMinterData> getRewardSharesWithMinters(Collection<byte[]> rewardSharePublicKeys) throws DataException {
+		List<RewardShareMinterData> rewardShareMinters = new ArrayList<>(rewardSharePublicKeys.size());
+		if (rewardSharePublicKeys.isEmpty())
+			return rewardShareMinters;
+
+		StringBuilder sql = new StringBuilder(1024);
+		sql.append("SELECT RewardShares.reward_share_public_key, minter_public_key, minter, recipient, share_percent, "
+				+ "reference, Accounts.public_key, default_group_id, flags, level, blocks_minted, blocks_minted_adjustment, blocks_minted_penalty FROM ");
+
+		// (VALUES (?), (?), ...) AS TmpRewardSharePublicKeys (reward_share_public_key)
+		sql.append("(VALUES ");
+		sql.append(String.join(", ", Collections.nCopies(rewardSharePublicKeys.size(), "(CAST(? AS VARBINARY(32)))")));
+		sql.append(") AS TmpRewardSharePublicKeys (reward_share_public_key) ");
+
+		sql.append("JOIN RewardShares ON RewardShares.reward_share_public_key = TmpRewardSharePublicKeys.reward_share_public_key ");
+		sql.append("JOIN Accounts ON Accounts.account = RewardShares.minter");
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql.toString(), rewardSharePublicKeys.toArray())) {
+			if (resultSet == null)
+				return rewardShareMinters;
+
+			do {
+				byte[] rewardSharePublicKey = resultSet.getBytes(1);
+				byte[] minterPublicKey = resultSet.getBytes(2);
+				String minter = resultSet.getString(3);
+				String recipient = resultSet.getString(4);
+				int sharePercent = resultSet.getInt(5);
+
+				RewardShareData rewardShareData = new RewardShareData(minterPublicKey, minter, recipient, rewardSharePublicKey, sharePercent);
+
+				byte[] reference = resultSet.getBytes(6);
+				byte[] publicKey = resultSet.getBytes(7);
+				int defaultGroupId = resultSet.getInt(8);
+				int flags = resultSet.getInt(9);
+				int level = resultSet.getInt(10);
+				int blocksMinted = resultSet.getInt(11);
+				int blocksMintedAdjustment = resultSet.getInt(12);
+				int blocksMintedPenalty = resultSet.getInt(13);
+
+				AccountData minterAccountData = new AccountData(minter, reference, publicKey, defaultGroupId, flags, level, blocksMinted, blocksMintedAdjustment, blocksMintedPenalty);
+
+				rewardShareMinters.add(new RewardShareMinterData(rewardShareData, minterAccountData));
+			} while (resultSet.next());
+
+			return rewardShareMinters;
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch reward-shares and minting accounts from repository", e);
+		}
+	}
+
 	@Override
 	public List<byte[]> getRewardSharePublicKeys() throws DataException {
 		String sql = "SELECT reward_share_public_key FROM RewardShares ORDER BY reward_share_public_key";
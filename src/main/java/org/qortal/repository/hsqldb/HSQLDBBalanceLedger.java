@@ -0,0 +1,203 @@
+package org.qortal.repository.hsqldb;
+
+import org.apache.commons.lang3.StringUtils;
+import org.qortal.data.account.AccountBalanceData;
+import org.qortal.repository.DataException;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * In-memory ledger of account asset balances, used while a block is processed or orphaned.
+ * <p>
+ * Each (account, asset) balance is read from the repository once, then balance changes are applied in memory.
+ * Net changes are written using JDBC batches, either when the ledger is disabled, or just before the repository
+ * executes anything else that uses the <tt>Accounts</tt> or <tt>AccountBalances</tt> tables, so they are never
+ * observable out of order.
+ * <p>
+ * Balance changes follow {@link HSQLDBAccountRepository#modifyAssetBalance(String, long, long)} exactly:
+ * reducing a balance that doesn't exist does nothing, increasing a balance ensures the parent account exists,
+ * and any change that would make a balance negative is rejected, just like the <tt>CheckBalanceNotNegative</tt>
+ * constraint would, even if later changes would restore it.
+ */
+/* package */ class HSQLDBBalanceLedger {
+
+	private static final String ENSURE_ACCOUNT_SQL = "INSERT IGNORE INTO Accounts (account) VALUES (?)"; // MySQL syntax
+	private static final String SET_BALANCE_SQL = "INSERT INTO AccountBalances (account, asset_id, balance) VALUES (?, ?, ?) "
+			+ "ON DUPLICATE KEY UPDATE balance = ?";
+	private static final String GET_BALANCE_SQL = "SELECT balance FROM AccountBalances WHERE account = ? AND asset_id = ? LIMIT 1";
+
+	private static class Entry {
+		private final String address;
+		private final long assetId;
+		/** Balance as stored in repository, or null if no row */
+		private Long storedBalance;
+		/** Balance including pending changes, or null if still no row */
+		private Long balance;
+
+		private Entry(String address, long assetId, Long storedBalance) {
+			this.address = address;
+			this.assetId = assetId;
+			this.storedBalance = storedBalance;
+			this.balance = storedBalance;
+		}
+
+		private boolean isDirty() {
+			return !Objects.equals(this.balance, this.storedBalance);
+		}
+	}
+
+	private final HSQLDBRepository repository;
+
+	/** Balances keyed by asset ID then address, in the order they were first used. */
+	private final Map<String, Entry> entries = new LinkedHashMap<>();
+	/** Accounts that need to exist before their balances are written. */
+	private final Set<String> pendingAccounts = new LinkedHashSet<>();
+	private int dirtyCount = 0;
+	/** Set while the ledger itself is using the repository, so its own statements don't trigger writes. */
+	private boolean isBusy = false;
+
+	/* package */ HSQLDBBalanceLedger(HSQLDBRepository repository) {
+		this.repository = repository;
+	}
+
+	/* package */ AccountBalanceData getBalance(String address, long assetId) throws SQLException {
+		Entry entry = this.getEntry(address, assetId);
+
+		if (entry.balance == null)
+			return null;
+
+		return new AccountBalanceData(address, assetId, entry.balance);
+	}
+
+	/* package */ void modifyBalance(String address, long assetId, long deltaBalance) throws DataException, SQLException {
+		if (deltaBalance == 0)
+			return;
+
+		Entry entry = this.getEntry(address, assetId);
+		boolean wasDirty = entry.isDirty();
+
+		if (deltaBalance < 0) {
+			// Only existing balances are reduced
+			if (entry.balance != null) {
+				// Same as CheckBalanceNotNegative constraint, which isn't checked until changes are written
+				if (entry.balance + deltaBalance < 0)
+					throw new DataException(String.format("Account %s balance of asset %d cannot be negative", address, assetId));
+
+				entry.balance += deltaBalance;
+			}
+		} else {
+			// Parent row must exist to satisfy foreign key constraint, which is certain if balance was already stored
+			if (entry.storedBalance == null)
+				this.pendingAccounts.add(address);
+
+			entry.balance = entry.balance == null ? deltaBalance : entry.balance + deltaBalance;
+		}
+
+		if (entry.isDirty() != wasDirty)
+			this.dirtyCount += wasDirty ? -1 : 1;
+	}
+
+	/**
+	 * Writes whatever pending changes are needed before <tt>sql</tt> can be executed.
+	 * <p>
+	 * Statements that use <tt>AccountBalances</tt> need all changes written, and cached balances are dropped unless
+	 * the statement is a <tt>SELECT</tt>. Other statements that use <tt>Accounts</tt> only need new accounts written.
+	 */
+	/* package */ void beforeStatement(String sql) throws SQLException {
+		if (this.isBusy)
+			return;
+
+		if (StringUtils.containsIgnoreCase(sql, "AccountBalances")) {
+			this.flush();
+
+			if (!StringUtils.startsWithIgnoreCase(sql.trim(), "SELECT"))
+				this.entries.clear();
+
+			return;
+		}
+
+		if (!this.pendingAccounts.isEmpty() && StringUtils.containsIgnoreCase(sql, "Accounts"))
+			this.flushAccounts();
+	}
+
+	/** Writes all pending changes, keeping cached balances. */
+	/* package */ void flush() throws SQLException {
+		this.flushAccounts();
+
+		if (this.dirtyCount == 0)
+			return;
+
+		List<Object[]> setBalanceParams = new ArrayList<>(this.dirtyCount);
+		for (Entry entry : this.entries.values())
+			if (entry.isDirty()) {
+				setBalanceParams.add(new Object[] { entry.address, entry.assetId, entry.balance, entry.balance });
+				entry.storedBalance = entry.balance;
+			}
+
+		this.dirtyCount = 0;
+
+		this.isBusy = true;
+		try {
+			this.repository.executeCheckedBatchUpdate(SET_BALANCE_SQL, setBalanceParams);
+		} finally {
+			this.isBusy = false;
+		}
+	}
+
+	/** Discards pending changes and cached balances, e.g. after repository rollback. */
+	/* package */ void clear() {
+		this.entries.clear();
+		this.pendingAccounts.clear();
+		this.dirtyCount = 0;
+	}
+
+	private void flushAccounts() throws SQLException {
+		if (this.pendingAccounts.isEmpty())
+			return;
+
+		List<Object[]> ensureAccountParams = new ArrayList<>(this.pendingAccounts.size());
+		for (String address : this.pendingAccounts)
+			ensureAccountParams.add(new Object[] { address });
+
+		this.pendingAccounts.clear();
+
+		this.isBusy = true;
+		try {
+			this.repository.executeCheckedBatchUpdate(ENSURE_ACCOUNT_SQL, ensureAccountParams);
+		} finally {
+			this.isBusy = false;
+		}
+	}
+
+	private Entry getEntry(String address, long assetId) throws SQLException {
+		String key = assetId + ":" + address;
+
+		Entry entry = this.entries.get(key);
+		if (entry != null)
+			return entry;
+
+		Long storedBalance = null;
+
+		this.isBusy = true;
+		try (ResultSet resultSet = this.repository.checkedExecute(GET_BALANCE_SQL, address, assetId)) {
+			if (resultSet != null)
+				storedBalance = resultSet.getLong(1);
+		} finally {
+			this.isBusy = false;
+		}
+
+		entry = new Entry(address, assetId, storedBalance);
+		this.entries.put(key, entry);
+
+		return entry;
+	}
+
+}
@@ -0,0 +1,462 @@
+package org.qortal.repository.hsqldb;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.qortal.controller.Controller;
+import org.qortal.controller.Synchronizer;
+import org.qortal.repository.DataException;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.settings.Settings;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.qortal.repository.hsqldb.HSQLDBRepository.CHECKPOINT_GATE;
+
+/**
+ * Decides when checkpoints and maintenance may take {@link HSQLDBRepository#CHECKPOINT_GATE}'s write lock,
+ * and keeps contention statistics for the gate.
+ * <p>
+ * Writers don't simply block on the gate, as it is fair, so a queued writer stalls every new query behind it
+ * until all current transactions have finished. Instead writers poll, with backoff, for a quiet window:
+ * not synchronizing, blockchain lock free, gate free and no other session mid-transaction.
+ * <p>
+ * If no quiet window turns up within {@link #MAX_POLLING_TIME}, writers start "draining": sessions not yet
+ * in a transaction wait before starting one, while sessions already in a transaction carry on and finish.
+ * Having drained once, writers drain sooner for a while, as the node is evidently busy.
+ * Draining is bounded by {@link #MAX_DRAIN_TIME}, so busy nodes still get checkpointed without deadlock or starvation.
+ */
+public class HSQLDBMaintenanceScheduler {
+
+	private static final Logger LOGGER = LogManager.getLogger(HSQLDBMaintenanceScheduler.class);
+
+	/** Initial delay between attempts to find a quiet window (ms) */
+	private static final long MIN_BACKOFF = 50L;
+	/** Maximum delay between attempts to find a quiet window (ms) */
+	private static final long MAX_BACKOFF = 1000L;
+	/** How long writers poll for a quiet window before draining (ms) */
+	private static final long MAX_POLLING_TIME = 10_000L;
+	/** How long writers poll for a quiet window before draining, if draining was needed recently (ms) */
+	private static final long BUSY_POLLING_TIME = 250L;
+	/** How long after draining we assume quiet windows are still unlikely (ms) */
+	private static final long BUSY_PERIOD = 60_000L;
+	/** Maximum time new transactions are held back while draining (ms) */
+	private static final long MAX_DRAIN_TIME = 1000L;
+	/** Maximum time a draining writer queues on the gate, and so maximum extra stall for queries (ms) */
+	private static final long MAX_QUEUED_WAIT = 100L;
+	/** Maximum pause between maintenance steps (ms) */
+	private static final long MAX_STEP_PAUSE = 10_000L;
+	/** Minimum interval between checks of HSQLDB's pending checkpoint files (ms) */
+	private static final long PENDING_SIZE_CHECK_INTERVAL = 10_000L;
+
+	private static final HSQLDBMaintenanceScheduler instance = new HSQLDBMaintenanceScheduler();
+
+	public enum DeferralReason {
+		SYNCHRONIZING,
+		BLOCKCHAIN_BUSY,
+		GATE_BUSY,
+		ACTIVE_TRANSACTIONS
+	}
+
+	/** Progress of current, or last, repository maintenance. */
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class MaintenanceProgress {
+		public boolean running;
+		public int stepsCompleted;
+		public int totalSteps;
+		/** Current or last step, e.g. "rebuilding BLOCKS" */
+		public String step;
+		public long startedTimestamp;
+		public Long completedTimestamp;
+		/** Longest time one step held the checkpoint gate (ms) */
+		public long maxStepTime;
+		/** Why maintenance didn't complete, if it didn't */
+		public String error;
+
+		protected MaintenanceProgress() {
+		}
+
+		private MaintenanceProgress(MaintenanceProgress other) {
+			this.running = other.running;
+			this.stepsCompleted = other.stepsCompleted;
+			this.totalSteps = other.totalSteps;
+			this.step = other.step;
+			this.startedTimestamp = other.startedTimestamp;
+			this.completedTimestamp = other.completedTimestamp;
+			this.maxStepTime = other.maxStepTime;
+			this.error = other.error;
+		}
+	}
+
+	/** Snapshot of checkpoint gate contention and maintenance progress. Times are in microseconds unless noted. */
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class MaintenanceStats {
+		/** Queries that had to wait for a checkpoint, backup or maintenance step */
+		public long readerWaits;
+		public long readerWaitTime;
+		public long maxReaderWaitTime;
+		/** Times a checkpoint, backup or maintenance step took the gate */
+		public long writerAcquisitions;
+		/** Times a checkpoint, backup or maintenance step gave up waiting for the gate */
+		public long writerTimeouts;
+		public long writerWaitTime;
+		public long writerHoldTime;
+		public long maxWriterHoldTime;
+		/** Times new transactions were held back so a writer could get the gate */
+		public long drains;
+		public long deferredSynchronizing;
+		public long deferredBlockchainBusy;
+		public long deferredGateBusy;
+		public long deferredActiveTransactions;
+		/** Bytes waiting for a checkpoint, in HSQLDB's .log and .backup files */
+		public long pendingCheckpointSize;
+		public Long lastCheckpointTimestamp;
+		public MaintenanceProgress maintenance;
+
+		protected MaintenanceStats() {
+		}
+	}
+
+	private final LongAdder readerWaits = new LongAdder();
+	private final LongAdder readerWaitTime = new LongAdder();
+	private final LongAccumulator maxReaderWaitTime = new LongAccumulator(Math::max, 0);
+	private final LongAdder writerAcquisitions = new LongAdder();
+	private final LongAdder writerTimeouts = new LongAdder();
+	private final LongAdder writerWaitTime = new LongAdder();
+	private final LongAdder writerHoldTime = new LongAdder();
+	private final LongAccumulator maxWriterHoldTime = new LongAccumulator(Math::max, 0);
+	private final LongAdder drains = new LongAdder();
+	private final LongAdder[] deferrals = new LongAdder[DeferralReason.values().length];
+
+	private final AtomicLong lastPendingSizeCheck = new AtomicLong();
+	private volatile String dbPathname;
+	private volatile Long lastCheckpointTimestamp;
+	private volatile long lastDrainTimestamp;
+
+	/** Only accessed while holding gate's write lock */
+	private long gateAcquiredTime;
+
+	private final Object drainLock = new Object();
+	private volatile Thread drainingThread;
+
+	/** Guarded by <tt>this</tt> */
+	private MaintenanceProgress maintenanceProgress;
+
+	private HSQLDBMaintenanceScheduler() {
+		for (int i = 0; i < this.deferrals.length; ++i)
+			this.deferrals[i] = new LongAdder();
+	}
+
+	public static HSQLDBMaintenanceScheduler getInstance() {
+		return instance;
+	}
+
+	/** Sets repository location, for checking pending checkpoint size, or "mem" for in-memory repositories. */
+	/* package */ void setDbPathname(String dbPathname) {
+		this.dbPathname = dbPathname;
+	}
+
+	// Quiet windows
+
+	/**
+	 * Returns why now isn't a quiet window for checkpoints or maintenance, or null if it is.
+	 *
+	 * @param ownBlockchainLockAllowed whether blockchain lock held by the current thread counts as quiet,
+	 * e.g. for maintenance explicitly requested while holding the blockchain lock
+	 */
+	/* package */ DeferralReason getBusyReason(boolean ownBlockchainLockAllowed) {
+		try {
+			ReentrantLock blockchainLock = Controller.getInstance().getBlockchainLock();
+			if (blockchainLock.isLocked() && !(ownBlockchainLockAllowed && blockchainLock.isHeldByCurrentThread()))
+				return DeferralReason.BLOCKCHAIN_BUSY;
+
+			if (Synchronizer.getInstance().isSynchronizing())
+				return DeferralReason.SYNCHRONIZING;
+		} catch (Exception e) {
+			// Controller not yet initialized during startup - safe to proceed
+		}
+
+		return null;
+	}
+
+	/* package */ void recordDeferral(DeferralReason reason) {
+		this.deferrals[reason.ordinal()].increment();
+	}
+
+	// Checkpoint gate
+
+	/* package */ void recordReaderWait(long waitTime) {
+		this.readerWaits.increment();
+		this.readerWaitTime.add(waitTime);
+		this.maxReaderWaitTime.accumulate(waitTime);
+	}
+
+	/**
+	 * Tries to take the gate's write lock without waiting. If successful, caller must call {@link #releaseGate()}.
+	 */
+	/* package */ boolean tryAcquireGate() {
+		if (!CHECKPOINT_GATE.writeLock().tryLock())
+			return false;
+
+		this.gateAcquired(0);
+		return true;
+	}
+
+	/**
+	 * Waits for a quiet window, then takes the gate's write lock with no other session mid-transaction.
+	 * If successful, caller must call {@link #releaseGate()}.
+	 *
+	 * @param repository used to check other sessions' transactions
+	 * @param timeout how long to wait (ms), or null to wait indefinitely
+	 * @param waitForQuiet whether to also wait until node isn't synchronizing or processing blocks
+	 * @return true if gate acquired, false if timed out
+	 * @throws DataException
+	 */
+	/* package */ boolean acquireGate(HSQLDBRepository repository, Long timeout, boolean waitForQuiet) throws DataException {
+		final long startTime = System.nanoTime();
+		final boolean isBusy = System.currentTimeMillis() - this.lastDrainTimestamp < BUSY_PERIOD;
+		final long maxPollingTime = isBusy ? BUSY_POLLING_TIME : MAX_POLLING_TIME;
+		final long pollingTime = timeout == null ? maxPollingTime : Math.min(maxPollingTime, timeout / 2);
+		long backoff = MIN_BACKOFF;
+
+		try {
+			while (true) {
+				final long elapsed = (System.nanoTime() - startTime) / 1000000L;
+				final boolean isDraining = elapsed >= pollingTime;
+
+				DeferralReason reason = waitForQuiet ? this.getBusyReason(true) : null;
+
+				if (reason == null) {
+					reason = isDraining
+							? this.drainAndLock(repository)
+							: this.lockIfNoOtherTransactions(repository, CHECKPOINT_GATE.writeLock().tryLock());
+
+					if (reason == null) {
+						this.gateAcquired(System.nanoTime() - startTime);
+						return true;
+					}
+				}
+
+				this.recordDeferral(reason);
+
+				final long remaining = timeout == null ? MAX_BACKOFF : timeout - (System.nanoTime() - startTime) / 1000000L;
+				if (remaining <= 0) {
+					this.writerTimeouts.increment();
+					return false;
+				}
+
+				Thread.sleep(Math.min(backoff, remaining));
+				backoff = Math.min(backoff * 2, MAX_BACKOFF);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DataException("Interrupted while waiting for repository checkpoint gate", e);
+		}
+	}
+
+	/* package */ void releaseGate() {
+		long holdTime = System.nanoTime() - this.gateAcquiredTime;
+		this.writerHoldTime.add(holdTime);
+		this.maxWriterHoldTime.accumulate(holdTime);
+
+		CHECKPOINT_GATE.writeLock().unlock();
+	}
+
+	/**
+	 * Checks no other session is mid-transaction, once we have gate.
+	 *
+	 * @return null if we hold gate and no other session is mid-transaction, otherwise why not (and we don't hold gate)
+	 */
+	private DeferralReason lockIfNoOtherTransactions(HSQLDBRepository repository, boolean isLocked) throws DataException {
+		if (!isLocked)
+			return DeferralReason.GATE_BUSY;
+
+		boolean success = false;
+		try {
+			// We can only CHECKPOINT if no other HSQLDB session is mid-transaction, otherwise CHECKPOINT waits
+			// for their COMMITs, which in turn wait for the gate - i.e. deadlock
+			success = repository.otherTransactionsCount() == 0;
+			return success ? null : DeferralReason.ACTIVE_TRANSACTIONS;
+		} finally {
+			if (!success)
+				CHECKPOINT_GATE.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Holds back new transactions while existing ones finish, then takes gate.
+	 */
+	private DeferralReason drainAndLock(HSQLDBRepository repository) throws DataException, InterruptedException {
+		this.drains.increment();
+		this.lastDrainTimestamp = System.currentTimeMillis();
+
+		synchronized (this.drainLock) {
+			this.drainingThread = Thread.currentThread();
+		}
+
+		try {
+			final long drainStart = System.nanoTime();
+			while (repository.otherTransactionsCount() > 0) {
+				if ((System.nanoTime() - drainStart) / 1000000L >= MAX_DRAIN_TIME)
+					return DeferralReason.ACTIVE_TRANSACTIONS;
+
+				Thread.sleep(10L);
+			}
+
+			// Statements already under way still hold read locks, so we might have to queue briefly
+			return this.lockIfNoOtherTransactions(repository, CHECKPOINT_GATE.writeLock().tryLock(MAX_QUEUED_WAIT, TimeUnit.MILLISECONDS));
+		} finally {
+			synchronized (this.drainLock) {
+				this.drainingThread = null;
+				this.drainLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Called before a session starts a new transaction, to hold it back while a writer is draining.
+	 */
+	/* package */ void awaitDrain() {
+		// Fast path
+		if (this.drainingThread == null || this.drainingThread == Thread.currentThread())
+			return;
+
+		long beforeWait = System.nanoTime();
+
+		synchronized (this.drainLock) {
+			try {
+				// Draining is bounded, but don't rely on that
+				long deadline = beforeWait + TimeUnit.MILLISECONDS.toNanos(MAX_DRAIN_TIME);
+				long remaining;
+				while (this.drainingThread != null && (remaining = deadline - System.nanoTime()) > 0)
+					TimeUnit.NANOSECONDS.timedWait(this.drainLock, remaining);
+			} catch (InterruptedException e) {
+				// Let caller carry on, but preserve interrupt
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		this.recordReaderWait(System.nanoTime() - beforeWait);
+	}
+
+	private void gateAcquired(long waitTime) {
+		this.gateAcquiredTime = System.nanoTime();
+		this.writerAcquisitions.increment();
+		this.writerWaitTime.add(waitTime);
+	}
+
+	// Checkpoints
+
+	/* package */ void checkpointCompleted() {
+		this.lastCheckpointTimestamp = System.currentTimeMillis();
+	}
+
+	/**
+	 * Requests a quick checkpoint if HSQLDB's pending checkpoint files have grown too large.
+	 * <p>
+	 * Cheap enough to call often, as files are only checked every {@link #PENDING_SIZE_CHECK_INTERVAL}.
+	 */
+	/* package */ void checkPendingCheckpointSize() {
+		long maxPendingSize = Settings.getInstance().getRepositoryCheckpointMaxPendingSize();
+		if (maxPendingSize <= 0)
+			return;
+
+		long now = System.currentTimeMillis();
+		long lastCheck = this.lastPendingSizeCheck.get();
+		if (now - lastCheck < PENDING_SIZE_CHECK_INTERVAL || !this.lastPendingSizeCheck.compareAndSet(lastCheck, now))
+			return;
+
+		long pendingSize = this.getPendingCheckpointSize();
+		if (pendingSize > maxPendingSize && RepositoryManager.getRequestedCheckpoint() == null) {
+			LOGGER.info("Requesting repository checkpoint as {} bytes are pending", pendingSize);
+			RepositoryManager.setRequestedCheckpoint(Boolean.TRUE);
+		}
+	}
+
+	/** Returns size of HSQLDB's .log and .backup files, which are emptied by a checkpoint. */
+	public long getPendingCheckpointSize() {
+		String dbPathname = this.dbPathname;
+		if (dbPathname == null || dbPathname.equals("mem"))
+			return 0;
+
+		return new File(dbPathname + ".log").length() + new File(dbPathname + ".backup").length();
+	}
+
+	// Maintenance progress
+
+	/* package */ synchronized void maintenanceStarting(int totalSteps) {
+		this.maintenanceProgress = new MaintenanceProgress();
+		this.maintenanceProgress.running = true;
+		this.maintenanceProgress.totalSteps = totalSteps;
+		this.maintenanceProgress.startedTimestamp = System.currentTimeMillis();
+	}
+
+	/* package */ synchronized void stepStarting(String step) {
+		this.maintenanceProgress.step = step;
+	}
+
+	/**
+	 * Records step completion, then pauses for as long as step held the gate (within reason),
+	 * so that other sessions get at least half of the time during maintenance.
+	 */
+	/* package */ void stepCompleted(long stepTime) throws DataException {
+		long stepMillis = stepTime / 1000000L;
+
+		synchronized (this) {
+			this.maintenanceProgress.stepsCompleted++;
+			this.maintenanceProgress.maxStepTime = Math.max(this.maintenanceProgress.maxStepTime, stepMillis);
+
+			LOGGER.info("Repository maintenance step {}/{} ({}) took {} ms", this.maintenanceProgress.stepsCompleted,
+					this.maintenanceProgress.totalSteps, this.maintenanceProgress.step, stepMillis);
+		}
+
+		try {
+			Thread.sleep(Math.min(stepMillis, MAX_STEP_PAUSE));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DataException("Interrupted during repository maintenance", e);
+		}
+	}
+
+	/* package */ synchronized void maintenanceCompleted(String error) {
+		this.maintenanceProgress.running = false;
+		this.maintenanceProgress.completedTimestamp = System.currentTimeMillis();
+		this.maintenanceProgress.error = error;
+	}
+
+	// Stats
+
+	public MaintenanceStats getStats() {
+		MaintenanceStats stats = new MaintenanceStats();
+
+		stats.readerWaits = this.readerWaits.sum();
+		stats.readerWaitTime = this.readerWaitTime.sum() / 1000L;
+		stats.maxReaderWaitTime = this.maxReaderWaitTime.get() / 1000L;
+		stats.writerAcquisitions = this.writerAcquisitions.sum();
+		stats.writerTimeouts = this.writerTimeouts.sum();
+		stats.writerWaitTime = this.writerWaitTime.sum() / 1000L;
+		stats.writerHoldTime = this.writerHoldTime.sum() / 1000L;
+		stats.maxWriterHoldTime = this.maxWriterHoldTime.get() / 1000L;
+		stats.drains = this.drains.sum();
+		stats.deferredSynchronizing = this.deferrals[DeferralReason.SYNCHRONIZING.ordinal()].sum();
+		stats.deferredBlockchainBusy = this.deferrals[DeferralReason.BLOCKCHAIN_BUSY.ordinal()].sum();
+		stats.deferredGateBusy = this.deferrals[DeferralReason.GATE_BUSY.ordinal()].sum();
+		stats.deferredActiveTransactions = this.deferrals[DeferralReason.ACTIVE_TRANSACTIONS.ordinal()].sum();
+		stats.pendingCheckpointSize = this.getPendingCheckpointSize();
+		stats.lastCheckpointTimestamp = this.lastCheckpointTimestamp;
+
+		synchronized (this) {
+			if (this.maintenanceProgress != null)
+				stats.maintenance = new MaintenanceProgress(this.maintenanceProgress);
+		}
+
+		return stats;
+	}
+
+}
@@ -0,0 +1,269 @@
+package org.qortal.repository.hsqldb;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-SQL statistics for repository queries, enabled via the <tt>repositoryProfilingEnabled</tt> setting.
+ * <p>
+ * Statistics are keyed by SQL string, which is the statement template as we use placeholders for values.
+ * Recording doesn't take any locks, so that profiling doesn't add contention between repository sessions.
+ */
+public class HSQLDBQueryProfiler {
+
+	/** Limit on number of distinct SQL strings tracked, in case some SQL is built with inline values. */
+	private static final int MAX_TRACKED_SQL = 2000;
+	/** Used for any SQL once {@link #MAX_TRACKED_SQL} has been reached. */
+	private static final String UNTRACKED_SQL = "(other)";
+
+	private static HSQLDBQueryProfiler instance;
+
+	/**
+	 * Lock-free log-linear histogram of nanosecond values.
+	 * <p>
+	 * Each power-of-two range is split into {@link #SUB_BUCKETS} buckets, so percentiles are accurate to within 12.5%.
+	 */
+	private static class Histogram {
+		private static final int SUB_BUCKET_BITS = 3;
+		private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+		private final AtomicLongArray buckets = new AtomicLongArray((Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS);
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+		private void record(long value) {
+			if (value < 0)
+				value = 0;
+
+			this.buckets.incrementAndGet(bucketIndex(value));
+			this.max.accumulate(value);
+		}
+
+		private long getMax() {
+			return this.max.get();
+		}
+
+		/**
+		 * Returns value at or below which <tt>percentile</tt>% of recorded values fall,
+		 * to within bucket accuracy, or 0 if nothing has been recorded.
+		 */
+		private long getPercentile(double percentile) {
+			final int bucketCount = this.buckets.length();
+			long[] counts = new long[bucketCount];
+			long total = 0;
+			for (int i = 0; i < bucketCount; ++i) {
+				counts[i] = this.buckets.get(i);
+				total += counts[i];
+			}
+
+			if (total == 0)
+				return 0;
+
+			long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+			long seen = 0;
+			for (int i = 0; i < bucketCount; ++i) {
+				seen += counts[i];
+				if (seen >= rank)
+					// Upper bound of bucket, but no more than we've actually seen
+					return Math.min(bucketUpperBound(i), this.getMax());
+			}
+
+			return this.getMax();
+		}
+
+		private static int bucketIndex(long value) {
+			if (value < SUB_BUCKETS)
+				return (int) value;
+
+			int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+			return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+		}
+
+		private static long bucketUpperBound(int index) {
+			if (index < SUB_BUCKETS)
+				return index;
+
+			int shift = index / SUB_BUCKETS - 1;
+			long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+			return lowerBound + (1L << shift) - 1;
+		}
+	}
+
+	private static class Stats {
+		private final LongAdder calls = new LongAdder();
+		private final LongAdder totalTime = new LongAdder();
+		private final LongAdder rows = new LongAdder();
+		private final LongAdder gateWaitTime = new LongAdder();
+		private final LongAccumulator maxGateWaitTime = new LongAccumulator(Math::max, 0);
+		private final Histogram latency = new Histogram();
+	}
+
+	/** Counts rows as caller reads them from result set, adding count to stats once result set is exhausted or closed. */
+	private static class RowCounter implements InvocationHandler {
+		private final ResultSet resultSet;
+		private final Stats stats;
+		private long rows = 0;
+		private boolean isRecorded = false;
+
+		private RowCounter(ResultSet resultSet, Stats stats) {
+			this.resultSet = resultSet;
+			this.stats = stats;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			Object result;
+			try {
+				result = method.invoke(this.resultSet, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+
+			switch (method.getName()) {
+				case "next":
+					if ((Boolean) result)
+						++this.rows;
+					else
+						this.recordRows();
+					break;
+
+				case "close":
+					this.recordRows();
+					break;
+
+				default:
+					break;
+			}
+
+			return result;
+		}
+
+		private void recordRows() {
+			if (this.isRecorded)
+				return;
+
+			this.isRecorded = true;
+			this.stats.rows.add(this.rows);
+		}
+	}
+
+	/** Snapshot of statistics for one SQL string. Times are in microseconds. */
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class QueryStats {
+		public String sql;
+		public long calls;
+		public long totalTime;
+		public long meanTime;
+		public long p50Time;
+		public long p90Time;
+		public long p99Time;
+		public long maxTime;
+		/** Rows read from queries' results, or changed by updates */
+		public long rows;
+		/** Time spent waiting for the checkpoint gate, included in the times above */
+		public long gateWaitTime;
+		public long maxGateWaitTime;
+
+		protected QueryStats() {
+		}
+
+		private QueryStats(String sql, Stats stats) {
+			this.sql = sql;
+			this.calls = stats.calls.sum();
+			this.totalTime = stats.totalTime.sum() / 1000L;
+			this.meanTime = this.calls == 0 ? 0 : this.totalTime / this.calls;
+			this.p50Time = stats.latency.getPercentile(50) / 1000L;
+			this.p90Time = stats.latency.getPercentile(90) / 1000L;
+			this.p99Time = stats.latency.getPercentile(99) / 1000L;
+			this.maxTime = stats.latency.getMax() / 1000L;
+			this.rows = stats.rows.sum();
+			this.gateWaitTime = stats.gateWaitTime.sum() / 1000L;
+			this.maxGateWaitTime = stats.maxGateWaitTime.get() / 1000L;
+		}
+	}
+
+	private final Map<String, Stats> statsBySql = new ConcurrentHashMap<>();
+
+	private HSQLDBQueryProfiler() {
+	}
+
+	public static synchronized HSQLDBQueryProfiler getInstance() {
+		if (instance == null)
+			instance = new HSQLDBQueryProfiler();
+
+		return instance;
+	}
+
+	/**
+	 * Records one execution of <tt>sql</tt>.
+	 *
+	 * @param sql
+	 * @param elapsedTime nanoseconds, including time spent waiting for the checkpoint gate
+	 * @param gateWaitTime nanoseconds spent waiting for the checkpoint gate
+	 * @param rows number of rows returned or changed
+	 */
+	public void record(String sql, long elapsedTime, long gateWaitTime, long rows) {
+		Stats stats = this.getStats(sql);
+
+		stats.calls.increment();
+		stats.totalTime.add(elapsedTime);
+		stats.rows.add(rows);
+		stats.latency.record(elapsedTime);
+
+		if (gateWaitTime > 0) {
+			stats.gateWaitTime.add(gateWaitTime);
+			stats.maxGateWaitTime.accumulate(gateWaitTime);
+		}
+	}
+
+	/**
+	 * Returns result set that adds rows to <tt>sql</tt>'s statistics as they are read.
+	 * <p>
+	 * Rows are counted as caller reads them, as JDBC has no portable way to ask how many rows a result set holds.
+	 */
+	/* package */ ResultSet countRows(String sql, ResultSet resultSet) {
+		RowCounter rowCounter = new RowCounter(resultSet, this.getStats(sql));
+
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class }, rowCounter);
+	}
+
+	private Stats getStats(String sql) {
+		Stats stats = this.statsBySql.get(sql);
+		if (stats != null)
+			return stats;
+
+		return this.statsBySql.size() < MAX_TRACKED_SQL
+				? this.statsBySql.computeIfAbsent(sql, key -> new Stats())
+				: this.statsBySql.computeIfAbsent(UNTRACKED_SQL, key -> new Stats());
+	}
+
+	/** Returns snapshot of statistics, most total time first. */
+	public List<QueryStats> getStats() {
+		List<QueryStats> queryStats = new ArrayList<>(this.statsBySql.size());
+
+		for (Map.Entry<String, Stats> entry : this.statsBySql.entrySet())
+			queryStats.add(new QueryStats(entry.getKey(), entry.getValue()));
+
+		queryStats.sort(Comparator.comparingLong((QueryStats stats) -> stats.totalTime).reversed());
+
+		return queryStats;
+	}
+
+	/** Discards all statistics. Queries that are mid-way through recording may be lost. */
+	public void reset() {
+		this.statsBySql.clear();
+	}
+
+}
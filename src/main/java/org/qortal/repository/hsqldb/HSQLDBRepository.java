@@ -5,10 +5,10 @@ import org.apache.logging.log4j.Logger;
 import org.qortal.crypto.Crypto;
 import org.qortal.globalization.Translator;
 import org.qortal.gui.SysTray;
-import org.qortal.controller.Controller;
 import org.qortal.repository.*;
 import org.qortal.repository.hsqldb.transaction.HSQLDBTransactionRepository;
 import org.qortal.settings.Settings;
+import org.qortal.utils.Base58;
 
 import java.awt.TrayIcon.MessageType;
 import java.io.File;
@@ -24,6 +24,8 @@ import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -45,16 +47,42 @@ public class HSQLDBRepository implements Repository {
 
 	// "serialization failure"
 	private static final Integer DEADLOCK_ERROR_CODE = Integer.valueOf(-4861);
+	// "statement execution aborted: timeout reached"
+	private static final Integer QUERY_TIMEOUT_ERROR_CODE = Integer.valueOf(-4872);
+
+	/** Maximum number of saves to batch up before writing them anyway. */
+	private static final int MAX_BATCHED_SAVES = 10000;
+
+	/** Byte arrays longer than this are logged by length only. */
+	private static final int MAX_LOGGED_PARAMETER_BYTES = 64;
+	/** Strings longer than this are truncated when logged. */
+	private static final int MAX_LOGGED_PARAMETER_CHARS = 200;
+	/** Maximum number of rows of a batch to include when logging parameters. */
+	private static final int MAX_LOGGED_BATCH_ROWS = 5;
 
 	protected Connection connection;
 	protected final Deque<Savepoint> savepoints = new ArrayDeque<>(3);
 	protected boolean debugState = false;
 	protected Long slowQueryThreshold = null;
+	protected boolean slowQueryLogParameters = false;
+	/** Per-SQL statistics, if enabled, otherwise null. */
+	protected HSQLDBQueryProfiler profiler = null;
+	protected final HSQLDBMaintenanceScheduler maintenanceScheduler = HSQLDBMaintenanceScheduler.getInstance();
 	protected List<String> sqlStatements;
 	protected long sessionId;
 	/** True from first execute until commit/rollback/close; used for rollback-on-close. */
 	private boolean inTransaction = false;
+	/** True from first statement, including reads, until commit/rollback/close; as seen by HSQLDB. */
+	private boolean sessionInTransaction = false;
 	protected final Map<String, PreparedStatement> preparedStatementCache = new HashMap<>();
+	/** Statement timeout (seconds), or 0 for none. */
+	private final int queryTimeout;
+	/** Called once repository has been closed, even if closing failed, or null once called. */
+	private Runnable onClose;
+	/** Saves waiting to be written, when batching is enabled via {@link #setBatchedSaves(boolean)}, otherwise null. */
+	private HSQLDBSaverBatch saverBatch = null;
+	/** Pending balance changes, when enabled via {@link #setBalanceLedger(boolean)}, otherwise null. */
+	private HSQLDBBalanceLedger balanceLedger = null;
 	// We want the same object corresponding to the actual DB
 	protected final Object trimHeightsLock = RepositoryManager.getRepositoryFactory();
 	protected final Object latestATStatesLock = RepositoryManager.getRepositoryFactory();
@@ -78,12 +106,28 @@ public class HSQLDBRepository implements Repository {
 
 	// NB: no visibility modifier so only callable from within same package
 	/* package */ HSQLDBRepository(Connection connection) throws DataException {
+		this(connection, 0, null);
+	}
+
+	/**
+	 * @param connection
+	 * @param queryTimeout statement timeout (seconds), or 0 for none
+	 * @param onClose called once repository has been closed, even if closing failed, or null
+	 */
+	/* package */ HSQLDBRepository(Connection connection, int queryTimeout, Runnable onClose) throws DataException {
 		this.connection = connection;
+		this.queryTimeout = queryTimeout;
+		this.onClose = onClose;
 
 		this.slowQueryThreshold = Settings.getInstance().getSlowQueryThreshold();
 		if (this.slowQueryThreshold != null)
 			this.sqlStatements = new ArrayList<>();
 
+		this.slowQueryLogParameters = Settings.getInstance().isSlowQueryLogParameters();
+
+		if (Settings.getInstance().isRepositoryProfilingEnabled())
+			this.profiler = HSQLDBQueryProfiler.getInstance();
+
 		// Find out our session ID
 		try (Statement stmt = this.connection.createStatement()) {
 			if (!stmt.execute("SELECT SESSION_ID()"))
@@ -197,6 +241,115 @@ public class HSQLDBRepository implements Repository {
 		return this.connection;
 	}
 
+	@Override
+	public void setBatchedSaves(boolean batchedSaves) throws DataException {
+		try {
+			if (batchedSaves) {
+				if (this.saverBatch == null)
+					this.saverBatch = new HSQLDBSaverBatch(this.connection);
+
+				return;
+			}
+
+			this.flushSaves();
+		} catch (SQLException e) {
+			throw new DataException("Unable to write batched saves", e);
+		} finally {
+			if (!batchedSaves)
+				this.saverBatch = null;
+		}
+	}
+
+	@Override
+	public void setBalanceLedger(boolean useLedger) throws DataException {
+		try {
+			if (useLedger) {
+				if (this.balanceLedger == null)
+					this.balanceLedger = new HSQLDBBalanceLedger(this);
+
+				return;
+			}
+
+			if (this.balanceLedger != null)
+				this.balanceLedger.flush();
+		} catch (SQLException e) {
+			throw new DataException("Unable to write pending balance changes", e);
+		} finally {
+			if (!useLedger)
+				this.balanceLedger = null;
+		}
+	}
+
+	/** Returns balance ledger, if enabled, otherwise null. */
+	/* package */ HSQLDBBalanceLedger getBalanceLedger() {
+		return this.balanceLedger;
+	}
+
+	/**
+	 * Adds save to the pending batch, if batching is enabled.
+	 *
+	 * @return true if save was batched, false if it needs to be executed now
+	 */
+	/* package */ boolean batchSave(String table, String sql, HSQLDBSaver saver) throws SQLException {
+		if (this.saverBatch == null)
+			return false;
+
+		if (this.balanceLedger != null)
+			this.balanceLedger.beforeStatement(table);
+
+		this.saverBatch.add(table, sql, saver);
+
+		// Don't let the batch grow without bound
+		if (this.saverBatch.size() >= MAX_BATCHED_SAVES)
+			this.flushSaves();
+
+		return true;
+	}
+
+	/**
+	 * Writes any pending batched saves that SQL might see or affect, so that pending saves are always visible.
+	 */
+	private void flushSavesBefore(String sql) throws SQLException {
+		if (this.saverBatch != null && this.saverBatch.touches(sql))
+			this.flushSaves();
+	}
+
+	/**
+	 * Writes any pending batched saves.
+	 */
+	private void flushSaves() throws SQLException {
+		if (this.saverBatch == null || this.saverBatch.isEmpty())
+			return;
+
+		for (HSQLDBSaverBatch.Group group : this.saverBatch.drain()) {
+			PreparedStatement preparedStatement = this.cachePreparedStatement(group.getSql());
+
+			if (this.sqlStatements != null)
+				this.sqlStatements.add(String.format("[batch of %d] %s", group.getSavers().size(), group.getSql()));
+
+			for (HSQLDBSaver saver : group.getSavers()) {
+				saver.bindValues(preparedStatement);
+				preparedStatement.addBatch();
+			}
+
+			this.inTransaction = true;
+			long beforeQuery = this.queryStarting();
+
+			int[] updateCounts;
+			long gateWaitTime = this.lockCheckpointGate();
+			try {
+				updateCounts = preparedStatement.executeBatch();
+			} catch (SQLException e) {
+				throw this.examineException(e);
+			} finally {
+				CHECKPOINT_GATE.readLock().unlock();
+			}
+
+			this.queryCompleted(String.format("batch of %d", group.getSavers().size()), group.getSql(), beforeQuery, gateWaitTime,
+					sumUpdateCounts(updateCounts), () -> formatBatchParameters(group.getSavers(), HSQLDBSaver::getBoundValues));
+		}
+	}
+
 	/** Called by HSQLDBSaver and any path that executes SQL without going through checkedExecuteResultSet/executeCheckedBatchUpdate. */
 	/* package */ void markTransactionStarted() {
 		this.inTransaction = true;
@@ -207,6 +360,11 @@ public class HSQLDBRepository implements Repository {
 		long beforeQuery = this.slowQueryThreshold == null ? 0 : System.currentTimeMillis();
 
 		try {
+			if (this.balanceLedger != null)
+				this.balanceLedger.flush();
+
+			this.flushSaves();
+
 			this.connection.commit();
 
 			if (this.slowQueryThreshold != null) {
@@ -222,6 +380,7 @@ public class HSQLDBRepository implements Repository {
 			throw new DataException("commit error", e);
 		} finally {
 			this.inTransaction = false;
+			this.sessionInTransaction = false;
 			this.savepoints.clear();
 
 			// Before clearing statements so we can log what led to assertion error
@@ -234,12 +393,19 @@ public class HSQLDBRepository implements Repository {
 
 	@Override
 	public void discardChanges() throws DataException {
+		if (this.saverBatch != null)
+			this.saverBatch.clear();
+
+		if (this.balanceLedger != null)
+			this.balanceLedger.clear();
+
 		try {
 			this.connection.rollback();
 		} catch (SQLException e) {
 			throw new DataException("rollback error", e);
 		} finally {
 			this.inTransaction = false;
+			this.sessionInTransaction = false;
 			this.savepoints.clear();
 
 			// Before clearing statements so we can log what led to assertion error
@@ -251,96 +417,13 @@ public class HSQLDBRepository implements Repository {
 	}
 
 	@Override
-	public void saveChangesAndCheckpoint() throws DataException {
-		// First commit the transaction
-		saveChanges();
-		
-		// Now force a checkpoint with a reasonable wait for other sessions
-		CHECKPOINT_GATE.writeLock().lock();
+	public void setSavepoint() throws DataException {
 		try {
-			int maxAttempts = 10;
-			int waitMs = 100; // Wait 100ms between attempts
-			
-			for (int attempt = 0; attempt < maxAttempts; attempt++) {
-				// Check if other sessions have active transactions
-				String sql = "SELECT COUNT(*) FROM Information_schema.system_sessions " +
-							"WHERE transaction = TRUE AND session_id != ?";
-				
-				try (PreparedStatement pstmt = this.cachePreparedStatement(sql)) {
-					pstmt.setLong(1, this.sessionId);
-					
-					try (ResultSet rs = this.checkedExecuteResultSet(pstmt)) {
-						// checkedExecuteResultSet already advanced to first row
-						if (rs != null) {
-							int otherTransactionCount = rs.getInt(1);
-							
-							if (otherTransactionCount == 0) {
-								// Safe to checkpoint now
-								LOGGER.info("Performing critical checkpoint after commit (session: {})", this.sessionId);
-								try (Statement stmt = this.connection.createStatement()) {
-									stmt.execute("CHECKPOINT");
-								}
-								LOGGER.info("Critical checkpoint completed");
-								return; // Success
-							}
-							
-							// Other sessions still have transactions
-							if (attempt < maxAttempts - 1) {
-								LOGGER.debug("Waiting for {} other transaction(s) to complete before checkpoint (attempt {}/{})", 
-											otherTransactionCount, attempt + 1, maxAttempts);
-							}
-						}
-					}
-				}
-				
-				// Wait before retry (but not after last attempt)
-				if (attempt < maxAttempts - 1) {
-					CHECKPOINT_GATE.writeLock().unlock();
-					try {
-						Thread.sleep(waitMs);
-					} catch (InterruptedException e) {
-						Thread.currentThread().interrupt();
-						throw new DataException("Interrupted while waiting for checkpoint opportunity", e);
-					}
-					CHECKPOINT_GATE.writeLock().lock();
-				}
-			}
-			
-			// Timeout - still have active transactions, but we need durability
-			int activeCount = getActiveTransactionCount();
-			LOGGER.warn("Forcing checkpoint despite {} active transaction(s) - critical data durability required", activeCount);
-			
-			try (Statement stmt = this.connection.createStatement()) {
-				stmt.execute("CHECKPOINT");
-			}
-			LOGGER.info("Forced checkpoint completed");
-			
-		} catch (SQLException e) {
-			throw new DataException("Unable to perform critical checkpoint", e);
-		} finally {
-			CHECKPOINT_GATE.writeLock().unlock();
-		}
-	}
+			if (this.balanceLedger != null)
+				this.balanceLedger.flush();
 
-	private int getActiveTransactionCount() {
-		try {
-			String sql = "SELECT COUNT(*) FROM Information_schema.system_sessions WHERE transaction = TRUE";
-			try (PreparedStatement pstmt = this.cachePreparedStatement(sql);
-				 ResultSet rs = this.checkedExecuteResultSet(pstmt)) {
-				// checkedExecuteResultSet already advanced to first row
-				if (rs != null) {
-					return rs.getInt(1);
-				}
-			}
-		} catch (SQLException e) {
-			LOGGER.warn("Unable to get active transaction count", e);
-		}
-		return -1;
-	}
+			this.flushSaves();
 
-	@Override
-	public void setSavepoint() throws DataException {
-		try {
 			if (this.sqlStatements != null)
 				// We don't know savepoint's ID yet
 				this.sqlStatements.add("SAVEPOINT [?]");
@@ -367,7 +450,17 @@ public class HSQLDBRepository implements Repository {
 			if (this.sqlStatements != null)
 				this.sqlStatements.add("ROLLBACK TO SAVEPOINT [" + savepoint.getSavepointId() + "]");
 
+			// Pending saves were made after the savepoint, so write them in order to roll them back
+			if (this.balanceLedger != null)
+				this.balanceLedger.flush();
+
+			this.flushSaves();
+
 			this.connection.rollback(savepoint);
+
+			// Cached balances may have been rolled back too
+			if (this.balanceLedger != null)
+				this.balanceLedger.clear();
 		} catch (SQLException e) {
 			throw new DataException("savepoint rollback error", e);
 		}
@@ -418,18 +511,28 @@ public class HSQLDBRepository implements Repository {
 			assertEmptyTransaction("connection close");
 
 			// Assume we are not going to be GC'd for a while
+			this.saverBatch = null;
+			this.balanceLedger = null;
 			this.preparedStatementCache.clear();
 			this.sqlStatements = null;
 			this.savepoints.clear();
 
-			// If a checkpoint has been requested, we could perform that now
-			this.maybeCheckpoint();
+			// If a checkpoint has been requested, we could perform that now, but leave that to read-write sessions
+			if (!this.connection.isReadOnly())
+				this.maybeCheckpoint();
 
 			// Give connection back to the pool
 			this.connection.close();
 			this.connection = null;
+			this.sessionInTransaction = false;
 		} catch (SQLException e) {
 			throw new DataException("Error while closing repository", e);
+		} finally {
+			// Always release (e.g. API connection permit) so failed closes don't slowly exhaust them
+			Runnable onClose = this.onClose;
+			this.onClose = null;
+			if (onClose != null)
+				onClose.run();
 		}
 	}
 
@@ -438,19 +541,19 @@ public class HSQLDBRepository implements Repository {
 		if (RepositoryManager.getRequestedCheckpoint() == null) {
 			CHECKPOINT_ATTEMPTS_SINCE_REQUEST.set(0);
 			CHECKPOINT_LAST_PENDING_SUMMARY_MS.set(0L);
+
+			// Request one early if lots of changes are waiting
+			this.maintenanceScheduler.checkPendingCheckpointSize();
 			return;
 		}
 
 		// Skip checkpoint while blockchain-critical work (sync, minting, block import) is active.
 		// Checkpoint during these operations risks stalling the entire node. The checkpoint
 		// request is preserved and will be retried on the next repository close.
-		try {
-			if (Controller.getInstance() != null
-					&& Controller.getInstance().getBlockchainLock().isLocked()) {
-				return;
-			}
-		} catch (Exception e) {
-			// Controller not yet initialized during startup — safe to proceed
+		HSQLDBMaintenanceScheduler.DeferralReason busyReason = this.maintenanceScheduler.getBusyReason(false);
+		if (busyReason != null) {
+			this.maintenanceScheduler.recordDeferral(busyReason);
+			return;
 		}
 
 		int attemptNumber = CHECKPOINT_ATTEMPTS_SINCE_REQUEST.incrementAndGet();
@@ -469,7 +572,9 @@ public class HSQLDBRepository implements Repository {
 		// Always use non-blocking tryLock to avoid queuing a writer on the fair RW lock,
 		// which would block all subsequent readers and cause a node-wide stall ("coma").
 		// On forceful attempts we log at a higher urgency but still do not block.
-		if (!CHECKPOINT_GATE.writeLock().tryLock()) {
+		if (!this.maintenanceScheduler.tryAcquireGate()) {
+			this.maintenanceScheduler.recordDeferral(HSQLDBMaintenanceScheduler.DeferralReason.GATE_BUSY);
+
 			if (shouldLogCheckpointPendingSummary(now)) {
 				LOGGER.info("Checkpoint pending summary: attemptsSinceRequest={}, attemptsBeforeForceful={}, forceful={}, reason=checkpoint_gate_busy",
 						attemptNumber, attemptsBeforeForceful, forcefulAttempt);
@@ -511,6 +616,8 @@ public class HSQLDBRepository implements Repository {
 
 						if (transactionCount > 0) {
 							// We can't safely perform CHECKPOINT due to ongoing SQL transactions
+							this.maintenanceScheduler.recordDeferral(HSQLDBMaintenanceScheduler.DeferralReason.ACTIVE_TRANSACTIONS);
+
 							if (shouldLogCheckpointPendingSummary(now)) {
 								LOGGER.info("Checkpoint pending summary: attemptsSinceRequest={}, attemptsBeforeForceful={}, reason=active_transactions, activeTransactions={}",
 										attemptNumber, attemptsBeforeForceful, transactionCount);
@@ -532,6 +639,7 @@ public class HSQLDBRepository implements Repository {
 					}
 
 					// Completed!
+					this.maintenanceScheduler.checkpointCompleted();
 					LOGGER.info("Repository CHECKPOINT completed on attempt {}!", attemptNumber);
 					RepositoryManager.setRequestedCheckpoint(null);
 					CHECKPOINT_ATTEMPTS_SINCE_REQUEST.set(0);
@@ -540,7 +648,7 @@ public class HSQLDBRepository implements Repository {
 					throw new DataException("Unable to perform checkpoint", e);
 				}
 		} finally {
-			CHECKPOINT_GATE.writeLock().unlock();
+			this.maintenanceScheduler.releaseGate();
 		}
 	}
 
@@ -593,10 +701,10 @@ public class HSQLDBRepository implements Repository {
 
 	@Override
 	public void backup(boolean quick, String name, Long timeout) throws DataException, TimeoutException {
-		// Wait for other transactions to drain without holding write lock, so they can commit/rollback
-		this.blockUntilNoOtherTransactions(timeout);
+		// Wait for other transactions to finish without holding write lock, so they can commit/rollback
+		if (!this.maintenanceScheduler.acquireGate(this, timeout, false))
+			throw new TimeoutException("Timed out waiting for repository to become available");
 
-		CHECKPOINT_GATE.writeLock().lock();
 		try {
 			if (!quick)
 				// First perform a CHECKPOINT
@@ -651,29 +759,79 @@ public class HSQLDBRepository implements Repository {
 				throw new DataException("Unable to backup repository");
 			}
 		} finally {
-			CHECKPOINT_GATE.writeLock().unlock();
+			this.maintenanceScheduler.releaseGate();
 		}
 	}
 
+	/**
+	 * Rebuilds each table into fresh space within the .data file, one at a time, each in its own quiet window.
+	 * <p>
+	 * Unlike <tt>CHECKPOINT DEFRAG</tt>, which rewrites the whole database while every other session waits,
+	 * other sessions only ever wait for one table, and get to run between tables.
+	 * Space freed by rebuilding is reused by later writes, but the .data file doesn't shrink.
+	 *
+	 * @param timeout how long to wait for each quiet window (ms), or null to wait indefinitely
+	 */
 	@Override
 	public void performPeriodicMaintenance(Long timeout) throws DataException, TimeoutException {
-		// Wait for other transactions to drain without holding write lock, so they can commit/rollback
-		this.blockUntilNoOtherTransactions(timeout);
+		List<String> tableNames = this.getTableNames();
 
-		CHECKPOINT_GATE.writeLock().lock();
+		this.maintenanceScheduler.maintenanceStarting(tableNames.size() + 2);
+		String error = null;
 		try {
-			// Defrag DB - takes a while!
-			try (Statement stmt = this.connection.createStatement()) {
-				LOGGER.info("performing maintenance - this will take a while");
-				stmt.execute("CHECKPOINT");
-				stmt.execute("CHECKPOINT DEFRAG");
-				LOGGER.info("maintenance completed");
-			} catch (SQLException e) {
-				throw new DataException("Unable to defrag repository");
-			}
+			this.performMaintenanceStep("checkpoint", "CHECKPOINT", timeout);
+
+			for (String tableName : tableNames)
+				this.performMaintenanceStep("rebuilding " + tableName, String.format("SET TABLE \"%s\" NEW SPACE", tableName), timeout);
+
+			this.performMaintenanceStep("checkpoint", "CHECKPOINT", timeout);
+		} catch (DataException | TimeoutException e) {
+			error = e.getMessage();
+			throw e;
+		} finally {
+			this.maintenanceScheduler.maintenanceCompleted(error);
+		}
+	}
+
+	private void performMaintenanceStep(String description, String sql, Long timeout) throws DataException, TimeoutException {
+		this.maintenanceScheduler.stepStarting(description);
+
+		if (!this.maintenanceScheduler.acquireGate(this, timeout, true))
+			throw new TimeoutException(String.format("Timed out waiting for quiet repository before %s", description));
+
+		long beforeStep = System.nanoTime();
+		try (Statement stmt = this.connection.createStatement()) {
+			stmt.execute(sql);
+
+			if (sql.startsWith("CHECKPOINT"))
+				this.maintenanceScheduler.checkpointCompleted();
+		} catch (SQLException e) {
+			throw new DataException(String.format("Unable to perform repository maintenance: %s", description), e);
 		} finally {
-			CHECKPOINT_GATE.writeLock().unlock();
+			this.maintenanceScheduler.releaseGate();
 		}
+
+		this.maintenanceScheduler.stepCompleted(System.nanoTime() - beforeStep);
+	}
+
+	/** Returns names of (non-temporary) tables, for rebuilding during maintenance. */
+	private List<String> getTableNames() throws DataException {
+		String sql = "SELECT table_name FROM Information_schema.system_tables WHERE table_schem = 'PUBLIC' AND table_type = 'TABLE' ORDER BY table_name";
+
+		List<String> tableNames = new ArrayList<>();
+
+		try (ResultSet resultSet = this.checkedExecute(sql)) {
+			if (resultSet == null)
+				return tableNames;
+
+			do {
+				tableNames.add(resultSet.getString(1));
+			} while (resultSet.next());
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch repository table names", e);
+		}
+
+		return tableNames;
 	}
 
 	@Override
@@ -768,6 +926,11 @@ public class HSQLDBRepository implements Repository {
 	 * Returns prepared statement using passed SQL, logging query if necessary.
 	 */
 	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		if (this.balanceLedger != null)
+			this.balanceLedger.beforeStatement(sql);
+
+		this.flushSavesBefore(sql);
+
 		if (this.debugState)
 			LOGGER.debug(() -> String.format("[%d] %s", this.sessionId, sql));
 
@@ -793,6 +956,9 @@ public class HSQLDBRepository implements Repository {
 				LOGGER.debug(() -> String.format("Recompiling closed PreparedStatement: %s", sql));
 
 			preparedStatement =  this.connection.prepareStatement(sql);
+			if (this.queryTimeout > 0)
+				preparedStatement.setQueryTimeout(this.queryTimeout);
+
 			this.preparedStatementCache.put(sql, preparedStatement);
 		} else {
 			try {
@@ -806,6 +972,9 @@ public class HSQLDBRepository implements Repository {
 				}
 				// Statement is closed but connection is still open, recreate
 				preparedStatement = this.connection.prepareStatement(sql);
+				if (this.queryTimeout > 0)
+					preparedStatement.setQueryTimeout(this.queryTimeout);
+
 				this.preparedStatementCache.put(sql, preparedStatement);
 			}
 		}
@@ -829,21 +998,7 @@ public class HSQLDBRepository implements Repository {
 		// We don't close the PreparedStatement when the ResultSet is closed because we cached PreparedStatements now.
 		// They are cleaned up when connection/session is closed.
 
-		long beforeQuery = this.slowQueryThreshold == null ? 0 : System.currentTimeMillis();
-
-		ResultSet resultSet = this.checkedExecuteResultSet(preparedStatement, objects);
-
-		if (this.slowQueryThreshold != null) {
-			long queryTime = System.currentTimeMillis() - beforeQuery;
-
-			if (queryTime > this.slowQueryThreshold) {
-				LOGGER.info(() -> String.format("[Session %d] HSQLDB query took %d ms: %s", this.sessionId, queryTime, sql), new SQLException("slow query"));
-
-				logStatements();
-			}
-		}
-
-		return resultSet;
+		return this.checkedExecuteResultSet(sql, preparedStatement, objects);
 	}
 
 	/**
@@ -870,20 +1025,29 @@ public class HSQLDBRepository implements Repository {
 	 * <p>
 	 * <b>Note: calls ResultSet.next()</b> therefore returned ResultSet is already pointing to first row.
 	 * 
+	 * @param sql used for profiling and logging
 	 * @param preparedStatement
 	 * @param objects
 	 * @return ResultSet, or null if there are no found rows
 	 * @throws SQLException
 	 */
-	private ResultSet checkedExecuteResultSet(PreparedStatement preparedStatement, Object... objects) throws SQLException {
+	private ResultSet checkedExecuteResultSet(String sql, PreparedStatement preparedStatement, Object... objects) throws SQLException {
 		bindStatementParams(preparedStatement, objects);
 
+		long beforeQuery = this.queryStarting();
+
 		// Note: Read operations (SELECT) don't need transaction tracking
 		// Only write operations (INSERT/UPDATE/DELETE) set inTransaction = true
-		CHECKPOINT_GATE.readLock().lock();
+		long gateWaitTime = this.lockCheckpointGate();
 		try {
 			if (!preparedStatement.execute())
 				throw new SQLException("Fetching from database produced no results");
+		} catch (SQLException e) {
+			// HSQLDB reports statement timeouts as transaction rollbacks, so make them easier to recognise
+			if (QUERY_TIMEOUT_ERROR_CODE.equals(e.getErrorCode()))
+				throw new SQLTimeoutException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+
+			throw e;
 		} finally {
 			CHECKPOINT_GATE.readLock().unlock();
 		}
@@ -892,6 +1056,12 @@ public class HSQLDBRepository implements Repository {
 		if (resultSet == null)
 			throw new SQLException("Fetching results from database produced no ResultSet");
 
+		// Rows are counted as they are read
+		this.queryCompleted("query", sql, beforeQuery, gateWaitTime, 0, () -> formatParameters(objects));
+
+		if (this.profiler != null)
+			resultSet = this.profiler.countRows(sql, resultSet);
+
 		if (!resultSet.next())
 			return null;
 
@@ -930,10 +1100,10 @@ public class HSQLDBRepository implements Repository {
 		}
 
 		this.inTransaction = true;
-		long beforeQuery = this.slowQueryThreshold == null ? 0 : System.currentTimeMillis();
+		long beforeQuery = this.queryStarting();
 
 		int[] updateCounts = null;
-		CHECKPOINT_GATE.readLock().lock();
+		long gateWaitTime = this.lockCheckpointGate();
 		try {
 			updateCounts = preparedStatement.executeBatch();
 		} catch (SQLException e) {
@@ -946,16 +1116,15 @@ public class HSQLDBRepository implements Repository {
 			CHECKPOINT_GATE.readLock().unlock();
 		}
 
-		if (this.slowQueryThreshold != null) {
-			long queryTime = System.currentTimeMillis() - beforeQuery;
+		int totalCount = sumUpdateCounts(updateCounts);
 
-			if (queryTime > this.slowQueryThreshold) {
-				LOGGER.info(() -> String.format("[Session %d] HSQLDB query took %d ms: %s", this.sessionId, queryTime, sql), new SQLException("slow query"));
+		this.queryCompleted(batchedObjects.size() == 1 ? "query" : String.format("batch of %d", batchedObjects.size()), sql,
+				beforeQuery, gateWaitTime, totalCount, () -> formatBatchParameters(batchedObjects, objects -> objects));
 
-				logStatements();
-			}
-		}
+		return totalCount;
+	}
 
+	private static int sumUpdateCounts(int[] updateCounts) throws SQLException {
 		int totalCount = 0;
 		for (int i = 0; i < updateCounts.length; ++i) {
 			if (updateCounts[i] < 0)
@@ -978,9 +1147,12 @@ public class HSQLDBRepository implements Repository {
 	 * @throws SQLException
 	 */
 	public Long callIdentity() throws SQLException {
+		this.flushSaves();
+
 		// We don't need to use HSQLDBRepository.prepareStatement for this as it's so trivial
-		try (PreparedStatement preparedStatement = this.connection.prepareStatement("CALL IDENTITY()");
-				ResultSet resultSet = this.checkedExecuteResultSet(preparedStatement)) {
+		final String sql = "CALL IDENTITY()";
+		try (PreparedStatement preparedStatement = this.connection.prepareStatement(sql);
+				ResultSet resultSet = this.checkedExecuteResultSet(sql, preparedStatement)) {
 			if (resultSet == null)
 				return null;
 
@@ -1140,6 +1312,121 @@ public class HSQLDBRepository implements Repository {
 
 	// Debugging
 
+	/**
+	 * Returns start time to pass to {@link #queryCompleted}, or 0 if neither profiling nor slow query logging are enabled.
+	 */
+	/* package */ long queryStarting() {
+		return this.profiler == null && this.slowQueryThreshold == null ? 0 : System.nanoTime();
+	}
+
+	/**
+	 * Acquires {@link #CHECKPOINT_GATE}'s read lock, returning how long we waited (nanoseconds).
+	 * <p>
+	 * If this statement would start a new transaction, also waits while a checkpoint is draining transactions.
+	 * <p>
+	 * Caller is responsible for unlocking.
+	 */
+	/* package */ long lockCheckpointGate() {
+		if (!this.sessionInTransaction) {
+			this.maintenanceScheduler.awaitDrain();
+			this.sessionInTransaction = true;
+		}
+
+		if (!CHECKPOINT_GATE.isWriteLocked() && !CHECKPOINT_GATE.hasQueuedThreads()) {
+			// We won't have to wait, so don't spend time measuring
+			CHECKPOINT_GATE.readLock().lock();
+			return 0;
+		}
+
+		long beforeLock = System.nanoTime();
+		CHECKPOINT_GATE.readLock().lock();
+		long gateWaitTime = System.nanoTime() - beforeLock;
+
+		this.maintenanceScheduler.recordReaderWait(gateWaitTime);
+
+		return gateWaitTime;
+	}
+
+	/**
+	 * Records query with profiler, and logs it if slow, when enabled.
+	 *
+	 * @param description e.g. "query", "batch of 10"
+	 * @param sql
+	 * @param beforeQuery from {@link #queryStarting()}
+	 * @param gateWaitTime from {@link #lockCheckpointGate()}
+	 * @param rows number of rows returned or changed
+	 * @param parameters formats bound parameters, only called when logging a slow query
+	 */
+	/* package */ void queryCompleted(String description, String sql, long beforeQuery, long gateWaitTime, long rows, Supplier<String> parameters) {
+		if (this.profiler == null && this.slowQueryThreshold == null)
+			return;
+
+		long queryTime = System.nanoTime() - beforeQuery;
+
+		if (this.profiler != null)
+			this.profiler.record(sql, queryTime, gateWaitTime, rows);
+
+		if (this.slowQueryThreshold != null && queryTime / 1000000L > this.slowQueryThreshold) {
+			String parametersText = this.slowQueryLogParameters ? " with parameters " + parameters.get() : "";
+
+			LOGGER.info(() -> String.format("[Session %d] HSQLDB %s took %d ms: %s%s", this.sessionId, description, queryTime / 1000000L, sql, parametersText),
+					new SQLException("slow query"));
+
+			logStatements();
+		}
+	}
+
+	private static <T> String formatBatchParameters(List<T> batch, Function<T, Object[]> parametersGetter) {
+		StringBuilder stringBuilder = new StringBuilder(256);
+
+		for (int i = 0; i < batch.size() && i < MAX_LOGGED_BATCH_ROWS; ++i) {
+			if (i != 0)
+				stringBuilder.append(", ");
+
+			stringBuilder.append(formatParameters(parametersGetter.apply(batch.get(i))));
+		}
+
+		if (batch.size() > MAX_LOGGED_BATCH_ROWS)
+			stringBuilder.append(String.format(" ... and %d more", batch.size() - MAX_LOGGED_BATCH_ROWS));
+
+		return stringBuilder.toString();
+	}
+
+	/* package */ static String formatParameters(Object[] objects) {
+		StringBuilder stringBuilder = new StringBuilder(128);
+		stringBuilder.append('[');
+
+		for (int i = 0; i < objects.length; ++i) {
+			if (i != 0)
+				stringBuilder.append(", ");
+
+			Object object = objects[i];
+
+			if (object instanceof byte[]) {
+				byte[] bytes = (byte[]) object;
+
+				if (bytes.length <= MAX_LOGGED_PARAMETER_BYTES)
+					stringBuilder.append(Base58.encode(bytes));
+				else
+					stringBuilder.append(String.format("<%d bytes>", bytes.length));
+			} else if (object instanceof String) {
+				String string = (String) object;
+
+				stringBuilder.append('\'');
+				if (string.length() <= MAX_LOGGED_PARAMETER_CHARS)
+					stringBuilder.append(string);
+				else
+					stringBuilder.append(string, 0, MAX_LOGGED_PARAMETER_CHARS).append("...");
+				stringBuilder.append('\'');
+			} else {
+				stringBuilder.append(object);
+			}
+		}
+
+		stringBuilder.append(']');
+		return stringBuilder.toString();
+	}
+
 	/**
 	 * Logs this transaction's SQL statements, if enabled.
 	 */
@@ -1264,7 +1551,7 @@ public class HSQLDBRepository implements Repository {
 		return DEADLOCK_ERROR_CODE.equals(e.getErrorCode());
 	}
 
-	private int otherTransactionsCount() throws DataException {
+	/* package */ int otherTransactionsCount() throws DataException {
 		// We can only perform a CHECKPOINT if no other HSQLDB session is mid-transaction,
 		// otherwise the CHECKPOINT blocks for COMMITs and other threads can't open HSQLDB sessions
 		// due to HSQLDB blocking until CHECKPOINT finishes - i.e. deadlock
@@ -1292,23 +1579,4 @@ public class HSQLDBRepository implements Repository {
 		}
 	}
 
-	private void blockUntilNoOtherTransactions(Long timeout) throws DataException, TimeoutException {
-		try {
-			long startTime = System.currentTimeMillis();
-			while (this.otherTransactionsCount() > 0) {
-				// Wait and try again
-				LOGGER.debug("Waiting for repository...");
-				Thread.sleep(1000L);
-
-				if (timeout != null) {
-					if (System.currentTimeMillis() - startTime >= timeout) {
-						throw new TimeoutException("Timed out waiting for repository to become available");
-					}
-				}
-			}
-		} catch (InterruptedException e) {
-			throw new DataException("Interrupted before repository became available");
-		}
-	}
-
 }
@@ -9,6 +9,7 @@ import org.hsqldb.jdbc.HSQLDBPoolMonitored;
 import org.qortal.data.system.DbConnectionInfo;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryBusyException;
 import org.qortal.repository.RepositoryFactory;
 import org.qortal.settings.Settings;
 
@@ -19,6 +20,8 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 public class HSQLDBRepositoryFactory implements RepositoryFactory {
 
@@ -29,6 +32,10 @@ public class HSQLDBRepositoryFactory implements RepositoryFactory {
 
 	private String connectionUrl;
 	private HSQLDBPool connectionPool;
+	/** Read-only sessions for API requests, or null if API requests use main pool. */
+	private HSQLDBPool apiConnectionPool;
+	/** Fair admission to {@link #apiConnectionPool}, with one permit per connection. */
+	private Semaphore apiConnectionPermits;
 	private final boolean wasPristine;
 
 	/**
@@ -41,6 +48,7 @@ public class HSQLDBRepositoryFactory implements RepositoryFactory {
 	public HSQLDBRepositoryFactory(String connectionUrl) throws DataException {
 		// one-time initialization goes in here
 		this.connectionUrl = connectionUrl;
+		HSQLDBMaintenanceScheduler.getInstance().setDbPathname(HSQLDBRepository.getDbPathname(connectionUrl));
 
 		// Check no-one else is accessing database
 		LOGGER.info("Opening database connection (this may take a while if replaying transaction logs)...");
@@ -76,6 +84,15 @@ public class HSQLDBRepositoryFactory implements RepositoryFactory {
 		properties.setProperty("close_result", "true"); // Auto-close old ResultSet if Statement creates new ResultSet
 		this.connectionPool.setProperties(properties);
 
+		final int apiPoolSize = Settings.getInstance().getApiRepositoryConnectionPoolSize();
+		if (apiPoolSize > 0) {
+			this.apiConnectionPool = new HSQLDBPool(apiPoolSize);
+			this.apiConnectionPool.setUrl(this.connectionUrl);
+			this.apiConnectionPool.setProperties(properties);
+
+			this.apiConnectionPermits = new Semaphore(apiPoolSize, true);
+		}
+
 		// Perform DB updates?
 		try (final Connection connection = this.connectionPool.getConnection()) {
 			this.wasPristine = HSQLDBDatabaseUpdates.updateDatabase(connection);
@@ -116,6 +133,57 @@ public class HSQLDBRepositoryFactory implements RepositoryFactory {
 		}
 	}
 
+	@Override
+	public Repository getApiRepository() throws DataException {
+		if (this.apiConnectionPool == null)
+			return this.getRepository();
+
+		final Settings settings = Settings.getInstance();
+
+		// Don't let requests pile up if we're already well behind
+		if (this.apiConnectionPermits.getQueueLength() >= settings.getApiRepositoryMaxQueueLength())
+			throw new RepositoryBusyException("Too many API requests waiting for repository");
+
+		try {
+			if (!this.apiConnectionPermits.tryAcquire(settings.getApiRepositoryQueueTimeout(), TimeUnit.MILLISECONDS))
+				throw new RepositoryBusyException("Timed out waiting for API repository session");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DataException("Interrupted while waiting for API repository session", e);
+		}
+
+		Connection connection = null;
+		try {
+			// We hold a permit, so there should be a spare connection
+			connection = this.apiConnectionPool.tryConnection();
+			if (connection == null)
+				throw new DataException("No API repository connection available");
+
+			setupConnection(connection);
+			connection.setReadOnly(true);
+
+			return new HSQLDBRepository(connection, settings.getApiRepositoryQueryTimeout(), this.apiConnectionPermits::release);
+		} catch (SQLException e) {
+			this.releaseApiConnection(connection);
+			throw new DataException("API repository instantiation error", e);
+		} catch (DataException e) {
+			this.releaseApiConnection(connection);
+			throw e;
+		}
+	}
+
+	private void releaseApiConnection(Connection connection) {
+		if (connection != null) {
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				// Not much we can do
+			}
+		}
+
+		this.apiConnectionPermits.release();
+	}
+
 	private Connection getConnection() throws SQLException {
 		final long before = System.currentTimeMillis();
 		Connection connection = this.connectionPool.getConnection();
@@ -152,6 +220,9 @@ public class HSQLDBRepositoryFactory implements RepositoryFactory {
 			// Close all existing connections immediately
 			this.connectionPool.close(0);
 
+			if (this.apiConnectionPool != null)
+				this.apiConnectionPool.close(0);
+
 			// Now that all connections are closed, create a dedicated connection to shut down repository
 			try (Connection connection = DriverManager.getConnection(this.connectionUrl);
 					Statement stmt = connection.createStatement()) {
@@ -53,28 +53,51 @@ public class HSQLDBSaver {
 
 	/**
 	 * Build PreparedStatement using bound column-value pairs then execute it.
+	 * <p>
+	 * If the repository is batching saves, execution is deferred until the batch is written.
 	 * 
 	 * @param repository
 	 *
-	 * @return the result from {@link PreparedStatement#execute()}
+	 * @return the result from {@link PreparedStatement#execute()}, or false if deferred
 	 * @throws SQLException
 	 */
 	public boolean execute(HSQLDBRepository repository) throws SQLException {
 		String sql = this.formatInsertWithPlaceholders();
 
+		if (repository.batchSave(this.table, sql, this))
+			return false;
+
+		boolean result;
+		long beforeQuery;
+		int updateCount;
+
 		Lock readLock = HSQLDBRepository.CHECKPOINT_GATE.readLock();
-		readLock.lock();
+		long gateWaitTime = repository.lockCheckpointGate();
 		try {
 			repository.markTransactionStarted();
 			PreparedStatement preparedStatement = repository.prepareStatement(sql);
 			this.bindValues(preparedStatement);
 
-			return preparedStatement.execute();
+			// Start timing after any pending saves were written by prepareStatement(), but still count time waiting for the gate
+			beforeQuery = repository.queryStarting() - gateWaitTime;
+
+			result = preparedStatement.execute();
+			updateCount = preparedStatement.getUpdateCount();
 		} catch (SQLException e) {
 			throw repository.examineException(e);
 		} finally {
 			readLock.unlock();
 		}
+
+		repository.queryCompleted("query", sql, beforeQuery, gateWaitTime, Math.max(0, updateCount),
+				() -> HSQLDBRepository.formatParameters(this.getBoundValues()));
+
+		return result;
+	}
+
+	/** Returns values bound so far, in column order. */
+	/* package */ Object[] getBoundValues() {
+		return this.objects.toArray();
 	}
 
 	/**
@@ -137,7 +160,7 @@ public class HSQLDBSaver {
 	 * @param preparedStatement
 	 * @throws SQLException
 	 */
-	private void bindValues(PreparedStatement preparedStatement) throws SQLException {
+	/* package */ void bindValues(PreparedStatement preparedStatement) throws SQLException {
 		for (int i = 0; i < this.objects.size(); ++i) {
 			Object object = this.objects.get(i);
 
@@ -0,0 +1,176 @@
+package org.qortal.repository.hsqldb;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Write-behind buffer for {@link HSQLDBSaver}s, so that they can be executed using JDBC batches.
+ * <p>
+ * Saves are grouped by their SQL, i.e. by table and column set, and groups are written in the order
+ * they were created. A save only joins an earlier group if doing so can't change the outcome, which is
+ * when no later group is for the same table (where rows may overlap), or for a table that it references
+ * via a foreign key (where the referenced row may not exist yet). Otherwise it starts a new group.
+ * <p>
+ * The repository writes all pending saves before executing anything that {@link #touches(String)} their tables,
+ * so they are never observable out of order. Note that this means constraint violations are reported by a later
+ * statement rather than by the save itself.
+ */
+/* package */ class HSQLDBSaverBatch {
+
+	/** Table name to names of tables it references via foreign keys. Loaded once, as the schema is fixed at runtime. */
+	private static volatile Map<String, Set<String>> referencedTables;
+	/** Table name to names of tables that reference it via foreign keys. */
+	private static volatile Map<String, Set<String>> referencingTables;
+
+	/* package */ static class Group {
+		private final String sql;
+		private final String table;
+		private final List<HSQLDBSaver> savers = new ArrayList<>();
+
+		private Group(String sql, String table) {
+			this.sql = sql;
+			this.table = table;
+		}
+
+		/* package */ String getSql() {
+			return this.sql;
+		}
+
+		/* package */ List<HSQLDBSaver> getSavers() {
+			return this.savers;
+		}
+	}
+
+	private final List<Group> groups = new ArrayList<>();
+	private final Map<String, Group> groupsBySql = new HashMap<>();
+	/** Tables whose statements could observe, or be affected by, pending saves */
+	private final Set<String> affectedTables = new HashSet<>();
+	private int size = 0;
+
+	/* package */ HSQLDBSaverBatch(Connection connection) throws SQLException {
+		if (referencedTables == null)
+			loadForeignKeys(connection);
+	}
+
+	/* package */ void add(String table, String sql, HSQLDBSaver saver) {
+		String tableName = normalizeTableName(table);
+
+		if (!this.affectedTables.contains(tableName))
+			this.addAffectedTables(tableName);
+
+		Group group = this.groupsBySql.get(sql);
+		if (group == null || !this.canJoin(group, tableName)) {
+			group = new Group(sql, tableName);
+			this.groups.add(group);
+			this.groupsBySql.put(sql, group);
+		}
+
+		group.savers.add(saver);
+		++this.size;
+	}
+
+	private boolean canJoin(Group group, String tableName) {
+		Set<String> referenced = referencedTables.getOrDefault(tableName, Collections.emptySet());
+
+		for (int i = this.groups.size() - 1; i >= 0; --i) {
+			Group laterGroup = this.groups.get(i);
+			if (laterGroup == group)
+				return true;
+
+			if (laterGroup.table.equals(tableName) || referenced.contains(laterGroup.table))
+				return false;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Pending saves to a table are affected by statements using that table, tables that reference it
+	 * (whose new rows may need pending rows), and tables it references, directly or not (whose deleted rows
+	 * may cascade to pending rows).
+	 */
+	private void addAffectedTables(String tableName) {
+		this.affectedTables.addAll(referencingTables.getOrDefault(tableName, Collections.emptySet()));
+
+		List<String> unvisited = new ArrayList<>();
+		unvisited.add(tableName);
+		while (!unvisited.isEmpty()) {
+			String table = unvisited.remove(unvisited.size() - 1);
+			if (this.affectedTables.add(table))
+				unvisited.addAll(referencedTables.getOrDefault(table, Collections.emptySet()));
+		}
+	}
+
+	/**
+	 * Returns whether SQL might use a table affected by pending saves, in which case they need writing first.
+	 * <p>
+	 * Simply looks for table names within SQL, so can return true unnecessarily, but never returns false wrongly.
+	 */
+	/* package */ boolean touches(String sql) {
+		if (this.size == 0)
+			return false;
+
+		String upperSql = sql.toUpperCase(Locale.ROOT);
+		for (String tableName : this.affectedTables)
+			if (upperSql.contains(tableName))
+				return true;
+
+		return false;
+	}
+
+	/**
+	 * Returns pending groups, in the order they need to be written, and empties the batch.
+	 */
+	/* package */ List<Group> drain() {
+		List<Group> drained = new ArrayList<>(this.groups);
+		this.clear();
+		return drained;
+	}
+
+	/* package */ void clear() {
+		this.groups.clear();
+		this.groupsBySql.clear();
+		this.affectedTables.clear();
+		this.size = 0;
+	}
+
+	/* package */ int size() {
+		return this.size;
+	}
+
+	/* package */ boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	private static String normalizeTableName(String table) {
+		return table.replace("`", "").replace("\"", "").toUpperCase(Locale.ROOT);
+	}
+
+	private static void loadForeignKeys(Connection connection) throws SQLException {
+		Map<String, Set<String>> referenced = new HashMap<>();
+		Map<String, Set<String>> referencing = new HashMap<>();
+
+		try (Statement stmt = connection.createStatement();
+				ResultSet resultSet = stmt.executeQuery("SELECT DISTINCT FKTABLE_NAME, PKTABLE_NAME FROM INFORMATION_SCHEMA.SYSTEM_CROSSREFERENCE "
+						+ "WHERE FKTABLE_SCHEM = 'PUBLIC'")) {
+			while (resultSet.next()) {
+				referenced.computeIfAbsent(resultSet.getString(1), k -> new HashSet<>()).add(resultSet.getString(2));
+				referencing.computeIfAbsent(resultSet.getString(2), k -> new HashSet<>()).add(resultSet.getString(1));
+			}
+		}
+
+		referencingTables = referencing;
+		referencedTables = referenced;
+	}
+
+}
@@ -60,6 +60,13 @@ public class Settings {
 	private static final int MAINNET_GATEWAY_PORT = 80;
 	private static final int TESTNET_GATEWAY_PORT = 8080;
 
+	/** Rough size of serialized block in archive, for converting legacy archivingPause (bytes) */
+	private static final long TYPICAL_ARCHIVED_BLOCK_SIZE = 4 * 1024L;
+	/** Legacy default pause in between archiving blocks (milliseconds) */
+	private static final long DEFAULT_ARCHIVING_PAUSE = 3000L;
+	/** Default archive write rate (bytes per second), equivalent to legacy default archivingPause */
+	private static final long DEFAULT_ARCHIVING_RATE = TYPICAL_ARCHIVED_BLOCK_SIZE * 1000L / DEFAULT_ARCHIVING_PAUSE;
+
 	private static final int MAINNET_DEV_PROXY_PORT = 12393;
 	private static final int TESTNET_DEV_PROXY_PORT = 62393;
 
@@ -146,6 +153,8 @@ public class Settings {
 	private boolean showMaintenanceNotification = false;
 	/** How long between repository checkpoints (ms). */
 	private long repositoryCheckpointInterval = 60 * 60 * 1000L; // 1 hour (ms) default
+	/** Request a repository checkpoint early once this many bytes are waiting in HSQLDB's .log/.backup files (0 to disable). */
+	private long repositoryCheckpointMaxPendingSize = 512 * 1024 * 1024L; // 512 MiB default
 	/** Whether to show a notification when we perform repository 'checkpoint'. */
 	private boolean showCheckpointNotification = false;
 	/* How many blocks to cache locally. Defaulted to 10, which covers a typical Synchronizer request + a few spare - increased to 100 */
@@ -225,6 +234,18 @@ public class Settings {
 	private int maxNetworkThreadPoolSize = 512;
 	/** Maximum number of threads for network proof-of-work compute, used during handshaking. */
 	private int networkPoWComputePoolSize = 4;
+	/** Number of threads, shared by all peers, that load queued outbound messages (e.g. QDN chunks from disk) ready for sending. */
+	private int peerSendDiskIOPoolSize = 8;
+	/** Number of threads, shared by all peers, that hand preloaded outbound messages to peers' connections. */
+	private int peerSendPoolSize = 4;
+	/** Number of threads verifying signatures and MemoryPoW nonces of online accounts received from peers. */
+	private int onlineAccountsVerifyPoolSize = 4;
+	/** Maximum number of network threads handling incoming messages, shared by all message types.
+	 * Should be less than maxNetworkThreadPoolSize, as the rest of the pool runs pings, connections and broadcasts. */
+	private int networkMessageHandlerThreads = 256;
+	/** Maximum number of incoming messages of each type waiting for a handler thread, unless overridden
+	 * in messageQueuesPerMessageType. When full, the oldest waiting message of that type is discarded. */
+	private int networkMessageQueueSize = 500;
 	/** Maximum number of retry attempts if a peer fails to respond with the requested data */
 	private int maxRetries = 3;
 
@@ -246,6 +267,9 @@ public class Settings {
 	/** Maximum time (in seconds) that a peer should remain connected when requesting QDN data */
 	private int maxDataPeerConnectionTime = 30 * 60; // seconds
 
+	/** Whether to offer CRC32C, instead of SHA-256, checksums on network messages whose payload carries its own hash, e.g. QDN chunks */
+	private boolean crc32cMessageChecksumsEnabled = true;
+
 	/** Whether to sync multiple blocks at once in normal operation */
 	private boolean fastSyncEnabled = true;
 	/** Whether to sync multiple blocks at once when the peer has a different chain */
@@ -280,10 +304,26 @@ public class Settings {
 	// Repository related
 	/** Queries that take longer than this are logged. (milliseconds) */
 	private Long slowQueryThreshold = null;
+	/** Whether slow query log entries include bound parameter values. Off by default as these can include private keys. */
+	private boolean slowQueryLogParameters = false;
+	/** Whether to collect per-SQL timing statistics, available via API. */
+	private boolean repositoryProfilingEnabled = false;
 	/** Repository storage path. */
 	private String repositoryPath = "db";
 	/** Repository connection pool size. Needs to be a bit bigger than maxNetworkThreadPoolSize */
 	private int repositoryConnectionPoolSize = 1920;
+	/** Size of separate pool of read-only repository sessions used by API requests. 0 means API requests use the main pool. */
+	private int apiRepositoryConnectionPoolSize = 32;
+	/** Maximum number of API requests queued waiting for a read-only repository session, beyond which they are rejected. */
+	private int apiRepositoryMaxQueueLength = 128;
+	/** How long API requests wait for a read-only repository session before being rejected. (ms) */
+	private long apiRepositoryQueueTimeout = 5000L;
+	/** Statement timeout for read-only API repository sessions. 0 means no timeout. (seconds) */
+	private int apiRepositoryQueryTimeout = 30;
+	/** Whether repository saves made while processing or orphaning blocks are batched up, and only written just before they could be read. */
+	private boolean blockSaveBatchingEnabled = true;
+	/** Whether account balances changed during block processing/orphaning are kept in memory, with net changes written in batches. */
+	private boolean blockBalanceLedgerEnabled = true;
 	private List<String> fixedNetwork;
 
 	// Export/import
@@ -291,6 +331,9 @@ public class Settings {
 
 	// Bootstrap
 	private String bootstrapFilenamePrefix = "";
+	/** Whether bootstraps are created as independently compressed XZ blocks, which compress and extract on all cores.
+	 * Older versions can only import the legacy single stream 7z format, so leave disabled until they are no longer in use. */
+	private boolean bootstrapSplitXZEnabled = false;
 
 	// Bootstrap sources
 	private String[] bootstrapHosts = new String[] {
@@ -398,9 +441,15 @@ public class Settings {
 	/** Whether to serve QDN data without authentication */
 	private boolean qdnAuthBypassEnabled = true;
 
+	/** Maximum total size (bytes) of rewritten QDN HTML pages kept in memory. 0 disables the cache */
+	private long htmlParserCacheSize = 16 * 1024 * 1024L; // 16MiB
+
 	/** Limit threads per message type */
 	private Set<ThreadLimit> maxThreadsPerMessageType = new HashSet<>();
 
+	/** Share of message handler threads, and queue size, per message type */
+	private Set<MessageQueueLimit> messageQueuesPerMessageType = new HashSet<>();
+
 	/** The number of threads per message type at which a warning should be logged.
 	 * Exclude from settings.json to disable this warning. */
 	private Integer threadCountPerMessageTypeWarningThreshold = null;
@@ -462,9 +511,20 @@ public class Settings {
 	 *
 	 * In milliseconds
 	 *
-	 * The pause in between archiving blocks to allow other processes to execute.
+	 * Legacy setting for the pause in between archiving blocks, converted to an equivalent archivingRate
+	 * if archivingRate isn't set. See getArchivingRate().
 	 */
-	private long archivingPause = 3000;
+	private Long archivingPause = null;
+
+	/**
+	 * Archiving Rate
+	 *
+	 * In bytes per second, or 0 for no limit
+	 *
+	 * The maximum rate at which blocks are written to the archive, to allow other processes to use the disk.
+	 * Short bursts of up to a second's worth are allowed.
+	 */
+	private Long archivingRate = null;
 
 	/**
 	 * Enable Balance Recorder?
@@ -653,6 +713,47 @@ public class Settings {
 		}
 	}
 
+	public static class MessageQueueLimit {
+		private String messageType;
+		/** Share of handler threads, relative to other message types. Default 2 if null. */
+		private Integer weight;
+		/** Overrides networkMessageQueueSize if not null */
+		private Integer queueSize;
+
+		private MessageQueueLimit() { // makes JAXB happy; will never be invoked
+		}
+
+		private MessageQueueLimit(String messageType, Integer weight, Integer queueSize) {
+			this.messageType = messageType;
+			this.weight = weight;
+			this.queueSize = queueSize;
+		}
+
+		public String getMessageType() {
+			return messageType;
+		}
+
+		public Integer getWeight() {
+			return weight;
+		}
+
+		public Integer getQueueSize() {
+			return queueSize;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof MessageQueueLimit))
+				return false;
+
+			return this.messageType.equals(((MessageQueueLimit) other).getMessageType());
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(messageType);
+		}
+	}
 
 	// Domain mapping
 	public static class DomainMap {
@@ -848,6 +949,20 @@ public class Settings {
 		maxThreadsPerMessageType.add(new ThreadLimit("GET_TRANSACTION", 50));
 		maxThreadsPerMessageType.add(new ThreadLimit("TRANSACTION_SIGNATURES", 50));
 		maxThreadsPerMessageType.add(new ThreadLimit("TRADE_PRESENCES", 50));
+
+		// Populate defaults for messageQueuesPerMessageType, with the same priority rules.
+		// Requests from syncing peers get more handler turns, so they aren't starved by floods of gossip.
+		messageQueuesPerMessageType.add(new MessageQueueLimit("PING", 8, null));
+		messageQueuesPerMessageType.add(new MessageQueueLimit("HEIGHT_V2", 8, null));
+		messageQueuesPerMessageType.add(new MessageQueueLimit("GET_BLOCK_SUMMARIES", 8, null));
+		messageQueuesPerMessageType.add(new MessageQueueLimit("BLOCK_SUMMARIES_V2", 8, null));
+		messageQueuesPerMessageType.add(new MessageQueueLimit("GET_SIGNATURES_V2", 8, null));
+		messageQueuesPerMessageType.add(new MessageQueueLimit("GET_BLOCK", 8, null));
+		messageQueuesPerMessageType.add(new MessageQueueLimit("TRANSACTION", 1, null));
+		messageQueuesPerMessageType.add(new MessageQueueLimit("TRANSACTION_SIGNATURES", 1, null));
+		messageQueuesPerMessageType.add(new MessageQueueLimit("GET_TRANSACTION", 1, null));
+		messageQueuesPerMessageType.add(new MessageQueueLimit("ONLINE_ACCOUNTS_V3", 1, null));
+		messageQueuesPerMessageType.add(new MessageQueueLimit("GET_ONLINE_ACCOUNTS_V3", 1, null));
 	}
 
 	// Getters / setters
@@ -1076,6 +1191,22 @@ public class Settings {
 		return this.networkPoWComputePoolSize;
 	}
 
+	public int getPeerSendDiskIOPoolSize() {
+		return this.peerSendDiskIOPoolSize;
+	}
+
+	public int getPeerSendPoolSize() {
+		return this.peerSendPoolSize;
+	}
+
+	public int getOnlineAccountsVerifyPoolSize() {
+		return this.onlineAccountsVerifyPoolSize;
+	}
+
+	public int getNetworkMessageHandlerThreads() {
+		return this.networkMessageHandlerThreads;
+	}
+
 	public int getMaxRetries() { return this.maxRetries; }
 
 	public long getRecoveryModeTimeout() {
@@ -1202,6 +1333,14 @@ public class Settings {
 		return this.slowQueryThreshold;
 	}
 
+	public boolean isSlowQueryLogParameters() {
+		return this.slowQueryLogParameters;
+	}
+
+	public boolean isRepositoryProfilingEnabled() {
+		return this.repositoryProfilingEnabled;
+	}
+
 	public String getRepositoryPath() {
 		return this.repositoryPath;
 	}
@@ -1210,6 +1349,30 @@ public class Settings {
 		return this.repositoryConnectionPoolSize;
 	}
 
+	public int getApiRepositoryConnectionPoolSize() {
+		return this.apiRepositoryConnectionPoolSize;
+	}
+
+	public int getApiRepositoryMaxQueueLength() {
+		return this.apiRepositoryMaxQueueLength;
+	}
+
+	public long getApiRepositoryQueueTimeout() {
+		return this.apiRepositoryQueueTimeout;
+	}
+
+	public int getApiRepositoryQueryTimeout() {
+		return this.apiRepositoryQueryTimeout;
+	}
+
+	public boolean isBlockSaveBatchingEnabled() {
+		return this.blockSaveBatchingEnabled;
+	}
+
+	public boolean isBlockBalanceLedgerEnabled() {
+		return this.blockBalanceLedgerEnabled;
+	}
+
 	public String getExportPath() {
 		return this.exportPath;
 	}
@@ -1218,6 +1381,14 @@ public class Settings {
 		return this.bootstrapFilenamePrefix;
 	}
 
+	public boolean isBootstrapSplitXZEnabled() {
+		return this.bootstrapSplitXZEnabled;
+	}
+
+	public boolean isCrc32cMessageChecksumsEnabled() {
+		return this.crc32cMessageChecksumsEnabled;
+	}
+
 	public boolean isFastSyncEnabled() {
 		return this.fastSyncEnabled;
 	}
@@ -1282,6 +1453,10 @@ public class Settings {
 		return this.repositoryCheckpointInterval;
 	}
 
+	public long getRepositoryCheckpointMaxPendingSize() {
+		return this.repositoryCheckpointMaxPendingSize;
+	}
+
 	public boolean getShowCheckpointNotification() {
 		return this.showCheckpointNotification;
 	}
@@ -1434,6 +1609,10 @@ public class Settings {
 		return this.maxStorageCapacity;
 	}
 
+	public long getHtmlParserCacheSize() {
+		return this.htmlParserCacheSize;
+	}
+
 	public boolean isQDNAuthBypassEnabled() {
 		if (this.gatewayEnabled) {
 			// We must always bypass QDN authentication in gateway mode, in order for it to function properly
@@ -1454,6 +1633,33 @@ public class Settings {
 		return null;
 	}
 
+	public int getMessageQueueWeight(MessageType messageType) {
+		MessageQueueLimit messageQueueLimit = this.getMessageQueueLimit(messageType);
+		if (messageQueueLimit != null && messageQueueLimit.getWeight() != null)
+			return messageQueueLimit.getWeight();
+
+		return 2;
+	}
+
+	public int getMessageQueueSize(MessageType messageType) {
+		MessageQueueLimit messageQueueLimit = this.getMessageQueueLimit(messageType);
+		if (messageQueueLimit != null && messageQueueLimit.getQueueSize() != null)
+			return messageQueueLimit.getQueueSize();
+
+		return this.networkMessageQueueSize;
+	}
+
+	private MessageQueueLimit getMessageQueueLimit(MessageType messageType) {
+		if (messageQueuesPerMessageType != null) {
+			for (MessageQueueLimit messageQueueLimit : messageQueuesPerMessageType) {
+				if (messageQueueLimit.getMessageType().equals(messageType.name())) {
+					return messageQueueLimit;
+				}
+			}
+		}
+		return null;
+	}
+
 	public Integer getThreadCountPerMessageTypeWarningThreshold() {
 		return this.threadCountPerMessageTypeWarningThreshold;
 	}
@@ -1486,8 +1692,15 @@ public class Settings {
 		return synchronizerThreadPriority;
 	}
 
-	public long getArchivingPause() {
-		return archivingPause;
+	public long getArchivingRate() {
+		if (this.archivingRate != null)
+			return this.archivingRate;
+
+		// Legacy pause was per block, so convert using typical archived block size
+		if (this.archivingPause != null)
+			return this.archivingPause > 0 ? TYPICAL_ARCHIVED_BLOCK_SIZE * 1000L / this.archivingPause : 0;
+
+		return DEFAULT_ARCHIVING_RATE;
 	}
 
 	public int getBalanceRecorderPriority() {
@@ -509,6 +509,16 @@ public abstract class Transaction {
 	}
 
 	public boolean isSignatureValid() {
+		return this.isCreatorSignatureValid();
+	}
+
+	/**
+	 * Returns whether transaction is correctly signed by its creator.
+	 * <p>
+	 * Unlike {@link #isSignatureValid()}, subclasses don't add any checks here, e.g. of proof-of-work nonces,
+	 * so this never needs the repository and is safe to call from any thread.
+	 */
+	public final boolean isCreatorSignatureValid() {
 		byte[] signature = this.transactionData.getSignature();
 		if (signature == null)
 			return false;
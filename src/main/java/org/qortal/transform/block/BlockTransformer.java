@@ -5,7 +5,6 @@ import com.google.common.primitives.Longs;
 import io.druid.extendedset.intset.ConciseSet;
 import org.qortal.block.Block;
 import org.qortal.block.BlockChain;
-import org.qortal.crypto.Crypto;
 import org.qortal.data.at.ATStateData;
 import org.qortal.data.block.BlockData;
 import org.qortal.data.transaction.TransactionData;
@@ -20,8 +19,11 @@ import org.qortal.utils.Serialization;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -43,6 +45,7 @@ public class BlockTransformer extends Transformer {
 	protected static final int TRANSACTION_SIZE_LENGTH = INT_LENGTH; // per transaction
 
 	protected static final int AT_BYTES_LENGTH = INT_LENGTH;
+	protected static final int AT_COUNT_LENGTH = INT_LENGTH;
 	protected static final int AT_FEES_LENGTH = AMOUNT_LENGTH;
 
 	protected static final int ONLINE_ACCOUNTS_COUNT_LENGTH = INT_LENGTH;
@@ -253,11 +256,24 @@ public class BlockTransformer extends Transformer {
 	}
 
 	public static int getDataLength(Block block) throws TransformationException {
+		return getDataLength(block, false);
+	}
+
+	public static int getDataLengthV2(Block block) throws TransformationException {
+		return getDataLength(block, true);
+	}
+
+	private static int getDataLength(Block block, boolean isV2) throws TransformationException {
 		BlockData blockData = block.getBlockData();
 		int blockLength = BASE_LENGTH;
 
-		blockLength += AT_BYTES_LENGTH + blockData.getATCount() * AT_ENTRY_LENGTH;
-		blockLength += ONLINE_ACCOUNTS_COUNT_LENGTH + ONLINE_ACCOUNTS_SIZE_LENGTH + blockData.getEncodedOnlineAccounts().length;
+		if (isV2)
+			blockLength += AT_COUNT_LENGTH + AT_FEES_LENGTH + SHA256_LENGTH;
+		else
+			blockLength += AT_BYTES_LENGTH + blockData.getATCount() * AT_ENTRY_LENGTH;
+
+		byte[] encodedOnlineAccounts = blockData.getEncodedOnlineAccounts();
+		blockLength += ONLINE_ACCOUNTS_COUNT_LENGTH + ONLINE_ACCOUNTS_SIZE_LENGTH + (encodedOnlineAccounts != null ? encodedOnlineAccounts.length : 0);
 		blockLength += ONLINE_ACCOUNTS_SIGNATURES_COUNT_LENGTH;
 
 		byte[] onlineAccountsSignatures = blockData.getOnlineAccountsSignatures();
@@ -292,28 +308,56 @@ public class BlockTransformer extends Transformer {
 		return toBytes(block, true);
 	}
 
+	/**
+	 * Serialize block into <tt>byteBuffer</tt>, starting at its current position.
+	 * <p>
+	 * Use {@link #getDataLength(Block)} to size buffer.
+	 */
+	public static void toBytes(Block block, ByteBuffer byteBuffer) throws TransformationException {
+		toByteBuffer(block, false, byteBuffer);
+	}
+
+	/**
+	 * Serialize block, with AT states represented by a single hash, into <tt>byteBuffer</tt>, starting at its current position.
+	 * <p>
+	 * Use {@link #getDataLengthV2(Block)} to size buffer.
+	 */
+	public static void toBytesV2(Block block, ByteBuffer byteBuffer) throws TransformationException {
+		toByteBuffer(block, true, byteBuffer);
+	}
+
 	private static byte[] toBytes(Block block, boolean isV2) throws TransformationException {
+		ByteBuffer byteBuffer = ByteBuffer.allocate(getDataLength(block, isV2));
+
+		toByteBuffer(block, isV2, byteBuffer);
+
+		// Only if block's AT count doesn't match its AT states
+		if (byteBuffer.hasRemaining())
+			return Arrays.copyOf(byteBuffer.array(), byteBuffer.position());
+
+		return byteBuffer.array();
+	}
+
+	private static void toByteBuffer(Block block, boolean isV2, ByteBuffer bytes) throws TransformationException {
 		BlockData blockData = block.getBlockData();
 
 		try {
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(block));
-
-			bytes.write(Ints.toByteArray(blockData.getVersion()));
-			bytes.write(Longs.toByteArray(blockData.getTimestamp()));
-			bytes.write(blockData.getReference());
-			bytes.write(blockData.getMinterPublicKey());
-			bytes.write(blockData.getTransactionsSignature());
-			bytes.write(blockData.getMinterSignature());
+			bytes.putInt(blockData.getVersion());
+			bytes.putLong(blockData.getTimestamp());
+			bytes.put(blockData.getReference());
+			bytes.put(blockData.getMinterPublicKey());
+			bytes.put(blockData.getTransactionsSignature());
+			bytes.put(blockData.getMinterSignature());
 
 			int atBytesLength = blockData.getATCount() * AT_ENTRY_LENGTH;
 			if (isV2) {
-				ByteArrayOutputStream atHashBytes = new ByteArrayOutputStream(atBytesLength);
+				MessageDigest atHash = MessageDigest.getInstance("SHA-256");
 				long atFees = 0;
 
 				if (block.getAtStatesHash() != null) {
 					// We already have the AT states hash
 					atFees = blockData.getATFees();
-					atHashBytes.write(block.getAtStatesHash());
+					atHash.update(block.getAtStatesHash());
 				}
 				else {
 					// We need to build the AT states hash
@@ -322,33 +366,33 @@ public class BlockTransformer extends Transformer {
 						if (atStateData.isInitial())
 							continue;
 
-						atHashBytes.write(atStateData.getATAddress().getBytes(StandardCharsets.UTF_8));
-						atHashBytes.write(atStateData.getStateHash());
-						atHashBytes.write(Longs.toByteArray(atStateData.getFees()));
+						atHash.update(atStateData.getATAddress().getBytes(StandardCharsets.UTF_8));
+						atHash.update(atStateData.getStateHash());
+						atHash.update(Longs.toByteArray(atStateData.getFees()));
 
 						atFees += atStateData.getFees();
 					}
 				}
 
-				bytes.write(Ints.toByteArray(blockData.getATCount()));
-				bytes.write(Longs.toByteArray(atFees));
-				bytes.write(Crypto.digest(atHashBytes.toByteArray()));
+				bytes.putInt(blockData.getATCount());
+				bytes.putLong(atFees);
+				bytes.put(atHash.digest());
 			} else {
-				bytes.write(Ints.toByteArray(atBytesLength));
+				bytes.putInt(atBytesLength);
 
 				for (ATStateData atStateData : block.getATStates()) {
 					// Skip initial states generated by DEPLOY_AT transactions in the same block
 					if (atStateData.isInitial())
 						continue;
 
-					bytes.write(Base58.decode(atStateData.getATAddress()));
-					bytes.write(atStateData.getStateHash());
-					bytes.write(Longs.toByteArray(atStateData.getFees()));
+					bytes.put(Base58.decode(atStateData.getATAddress()));
+					bytes.put(atStateData.getStateHash());
+					bytes.putLong(atStateData.getFees());
 				}
 			}
 
 			// Transactions
-			bytes.write(Ints.toByteArray(blockData.getTransactionCount()));
+			bytes.putInt(blockData.getTransactionCount());
 
 			for (Transaction transaction : block.getTransactions()) {
 				// Don't serialize AT transactions!
@@ -356,40 +400,38 @@ public class BlockTransformer extends Transformer {
 					continue;
 
 				TransactionData transactionData = transaction.getTransactionData();
-				bytes.write(Ints.toByteArray(TransactionTransformer.getDataLength(transactionData)));
-				bytes.write(TransactionTransformer.toBytes(transactionData));
+				bytes.putInt(TransactionTransformer.getDataLength(transactionData));
+				TransactionTransformer.toBytes(transactionData, bytes);
 			}
 
 			// Online account info
 			byte[] encodedOnlineAccounts = blockData.getEncodedOnlineAccounts();
 
 			if (encodedOnlineAccounts != null) {
-				bytes.write(Ints.toByteArray(blockData.getOnlineAccountsCount()));
+				bytes.putInt(blockData.getOnlineAccountsCount());
 
-				bytes.write(Ints.toByteArray(encodedOnlineAccounts.length));
-				bytes.write(encodedOnlineAccounts);
+				bytes.putInt(encodedOnlineAccounts.length);
+				bytes.put(encodedOnlineAccounts);
 			} else {
-				bytes.write(Ints.toByteArray(0)); // onlineAccountsCount
-				bytes.write(Ints.toByteArray(0)); // encodedOnlineAccounts length
+				bytes.putInt(0); // onlineAccountsCount
+				bytes.putInt(0); // encodedOnlineAccounts length
 			}
 
 			byte[] onlineAccountsSignatures = blockData.getOnlineAccountsSignatures();
 
 			if (onlineAccountsSignatures != null && onlineAccountsSignatures.length > 0) {
 				// Note: we write the number of signatures, not the number of bytes
-				bytes.write(Ints.toByteArray(blockData.getOnlineAccountsSignaturesCount()));
+				bytes.putInt(blockData.getOnlineAccountsSignaturesCount());
 
 				// We only write online accounts timestamp if we have signatures
-				bytes.write(Longs.toByteArray(blockData.getOnlineAccountsTimestamp()));
+				bytes.putLong(blockData.getOnlineAccountsTimestamp());
 
-				bytes.write(onlineAccountsSignatures);
+				bytes.put(onlineAccountsSignatures);
 			} else {
 				// Zero online accounts signatures (timestamp omitted also)
-				bytes.write(Ints.toByteArray(0));
+				bytes.putInt(0);
 			}
-
-			return bytes.toByteArray();
-		} catch (IOException | DataException e) {
+		} catch (BufferOverflowException | NoSuchAlgorithmException | DataException e) {
 			throw new TransformationException("Unable to serialize block", e);
 		}
 	}
@@ -432,10 +474,6 @@ public class BlockTransformer extends Transformer {
 		try {
 			List<Transaction> transactions = block.getTransactions();
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream(MINTER_SIGNATURE_LENGTH + transactions.size() * TransactionTransformer.SIGNATURE_LENGTH);
-
-			bytes.write(block.getBlockData().getMinterSignature());
-
 			for (Transaction transaction : transactions) {
 				// We don't include AT-Transactions as AT-state/output is dealt with elsewhere in the block code
 				if (transaction.getTransactionData().getType() == TransactionType.AT)
@@ -443,12 +481,31 @@ public class BlockTransformer extends Transformer {
 
 				if (!transaction.isSignatureValid())
 					throw new TransformationException("Transaction signature invalid when building block's transactions signature");
+			}
+
+			return getBytesForTransactionsSignature(block.getBlockData().getMinterSignature(), transactions);
+		} catch (DataException e) {
+			throw new TransformationException(e);
+		}
+	}
+
+	/** Returns bytes for block's transactions signature, without checking transactions' signatures. */
+	public static byte[] getBytesForTransactionsSignature(byte[] minterSignature, List<Transaction> transactions) throws TransformationException {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(MINTER_SIGNATURE_LENGTH + transactions.size() * TransactionTransformer.SIGNATURE_LENGTH);
+
+			bytes.write(minterSignature);
+
+			for (Transaction transaction : transactions) {
+				// We don't include AT-Transactions as AT-state/output is dealt with elsewhere in the block code
+				if (transaction.getTransactionData().getType() == TransactionType.AT)
+					continue;
 
 				bytes.write(transaction.getTransactionData().getSignature());
 			}
 
 			return bytes.toByteArray();
-		} catch (IOException | DataException e) {
+		} catch (IOException e) {
 			throw new TransformationException(e);
 		}
 	}
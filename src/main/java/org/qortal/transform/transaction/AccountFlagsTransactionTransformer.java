@@ -74,7 +74,7 @@ public class AccountFlagsTransactionTransformer extends TransactionTransformer {
 		try {
 			AccountFlagsTransactionData accountFlagsTransactionData = (AccountFlagsTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
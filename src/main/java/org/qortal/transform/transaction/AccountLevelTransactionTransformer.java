@@ -68,7 +68,7 @@ public class AccountLevelTransactionTransformer extends TransactionTransformer {
 		try {
 			AccountLevelTransactionData accountLevelTransactionData = (AccountLevelTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
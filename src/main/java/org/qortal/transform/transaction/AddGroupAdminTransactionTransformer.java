@@ -68,7 +68,7 @@ public class AddGroupAdminTransactionTransformer extends TransactionTransformer
 		try {
 			AddGroupAdminTransactionData addGroupAdminTransactionData = (AddGroupAdminTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
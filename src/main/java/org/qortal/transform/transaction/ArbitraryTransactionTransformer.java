@@ -205,7 +205,7 @@ public class ArbitraryTransactionTransformer extends TransactionTransformer {
 		try {
 			ArbitraryTransactionData arbitraryTransactionData = (ArbitraryTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
@@ -130,7 +130,7 @@ public class AtTransactionTransformer extends TransactionTransformer {
 
 			int version = Transaction.getVersionByTimestamp(atTransactionData.getTimestamp());
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			bytes.write(Ints.toByteArray(atTransactionData.getType().value));
 			bytes.write(Longs.toByteArray(atTransactionData.getTimestamp()));
@@ -75,7 +75,7 @@ public class BuyNameTransactionTransformer extends TransactionTransformer {
 		try {
 			BuyNameTransactionData buyNameTransactionData = (BuyNameTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
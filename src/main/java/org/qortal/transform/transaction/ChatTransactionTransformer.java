@@ -117,7 +117,7 @@ public class ChatTransactionTransformer extends TransactionTransformer {
 		try {
 			ChatTransactionData chatTransactionData = (ChatTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
@@ -92,7 +92,7 @@ public class CreateGroupTransactionTransformer extends TransactionTransformer {
 		try {
 			CreateGroupTransactionData createGroupTransactionData = (CreateGroupTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
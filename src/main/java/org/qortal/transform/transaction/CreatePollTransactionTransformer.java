@@ -104,7 +104,7 @@ public class CreatePollTransactionTransformer extends TransactionTransformer {
 		try {
 			CreatePollTransactionData createPollTransactionData = (CreatePollTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
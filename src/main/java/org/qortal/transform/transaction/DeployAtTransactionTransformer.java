@@ -105,7 +105,7 @@ public class DeployAtTransactionTransformer extends TransactionTransformer {
 		try {
 			DeployAtTransactionData deployATTransactionData = (DeployAtTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
@@ -68,7 +68,7 @@ public class GroupApprovalTransactionTransformer extends TransactionTransformer
 		try {
 			GroupApprovalTransactionData groupApprovalTransactionData = (GroupApprovalTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
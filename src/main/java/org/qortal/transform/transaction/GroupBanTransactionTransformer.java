@@ -81,7 +81,7 @@ public class GroupBanTransactionTransformer extends TransactionTransformer {
 		try {
 			GroupBanTransactionData groupBanTransactionData = (GroupBanTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
@@ -72,7 +72,7 @@ public class GroupInviteTransactionTransformer extends TransactionTransformer {
 		try {
 			GroupInviteTransactionData groupInviteTransactionData = (GroupInviteTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
@@ -77,7 +77,7 @@ public class GroupKickTransactionTransformer extends TransactionTransformer {
 		try {
 			GroupKickTransactionData groupKickTransactionData = (GroupKickTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
@@ -94,7 +94,7 @@ public class IssueAssetTransactionTransformer extends TransactionTransformer {
 		try {
 			IssueAssetTransactionData issueAssetTransactionData = (IssueAssetTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
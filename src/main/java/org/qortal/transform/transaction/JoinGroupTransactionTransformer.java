@@ -64,7 +64,7 @@ public class JoinGroupTransactionTransformer extends TransactionTransformer {
 		try {
 			JoinGroupTransactionData joinGroupTransactionData = (JoinGroupTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
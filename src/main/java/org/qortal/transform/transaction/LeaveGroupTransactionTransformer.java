@@ -64,7 +64,7 @@ public class LeaveGroupTransactionTransformer extends TransactionTransformer {
 		try {
 			LeaveGroupTransactionData leaveGroupTransactionData = (LeaveGroupTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
@@ -110,7 +110,7 @@ public class MessageTransactionTransformer extends TransactionTransformer {
 		try {
 			MessageTransactionData messageTransactionData = (MessageTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
@@ -77,7 +77,7 @@ public class MultiPaymentTransactionTransformer extends TransactionTransformer {
 		try {
 			MultiPaymentTransactionData multiPaymentTransactionData = (MultiPaymentTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
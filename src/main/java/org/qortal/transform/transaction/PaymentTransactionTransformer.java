@@ -66,7 +66,7 @@ public class PaymentTransactionTransformer extends TransactionTransformer {
 		try {
 			PaymentTransactionData paymentTransactionData = (PaymentTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
@@ -74,7 +74,7 @@ public class PresenceTransactionTransformer extends TransactionTransformer {
 		try {
 			PresenceTransactionData presenceTransactionData = (PresenceTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
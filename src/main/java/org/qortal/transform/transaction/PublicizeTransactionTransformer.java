@@ -64,7 +64,7 @@ public class PublicizeTransactionTransformer extends TransactionTransformer {
 		try {
 			PublicizeTransactionData publicizeTransactionData = (PublicizeTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
@@ -74,7 +74,7 @@ public class RegisterNameTransactionTransformer extends TransactionTransformer {
 		try {
 			RegisterNameTransactionData registerNameTransactionData = (RegisterNameTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
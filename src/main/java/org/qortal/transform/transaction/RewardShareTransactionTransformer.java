@@ -71,7 +71,7 @@ public class RewardShareTransactionTransformer extends TransactionTransformer {
 		try {
 			RewardShareTransactionData rewardShareTransactionData = (RewardShareTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
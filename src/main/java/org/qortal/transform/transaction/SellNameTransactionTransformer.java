@@ -71,7 +71,7 @@ public class SellNameTransactionTransformer extends TransactionTransformer {
 		try {
 			SellNameTransactionData sellNameTransactionData = (SellNameTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
@@ -64,7 +64,7 @@ public class SetGroupTransactionTransformer extends TransactionTransformer {
 		try {
 			SetGroupTransactionData setGroupTransactionData = (SetGroupTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
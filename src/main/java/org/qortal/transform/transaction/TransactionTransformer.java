@@ -223,6 +223,10 @@ public abstract class TransactionTransformer extends Transformer {
 	}
 
 	public static int getDataLength(TransactionData transactionData) throws TransformationException {
+		byte[] serializedBytes = transactionData.getSerializedBytes();
+		if (serializedBytes != null)
+			return serializedBytes.length;
+
 		TransactionType type = transactionData.getType();
 
 		try {
@@ -238,12 +242,55 @@ public abstract class TransactionTransformer extends Transformer {
 		}
 	}
 
+	/**
+	 * Serialize transaction as byte[].
+	 * <p>
+	 * Signed transactions are only serialized once, with the result cached alongside <tt>transactionData</tt>.
+	 * Callers receive their own copy, as some modify the returned bytes.
+	 *
+	 * @param transactionData
+	 * @return byte[] of transaction, including trailing signature if signed
+	 * @throws TransformationException
+	 */
 	public static byte[] toBytes(TransactionData transactionData) throws TransformationException {
+		byte[] serializedBytes = getSerializedBytes(transactionData);
+
+		if (serializedBytes != transactionData.getSerializedBytes())
+			// Not cached, so nobody else has a reference
+			return serializedBytes;
+
+		return serializedBytes.clone();
+	}
+
+	/**
+	 * Serialize transaction into <tt>byteBuffer</tt>, starting at its current position.
+	 * <p>
+	 * Use {@link #getDataLength(TransactionData)} to size buffer.
+	 *
+	 * @param transactionData
+	 * @param byteBuffer
+	 * @throws TransformationException if transaction can't be serialized, or won't fit in <tt>byteBuffer</tt>
+	 */
+	public static void toBytes(TransactionData transactionData, ByteBuffer byteBuffer) throws TransformationException {
+		byte[] serializedBytes = getSerializedBytes(transactionData);
+
+		if (byteBuffer.remaining() < serializedBytes.length)
+			throw new TransformationException("Byte buffer too short for " + transactionData.getType().name() + " transaction");
+
+		byteBuffer.put(serializedBytes);
+	}
+
+	/** Returns cached serialized form of <tt>transactionData</tt>, if signed, otherwise freshly serialized bytes. */
+	private static byte[] getSerializedBytes(TransactionData transactionData) throws TransformationException {
+		byte[] serializedBytes = transactionData.getSerializedBytes();
+		if (serializedBytes != null)
+			return serializedBytes;
+
 		TransactionType type = transactionData.getType();
 
 		try {
 			Method method = subclassInfos[type.value].toBytesMethod;
-			return (byte[]) method.invoke(null, transactionData);
+			serializedBytes = (byte[]) method.invoke(null, transactionData);
 		} catch (InvocationTargetException e) {
 			if (e.getCause() instanceof TransformationException)
 				throw (TransformationException) e.getCause();
@@ -252,6 +299,13 @@ public abstract class TransactionTransformer extends Transformer {
 		} catch (IllegalAccessException | IllegalArgumentException  e) {
 			throw new TransformationException("Internal error with transaction type [" + type.value + "] during conversion to bytes");
 		}
+
+		// Unsigned transactions are still being built, e.g. fee or nonce yet to be set, so aren't worth caching.
+		// GENESIS transactions are only serialized to generate their signatures, and must not gain a data length.
+		if (transactionData.getSignature() != null && type != TransactionType.GENESIS)
+			transactionData.setSerializedBytes(serializedBytes);
+
+		return serializedBytes;
 	}
 
 	/**
@@ -288,7 +342,7 @@ public abstract class TransactionTransformer extends Transformer {
 	 */
 	protected static byte[] toBytesForSigningImpl(TransactionData transactionData) throws TransformationException {
 		try {
-			byte[] bytes = TransactionTransformer.toBytes(transactionData);
+			byte[] bytes = getSerializedBytes(transactionData);
 
 			if (transactionData.getSignature() == null)
 				return bytes;
@@ -69,7 +69,7 @@ public class TransferAssetTransactionTransformer extends TransactionTransformer
 		try {
 			TransferAssetTransactionData transferAssetTransactionData = (TransferAssetTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
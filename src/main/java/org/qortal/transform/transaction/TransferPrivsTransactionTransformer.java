@@ -63,7 +63,7 @@ public class TransferPrivsTransactionTransformer extends TransactionTransformer
 		try {
 			TransferPrivsTransactionData transferPrivsTransactionData = (TransferPrivsTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
@@ -83,7 +83,7 @@ public class UpdateAssetTransactionTransformer extends TransactionTransformer {
 		try {
 			UpdateAssetTransactionData updateAssetTransactionData = (UpdateAssetTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
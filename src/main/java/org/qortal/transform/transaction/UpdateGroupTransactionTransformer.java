@@ -96,7 +96,7 @@ public class UpdateGroupTransactionTransformer extends TransactionTransformer {
 		try {
 			UpdateGroupTransactionData updateGroupTransactionData = (UpdateGroupTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
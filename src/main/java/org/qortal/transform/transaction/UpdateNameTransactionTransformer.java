@@ -80,7 +80,7 @@ public class UpdateNameTransactionTransformer extends TransactionTransformer {
 		try {
 			UpdateNameTransactionData updateNameTransactionData = (UpdateNameTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
@@ -75,7 +75,7 @@ public class VoteOnPollTransactionTransformer extends TransactionTransformer {
 		try {
 			VoteOnPollTransactionData voteOnPollTransactionData = (VoteOnPollTransactionData) transactionData;
 
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(getDataLength(transactionData));
 
 			transformCommonBytes(transactionData, bytes);
 
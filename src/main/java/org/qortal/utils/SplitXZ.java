@@ -0,0 +1,476 @@
+package org.qortal.utils;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.qortal.gui.SplashFrame;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.UnsupportedOptionsException;
+import org.tukaani.xz.XZ;
+import org.tukaani.xz.XZInputStream;
+import org.tukaani.xz.XZOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compresses files into a tar stream that is split into independently compressed XZ blocks,
+ * so that both compression and extraction can use every core.
+ * <p>
+ * File layout:
+ * <pre>
+ * magic (8 bytes) | version (int)
+ * XZ-compressed blocks, each holding BLOCK_SIZE bytes of the tar stream (the last may be shorter)
+ * index: block count (int), then for each block: compressed length (int), uncompressed length (int), SHA-256 of compressed bytes
+ * index offset (long) | magic (8 bytes)
+ * </pre>
+ * Each block is checked against its digest before being decompressed, so corruption is reported
+ * as soon as the affected block is reached, rather than after extracting everything before it.
+ */
+public class SplitXZ {
+
+    private static final byte[] MAGIC = "QORTALXZ".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+
+    private static final int HEADER_LENGTH = MAGIC.length + Integer.BYTES;
+    private static final int TRAILER_LENGTH = Long.BYTES + MAGIC.length;
+    private static final int DIGEST_LENGTH = 32;
+    private static final int INDEX_ENTRY_LENGTH = 2 * Integer.BYTES + DIGEST_LENGTH;
+
+    // Uncompressed size of each block. Larger blocks compress slightly better but use more memory per thread.
+    private static final int BLOCK_SIZE = 16 * 1024 * 1024;
+
+    private static final int PRESET = LZMA2Options.PRESET_DEFAULT;
+
+    private static class IndexEntry {
+        private final long offset;
+        private final int compressedLength;
+        private final int uncompressedLength;
+        private final byte[] digest;
+
+        private IndexEntry(long offset, int compressedLength, int uncompressedLength, byte[] digest) {
+            this.offset = offset;
+            this.compressedLength = compressedLength;
+            this.uncompressedLength = uncompressedLength;
+            this.digest = digest;
+        }
+    }
+
+    private SplitXZ() {
+
+    }
+
+    /**
+     * Returns whether file at path is in this format, as opposed to e.g. a legacy 7z archive.
+     */
+    public static boolean isSplitXZ(Path path) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        try (InputStream in = Files.newInputStream(path)) {
+            return in.readNBytes(magic, 0, magic.length) == magic.length && Arrays.equals(magic, MAGIC);
+        }
+    }
+
+    public static void compress(String outputPath, File... files) throws IOException {
+        LZMA2Options options = new LZMA2Options(PRESET);
+
+        // Each thread needs an encoder and a couple of blocks' worth of buffers, so limit threads to what fits in memory
+        long memoryPerThread = options.getEncoderMemoryUsage() * 1024L + 2L * BLOCK_SIZE;
+        int threadCount = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory() / 2 / memoryPerThread));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount, new NamedThreadFactory("XZ-compressor", Thread.NORM_PRIORITY));
+
+        try (FileChannel channel = FileChannel.open(Path.of(outputPath), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             BlockOutputStream blockOutputStream = new BlockOutputStream(channel, executor, options, threadCount + 1);
+             TarArchiveOutputStream tar = new TarArchiveOutputStream(blockOutputStream)) {
+            tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+
+            for (File file : files) {
+                addToArchive(tar, file, "");
+            }
+            tar.finish();
+            tar.flush();
+
+            // Only write the index once everything else has been written, so a failure never leaves a readable archive
+            blockOutputStream.finish();
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static void decompress(String in, File destination) throws IOException {
+        final Path destinationPath = destination.toPath().toAbsolutePath().normalize();
+
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        // Decompressed blocks are held until they are written out, so bound how many are in memory
+        int readAhead = (int) Math.max(2, Math.min(threadCount * 2L, Runtime.getRuntime().maxMemory() / 4 / BLOCK_SIZE));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount, new NamedThreadFactory("XZ-decompressor", Thread.NORM_PRIORITY));
+
+        try (FileChannel channel = FileChannel.open(Path.of(in), StandardOpenOption.READ)) {
+            List<IndexEntry> index = readIndex(channel);
+
+            try (TarArchiveInputStream tar = new TarArchiveInputStream(new BlockInputStream(channel, index, executor, readAhead))) {
+                TarArchiveEntry entry;
+                byte[] buffer = new byte[1024 * 1024];
+
+                while ((entry = tar.getNextEntry()) != null) {
+                    Path entryPath = destinationPath.resolve(entry.getName()).normalize();
+                    if (!entryPath.startsWith(destinationPath)) {
+                        throw new IOException(String.format("Archive entry %s is outside of destination", entry.getName()));
+                    }
+
+                    if (entry.isDirectory()) {
+                        Files.createDirectories(entryPath);
+                        continue;
+                    }
+
+                    Files.createDirectories(entryPath.getParent());
+                    try (OutputStream out = Files.newOutputStream(entryPath)) {
+                        int count;
+                        while ((count = tar.read(buffer)) > 0) {
+                            out.write(buffer, 0, count);
+                        }
+                    }
+                }
+            }
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void addToArchive(TarArchiveOutputStream tar, File file, String dir) throws IOException {
+        String name = dir + file.getName();
+        if (file.isFile()) {
+            TarArchiveEntry entry = new TarArchiveEntry(file, name);
+            tar.putArchiveEntry(entry);
+            Files.copy(file.toPath(), tar);
+            tar.closeArchiveEntry();
+
+        } else if (file.isDirectory()) {
+            TarArchiveEntry entry = new TarArchiveEntry(file, name + "/");
+            tar.putArchiveEntry(entry);
+            tar.closeArchiveEntry();
+
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    addToArchive(tar, child, name + "/");
+                }
+            }
+        }
+    }
+
+    private static List<IndexEntry> readIndex(FileChannel channel) throws IOException {
+        final long fileSize = channel.size();
+        if (fileSize < HEADER_LENGTH + Integer.BYTES + TRAILER_LENGTH) {
+            throw new IOException("Archive is too short");
+        }
+
+        ByteBuffer header = readFully(channel, 0, HEADER_LENGTH);
+        byte[] magic = new byte[MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a split XZ archive");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException(String.format("Unsupported split XZ archive version %d", version));
+        }
+
+        ByteBuffer trailer = readFully(channel, fileSize - TRAILER_LENGTH, TRAILER_LENGTH);
+        long indexOffset = trailer.getLong();
+        trailer.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || indexOffset < HEADER_LENGTH || indexOffset > fileSize - TRAILER_LENGTH - Integer.BYTES) {
+            throw new IOException("Archive is truncated or corrupt");
+        }
+
+        ByteBuffer index = readFully(channel, indexOffset, (int) (fileSize - TRAILER_LENGTH - indexOffset));
+        int blockCount = index.getInt();
+        if (blockCount < 0 || index.remaining() != (long) blockCount * INDEX_ENTRY_LENGTH) {
+            throw new IOException("Archive index is corrupt");
+        }
+
+        List<IndexEntry> entries = new ArrayList<>(blockCount);
+        long offset = HEADER_LENGTH;
+        for (int i = 0; i < blockCount; i++) {
+            int compressedLength = index.getInt();
+            int uncompressedLength = index.getInt();
+            byte[] digest = new byte[DIGEST_LENGTH];
+            index.get(digest);
+
+            if (compressedLength <= 0 || uncompressedLength <= 0 || uncompressedLength > BLOCK_SIZE) {
+                throw new IOException("Archive index is corrupt");
+            }
+
+            entries.add(new IndexEntry(offset, compressedLength, uncompressedLength, digest));
+            offset += compressedLength;
+        }
+
+        if (offset != indexOffset) {
+            throw new IOException("Archive index is corrupt");
+        }
+
+        return entries;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of archive");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 hashing algorithm unavailable", e);
+        }
+    }
+
+    private static <T> T waitFor(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Splits everything written to it into blocks, which are compressed on the executor and written out in order.
+     */
+    private static class BlockOutputStream extends OutputStream {
+
+        private static class CompressedBlock {
+            private final byte[] data;
+            private final int uncompressedLength;
+            private final byte[] digest;
+
+            private CompressedBlock(byte[] data, int uncompressedLength) {
+                this.data = data;
+                this.uncompressedLength = uncompressedLength;
+                this.digest = sha256(data);
+            }
+        }
+
+        private final FileChannel channel;
+        private final ExecutorService executor;
+        private final LZMA2Options options;
+        private final int maxPending;
+
+        private final Deque<Future<CompressedBlock>> pending = new ArrayDeque<>();
+        private final List<IndexEntry> index = new ArrayList<>();
+        private byte[] buffer = new byte[BLOCK_SIZE];
+        private int bufferLength = 0;
+        private long position;
+        private boolean finished = false;
+
+        private BlockOutputStream(FileChannel channel, ExecutorService executor, LZMA2Options options, int maxPending) throws IOException {
+            this.channel = channel;
+            this.executor = executor;
+            this.options = options;
+            this.maxPending = maxPending;
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.put(MAGIC).putInt(VERSION).flip();
+            this.write(header);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int count = Math.min(len, BLOCK_SIZE - this.bufferLength);
+                System.arraycopy(b, off, this.buffer, this.bufferLength, count);
+                this.bufferLength += count;
+                off += count;
+                len -= count;
+
+                if (this.bufferLength == BLOCK_SIZE) {
+                    this.submitBlock();
+                }
+            }
+        }
+
+        private void finish() throws IOException {
+            if (this.finished) {
+                return;
+            }
+            this.finished = true;
+
+            if (this.bufferLength > 0) {
+                this.submitBlock();
+            }
+            while (!this.pending.isEmpty()) {
+                this.writeNextBlock();
+            }
+
+            ByteBuffer indexBuffer = ByteBuffer.allocate(Integer.BYTES + this.index.size() * INDEX_ENTRY_LENGTH + TRAILER_LENGTH);
+            indexBuffer.putInt(this.index.size());
+            for (IndexEntry entry : this.index) {
+                indexBuffer.putInt(entry.compressedLength).putInt(entry.uncompressedLength).put(entry.digest);
+            }
+            indexBuffer.putLong(this.position).put(MAGIC).flip();
+            this.write(indexBuffer);
+        }
+
+        private void submitBlock() throws IOException {
+            final byte[] data = this.buffer;
+            final int length = this.bufferLength;
+            this.pending.add(this.executor.submit(() -> this.compressBlock(data, length)));
+
+            this.buffer = new byte[BLOCK_SIZE];
+            this.bufferLength = 0;
+
+            while (this.pending.size() >= this.maxPending) {
+                this.writeNextBlock();
+            }
+        }
+
+        private CompressedBlock compressBlock(byte[] data, int length) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(length / 2);
+            try (XZOutputStream xz = new XZOutputStream(bytes, this.options, XZ.CHECK_CRC64)) {
+                xz.write(data, 0, length);
+            }
+            return new CompressedBlock(bytes.toByteArray(), length);
+        }
+
+        private void writeNextBlock() throws IOException {
+            CompressedBlock block = waitFor(this.pending.poll());
+            this.index.add(new IndexEntry(this.position, block.data.length, block.uncompressedLength, block.digest));
+            this.write(ByteBuffer.wrap(block.data));
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                this.position += this.channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Reads blocks in order, with the next few being verified and decompressed ahead on the executor.
+     */
+    private static class BlockInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private final List<IndexEntry> index;
+        private final ExecutorService executor;
+        private final int readAhead;
+
+        private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        private int nextBlock = 0;
+        private int blocksRead = 0;
+        private byte[] block = new byte[0];
+        private int blockPosition = 0;
+
+        private BlockInputStream(FileChannel channel, List<IndexEntry> index, ExecutorService executor, int readAhead) {
+            this.channel = channel;
+            this.index = index;
+            this.executor = executor;
+            this.readAhead = readAhead;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return this.read(b, 0, 1) == 1 ? b[0] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            while (this.blockPosition == this.block.length) {
+                if (!this.nextBlock()) {
+                    return -1;
+                }
+            }
+
+            int count = Math.min(len, this.block.length - this.blockPosition);
+            System.arraycopy(this.block, this.blockPosition, b, off, count);
+            this.blockPosition += count;
+            return count;
+        }
+
+        private boolean nextBlock() throws IOException {
+            // Keep the next few blocks decompressing
+            while (this.nextBlock < this.index.size() && this.pending.size() < this.readAhead) {
+                final IndexEntry entry = this.index.get(this.nextBlock);
+                final int blockNumber = this.nextBlock++;
+                this.pending.add(this.executor.submit(() -> this.decompressBlock(entry, blockNumber)));
+            }
+
+            if (this.pending.isEmpty()) {
+                return false;
+            }
+
+            this.block = waitFor(this.pending.poll());
+            this.blockPosition = 0;
+            this.blocksRead++;
+
+            int progress = (int) ((double) this.blocksRead / (double) this.index.size() * 100);
+            SplashFrame.getInstance().updateStatus(String.format("Extracting bootstrap... (%d%%)", progress));
+            return true;
+        }
+
+        private byte[] decompressBlock(IndexEntry entry, int blockNumber) throws IOException {
+            byte[] compressed = readFully(this.channel, entry.offset, entry.compressedLength).array();
+            if (!Arrays.equals(sha256(compressed), entry.digest)) {
+                throw new IOException(String.format("Archive block %d is corrupt", blockNumber));
+            }
+
+            byte[] data = new byte[entry.uncompressedLength];
+            try (XZInputStream xz = new XZInputStream(new ByteArrayInputStream(compressed))) {
+                int length = xz.readNBytes(data, 0, data.length);
+                if (length != data.length || xz.read() != -1) {
+                    throw new IOException(String.format("Archive block %d has unexpected length", blockNumber));
+                }
+            } catch (UnsupportedOptionsException e) {
+                throw new IOException(String.format("Archive block %d is unsupported", blockNumber), e);
+            }
+            return data;
+        }
+    }
+
+}
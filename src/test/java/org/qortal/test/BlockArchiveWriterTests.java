@@ -0,0 +1,162 @@
+package org.qortal.test;
+
+import com.google.common.primitives.Ints;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.account.PrivateKeyAccount;
+import org.qortal.block.Block;
+import org.qortal.controller.BlockMinter;
+import org.qortal.data.block.BlockData;
+import org.qortal.repository.*;
+import org.qortal.settings.Settings;
+import org.qortal.test.common.AccountUtils;
+import org.qortal.test.common.Common;
+import org.qortal.transform.TransformationException;
+import org.qortal.transform.block.BlockTransformer;
+import org.qortal.utils.NTP;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class BlockArchiveWriterTests extends Common {
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useSettings("test-settings-v2-block-archive.json");
+		NTP.setFixedOffset(Settings.getInstance().getTestNtpOffset());
+		this.deleteArchiveDirectory();
+	}
+
+	@After
+	public void afterTest() throws DataException {
+		this.deleteArchiveDirectory();
+	}
+
+	@Test
+	public void testOutputV1() throws DataException, InterruptedException, TransformationException, IOException {
+		this.testOutput(1);
+	}
+
+	@Test
+	public void testOutputV2() throws DataException, InterruptedException, TransformationException, IOException {
+		this.testOutput(2);
+	}
+
+	private void testOutput(int serializationVersion) throws DataException, InterruptedException, TransformationException, IOException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			final int maximumArchiveHeight = this.mintBlocks(repository, 200);
+			final Path archivePath = Paths.get(Settings.getInstance().getRepositoryPath(), "archive");
+
+			BlockArchiveWriter writer = new BlockArchiveWriter(0, maximumArchiveHeight, serializationVersion, archivePath, repository);
+			writer.setShouldEnforceFileSizeTarget(false);
+			assertEquals(BlockArchiveWriter.BlockArchiveWriteResult.OK, writer.write());
+			assertEquals(maximumArchiveHeight - 1, writer.getWrittenCount());
+
+			byte[] expectedBytes = buildArchiveFile(repository, serializationVersion, 2, maximumArchiveHeight, Long.MAX_VALUE);
+			assertArrayEquals(expectedBytes, Files.readAllBytes(writer.getOutputPath()));
+
+			// No temporary files should be left behind
+			try (Stream<Path> paths = Files.list(archivePath)) {
+				assertEquals(1, paths.count());
+			}
+		}
+	}
+
+	@Test
+	public void testFileSizeTarget() throws DataException, InterruptedException, TransformationException, IOException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			final int maximumArchiveHeight = this.mintBlocks(repository, 200);
+
+			// Stop part way through, with blocks still being serialized ahead of the last one written
+			final long fileSizeTarget = 10 * 1024L;
+
+			BlockArchiveWriter writer = new BlockArchiveWriter(0, maximumArchiveHeight, repository);
+			writer.setFileSizeTarget(fileSizeTarget);
+			assertEquals(BlockArchiveWriter.BlockArchiveWriteResult.OK, writer.write());
+			assertTrue(writer.getLastWrittenHeight() < maximumArchiveHeight);
+
+			byte[] expectedBytes = buildArchiveFile(repository, 1, 2, maximumArchiveHeight, fileSizeTarget);
+			assertArrayEquals(expectedBytes, Files.readAllBytes(writer.getOutputPath()));
+
+			// Only blocks that were written should be in the BlockArchive table
+			BlockData lastWrittenBlockData = repository.getBlockRepository().fromHeight(writer.getLastWrittenHeight());
+			assertNotNull(repository.getBlockArchiveRepository().getBlockArchiveDataForSignature(lastWrittenBlockData.getSignature()));
+
+			BlockData nextBlockData = repository.getBlockRepository().fromHeight(writer.getLastWrittenHeight() + 1);
+			assertNull(repository.getBlockArchiveRepository().getBlockArchiveDataForSignature(nextBlockData.getSignature()));
+
+			// Not enough blocks for another file
+			writer = new BlockArchiveWriter(writer.getLastWrittenHeight() + 1, writer.getLastWrittenHeight() + 2, repository);
+			writer.setFileSizeTarget(fileSizeTarget);
+			assertEquals(BlockArchiveWriter.BlockArchiveWriteResult.NOT_ENOUGH_BLOCKS, writer.write());
+		}
+	}
+
+	private int mintBlocks(Repository repository, int count) throws DataException {
+		PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+
+		// Mint some blocks, with a payment in half of them
+		for (int i = 0; i < count; i++) {
+			if (i % 2 == 0)
+				AccountUtils.pay(repository, alice, AccountUtils.createRandomAccount(repository).getAddress(), 1000L * (i + 1));
+			else
+				BlockMinter.mintTestingBlock(repository, Common.getTestAccount(repository, "alice-reward-share"));
+		}
+
+		final int height = repository.getBlockRepository().getBlockchainHeight();
+		repository.getBlockRepository().setOnlineAccountsSignaturesTrimHeight(height + 1);
+		repository.getATRepository().setAtTrimHeight(height + 1);
+		repository.saveChanges();
+
+		return BlockArchiveWriter.getMaxArchiveHeight(repository);
+	}
+
+	// Straightforward, in-memory version of the archive file format, used as a reference
+	private static byte[] buildArchiveFile(Repository repository, int serializationVersion, int startHeight, int endHeight, long fileSizeTarget)
+			throws DataException, TransformationException, IOException {
+		ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		int count = 0;
+		for (int height = startHeight; height <= endHeight && headerBytes.size() + bytes.size() < fileSizeTarget; height++) {
+			Block block = new Block(repository, repository.getBlockRepository().fromHeight(height));
+			byte[] blockBytes = serializationVersion == 1 ? BlockTransformer.toBytes(block) : BlockTransformer.toBytesV2(block);
+
+			headerBytes.write(Ints.toByteArray(bytes.size()));
+			bytes.write(Ints.toByteArray(height));
+			bytes.write(Ints.toByteArray(blockBytes.length));
+			bytes.write(blockBytes);
+			count++;
+		}
+
+		ByteArrayOutputStream file = new ByteArrayOutputStream();
+		file.write(Ints.toByteArray(serializationVersion));
+		file.write(Ints.toByteArray(startHeight));
+		file.write(Ints.toByteArray(startHeight + count - 1));
+		file.write(Ints.toByteArray(count));
+		file.write(Ints.toByteArray(headerBytes.size()));
+		headerBytes.writeTo(file);
+		file.write(Ints.toByteArray(bytes.size()));
+		bytes.writeTo(file);
+		return file.toByteArray();
+	}
+
+	private void deleteArchiveDirectory() {
+		// Delete archive directory if exists
+		Path archivePath = Paths.get(Settings.getInstance().getRepositoryPath(), "archive").toAbsolutePath();
+		try {
+			FileUtils.deleteDirectory(archivePath.toFile());
+		} catch (IOException e) {
+
+		}
+	}
+
+}
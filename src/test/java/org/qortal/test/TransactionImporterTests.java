@@ -0,0 +1,175 @@
+package org.qortal.test;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.qortal.account.PrivateKeyAccount;
+import org.qortal.controller.TransactionImporter;
+import org.qortal.data.transaction.TransactionData;
+import org.qortal.network.message.Message;
+import org.qortal.network.message.MessageException;
+import org.qortal.network.message.TransactionMessage;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.settings.Settings;
+import org.qortal.test.common.Common;
+import org.qortal.test.common.TransactionUtils;
+import org.qortal.transaction.Transaction;
+import org.qortal.transaction.Transaction.TransactionType;
+import org.qortal.transform.TransformationException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TransactionImporterTests extends Common {
+
+	private static final String[] SENDER_NAMES = { "alice", "bob", "chloe", "dilbert" };
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@After
+	public void afterTest() throws DataException {
+		Common.orphanCheck();
+	}
+
+	@Test
+	public void testValidTransactionsImported() throws Exception {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			List<TransactionData> transactions = signedPayments(repository, 20);
+
+			importAll(transactions);
+
+			for (TransactionData transactionData : transactions)
+				assertTrue(isUnconfirmed(repository, transactionData));
+		}
+	}
+
+	@Test
+	public void testInvalidSignatureRejected() throws Exception {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			List<TransactionData> transactions = signedPayments(repository, 4);
+
+			// Corrupt one transaction's signature
+			TransactionData invalidTransaction = transactions.get(1);
+			byte[] signature = invalidTransaction.getSignature().clone();
+			signature[0] ^= 0x01;
+			invalidTransaction.setSignature(signature);
+
+			importAll(transactions);
+
+			for (TransactionData transactionData : transactions)
+				assertEquals(transactionData != invalidTransaction, isUnconfirmed(repository, transactionData));
+		}
+	}
+
+	@Test
+	public void testStaleAndFutureTransactionsRejected() throws Exception {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+
+			TransactionData expiredTransaction = payment(repository, alice, System.currentTimeMillis() - 2 * DAY);
+			TransactionData futureTransaction = payment(repository, alice, System.currentTimeMillis() + DAY);
+			TransactionData validTransaction = payment(repository, alice, System.currentTimeMillis());
+
+			importAll(List.of(expiredTransaction, futureTransaction, validTransaction));
+
+			assertFalse(isUnconfirmed(repository, expiredTransaction));
+			assertFalse(isUnconfirmed(repository, futureTransaction));
+			assertTrue(isUnconfirmed(repository, validTransaction));
+		}
+	}
+
+	@Ignore(value = "For informational use")
+	@Test
+	public void testImportThroughput() throws Exception {
+		final int transactionCount = 20_000;
+		// Roughly how many transactions arrive between importer cycles during a gossip burst
+		final int transactionsPerCycle = 500;
+		// Importer drops transactions beyond 5000 queued, which peers would offer again later, so just hold back instead
+		final int maxQueuedTransactions = 4_500;
+
+		FieldUtils.writeField(Settings.getInstance(), "maxUnconfirmedPerAccount", transactionCount, true);
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			List<TransactionData> transactions = signedPayments(repository, transactionCount);
+			List<Message> messages = new ArrayList<>(transactionCount);
+			for (TransactionData transactionData : transactions)
+				messages.add(received(transactionData));
+
+			TransactionImporter transactionImporter = TransactionImporter.getInstance();
+
+			long startTime = System.nanoTime();
+			int cycleCount = 0;
+
+			for (int fed = 0; fed < transactionCount || transactionImporter.getIncomingTransactionCount() > 0; ++cycleCount) {
+				for (int i = 0; i < transactionsPerCycle && fed < transactionCount
+						&& transactionImporter.getIncomingTransactionCount() < maxQueuedTransactions; ++i, ++fed)
+					transactionImporter.onNetworkTransactionMessage(null, messages.get(fed));
+
+				transactionImporter.processIncomingTransactions();
+			}
+
+			long duration = System.nanoTime() - startTime;
+
+			int importedCount = repository.getTransactionRepository().getUnconfirmedTransactions().size();
+			assertEquals(transactionCount, importedCount);
+
+			System.out.println(String.format("Imported %d transactions in %d ms over %d cycles = %d transactions/s",
+					importedCount, duration / 1_000_000L, cycleCount, importedCount * 1_000_000_000L / duration));
+		}
+	}
+
+	/** Feeds transactions to importer, as if received from peers, then processes queue until it's empty. */
+	private static void importAll(List<TransactionData> transactions) throws MessageException, TransformationException {
+		TransactionImporter transactionImporter = TransactionImporter.getInstance();
+
+		for (TransactionData transactionData : transactions)
+			transactionImporter.onNetworkTransactionMessage(null, received(transactionData));
+
+		while (transactionImporter.getIncomingTransactionCount() > 0)
+			transactionImporter.processIncomingTransactions();
+	}
+
+	/** Returns TRANSACTION message as received from a peer. */
+	private static Message received(TransactionData transactionData) throws MessageException, TransformationException {
+		return Message.fromByteBuffer(ByteBuffer.wrap(new TransactionMessage(transactionData).toBytes()).asReadOnlyBuffer());
+	}
+
+	private static List<TransactionData> signedPayments(Repository repository, int count) throws DataException {
+		List<TransactionData> transactions = new ArrayList<>(count);
+		long timestamp = System.currentTimeMillis();
+
+		// Distinct timestamps, otherwise same sender's payments can be identical
+		for (int i = 0; i < count; ++i) {
+			PrivateKeyAccount sender = Common.getTestAccount(repository, SENDER_NAMES[i % SENDER_NAMES.length]);
+			transactions.add(payment(repository, sender, timestamp - i));
+		}
+
+		return transactions;
+	}
+
+	private static TransactionData payment(Repository repository, PrivateKeyAccount sender, long timestamp) throws DataException {
+		TransactionData transactionData = TransactionUtils.randomTransaction(repository, sender, TransactionType.PAYMENT, true);
+		transactionData.setTimestamp(timestamp);
+
+		Transaction.fromData(repository, transactionData).sign(sender);
+		return transactionData;
+	}
+
+	private static boolean isUnconfirmed(Repository repository, TransactionData transactionData) throws DataException {
+		return repository.getTransactionRepository().getUnconfirmedTransactions().stream()
+				.anyMatch(unconfirmed -> Arrays.equals(unconfirmed.getSignature(), transactionData.getSignature()));
+	}
+
+}
@@ -0,0 +1,111 @@
+package org.qortal.test.api;
+
+import org.junit.Test;
+import org.qortal.api.HTMLParser;
+import org.qortal.api.HTMLParserCache;
+import org.qortal.arbitrary.misc.Service;
+import org.qortal.test.common.ApiCommon;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class HTMLParserTests extends ApiCommon {
+
+    private static byte[] parse(String html, String qdnContext, String identifier) {
+        HTMLParser htmlParser = new HTMLParser("test", "/index.html", "/render/WEBSITE", true,
+                html.getBytes(StandardCharsets.UTF_8), qdnContext, Service.WEBSITE, identifier, "dark", false, "en");
+        htmlParser.addAdditionalHeaderTags();
+        return htmlParser.getData();
+    }
+
+    @Test
+    public void testHeadFastPath() {
+        String prefix = "<!DOCTYPE html>\n<!-- <head> in a comment -->\n<html lang=\"en\">\n<head data-x=\"a>b\">";
+        String suffix = "<title>Test</title></head>\n<body><header>Unchanged</header></body></html>";
+        String output = new String(parse(prefix + suffix, "render", null), StandardCharsets.UTF_8);
+
+        // Original bytes are kept as-is, with the tags inserted straight after the real <head> tag
+        assertTrue(output.startsWith(prefix + "<meta charset=\"UTF-8\"><base href=\"/render/WEBSITE/test/\">"));
+        assertTrue(output.matches("(?s).*<script src=\"/apps/q-apps\\.js\\?time=\\d+\"></script>" + Pattern.quote(suffix)));
+        assertTrue(output.contains("var _qdnTheme=\"dark\"; var _qdnLang=\"en\"; var _qdnService=\"WEBSITE\"; var _qdnName=\"test\";"));
+        assertFalse(output.contains("q-apps-gateway.js"));
+    }
+
+    @Test
+    public void testGatewayScript() {
+        String output = new String(parse("<html><head></head><body></body></html>", "gateway", null), StandardCharsets.UTF_8);
+        assertTrue(output.indexOf("q-apps-gateway.js") < output.indexOf("q-apps.js"));
+    }
+
+    @Test
+    public void testImpliedHead() {
+        // No explicit <head>, so the document has to be parsed
+        String output = new String(parse("<header>Test</header><p>Hello</p>", "render", null), StandardCharsets.UTF_8);
+        assertTrue(output.contains("<head>"));
+        assertTrue(output.contains("<base href=\"/render/WEBSITE/test/\">"));
+        assertTrue(output.contains("q-apps.js"));
+        assertTrue(output.contains("<header>"));
+    }
+
+    @Test
+    public void testIdentifierRewrite() {
+        // Script and link tags are rewritten, which needs the full parser
+        String output = new String(parse("<html><head><script src=\"app.js\"></script><link href=\"style.css\"></head></html>",
+                "render", "my id"), StandardCharsets.UTF_8);
+        assertTrue(output.contains("app.js?identifier=my+id"));
+        assertTrue(output.contains("style.css?identifier=my+id"));
+        assertTrue(output.contains("q-apps.js"));
+    }
+
+    @Test
+    public void testCache() {
+        HTMLParserCache cache = new HTMLParserCache(8 * 1000L);
+        Path directory1 = Paths.get("reader", "NAME", "test1");
+        Path directory2 = Paths.get("reader", "NAME", "test2");
+        Path path1 = directory1.resolve("index.html");
+        Path path2 = directory2.resolve("index.html");
+
+        String key1 = HTMLParserCache.buildKey(path1, "light", "en");
+        String key2 = HTMLParserCache.buildKey(path1, "dark", "en");
+        String key3 = HTMLParserCache.buildKey(path2, "dark", "en");
+        assertFalse(key1.equals(key2));
+        assertFalse(HTMLParserCache.buildKey(path1, "", "en").equals(HTMLParserCache.buildKey(path1, null, "en")));
+
+        cache.put(key1, path1, 1000L, 100L, new byte[1000]);
+        cache.put(key2, path1, 1000L, 100L, new byte[1000]);
+        cache.put(key3, path2, 1000L, 100L, new byte[1000]);
+        assertEquals(3, cache.size());
+        assertEquals(3000L, cache.getTotalSize());
+
+        // Entries are ignored once the file has changed
+        assertNotNull(cache.get(key1, 1000L, 100L));
+        assertNull(cache.get(key1, 2000L, 100L));
+        assertEquals(2, cache.size());
+
+        // Pages that are too large aren't cached at all
+        cache.put(key1, path1, 1000L, 100L, new byte[1001]);
+        assertNull(cache.get(key1, 1000L, 100L));
+
+        // Rebuilding a resource removes all of its pages
+        cache.invalidate(directory1);
+        assertNull(cache.get(key2, 1000L, 100L));
+        assertNotNull(cache.get(key3, 1000L, 100L));
+        assertEquals(1000L, cache.getTotalSize());
+
+        // Least recently used pages are evicted first once the cache is full
+        for (int i = 0; i < 8; i++) {
+            cache.put(HTMLParserCache.buildKey(path2, i), path2, 1000L, 100L, new byte[1000]);
+            if (i == 0) {
+                cache.get(key3, 1000L, 100L);
+            }
+        }
+        assertEquals(8000L, cache.getTotalSize());
+        assertNotNull(cache.get(key3, 1000L, 100L));
+        assertNull(cache.get(HTMLParserCache.buildKey(path2, 0), 1000L, 100L));
+    }
+
+}
@@ -1,5 +1,6 @@
 package org.qortal.test.arbitrary;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.qortal.arbitrary.ArbitraryDataDigest;
@@ -9,14 +10,21 @@ import org.qortal.test.common.Common;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 
 public class ArbitraryDataDigestTests extends Common {
 
@@ -71,4 +79,180 @@ public class ArbitraryDataDigestTests extends Common {
         }
     }
 
+    @Test
+    public void testModifiedFile() throws IOException, DataException, NoSuchAlgorithmException {
+        Path dataPath = this.createTestDirectory(10);
+        try {
+            byte[] hash = this.computeAndCompare(dataPath);
+            assertTrue(Files.exists(dataPath.resolve(".qortal").resolve("digest")));
+
+            // Same size, different contents and modification time
+            Path filePath = dataPath.resolve("dir1").resolve("file1");
+            byte[] data = Files.readAllBytes(filePath);
+            data[0] ^= 0xFF;
+            Files.write(filePath, data);
+            Files.setLastModifiedTime(filePath, FileTime.fromMillis(System.currentTimeMillis() - 60 * 1000L));
+
+            assertFalse(Arrays.equals(hash, this.computeAndCompare(dataPath)));
+
+        } finally {
+            FileUtils.deleteDirectory(dataPath.toFile());
+        }
+    }
+
+    @Test
+    public void testRenamedFile() throws IOException, DataException, NoSuchAlgorithmException {
+        Path dataPath = this.createTestDirectory(10);
+        try {
+            byte[] hash = this.computeAndCompare(dataPath);
+
+            // Renaming keeps the size and modification time, so only the path differs
+            Files.move(dataPath.resolve("dir3").resolve("file3"), dataPath.resolve("dir3").resolve("renamed"));
+
+            assertFalse(Arrays.equals(hash, this.computeAndCompare(dataPath)));
+
+        } finally {
+            FileUtils.deleteDirectory(dataPath.toFile());
+        }
+    }
+
+    @Test
+    public void testDeletedFile() throws IOException, DataException, NoSuchAlgorithmException {
+        Path dataPath = this.createTestDirectory(10);
+        try {
+            byte[] hash = this.computeAndCompare(dataPath);
+
+            Files.delete(dataPath.resolve("dir0").resolve("file0"));
+
+            assertFalse(Arrays.equals(hash, this.computeAndCompare(dataPath)));
+
+        } finally {
+            FileUtils.deleteDirectory(dataPath.toFile());
+        }
+    }
+
+    @Test
+    public void testStoredDigest() throws IOException, DataException, NoSuchAlgorithmException {
+        Path dataPath = this.createTestDirectory(10);
+        try {
+            byte[] hash = this.computeAndCompare(dataPath);
+
+            // Change a file without changing its size or modification time, which can only be
+            // detected by reading it. The stored digest should be used, so it goes unnoticed.
+            Path filePath = dataPath.resolve("dir1").resolve("file1");
+            FileTime lastModified = Files.getLastModifiedTime(filePath);
+            byte[] data = Files.readAllBytes(filePath);
+            data[0] ^= 0xFF;
+            Files.write(filePath, data);
+            Files.setLastModifiedTime(filePath, lastModified);
+
+            ArbitraryDataDigest digest = new ArbitraryDataDigest(dataPath);
+            digest.compute();
+            assertArrayEquals(hash, digest.getHash());
+
+            // Once the stored digest is removed, the change is picked up
+            Files.delete(dataPath.resolve(".qortal").resolve("digest"));
+            assertFalse(Arrays.equals(hash, this.computeAndCompare(dataPath)));
+
+        } finally {
+            FileUtils.deleteDirectory(dataPath.toFile());
+        }
+    }
+
+    @Test
+    public void testDigestNotStored() throws IOException, DataException, NoSuchAlgorithmException {
+        Path dataPath = this.createTestDirectory(10);
+        try {
+            // Without a .qortal folder, nothing is stored
+            FileUtils.deleteDirectory(dataPath.resolve(".qortal").toFile());
+            this.computeAndCompare(dataPath);
+            assertFalse(Files.exists(dataPath.resolve(".qortal")));
+
+            // Recently modified files may change again without their modification time changing
+            Files.createDirectories(dataPath.resolve(".qortal"));
+            Files.write(dataPath.resolve("dir0").resolve("file0"), "new data".getBytes(StandardCharsets.UTF_8));
+            this.computeAndCompare(dataPath);
+            assertFalse(Files.exists(dataPath.resolve(".qortal").resolve("digest")));
+
+        } finally {
+            FileUtils.deleteDirectory(dataPath.toFile());
+        }
+    }
+
+    @Test
+    public void testLargeDirectoryPerformance() throws IOException, DataException, NoSuchAlgorithmException {
+        final int fileCount = 10000;
+        Path dataPath = this.createTestDirectory(fileCount);
+        try {
+            long startTime = System.nanoTime();
+            byte[] expectedHash = sequentialDigest(dataPath);
+            long sequentialTime = System.nanoTime() - startTime;
+
+            startTime = System.nanoTime();
+            ArbitraryDataDigest digest = new ArbitraryDataDigest(dataPath);
+            digest.compute();
+            long firstTime = System.nanoTime() - startTime;
+            assertArrayEquals(expectedHash, digest.getHash());
+
+            startTime = System.nanoTime();
+            digest = new ArbitraryDataDigest(dataPath);
+            digest.compute();
+            long storedTime = System.nanoTime() - startTime;
+            assertArrayEquals(expectedHash, digest.getHash());
+
+            System.out.println(String.format("%d files: sequential %d ms, parallel %d ms, stored %d ms", fileCount,
+                    sequentialTime / 1000000L, firstTime / 1000000L, storedTime / 1000000L));
+
+        } finally {
+            FileUtils.deleteDirectory(dataPath.toFile());
+        }
+    }
+
+    private byte[] computeAndCompare(Path dataPath) throws IOException, DataException, NoSuchAlgorithmException {
+        ArbitraryDataDigest digest = new ArbitraryDataDigest(dataPath);
+        digest.compute();
+        assertArrayEquals(sequentialDigest(dataPath), digest.getHash());
+        return digest.getHash();
+    }
+
+    private Path createTestDirectory(int fileCount) throws IOException {
+        Path dataPath = Files.createTempDirectory("digestTest");
+        Files.createDirectories(dataPath.resolve(".qortal"));
+
+        // Backdate the files, so that the digest can be stored straight away
+        FileTime lastModified = FileTime.fromMillis(System.currentTimeMillis() - 60 * 60 * 1000L);
+
+        Random random = new Random();
+        for (int i = 0; i < fileCount; i++) {
+            Path directory = dataPath.resolve("dir" + (i % 100));
+            Files.createDirectories(directory);
+
+            byte[] data = new byte[1 + random.nextInt(2048)];
+            random.nextBytes(data);
+            Path filePath = directory.resolve("file" + i);
+            Files.write(filePath, data);
+            Files.setLastModifiedTime(filePath, lastModified);
+        }
+        return dataPath;
+    }
+
+    // Straightforward version of the digest, used as a reference
+    private static byte[] sequentialDigest(Path dataPath) throws IOException, NoSuchAlgorithmException {
+        List<Path> allPaths;
+        try (Stream<Path> stream = Files.walk(dataPath)) {
+            allPaths = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        for (Path path : allPaths) {
+            Path relativePath = dataPath.relativize(path);
+            if (relativePath.startsWith(".qortal")) {
+                continue;
+            }
+            sha256.update(relativePath.toString().replace("\\", "/").getBytes(StandardCharsets.UTF_8));
+            sha256.update(Files.readAllBytes(path));
+        }
+        return sha256.digest();
+    }
+
 }
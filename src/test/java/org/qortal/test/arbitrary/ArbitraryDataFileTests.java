@@ -3,9 +3,18 @@ package org.qortal.test.arbitrary;
 import org.junit.Before;
 import org.junit.Test;
 import org.qortal.arbitrary.ArbitraryDataFile;
+import org.qortal.arbitrary.ArbitraryDataFileChunk;
+import org.qortal.crypto.Crypto;
 import org.qortal.repository.DataException;
 import org.qortal.test.common.Common;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import static org.junit.Assert.*;
@@ -76,4 +85,70 @@ public class ArbitraryDataFileTests extends Common {
 		assertEquals(originalFileDigest, arbitraryDataFile.digest58());
 	}
 
+
+	@Test
+	public void testSplitMatchesSequentialSplit() throws DataException, IOException {
+		final int chunkSize = ArbitraryDataFile.CHUNK_SIZE;
+		Random random = new Random();
+		int[] fileSizes = {
+				chunkSize - 1,
+				chunkSize,
+				chunkSize + 1,
+				2 * chunkSize,
+				7 * chunkSize,
+				7 * chunkSize + random.nextInt(chunkSize),
+				chunkSize + random.nextInt(10 * chunkSize)
+		};
+
+		for (int fileSize : fileSizes) {
+			byte[] randomData = new byte[fileSize];
+			random.nextBytes(randomData);
+
+			ArbitraryDataFile arbitraryDataFile = new ArbitraryDataFile(randomData, null, false);
+			arbitraryDataFile.save();
+			List<byte[]> expectedChunks = sequentialSplit(arbitraryDataFile, chunkSize);
+
+			int chunkCount = arbitraryDataFile.split(chunkSize);
+			if (fileSize <= chunkSize) {
+				// Not split at all
+				assertEquals(0, chunkCount);
+				arbitraryDataFile.deleteAll(true);
+				continue;
+			}
+			assertEquals(expectedChunks.size(), chunkCount);
+
+			// Chunks must be in file order, with identical contents
+			ByteArrayOutputStream expectedChunkHashes = new ByteArrayOutputStream();
+			for (int i = 0; i < chunkCount; i++) {
+				byte[] expectedChunk = expectedChunks.get(i);
+				ArbitraryDataFileChunk chunk = arbitraryDataFile.getChunks().get(i);
+				assertArrayEquals(Crypto.digest(expectedChunk), chunk.getHash());
+				assertArrayEquals(expectedChunk, Files.readAllBytes(chunk.getFilePath()));
+				expectedChunkHashes.write(Crypto.digest(expectedChunk));
+			}
+
+			// ... so the chunk hashes stored in the metadata are unchanged too
+			assertArrayEquals(expectedChunkHashes.toByteArray(), arbitraryDataFile.chunkHashes());
+
+			arbitraryDataFile.deleteAll(true);
+		}
+	}
+
+	/** The original single-threaded split, used as a reference */
+	private static List<byte[]> sequentialSplit(ArbitraryDataFile arbitraryDataFile, int chunkSize) throws IOException {
+		List<byte[]> chunks = new ArrayList<>();
+		byte[] buffer = new byte[chunkSize];
+
+		try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(arbitraryDataFile.getFilePath().toFile()))) {
+			int numberOfBytes;
+			while ((numberOfBytes = bis.read(buffer)) > 0) {
+				try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+					out.write(buffer, 0, numberOfBytes);
+					chunks.add(out.toByteArray());
+				}
+			}
+		}
+		return chunks;
+	}
+
 }
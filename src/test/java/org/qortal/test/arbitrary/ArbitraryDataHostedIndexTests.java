@@ -0,0 +1,171 @@
+package org.qortal.test.arbitrary;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.controller.arbitrary.ArbitraryDataHostedIndex;
+import org.qortal.controller.arbitrary.ArbitraryDataHostedIndex.HostedResource;
+import org.qortal.list.ResourceListManager;
+import org.qortal.repository.DataException;
+import org.qortal.settings.Settings;
+import org.qortal.test.common.Common;
+import org.qortal.utils.Base58;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ArbitraryDataHostedIndexTests extends Common {
+
+    private static final long ONE_DAY = 24 * 60 * 60 * 1000L;
+
+    @Before
+    public void beforeTest() throws DataException {
+        Common.useDefaultSettings();
+        this.deleteDataDirectories();
+        this.deleteListsDirectory();
+        ResourceListManager.reset();
+
+        // Start each test with an empty index
+        ArbitraryDataHostedIndex.getInstance().rebuild();
+    }
+
+    @After
+    public void afterTest() throws DataException {
+        this.deleteDataDirectories();
+        this.deleteListsDirectory();
+        ResourceListManager.reset();
+
+        try {
+            Files.deleteIfExists(ArbitraryDataHostedIndex.getIndexFilePath());
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    @Test
+    public void testRunningSize() {
+        ArbitraryDataHostedIndex hostedIndex = ArbitraryDataHostedIndex.getInstance();
+        byte[] signature = randomSignature();
+
+        hostedIndex.addBytes(signature, 1000L);
+        hostedIndex.addBytes(signature, 500L);
+        assertEquals(1, hostedIndex.size());
+        assertEquals(1500L, hostedIndex.getTotalSize());
+
+        hostedIndex.subtractBytes(signature, 1000L);
+        assertEquals(500L, hostedIndex.getTotalSize());
+
+        // Entry is removed once all of its data has been deleted
+        hostedIndex.subtractBytes(signature, 500L);
+        assertEquals(0, hostedIndex.size());
+        assertEquals(0L, hostedIndex.getTotalSize());
+    }
+
+    @Test
+    public void testHitsOnlyApplyToHostedData() {
+        ArbitraryDataHostedIndex hostedIndex = ArbitraryDataHostedIndex.getInstance();
+        byte[] signature = randomSignature();
+
+        // Hits on data we don't host are ignored
+        hostedIndex.recordAccess(signature);
+        assertEquals(0, hostedIndex.size());
+
+        hostedIndex.addBytes(signature, 1000L);
+        hostedIndex.setName(signature, "Test");
+        hostedIndex.recordAccess(signature);
+        hostedIndex.recordNameAccess("test"); // names are case-insensitive
+
+        HostedResource resource = hostedIndex.get(Base58.encode(signature));
+        assertEquals(2L, resource.getHitCount());
+    }
+
+    @Test
+    public void testEvictionOrder() {
+        ArbitraryDataHostedIndex hostedIndex = ArbitraryDataHostedIndex.getInstance();
+
+        byte[] largeUnpopular = randomSignature();
+        byte[] smallUnpopular = randomSignature();
+        byte[] popular = randomSignature();
+        byte[] followed = randomSignature();
+
+        hostedIndex.addBytes(largeUnpopular, 10 * 1024 * 1024L);
+        hostedIndex.addBytes(smallUnpopular, 1024 * 1024L);
+        hostedIndex.addBytes(popular, 50 * 1024 * 1024L);
+        hostedIndex.addBytes(followed, 1024L);
+
+        for (int i = 0; i < 10; i++) {
+            hostedIndex.recordAccess(popular);
+        }
+
+        hostedIndex.setName(followed, "followedname");
+        ResourceListManager.getInstance().addToList("followedNames", "followedname", false);
+
+        // Nothing can be evicted whilst it has been accessed recently
+        long now = System.currentTimeMillis();
+        assertTrue(hostedIndex.getEvictionCandidates(now, ONE_DAY).isEmpty());
+
+        // Unpopular data goes first (largest first), then popular data, and followed data only at the very end
+        List<HostedResource> candidates = hostedIndex.getEvictionCandidates(now + 30 * ONE_DAY, ONE_DAY);
+        assertEquals(4, candidates.size());
+        assertEquals(Base58.encode(largeUnpopular), candidates.get(0).getSignature58());
+        assertEquals(Base58.encode(smallUnpopular), candidates.get(1).getSignature58());
+        assertEquals(Base58.encode(popular), candidates.get(2).getSignature58());
+        assertEquals(Base58.encode(followed), candidates.get(3).getSignature58());
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        ArbitraryDataHostedIndex hostedIndex = ArbitraryDataHostedIndex.getInstance();
+        byte[] signature = randomSignature();
+
+        hostedIndex.addBytes(signature, 1234L);
+        hostedIndex.setName(signature, "Test");
+        hostedIndex.recordAccess(signature);
+        hostedIndex.save();
+
+        // Reset in-memory state, then reload from disk
+        hostedIndex.rebuild();
+        assertEquals(0, hostedIndex.size());
+        assertTrue(hostedIndex.load());
+
+        HostedResource resource = hostedIndex.get(Base58.encode(signature));
+        assertNotNull(resource);
+        assertEquals("Test", resource.getName());
+        assertEquals(1234L, resource.getSize());
+        assertEquals(1L, resource.getHitCount());
+    }
+
+    private static byte[] randomSignature() {
+        byte[] signature = new byte[64];
+        new Random().nextBytes(signature);
+        return signature;
+    }
+
+    private void deleteDataDirectories() {
+        // Delete data directory if exists
+        Path dataPath = Paths.get(Settings.getInstance().getDataPath());
+        try {
+            FileUtils.deleteDirectory(dataPath.toFile());
+        } catch (IOException e) {
+
+        }
+    }
+
+    private void deleteListsDirectory() {
+        // Delete lists directory if exists
+        Path listsPath = Paths.get(Settings.getInstance().getListsPath());
+        try {
+            FileUtils.deleteDirectory(listsPath.toFile());
+        } catch (IOException e) {
+
+        }
+    }
+
+}
@@ -0,0 +1,190 @@
+package org.qortal.test.arbitrary;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.qortal.account.PrivateKeyAccount;
+import org.qortal.arbitrary.ArbitraryDataFile;
+import org.qortal.arbitrary.ArbitraryDataFile.ResourceIdType;
+import org.qortal.arbitrary.ArbitraryDataFileChunk;
+import org.qortal.arbitrary.ArbitraryDataReader;
+import org.qortal.arbitrary.ArbitraryDataReader.SingleFileStream;
+import org.qortal.arbitrary.exception.MissingDataException;
+import org.qortal.arbitrary.misc.Service;
+import org.qortal.controller.arbitrary.ArbitraryDataManager;
+import org.qortal.crypto.Crypto;
+import org.qortal.data.transaction.ArbitraryTransactionData.Method;
+import org.qortal.data.transaction.RegisterNameTransactionData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.settings.Settings;
+import org.qortal.test.common.ArbitraryUtils;
+import org.qortal.test.common.Common;
+import org.qortal.test.common.TransactionUtils;
+import org.qortal.test.common.transaction.TestTransaction;
+import org.qortal.transaction.RegisterNameTransaction;
+import org.qortal.utils.Base58;
+import org.qortal.utils.FilesystemUtils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static org.junit.Assert.*;
+
+public class ArbitraryDataStreamingTests extends Common {
+
+    @Before
+    public void beforeTest() throws DataException, IllegalAccessException {
+        Common.useDefaultSettings();
+
+        // Set difficulty to 1 to speed up the tests
+        FieldUtils.writeField(ArbitraryDataManager.getInstance(), "powDifficulty", 1, true);
+    }
+
+    @Test
+    public void testStreamSingleFile() throws DataException, IOException, NoSuchAlgorithmException, MissingDataException {
+        // Large enough to span several chunks
+        this.streamSingleFile(5 * 1024 * 1024, false);
+    }
+
+    @Ignore(value = "For informational use")
+    @Test
+    public void testStreamLargeSingleFile() throws DataException, IOException, NoSuchAlgorithmException, MissingDataException {
+        this.streamSingleFile(200 * 1024 * 1024, true);
+    }
+
+    private void streamSingleFile(int dataLength, boolean showTimings) throws DataException, IOException, NoSuchAlgorithmException, MissingDataException {
+        try (final Repository repository = RepositoryManager.getRepository()) {
+            PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+            String publicKey58 = Base58.encode(alice.getPublicKey());
+            String name = "TEST"; // Can be anything for this test
+            String identifier = null; // Not used for this test
+            Service service = Service.FILE;
+
+            this.registerName(repository, alice, name);
+
+            Path path = ArbitraryUtils.generateRandomDataPath(dataLength, true);
+            byte[] fileDigest = Crypto.digest(path.toFile());
+            ArbitraryDataFile arbitraryDataFile = ArbitraryUtils.createAndMintTxn(repository, publicKey58, path, name, identifier, Method.PUT, service, alice);
+            assertTrue(arbitraryDataFile.chunkCount() > 1);
+
+            Path dataPath = Paths.get(Settings.getInstance().getDataPath());
+            long diskUsageBefore = FilesystemUtils.getDirectorySize(dataPath);
+
+            // Stream the file, without building it
+            ArbitraryDataReader arbitraryDataReader = new ArbitraryDataReader(name, ResourceIdType.NAME, service, identifier);
+            long startTime = System.nanoTime();
+            long firstByteTime = 0;
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (SingleFileStream inputStream = arbitraryDataReader.openSingleFileStream()) {
+                assertNotNull(inputStream);
+                assertEquals(path.getFileName().toString(), inputStream.getFilename());
+
+                int bytesRead;
+                byte[] buffer = new byte[10240];
+                while ((bytesRead = inputStream.read(buffer)) != -1) {
+                    if (firstByteTime == 0) {
+                        firstByteTime = System.nanoTime();
+                    }
+                    digest.update(buffer, 0, bytesRead);
+                }
+            }
+            long streamEndTime = System.nanoTime();
+            long streamedDiskBytes = FilesystemUtils.getDirectorySize(dataPath) - diskUsageBefore;
+
+            // Ensure the streamed file matches the original, and that nothing was written to disk
+            assertArrayEquals(fileDigest, digest.digest());
+            assertEquals(0L, streamedDiskBytes);
+
+            if (!showTimings) {
+                return;
+            }
+
+            // Compare against a full build
+            long buildStartTime = System.nanoTime();
+            arbitraryDataReader.loadSynchronously(true);
+            long buildEndTime = System.nanoTime();
+            long builtDiskBytes = FilesystemUtils.getDirectorySize(dataPath) - diskUsageBefore;
+
+            System.out.println(String.format("Streaming: first byte after %d ms, complete after %d ms, %d bytes written to disk",
+                    (firstByteTime - startTime) / 1000000L, (streamEndTime - startTime) / 1000000L, streamedDiskBytes));
+            System.out.println(String.format("Building: complete after %d ms, %d bytes written to disk",
+                    (buildEndTime - buildStartTime) / 1000000L, builtDiskBytes));
+        }
+    }
+
+    @Test
+    public void testStreamMultipleFiles() throws DataException, IOException {
+        try (final Repository repository = RepositoryManager.getRepository()) {
+            PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+            String publicKey58 = Base58.encode(alice.getPublicKey());
+            String name = "TEST"; // Can be anything for this test
+            String identifier = null; // Not used for this test
+            Service service = Service.ARBITRARY_DATA;
+
+            this.registerName(repository, alice, name);
+
+            Path path = Paths.get("src/test/resources/arbitrary/demo1");
+            ArbitraryUtils.createAndMintTxn(repository, publicKey58, path, name, identifier, Method.PUT, service, alice);
+
+            // Multi file resources have to be built
+            ArbitraryDataReader arbitraryDataReader = new ArbitraryDataReader(name, ResourceIdType.NAME, service, identifier);
+            assertNull(arbitraryDataReader.openSingleFileStream());
+        }
+    }
+
+    @Test
+    public void testStreamInvalidChunk() throws DataException, IOException {
+        try (final Repository repository = RepositoryManager.getRepository()) {
+            PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+            String publicKey58 = Base58.encode(alice.getPublicKey());
+            String name = "TEST"; // Can be anything for this test
+            String identifier = null; // Not used for this test
+            Service service = Service.FILE;
+            int dataLength = 5 * 1024 * 1024; // 5MiB
+
+            this.registerName(repository, alice, name);
+
+            Path path = ArbitraryUtils.generateRandomDataPath(dataLength, true);
+            ArbitraryDataFile arbitraryDataFile = ArbitraryUtils.createAndMintTxn(repository, publicKey58, path, name, identifier, Method.PUT, service, alice);
+            assertTrue(arbitraryDataFile.chunkCount() > 1);
+
+            // Make sure the data is read from the chunks, then corrupt the last one
+            arbitraryDataFile.delete();
+            ArbitraryDataFileChunk chunk = arbitraryDataFile.getChunks().get(arbitraryDataFile.chunkCount() - 1);
+            try (RandomAccessFile file = new RandomAccessFile(chunk.getFilePath().toFile(), "rw")) {
+                file.seek(file.length() - 1);
+                int b = file.read();
+                file.seek(file.length() - 1);
+                file.write(b ^ 0xFF);
+            }
+
+            ArbitraryDataReader arbitraryDataReader = new ArbitraryDataReader(name, ResourceIdType.NAME, service, identifier);
+            try (SingleFileStream inputStream = arbitraryDataReader.openSingleFileStream()) {
+                assertNotNull(inputStream);
+
+                byte[] buffer = new byte[10240];
+                while (inputStream.read(buffer) != -1) {
+                    // Keep reading until the end of the file
+                }
+                fail("Corrupt data should not be streamed successfully");
+
+            } catch (IOException e) {
+                // Expected
+            }
+        }
+    }
+
+    private void registerName(Repository repository, PrivateKeyAccount account, String name) throws DataException {
+        RegisterNameTransactionData transactionData = new RegisterNameTransactionData(TestTransaction.generateBase(account), name, "");
+        transactionData.setFee(new RegisterNameTransaction(null, null).getUnitFee(transactionData.getTimestamp()));
+        TransactionUtils.signAndMint(repository, transactionData, account);
+    }
+
+}
@@ -0,0 +1,505 @@
+package org.qortal.test.arbitrary;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.controller.arbitrary.ChunkRequestPlanner;
+import org.qortal.controller.arbitrary.ChunkRequestPlanner.Assignment;
+import org.qortal.controller.arbitrary.ChunkRequestPlanner.ChunkState;
+import org.qortal.network.helper.PeerDownloadSpeedTracker;
+import org.qortal.repository.DataException;
+import org.qortal.test.common.Common;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ChunkRequestWindowTests extends Common {
+
+	private static final int CHUNK_SIZE = 512 * 1024;
+	private static final int CHUNK_COUNT = 200;
+
+	/** As per ArbitraryDataManager.ARBITRARY_REQUEST_TIMEOUT */
+	private static final long REQUEST_TIMEOUT = 12_000L;
+	/** As per ArbitraryDataFileRequestThread.BATCH_INTERVAL_MS */
+	private static final long BATCH_INTERVAL = 2_000L;
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@Test
+	public void testWindowGrowth() {
+		PeerDownloadSpeedTracker tracker = new PeerDownloadSpeedTracker();
+		assertEquals(PeerDownloadSpeedTracker.INITIAL_REQUEST_WINDOW, tracker.getAvailableRequestWindow(0L));
+
+		// High latency, high bandwidth peer: window should grow towards bandwidth-delay product
+		long now = fillWindows(tracker, 0L, 10, 500L, 10L);
+
+		assertTrue(tracker.getRequestWindow() > 20);
+		assertTrue(tracker.getRequestWindow() <= PeerDownloadSpeedTracker.MAX_REQUEST_WINDOW);
+
+		// Unknown and repeated deliveries are ignored
+		assertFalse(tracker.recordChunkDelivered("chunk0", now));
+		assertFalse(tracker.recordChunkDelivered("unrequested", now));
+	}
+
+	@Test
+	public void testBandwidthDelayCap() {
+		PeerDownloadSpeedTracker tracker = new PeerDownloadSpeedTracker();
+
+		// Low latency, low bandwidth peer: extra requests only add queueing delay
+		serveChunks(tracker, 100, 10L, 1000L);
+
+		assertEquals(PeerDownloadSpeedTracker.INITIAL_REQUEST_WINDOW, tracker.getRequestWindow(), 0.0);
+		assertEquals(1.0, tracker.getDeliveryRate(), 0.05);
+	}
+
+	@Test
+	public void testTimeouts() {
+		PeerDownloadSpeedTracker tracker = new PeerDownloadSpeedTracker();
+		assertEquals(REQUEST_TIMEOUT, tracker.getRequestTimeout());
+
+		// Grow window with quick deliveries
+		long now = fillWindows(tracker, 0L, 5, 100L, 5L);
+		double window = tracker.getRequestWindow();
+		assertTrue(window > PeerDownloadSpeedTracker.INITIAL_REQUEST_WINDOW);
+
+		// Timeout follows round trip time
+		long requestTimeout = tracker.getRequestTimeout();
+		assertTrue(requestTimeout < REQUEST_TIMEOUT);
+
+		// Burst of requests that all time out only halves window once
+		for (int chunk = 0; chunk < 3; ++chunk)
+			tracker.recordChunkRequested("lost" + chunk, now);
+
+		assertNotNull(tracker.getRequestTime("lost0", now + requestTimeout));
+		assertNull(tracker.getRequestTime("lost0", now + requestTimeout + 1));
+		assertEquals(0, tracker.getInFlightCount());
+		assertEquals(window / 2, tracker.getRequestWindow(), 0.0);
+
+		// Late delivery doesn't count
+		assertFalse(tracker.recordChunkDelivered("lost1", now + requestTimeout + 2));
+
+		// Cancelled requests are forgotten without penalty
+		now += requestTimeout + 10;
+		tracker.recordChunkRequested("cancelled", now);
+		tracker.cancelRequest("cancelled");
+		assertEquals(0, tracker.getInFlightCount());
+		assertEquals(window / 2, tracker.getRequestWindow(), 0.0);
+	}
+
+	@Test
+	public void testPlanning() {
+		PeerDownloadSpeedTracker fast = trackerWithRate(20);
+		PeerDownloadSpeedTracker slow = trackerWithRate(2);
+		Map<String, PeerDownloadSpeedTracker> trackers = Map.of("fast", fast, "slow", slow);
+		List<String> bothPeers = List.of("slow", "fast");
+
+		long now = 1_000_000L;
+		List<ChunkState<String>> chunks = new ArrayList<>();
+		for (int chunk = 0; chunk < 100; ++chunk)
+			chunks.add(new ChunkState<>("chunk" + chunk, bothPeers, 0, 0L, false));
+
+		// Retry needs planning first, and isn't available from fast peer
+		chunks.add(new ChunkState<>("retry", List.of("slow"), 0, 0L, true));
+
+		int fastWindow = fast.getAvailableRequestWindow(now);
+		int slowWindow = slow.getAvailableRequestWindow(now);
+
+		ChunkRequestPlanner<String> planner = new ChunkRequestPlanner<>(trackers::get, peer -> Integer.MAX_VALUE);
+		List<Assignment<String>> assignments = planner.plan(now, chunks, chunks.size());
+
+		// Windows filled, no more
+		Map<String, Long> counts = assignments.stream().collect(Collectors.groupingBy(Assignment::getPeer, Collectors.counting()));
+		assertEquals(fastWindow, counts.get("fast").intValue());
+		assertEquals(slowWindow, counts.get("slow").intValue());
+
+		assertEquals("retry", assignments.get(0).getHash58());
+		assertEquals("slow", assignments.get(0).getPeer());
+		assertTrue(assignments.stream().noneMatch(Assignment::isDuplicate));
+
+		// Chunks go to fast peer while it's expected to deliver sooner
+		assertEquals("fast", assignments.get(1).getPeer());
+
+		// Further limit on queue space
+		planner = new ChunkRequestPlanner<>(trackers::get, peer -> peer.equals("fast") ? 1 : 0);
+		assertEquals(1, planner.plan(now, chunks, chunks.size()).size());
+	}
+
+	@Test
+	public void testTailDuplicates() {
+		PeerDownloadSpeedTracker fast = trackerWithRate(20);
+		PeerDownloadSpeedTracker slow = trackerWithRate(2);
+		Map<String, PeerDownloadSpeedTracker> trackers = Map.of("fast", fast, "slow", slow);
+
+		long now = 1_000_000L;
+		slow.recordChunkRequested("last", now);
+		long fastRoundTripTime = fast.getSmoothedRoundTripTime();
+
+		List<ChunkState<String>> chunks = List.of(new ChunkState<>("last", List.of("fast"), 1, now, false));
+		ChunkRequestPlanner<String> planner = new ChunkRequestPlanner<>(trackers::get, peer -> Integer.MAX_VALUE);
+
+		// Not until request has taken longer than fast peer's usual round trip
+		assertTrue(planner.plan(now + fastRoundTripTime - 1, chunks, 1).isEmpty());
+
+		List<Assignment<String>> assignments = planner.plan(now + fastRoundTripTime, chunks, 1);
+		assertEquals(1, assignments.size());
+		assertEquals("fast", assignments.get(0).getPeer());
+		assertTrue(assignments.get(0).isDuplicate());
+
+		// Not while lots of download remains
+		planner = new ChunkRequestPlanner<>(trackers::get, peer -> Integer.MAX_VALUE);
+		assertTrue(planner.plan(now + fastRoundTripTime, chunks, ChunkRequestPlanner.TAIL_CHUNK_COUNT + 1).isEmpty());
+
+		// Not if already requested from enough peers
+		chunks = List.of(new ChunkState<>("last", List.of("fast"), ChunkRequestPlanner.MAX_REQUESTS_PER_CHUNK, now, false));
+		assertTrue(planner.plan(now + fastRoundTripTime, chunks, 1).isEmpty());
+	}
+
+	/**
+	 * Downloads a resource from simulated peers of mixed speeds, with fixed size batches as previously used,
+	 * and with request windows, reporting time taken.
+	 */
+	@Test
+	public void testMixedSpeedDownload() {
+		for (long seed = 1L; seed <= 5L; ++seed) {
+			Simulation fixedBatches = new FixedBatchSimulation(mixedSpeedPeers(), seed);
+			long fixedBatchesTime = fixedBatches.run();
+
+			Simulation requestWindows = new RequestWindowSimulation(mixedSpeedPeers(), seed);
+			long requestWindowsTime = requestWindows.run();
+
+			System.out.println(String.format("Seed %d: %d chunks in %d ms with fixed batches (%d requests), %d ms with request windows (%d requests, %d duplicates)",
+					seed, CHUNK_COUNT, fixedBatchesTime, fixedBatches.requestCount, requestWindowsTime, requestWindows.requestCount, requestWindows.duplicateCount));
+			System.out.println(String.format("    fixed batches served: %s", fixedBatches.describePeers()));
+			System.out.println(String.format("    request windows served: %s, final windows: %s", requestWindows.describePeers(),
+					requestWindows.peers.stream().map(peer -> String.format("%.1f", peer.tracker.getRequestWindow())).collect(Collectors.joining(", "))));
+
+			assertTrue(requestWindows.remaining.isEmpty());
+			assertTrue(fixedBatches.remaining.isEmpty());
+			assertTrue(requestWindowsTime < fixedBatchesTime);
+
+			// Faster peers serve more
+			assertTrue(requestWindows.peers.get(0).chunksServed > requestWindows.peers.get(2).chunksServed);
+		}
+	}
+
+	/**
+	 * Repeatedly requests a full window of chunks, which are delivered after <tt>roundTripTime</tt>,
+	 * then every <tt>interval</tt>. Returns time of last delivery.
+	 */
+	private static long fillWindows(PeerDownloadSpeedTracker tracker, long now, int rounds, long roundTripTime, long interval) {
+		int chunk = 0;
+
+		for (int round = 0; round < rounds; ++round) {
+			int available = tracker.getAvailableRequestWindow(now);
+			List<String> hashes = new ArrayList<>();
+			for (int i = 0; i < available; ++i) {
+				String hash58 = "chunk" + chunk++;
+				tracker.recordChunkRequested(hash58, now);
+				hashes.add(hash58);
+			}
+			assertEquals(0, tracker.getAvailableRequestWindow(now));
+
+			now += roundTripTime - interval;
+			for (String hash58 : hashes) {
+				now += interval;
+				assertTrue(tracker.recordChunkDelivered(hash58, now));
+			}
+		}
+
+		return now;
+	}
+
+	/**
+	 * Requests chunks from a peer that serves one at a time, keeping its window full, until <tt>chunkCount</tt> are delivered.
+	 * Returns time of last delivery.
+	 */
+	private static long serveChunks(PeerDownloadSpeedTracker tracker, int chunkCount, long latency, long serviceTime) {
+		long now = 0L;
+		long busyUntil = 0L;
+		Map<String, Long> deliveryTimes = new HashMap<>();
+		int chunk = 0;
+
+		while (chunk < chunkCount || !deliveryTimes.isEmpty()) {
+			if (chunk < chunkCount && tracker.getAvailableRequestWindow(now) > 0) {
+				String hash58 = "chunk" + chunk++;
+				tracker.recordChunkRequested(hash58, now);
+				busyUntil = Math.max(now + latency, busyUntil) + serviceTime;
+				deliveryTimes.put(hash58, busyUntil + latency);
+				continue;
+			}
+
+			// Deliver earliest chunk
+			Map.Entry<String, Long> next = Collections.min(deliveryTimes.entrySet(), Map.Entry.comparingByValue());
+			now = next.getValue();
+			deliveryTimes.remove(next.getKey());
+			assertTrue(tracker.recordChunkDelivered(next.getKey(), now));
+		}
+
+		return now;
+	}
+
+	/** Returns tracker that has had chunks delivered at <tt>chunksPerSecond</tt>, with 50ms latency. */
+	private static PeerDownloadSpeedTracker trackerWithRate(int chunksPerSecond) {
+		PeerDownloadSpeedTracker tracker = new PeerDownloadSpeedTracker();
+		serveChunks(tracker, 100, 50L, 1000L / chunksPerSecond);
+		return tracker;
+	}
+
+	private static List<SimPeer> mixedSpeedPeers() {
+		return List.of(
+				new SimPeer("fast", 20L, 10 * 1024 * 1024, 0.0),
+				new SimPeer("distant", 300L, 5 * 1024 * 1024, 0.0),
+				new SimPeer("slow", 150L, 256 * 1024, 0.0),
+				new SimPeer("medium", 50L, 2 * 1024 * 1024, 0.0),
+				new SimPeer("flaky", 50L, 2 * 1024 * 1024, 0.3));
+	}
+
+	/** Simulated peer with all chunks, serving requests one at a time. */
+	private static class SimPeer {
+		final String name;
+		/** ms, each way */
+		final long latency;
+		/** ms to upload one chunk */
+		final long serviceTime;
+		/** Fraction of requests never answered */
+		final double lossRate;
+
+		final PeerDownloadSpeedTracker tracker = new PeerDownloadSpeedTracker();
+		long busyUntil = 0L;
+		int chunksServed = 0;
+
+		SimPeer(String name, long latency, int bytesPerSecond, double lossRate) {
+			this.name = name;
+			this.latency = latency;
+			this.serviceTime = CHUNK_SIZE * 1000L / bytesPerSecond;
+			this.lossRate = lossRate;
+		}
+	}
+
+	/** Discrete event simulation of downloading one resource. */
+	private abstract static class Simulation {
+		private static final long MAX_DURATION = 30 * 60 * 1000L;
+
+		private static class Event {
+			final long time;
+			final long sequence;
+			final Runnable action;
+
+			Event(long time, long sequence, Runnable action) {
+				this.time = time;
+				this.sequence = sequence;
+				this.action = action;
+			}
+		}
+
+		final List<SimPeer> peers;
+		final Random random;
+		final PriorityQueue<Event> events = new PriorityQueue<>(Comparator.<Event>comparingLong(event -> event.time).thenComparingLong(event -> event.sequence));
+		long sequence = 0L;
+		long now = 0L;
+
+		final Set<String> remaining = new LinkedHashSet<>();
+		/** As per ArbitraryDataFileManager.arbitraryDataFileRequests */
+		final Map<String, Long> requestTimes = new HashMap<>();
+		/** As per ArbitraryDataFileManager.triedPeersByChunk */
+		final Map<String, Set<SimPeer>> triedPeers = new HashMap<>();
+		int requestCount = 0;
+		int duplicateCount = 0;
+
+		Simulation(List<SimPeer> peers, long seed) {
+			// Copies, as each run updates peers' state
+			this.peers = peers.stream()
+					.map(peer -> new SimPeer(peer.name, peer.latency, (int) (CHUNK_SIZE * 1000L / peer.serviceTime), peer.lossRate))
+					.collect(Collectors.toList());
+			this.random = new Random(seed);
+
+			for (int chunk = 0; chunk < CHUNK_COUNT; ++chunk)
+				this.remaining.add(String.format("chunk%03d", chunk));
+		}
+
+		/** Returns time taken to receive all chunks, in ms. */
+		long run() {
+			this.schedule(0L, this::tick);
+
+			while (!this.remaining.isEmpty() && !this.events.isEmpty() && this.now < MAX_DURATION) {
+				Event event = this.events.poll();
+				this.now = event.time;
+				event.action.run();
+			}
+
+			return this.now;
+		}
+
+		String describePeers() {
+			return this.peers.stream()
+					.map(peer -> String.format("%s %d", peer.name, peer.chunksServed))
+					.collect(Collectors.joining(", "));
+		}
+
+		private void schedule(long time, Runnable action) {
+			this.events.add(new Event(time, this.sequence++, action));
+		}
+
+		private void tick() {
+			// As per ArbitraryDataFileManager.cleanupRequestCache()
+			this.requestTimes.values().removeIf(requestTime -> requestTime < this.now - REQUEST_TIMEOUT);
+
+			this.requestChunks();
+
+			this.schedule(this.now + BATCH_INTERVAL, this::tick);
+		}
+
+		/** Returns peers not yet asked for chunk. If all have been, they're forgotten, as if chunk was offered again by a later file list. */
+		List<SimPeer> getCandidatePeers(String hash58) {
+			Set<SimPeer> chunkTriedPeers = this.triedPeers.computeIfAbsent(hash58, k -> new HashSet<>());
+			if (chunkTriedPeers.size() == this.peers.size() && !this.requestTimes.containsKey(hash58))
+				chunkTriedPeers.clear();
+
+			return this.peers.stream().filter(peer -> !chunkTriedPeers.contains(peer)).collect(Collectors.toList());
+		}
+
+		void request(SimPeer peer, String hash58) {
+			this.requestCount++;
+			this.requestTimes.put(hash58, this.now);
+			this.triedPeers.computeIfAbsent(hash58, k -> new HashSet<>()).add(peer);
+			peer.tracker.recordChunkRequested(hash58, this.now);
+
+			if (this.random.nextDouble() < peer.lossRate)
+				return;
+
+			long arrivalTime = this.now + peer.latency;
+			peer.busyUntil = Math.max(arrivalTime, peer.busyUntil) + peer.serviceTime;
+			this.schedule(peer.busyUntil + peer.latency, () -> this.deliver(peer, hash58));
+		}
+
+		private void deliver(SimPeer peer, String hash58) {
+			peer.chunksServed++;
+			peer.tracker.recordChunkDelivered(hash58, this.now);
+
+			Long requestTime = this.requestTimes.remove(hash58);
+
+			if (this.remaining.remove(hash58))
+				this.delivered(peer, requestTime);
+		}
+
+		abstract void requestChunks();
+
+		/**
+		 * Called when a chunk is first delivered.
+		 *
+		 * @param requestTime when chunk was requested, if request hadn't expired
+		 */
+		abstract void delivered(SimPeer peer, Long requestTime);
+	}
+
+	/** Previous request thread behaviour: every batch interval, up to a fixed number of chunks per peer, picked by RTT-weighted load. */
+	private static class FixedBatchSimulation extends Simulation {
+		private static final int MAX_BATCH_SIZE = 40;
+		private static final int INITIAL_BATCH_SIZE = 10;
+		private static final long BATCH_RAMP_UP = 5_000L;
+		private static final long MAX_QUEUE_DRAIN_TIME = 120_000L;
+		private static final long MAX_USABLE_RTT = 10_000L;
+		private static final long DEFAULT_RTT = 5_000L;
+
+		/** Round trip time moving average, as per PeerDownloadSpeedTracker.getLatestRoundTripTime() */
+		private final Map<SimPeer, Long> roundTripTimes = new HashMap<>();
+
+		FixedBatchSimulation(List<SimPeer> peers, long seed) {
+			super(peers, seed);
+		}
+
+		@Override
+		void requestChunks() {
+			int batchLimit = this.now >= BATCH_RAMP_UP ? MAX_BATCH_SIZE : INITIAL_BATCH_SIZE;
+
+			Map<SimPeer, List<String>> chunksByPeer = new LinkedHashMap<>();
+			for (String hash58 : this.remaining) {
+				if (this.requestTimes.containsKey(hash58))
+					continue;
+
+				SimPeer bestPeer = null;
+				double bestWeightedLoad = Double.MAX_VALUE;
+				for (SimPeer peer : this.getCandidatePeers(hash58)) {
+					long roundTripTime = this.roundTripTimes.getOrDefault(peer, DEFAULT_RTT);
+					if (roundTripTime > MAX_USABLE_RTT)
+						continue;
+
+					double weightedLoad = chunksByPeer.getOrDefault(peer, Collections.emptyList()).size() * roundTripTime / 1000.0;
+					if (weightedLoad < bestWeightedLoad) {
+						bestPeer = peer;
+						bestWeightedLoad = weightedLoad;
+					}
+				}
+
+				if (bestPeer != null)
+					chunksByPeer.computeIfAbsent(bestPeer, k -> new ArrayList<>()).add(hash58);
+			}
+
+			for (Map.Entry<SimPeer, List<String>> entry : chunksByPeer.entrySet()) {
+				long roundTripTime = this.roundTripTimes.getOrDefault(entry.getKey(), DEFAULT_RTT);
+				int limit = (int) Math.max(1, Math.min(batchLimit, MAX_QUEUE_DRAIN_TIME / roundTripTime));
+
+				entry.getValue().stream().limit(limit).forEach(hash58 -> this.request(entry.getKey(), hash58));
+			}
+		}
+
+		@Override
+		void delivered(SimPeer peer, Long requestTime) {
+			if (requestTime == null)
+				return;
+
+			long roundTripTime = this.now - requestTime;
+			this.roundTripTimes.merge(peer, roundTripTime, (average, latest) -> (long) (0.3 * latest + 0.7 * average));
+		}
+	}
+
+	/** Current request thread behaviour: request windows, with more requests whenever a chunk arrives. */
+	private static class RequestWindowSimulation extends Simulation {
+		RequestWindowSimulation(List<SimPeer> peers, long seed) {
+			super(peers, seed);
+		}
+
+		@Override
+		void requestChunks() {
+			List<ChunkState<SimPeer>> chunkStates = new ArrayList<>();
+
+			for (String hash58 : this.remaining) {
+				int requestsInFlight = 0;
+				long lastRequestTime = 0L;
+				for (SimPeer peer : this.peers) {
+					Long requestTime = peer.tracker.getRequestTime(hash58, this.now);
+					if (requestTime != null) {
+						requestsInFlight++;
+						lastRequestTime = Math.max(lastRequestTime, requestTime);
+					}
+				}
+
+				List<SimPeer> candidatePeers = this.getCandidatePeers(hash58);
+				if (requestsInFlight == 0 && candidatePeers.isEmpty())
+					continue;
+
+				boolean isRetry = requestsInFlight == 0 && this.requestTimes.containsKey(hash58);
+				chunkStates.add(new ChunkState<>(hash58, candidatePeers, requestsInFlight, lastRequestTime, isRetry));
+			}
+
+			ChunkRequestPlanner<SimPeer> planner = new ChunkRequestPlanner<>(peer -> peer.tracker, peer -> Integer.MAX_VALUE);
+			for (Assignment<SimPeer> assignment : planner.plan(this.now, chunkStates, this.remaining.size())) {
+				if (assignment.isDuplicate())
+					this.duplicateCount++;
+
+				this.request(assignment.getPeer(), assignment.getHash58());
+			}
+		}
+
+		@Override
+		void delivered(SimPeer peer, Long requestTime) {
+			// As per ArbitraryDataFileRequestThread.onChunkReceived()
+			this.requestChunks();
+		}
+	}
+
+}
@@ -0,0 +1,155 @@
+package org.qortal.test.common;
+
+import org.apache.commons.io.FileUtils;
+import org.qortal.account.PrivateKeyAccount;
+import org.qortal.block.Block;
+import org.qortal.data.transaction.RegisterNameTransactionData;
+import org.qortal.repository.BlockArchiveReader;
+import org.qortal.repository.BlockArchiveWriter;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.hsqldb.HSQLDBRepository;
+import org.qortal.settings.Settings;
+import org.qortal.test.common.transaction.TestTransaction;
+import org.qortal.transaction.Transaction;
+import org.qortal.transform.TransformationException;
+import org.qortal.transform.block.BlockTransformation;
+import org.qortal.utils.Base58;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.Assert.*;
+
+/** Builds archived chains, and compares repository state, for tests that replay archived blocks. */
+public class BlockArchiveUtils {
+
+	/** Tables affected by block processing, for comparing repository state */
+	private static final String[] STATE_QUERIES = {
+			"SELECT * FROM Accounts ORDER BY account",
+			"SELECT * FROM AccountBalances ORDER BY account, asset_id",
+			"SELECT * FROM Blocks ORDER BY height",
+			"SELECT * FROM BlockTransactions ORDER BY block_signature, sequence",
+			"SELECT * FROM TransactionParticipants ORDER BY signature, participant",
+			"SELECT * FROM ATStates ORDER BY AT_address, height",
+			"SELECT * FROM Names ORDER BY name",
+			"SELECT * FROM RewardShares ORDER BY minter_public_key, recipient"
+	};
+
+	/**
+	 * Mints <tt>blockCount</tt> blocks, with payments to new accounts in half of them.
+	 * <p>
+	 * Early blocks also deploy an AT, which then runs in every block, register a name and create a reward-share.
+	 */
+	public static void mintBlocks(Repository repository, int blockCount) throws DataException {
+		PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+		PrivateKeyAccount bob = Common.getTestAccount(repository, "bob");
+
+		for (int i = 0; i < blockCount; i++) {
+			if (i % 2 == 0) {
+				AccountUtils.pay(repository, alice, AccountUtils.createRandomAccount(repository).getAddress(), 1000L * (i + 1));
+				continue;
+			}
+
+			switch (i) {
+				case 1:
+					AtUtils.doDeployAT(repository, bob, AtUtils.buildSimpleAT(), 1_00000000L);
+					break;
+
+				case 3:
+					TransactionUtils.signAndMint(repository, new RegisterNameTransactionData(TestTransaction.generateBase(bob), "test-name", "{}"), bob);
+					break;
+
+				case 5:
+					TransactionUtils.signAndMint(repository, AccountUtils.createRewardShare(repository, "alice", "chloe", 0), alice);
+					break;
+
+				default:
+					BlockUtils.mintBlock(repository);
+					break;
+			}
+		}
+	}
+
+	/** Archives all blocks up to, and including, <tt>height</tt>. */
+	public static void archiveBlocks(Repository repository, int height) throws DataException, InterruptedException, TransformationException, IOException {
+		repository.getBlockRepository().setOnlineAccountsSignaturesTrimHeight(height + 1);
+		repository.getATRepository().setAtTrimHeight(height + 1);
+		repository.saveChanges();
+
+		BlockArchiveWriter writer = new BlockArchiveWriter(0, height, repository);
+		writer.setShouldEnforceFileSizeTarget(false);
+		assertEquals(BlockArchiveWriter.BlockArchiveWriteResult.OK, writer.write());
+		assertEquals(height - 1, writer.getWrittenCount());
+	}
+
+	/** Processes archived blocks from height 2 up to <tt>endHeight</tt>, returning time spent processing (ns). */
+	public static long replayArchivedBlocks(Repository repository, int endHeight) throws DataException {
+		long totalTime = 0;
+
+		for (int height = 2; height <= endHeight; ++height) {
+			BlockTransformation blockTransformation = BlockArchiveReader.getInstance().fetchBlockAtHeight(height);
+			assertNotNull(blockTransformation);
+
+			Block block = blockTransformation.getAtStatesHash() != null
+					? new Block(repository, blockTransformation.getBlockData(), blockTransformation.getTransactions(), blockTransformation.getAtStatesHash())
+					: new Block(repository, blockTransformation.getBlockData(), blockTransformation.getTransactions(), blockTransformation.getAtStates());
+
+			for (Transaction transaction : block.getTransactions())
+				transaction.setInitialApprovalStatus();
+
+			assertEquals(Block.ValidationResult.OK, block.isValid());
+
+			for (Transaction transaction : block.getTransactions())
+				repository.getTransactionRepository().save(transaction.getTransactionData());
+
+			long startTime = System.nanoTime();
+			block.process();
+			repository.saveChanges();
+			totalTime += System.nanoTime() - startTime;
+		}
+
+		return totalTime;
+	}
+
+	/** Returns hash of repository state affected by block processing. */
+	public static String stateHash(HSQLDBRepository repository) throws SQLException, NoSuchAlgorithmException {
+		MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+		for (String sql : STATE_QUERIES) {
+			digest.update(sql.getBytes());
+
+			try (ResultSet resultSet = repository.checkedExecute(sql)) {
+				if (resultSet == null)
+					continue;
+
+				final int columnCount = resultSet.getMetaData().getColumnCount();
+				do {
+					for (int column = 1; column <= columnCount; ++column) {
+						Object value = resultSet.getObject(column);
+						digest.update(String.valueOf(value instanceof byte[] ? Base58.encode((byte[]) value) : value).getBytes());
+						digest.update((byte) 0);
+					}
+				} while (resultSet.next());
+			}
+		}
+
+		return Base58.encode(digest.digest());
+	}
+
+	public static void deleteArchiveDirectory() {
+		// Delete archive directory if exists
+		Path archivePath = Paths.get(Settings.getInstance().getRepositoryPath(), "archive").toAbsolutePath();
+		try {
+			FileUtils.deleteDirectory(archivePath.toFile());
+		} catch (IOException e) {
+
+		}
+	}
+
+}
@@ -0,0 +1,261 @@
+package org.qortal.test.network;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.data.network.PeerData;
+import org.qortal.network.ConnectCandidateIndex;
+import org.qortal.network.PeerAddress;
+import org.qortal.repository.DataException;
+import org.qortal.test.common.Common;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ConnectCandidateIndexTests extends Common {
+
+	private static final long BACKOFF = 2 * 60 * 1000L; // ms
+	private static final long NOW = 1_700_000_000_000L;
+
+	private static final Predicate<PeerData> NONE_EXCLUDED = peerData -> false;
+
+	private ConnectCandidateIndex index;
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+
+		this.index = new ConnectCandidateIndex(BACKOFF);
+	}
+
+	@Test
+	public void testDuplicates() {
+		PeerData peerData = peer("10.0.0.1:12392");
+
+		assertTrue(this.index.add(peerData));
+		assertFalse(this.index.add(peer("10.0.0.1:12392")));
+		assertTrue(this.index.add(peer("10.0.0.1:12393")));
+
+		assertTrue(this.index.contains(PeerAddress.fromString("10.0.0.1:12392")));
+		assertSame(peerData, this.index.get(PeerAddress.fromString("10.0.0.1:12392")));
+		assertEquals(2, this.index.size());
+
+		this.index.remove(PeerAddress.fromString("10.0.0.1:12392"));
+		assertFalse(this.index.contains(PeerAddress.fromString("10.0.0.1:12392")));
+		assertEquals(1, this.index.size());
+	}
+
+	@Test
+	public void testBackoff() {
+		PeerData peerData = peer("10.0.0.1:12392");
+		this.index.add(peerData);
+
+		assertSame(peerData, this.index.getCandidate(NOW, NONE_EXCLUDED, Collections.emptySet()));
+
+		// Failed attempt
+		attempt(peerData, NOW);
+		assertNull(this.index.getCandidate(NOW + 1, NONE_EXCLUDED, Collections.emptySet()));
+		assertNull(this.index.getCandidate(NOW + BACKOFF - 1, NONE_EXCLUDED, Collections.emptySet()));
+		assertSame(peerData, this.index.getCandidate(NOW + BACKOFF, NONE_EXCLUDED, Collections.emptySet()));
+
+		// Failed again
+		attempt(peerData, NOW + BACKOFF);
+		assertNull(this.index.getCandidate(NOW + BACKOFF + 1, NONE_EXCLUDED, Collections.emptySet()));
+
+		// Attempt then connection isn't a failure
+		attempt(peerData, NOW + BACKOFF + 10);
+		connect(peerData, NOW + BACKOFF + 20);
+		assertSame(peerData, this.index.getCandidate(NOW + BACKOFF + 30, NONE_EXCLUDED, Collections.emptySet()));
+	}
+
+	@Test
+	public void testLoadedBackoff() {
+		// Peer loaded from repository, with failed attempt after last connection
+		PeerData recentlyFailed = new PeerData(PeerAddress.fromString("10.0.0.1:12392"), NOW - 1000L, NOW - 60_000L, null, NOW - 120_000L, "test");
+		PeerData failedLongAgo = new PeerData(PeerAddress.fromString("10.1.0.1:12392"), NOW - BACKOFF - 1000L, null, null, NOW - 120_000L, "test");
+
+		this.index.addAll(List.of(recentlyFailed, failedLongAgo));
+
+		assertSame(failedLongAgo, this.index.getCandidate(NOW, NONE_EXCLUDED, Collections.emptySet()));
+		assertEquals(1, this.index.getCandidateCount(NOW));
+		assertEquals(2, this.index.getCandidateCount(NOW + BACKOFF));
+	}
+
+	@Test
+	public void testIsolation() {
+		PeerData first = peer("10.0.0.1:12392");
+		PeerData second = peer("10.1.0.1:12392");
+		PeerData third = peer("10.2.0.1:12392");
+		this.index.addAll(List.of(first, second, third));
+
+		attempt(second, NOW - 1000L);
+		attempt(first, NOW - 2000L);
+		attempt(third, NOW - 3000L);
+
+		// All in backoff
+		assertNull(this.index.getCandidate(NOW, NONE_EXCLUDED, Collections.emptySet()));
+
+		// Backoff that ends soonest is retried first
+		assertSame(third, this.index.getBackoffCandidate(NOW, NONE_EXCLUDED));
+
+		// ...unless excluded, e.g. connected or self
+		assertSame(first, this.index.getBackoffCandidate(NOW, peerData -> peerData == third));
+		assertNull(this.index.getBackoffCandidate(NOW, peerData -> true));
+
+		// Expired backoffs are candidates again
+		assertSame(third, this.index.getCandidate(NOW - 3000L + BACKOFF, NONE_EXCLUDED, Collections.emptySet()));
+		assertSame(first, this.index.getBackoffCandidate(NOW - 3000L + BACKOFF, NONE_EXCLUDED));
+	}
+
+	@Test
+	public void testOrder() {
+		PeerData neverConnected = peer("10.0.0.1:12392");
+		PeerData connectedLongAgo = peer("10.1.0.1:12392");
+		PeerData connectedRecently = peer("10.2.0.1:12392");
+		PeerData previouslyFailed = peer("10.3.0.1:12392");
+		this.index.addAll(List.of(neverConnected, connectedLongAgo, connectedRecently, previouslyFailed));
+
+		attempt(connectedLongAgo, NOW - 100_000L);
+		connect(connectedLongAgo, NOW - 100_000L);
+		attempt(connectedRecently, NOW - 10_000L);
+		connect(connectedRecently, NOW - 10_000L);
+		// Connected, but last attempt failed, with backoff just expired
+		connect(previouslyFailed, NOW - 200_000L);
+		attempt(previouslyFailed, NOW - BACKOFF - 1);
+
+		List<PeerData> order = drain(NOW);
+		assertEquals(List.of(connectedRecently, connectedLongAgo, neverConnected, previouslyFailed), order);
+	}
+
+	@Test
+	public void testLatency() {
+		PeerData slow = peer("10.0.0.1:12392");
+		PeerData fast = peer("10.1.0.1:12392");
+		this.index.addAll(List.of(slow, fast));
+
+		attempt(slow, NOW - 10_000L);
+		connect(slow, NOW - 10_000L);
+		attempt(fast, NOW - 20_000L);
+		connect(fast, NOW - 20_000L);
+
+		assertSame(slow, this.index.getCandidate(NOW, NONE_EXCLUDED, Collections.emptySet()));
+
+		// Much slower ping outweighs slightly more recent connection
+		this.index.updateLatency(slow, 500L);
+		this.index.updateLatency(fast, 50L);
+		assertSame(fast, this.index.getCandidate(NOW, NONE_EXCLUDED, Collections.emptySet()));
+
+		// Latency of a different instance, e.g. inbound peer, is ignored
+		this.index.updateLatency(peer("10.1.0.1:12392"), 5000L);
+		assertSame(fast, this.index.getCandidate(NOW, NONE_EXCLUDED, Collections.emptySet()));
+	}
+
+	@Test
+	public void testSubnetDiversity() {
+		PeerData sameSubnet = peer("10.0.1.1:12392");
+		PeerData otherSubnet = peer("10.1.0.1:12392");
+		this.index.addAll(List.of(sameSubnet, otherSubnet));
+
+		attempt(sameSubnet, NOW - 10_000L);
+		connect(sameSubnet, NOW - 10_000L);
+
+		assertSame(sameSubnet, this.index.getCandidate(NOW, NONE_EXCLUDED, Collections.emptySet()));
+
+		Set<String> connectedSubnets = Set.of(ConnectCandidateIndex.getSubnet(PeerAddress.fromString("10.0.200.200:12392")));
+		assertSame(otherSubnet, this.index.getCandidate(NOW, NONE_EXCLUDED, connectedSubnets));
+
+		// Same subnet is still better than nothing
+		assertSame(sameSubnet, this.index.getCandidate(NOW, peerData -> peerData == otherSubnet, connectedSubnets));
+
+		assertEquals(ConnectCandidateIndex.getSubnet(PeerAddress.fromString("[2001:db8:1:2::1]:12392")),
+				ConnectCandidateIndex.getSubnet(PeerAddress.fromString("[2001:db8:ffff::2]:12392")));
+		assertFalse(ConnectCandidateIndex.getSubnet(PeerAddress.fromString("[2001:db8::1]:12392"))
+				.equals(ConnectCandidateIndex.getSubnet(PeerAddress.fromString("[2001:db9::1]:12392"))));
+		assertEquals("node.example.com", ConnectCandidateIndex.getSubnet(PeerAddress.fromString("Node.Example.com:12392")));
+	}
+
+	/** Index agrees with the filtering that Network.getConnectablePeer() used to do over all known peers. */
+	@Test
+	public void testMatchesPreviousRules() {
+		Random random = new Random(12345L);
+		List<PeerData> peers = new ArrayList<>();
+
+		for (int i = 0; i < 500; ++i) {
+			PeerData peerData = peer(String.format("10.%d.%d.%d:12392", i % 7, i / 256, i % 256));
+			peers.add(peerData);
+			this.index.add(peerData);
+		}
+
+		for (int round = 0; round < 2000; ++round) {
+			long now = NOW + round * 1000L;
+
+			// Random attempts and connections, some in the past
+			PeerData peerData = peers.get(random.nextInt(peers.size()));
+			attempt(peerData, now - random.nextInt((int) (2 * BACKOFF)));
+			if (random.nextBoolean())
+				connect(peerData, peerData.getLastAttempted() + random.nextInt(1000) - 500);
+
+			Set<PeerData> excluded = peers.stream().filter(p -> random.nextInt(20) == 0).collect(Collectors.toSet());
+			Predicate<PeerData> isExcluded = excluded::contains;
+
+			Set<PeerData> expectedCandidates = peers.stream()
+					.filter(p -> !isExcluded.test(p))
+					.filter(p -> !isInPreviousBackoff(p, now))
+					.collect(Collectors.toSet());
+
+			Set<PeerData> expectedBackoffCandidates = peers.stream()
+					.filter(p -> !isExcluded.test(p))
+					.filter(p -> isInPreviousBackoff(p, now))
+					.collect(Collectors.toSet());
+
+			PeerData candidate = this.index.getCandidate(now, isExcluded, Collections.emptySet());
+			if (expectedCandidates.isEmpty())
+				assertNull(candidate);
+			else
+				assertTrue(expectedCandidates.contains(candidate));
+
+			PeerData backoffCandidate = this.index.getBackoffCandidate(now, isExcluded);
+			if (expectedBackoffCandidates.isEmpty())
+				assertNull(backoffCandidate);
+			else
+				assertTrue(expectedBackoffCandidates.contains(backoffCandidate));
+
+			assertEquals(peers.stream().filter(p -> !isInPreviousBackoff(p, now)).count(), this.index.getCandidateCount(now));
+		}
+	}
+
+	private static boolean isInPreviousBackoff(PeerData peerData, long now) {
+		final long lastAttemptedThreshold = now - BACKOFF;
+
+		return peerData.getLastAttempted() != null
+				&& (peerData.getLastConnected() == null || peerData.getLastConnected() < peerData.getLastAttempted())
+				&& peerData.getLastAttempted() > lastAttemptedThreshold;
+	}
+
+	private List<PeerData> drain(long now) {
+		List<PeerData> order = new ArrayList<>();
+
+		PeerData peerData;
+		while ((peerData = this.index.getCandidate(now, order::contains, Collections.emptySet())) != null)
+			order.add(peerData);
+
+		return order;
+	}
+
+	private void attempt(PeerData peerData, long timestamp) {
+		peerData.setLastAttempted(timestamp);
+		this.index.update(peerData);
+	}
+
+	private void connect(PeerData peerData, long timestamp) {
+		peerData.setLastConnected(timestamp);
+		this.index.update(peerData);
+	}
+
+	private static PeerData peer(String address) {
+		return new PeerData(PeerAddress.fromString(address), NOW - 1_000_000L, "test");
+	}
+
+}
@@ -0,0 +1,318 @@
+package org.qortal.test.network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.qortal.arbitrary.ArbitraryDataFile;
+import org.qortal.network.FileRegionFrame;
+import org.qortal.network.message.ArbitraryDataFileMessage;
+import org.qortal.repository.DataException;
+import org.qortal.test.common.Common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class FileRegionFrameTests extends Common {
+
+	private static final int CHUNK_SIZE = 512 * 1024;
+
+	/** Ways of sending a chunk that's on disk */
+	private enum SendMode {
+		/** Chunk read into heap and serialized with message, as ArbitraryDataFileMessage.toBytes() does */
+		HEAP,
+		/** Header serialized, chunk streamed from disk, as ArbitraryDataFileMessage.toFileRegionFrame() does */
+		FILE_REGION
+	}
+
+	/** Loopback connection, with accepted side read by a thread that keeps or discards what's received. */
+	private static class LoopbackConnection implements AutoCloseable {
+		private final SocketChannel clientChannel;
+		private final SocketChannel acceptedChannel;
+		private final Thread thread;
+		private final ByteArrayOutputStream received;
+		private final AtomicLong bytesReceived = new AtomicLong();
+
+		public LoopbackConnection(boolean keepReceived) throws IOException {
+			try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+				serverChannel.bind(new InetSocketAddress("127.0.0.1", 0));
+
+				this.clientChannel = SocketChannel.open(serverChannel.getLocalAddress());
+				this.acceptedChannel = serverChannel.accept();
+			}
+
+			this.received = keepReceived ? new ByteArrayOutputStream() : null;
+
+			this.thread = new Thread(this::run, "LoopbackReader");
+			this.thread.setDaemon(true);
+			this.thread.start();
+		}
+
+		private void run() {
+			ByteBuffer byteBuffer = ByteBuffer.allocate(256 * 1024);
+
+			try {
+				int bytesRead;
+				while ((bytesRead = this.acceptedChannel.read(byteBuffer)) >= 0) {
+					if (this.received != null)
+						synchronized (this.received) {
+							this.received.write(byteBuffer.array(), 0, bytesRead);
+						}
+
+					this.bytesReceived.addAndGet(bytesRead);
+					byteBuffer.clear();
+				}
+			} catch (IOException e) {
+				// Closed
+			}
+		}
+
+		public byte[] awaitReceived(int length) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + 10_000L;
+
+			while (this.bytesReceived.get() < length && System.currentTimeMillis() < deadline)
+				Thread.sleep(10L);
+
+			synchronized (this.received) {
+				byte[] receivedBytes = this.received.toByteArray();
+				this.received.reset();
+				this.bytesReceived.set(0);
+				return receivedBytes;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.clientChannel.close();
+			this.acceptedChannel.close();
+
+			try {
+				this.thread.join(1000L);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private final Random random = new Random();
+	private final List<ArbitraryDataFile> savedChunks = new ArrayList<>();
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@After
+	public void afterTest() {
+		for (ArbitraryDataFile chunk : this.savedChunks)
+			chunk.delete();
+	}
+
+	@Test
+	public void testFrameMatchesMessage() throws Exception {
+		byte[] signature = randomBytes(64);
+		ArbitraryDataFile chunk = saveChunk(randomBytes(CHUNK_SIZE - 123), signature);
+
+		try (LoopbackConnection connection = new LoopbackConnection(true)) {
+			for (Integer id : Arrays.asList(null, 12345))
+				for (boolean useCrc32cChecksum : new boolean[] { false, true }) {
+					byte[] expectedBytes = message(chunk, signature, id).toBytes(useCrc32cChecksum);
+
+					FileRegionFrame frame = message(chunk, signature, id).toFileRegionFrame(useCrc32cChecksum);
+					assertNotNull(frame);
+					assertEquals(expectedBytes.length, frame.size());
+
+					writeFully(frame, connection.clientChannel);
+					assertFalse(frame.hasRemaining());
+
+					assertArrayEquals(expectedBytes, connection.awaitReceived(expectedBytes.length));
+				}
+		}
+
+		assertTrue(Files.exists(chunk.getChecksumSidecarPath()));
+	}
+
+	@Test
+	public void testChecksumSidecar() throws Exception {
+		byte[] signature = randomBytes(64);
+		ArbitraryDataFile chunk = saveChunk(randomBytes(1000), signature);
+		Path sidecarPath = chunk.getChecksumSidecarPath();
+
+		byte[] expectedHeader = header(message(chunk, signature, 1).toFileRegionFrame(), 1000);
+		byte[] expectedCrc32cHeader = header(message(chunk, signature, 1).toFileRegionFrame(true), 1000);
+		byte[] sidecar = Files.readAllBytes(sidecarPath);
+
+		// Checksums come from sidecar, not chunk: SHA-256 checksum after length, then CRC32C checksum
+		byte[] alteredSidecar = sidecar.clone();
+		alteredSidecar[8] ^= 0xFF;
+		Files.write(sidecarPath, alteredSidecar);
+
+		assertFalse(Arrays.equals(expectedHeader, header(message(chunk, signature, 1).toFileRegionFrame(), 1000)));
+		assertArrayEquals(expectedCrc32cHeader, header(message(chunk, signature, 1).toFileRegionFrame(true), 1000));
+
+		alteredSidecar = sidecar.clone();
+		alteredSidecar[alteredSidecar.length - 1] ^= 0xFF;
+		Files.write(sidecarPath, alteredSidecar);
+
+		assertArrayEquals(expectedHeader, header(message(chunk, signature, 1).toFileRegionFrame(), 1000));
+		assertFalse(Arrays.equals(expectedCrc32cHeader, header(message(chunk, signature, 1).toFileRegionFrame(true), 1000)));
+
+		// Sidecar from before CRC32C checksums is replaced
+		Files.write(sidecarPath, Arrays.copyOf(sidecar, sidecar.length - 4));
+
+		assertArrayEquals(expectedCrc32cHeader, header(message(chunk, signature, 1).toFileRegionFrame(true), 1000));
+		assertArrayEquals(sidecar, Files.readAllBytes(sidecarPath));
+
+		// Sidecar for a different length is replaced
+		byte[] wrongLengthSidecar = sidecar.clone();
+		wrongLengthSidecar[7] ^= 0x01;
+		Files.write(sidecarPath, wrongLengthSidecar);
+
+		assertArrayEquals(expectedHeader, header(message(chunk, signature, 1).toFileRegionFrame(), 1000));
+		assertArrayEquals(sidecar, Files.readAllBytes(sidecarPath));
+
+		// Sidecar for a different signature isn't used
+		assertNull(message(chunk, randomBytes(64), 1).toFileRegionFrame());
+
+		// Sidecar is deleted with chunk
+		assertTrue(chunk.delete());
+		assertFalse(Files.exists(sidecarPath));
+	}
+
+	@Test
+	public void testChunkInMemory() throws Exception {
+		byte[] signature = randomBytes(64);
+		ArbitraryDataFile chunk = new ArbitraryDataFile(randomBytes(1000), signature, false);
+
+		ArbitraryDataFileMessage message = new ArbitraryDataFileMessage(signature, chunk);
+		assertNull(message.toFileRegionFrame());
+	}
+
+	@Test
+	public void testTruncatedChunk() throws Exception {
+		byte[] signature = randomBytes(64);
+		ArbitraryDataFile chunk = saveChunk(randomBytes(CHUNK_SIZE), signature);
+
+		FileRegionFrame frame = message(chunk, signature, 1).toFileRegionFrame();
+
+		try (FileChannel fileChannel = FileChannel.open(chunk.getFilePath(), StandardOpenOption.WRITE)) {
+			fileChannel.truncate(CHUNK_SIZE / 2);
+		}
+
+		try (LoopbackConnection connection = new LoopbackConnection(false)) {
+			writeFully(frame, connection.clientChannel);
+			fail("Truncated chunk should not be sent as complete message");
+		} catch (EOFException e) {
+			// Expected
+		} finally {
+			frame.close();
+		}
+	}
+
+	@Ignore(value = "For informational use")
+	@Test
+	public void testLoopbackChunkThroughput() throws Exception {
+		final int chunkCount = 1_000;
+		byte[] signature = randomBytes(64);
+
+		List<ArbitraryDataFile> chunks = new ArrayList<>();
+		for (int i = 0; i < chunkCount; ++i)
+			chunks.add(saveChunk(randomBytes(CHUNK_SIZE), signature));
+
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		// Second FILE_REGION run uses checksum sidecars saved by first run
+		for (SendMode sendMode : List.of(SendMode.HEAP, SendMode.FILE_REGION, SendMode.FILE_REGION)) {
+			try (LoopbackConnection connection = new LoopbackConnection(false)) {
+				long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+				long cpuTimeBefore = threadMXBean.getCurrentThreadCpuTime();
+				long startTime = System.nanoTime();
+				long bytesSent = 0;
+
+				for (ArbitraryDataFile chunk : chunks) {
+					// Fresh instance each time, as when responding to a chunk request
+					ArbitraryDataFileMessage message = message(ArbitraryDataFile.fromHash58(chunk.getHash58(), signature), signature, 1);
+
+					if (sendMode == SendMode.HEAP) {
+						ByteBuffer byteBuffer = ByteBuffer.wrap(message.toBytes());
+						while (byteBuffer.hasRemaining())
+							connection.clientChannel.write(byteBuffer);
+
+						bytesSent += byteBuffer.capacity();
+					} else {
+						FileRegionFrame frame = message.toFileRegionFrame();
+						writeFully(frame, connection.clientChannel);
+
+						bytesSent += frame.size();
+					}
+				}
+
+				long duration = System.nanoTime() - startTime;
+				long cpuTime = threadMXBean.getCurrentThreadCpuTime() - cpuTimeBefore;
+				long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+				System.out.println(String.format("%s: %d chunks in %d ms = %d chunks/s, %d MB/s, sender CPU %d ms, sender allocated %d MB (%d KB per chunk)",
+						sendMode, chunkCount, duration / 1_000_000L, chunkCount * 1_000_000_000L / duration,
+						bytesSent * 1_000_000_000L / duration / 1024 / 1024, cpuTime / 1_000_000L,
+						allocated / 1024 / 1024, allocated / chunkCount / 1024));
+			}
+		}
+	}
+
+	private ArbitraryDataFile saveChunk(byte[] data, byte[] signature) throws DataException {
+		ArbitraryDataFile chunk = new ArbitraryDataFile(data, signature, false);
+		chunk.save();
+
+		ArbitraryDataFile savedChunk = ArbitraryDataFile.fromHash58(chunk.getHash58(), signature);
+		this.savedChunks.add(savedChunk);
+		return savedChunk;
+	}
+
+	private static ArbitraryDataFileMessage message(ArbitraryDataFile chunk, byte[] signature, Integer id) {
+		ArbitraryDataFileMessage message = new ArbitraryDataFileMessage(signature, chunk);
+		if (id != null)
+			message.setId(id);
+
+		return message;
+	}
+
+	private static void writeFully(FileRegionFrame frame, SocketChannel socketChannel) throws IOException {
+		while (frame.hasRemaining())
+			frame.writeTo(socketChannel);
+	}
+
+	/** Returns frame's header, by writing frame to a loopback connection. */
+	private static byte[] header(FileRegionFrame frame, int chunkLength) throws Exception {
+		try (LoopbackConnection connection = new LoopbackConnection(true)) {
+			writeFully(frame, connection.clientChannel);
+
+			byte[] received = connection.awaitReceived((int) frame.size());
+			return Arrays.copyOf(received, received.length - chunkLength);
+		}
+	}
+
+	private byte[] randomBytes(int length) {
+		byte[] bytes = new byte[length];
+		this.random.nextBytes(bytes);
+		return bytes;
+	}
+
+}
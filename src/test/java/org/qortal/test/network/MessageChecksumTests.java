@@ -0,0 +1,225 @@
+package org.qortal.test.network;
+
+import com.google.common.primitives.Ints;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.arbitrary.ArbitraryDataFile;
+import org.qortal.crypto.Crypto;
+import org.qortal.data.network.PeerData;
+import org.qortal.network.Peer;
+import org.qortal.network.PeerAddress;
+import org.qortal.network.helper.PeerCapabilities;
+import org.qortal.network.message.ArbitraryDataFileMessage;
+import org.qortal.network.message.GetArbitraryDataFileMessage;
+import org.qortal.network.message.Message;
+import org.qortal.network.message.MessageException;
+import org.qortal.network.message.MessageType;
+import org.qortal.repository.DataException;
+import org.qortal.settings.Settings;
+import org.qortal.test.common.Common;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32C;
+
+import static org.junit.Assert.*;
+
+public class MessageChecksumTests extends Common {
+
+	private static final int CHUNK_SIZE = 512 * 1024;
+	private static final int MESSAGE_ID = 1234;
+	// Magic, type, has-ID flag, ID, data size
+	private static final int CHECKSUM_OFFSET = 4 + 4 + 1 + 4 + 4;
+	private static final int CHECKSUM_LENGTH = 4;
+
+	/** Remote peer, as seen by local node, having advertised the given capabilities during handshake. */
+	private static class RemotePeer extends Peer {
+		public RemotePeer(boolean offersCrc32cChecksums) {
+			super(new PeerData(PeerAddress.fromString("127.0.0.1:12392")), Peer.NETWORKDATA);
+
+			Map<String, Object> capabilities = new HashMap<>();
+			capabilities.put("QDN", 0);
+			if (offersCrc32cChecksums)
+				capabilities.put(PeerCapabilities.CRC32C_CHECKSUMS, true);
+
+			this.setPeersCapabilities(new PeerCapabilities(capabilities));
+		}
+	}
+
+	private final Random random = new Random();
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@Test
+	public void testBothCapable() throws Exception {
+		// Each side sees the other offering CRC32C checksums
+		Peer receiver = new RemotePeer(true);
+		Peer sender = new RemotePeer(true);
+		assertTrue(receiver.canUseCrc32cChecksums());
+		assertTrue(sender.canUseCrc32cChecksums());
+
+		byte[] signature = randomBytes(64);
+		byte[] data = randomBytes(CHUNK_SIZE);
+
+		byte[] messageBytes = chunkMessage(signature, data).toBytes(receiver.canUseCrc32cChecksums());
+		assertArrayEquals(crc32cChecksum(signature, data), checksum(messageBytes));
+
+		ArbitraryDataFileMessage message = (ArbitraryDataFileMessage) Message.fromByteBuffer(readOnly(messageBytes), sender.canUseCrc32cChecksums());
+		assertNotNull(message);
+		assertEquals(MESSAGE_ID, message.getId());
+		assertArrayEquals(signature, message.getSignature());
+		assertArrayEquals(data, message.getArbitraryDataFile().getBytes());
+	}
+
+	@Test
+	public void testCapableSenderLegacyReceiver() throws Exception {
+		// Legacy receiver didn't offer CRC32C checksums, so we use SHA-256
+		Peer receiver = new RemotePeer(false);
+		assertFalse(receiver.canUseCrc32cChecksums());
+
+		byte[] signature = randomBytes(64);
+		byte[] data = randomBytes(CHUNK_SIZE);
+
+		byte[] messageBytes = chunkMessage(signature, data).toBytes(receiver.canUseCrc32cChecksums());
+		assertArrayEquals(sha256Checksum(signature, data), checksum(messageBytes));
+
+		// Legacy receiver only knows SHA-256 checksums
+		Message message = Message.fromByteBuffer(readOnly(messageBytes));
+		assertNotNull(message);
+		assertEquals(MessageType.ARBITRARY_DATA_FILE, message.getType());
+	}
+
+	@Test
+	public void testLegacySenderCapableReceiver() throws Exception {
+		// Legacy sender didn't offer CRC32C checksums, so we don't expect them
+		Peer sender = new RemotePeer(false);
+		assertFalse(sender.canUseCrc32cChecksums());
+
+		byte[] signature = randomBytes(64);
+		byte[] data = randomBytes(CHUNK_SIZE);
+
+		// Legacy sender only knows SHA-256 checksums
+		byte[] messageBytes = chunkMessage(signature, data).toBytes();
+		assertArrayEquals(sha256Checksum(signature, data), checksum(messageBytes));
+
+		assertNotNull(Message.fromByteBuffer(readOnly(messageBytes), sender.canUseCrc32cChecksums()));
+
+		// SHA-256 checksums are still accepted even when CRC32C checksums were negotiated
+		assertNotNull(Message.fromByteBuffer(readOnly(messageBytes), true));
+	}
+
+	@Test
+	public void testCrc32cRejectedWithoutNegotiation() throws Exception {
+		byte[] messageBytes = chunkMessage(randomBytes(64), randomBytes(CHUNK_SIZE)).toBytes(true);
+
+		try {
+			Message.fromByteBuffer(readOnly(messageBytes), false);
+			fail("CRC32C checksum should not be accepted unless negotiated");
+		} catch (MessageException e) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void testOtherMessageTypesKeepSha256() throws Exception {
+		byte[] signature = randomBytes(64);
+		byte[] hash = randomBytes(32);
+
+		Message outgoing = new GetArbitraryDataFileMessage(signature, hash);
+		outgoing.setId(MESSAGE_ID);
+
+		byte[] messageBytes = outgoing.toBytes(true);
+		assertArrayEquals(outgoing.toBytes(), messageBytes);
+		assertFalse(Message.hasSelfVerifyingPayload(MessageType.GET_ARBITRARY_DATA_FILE));
+
+		// CRC32C checksum isn't accepted for message types whose payload isn't checked against its own hash
+		byte[] crc32cMessageBytes = messageBytes.clone();
+		byte[] payload = Arrays.copyOfRange(messageBytes, CHECKSUM_OFFSET + CHECKSUM_LENGTH, messageBytes.length);
+		System.arraycopy(crc32c(payload), 0, crc32cMessageBytes, CHECKSUM_OFFSET, CHECKSUM_LENGTH);
+
+		try {
+			Message.fromByteBuffer(readOnly(crc32cMessageBytes), true);
+			fail("CRC32C checksum should not be accepted for GET_ARBITRARY_DATA_FILE");
+		} catch (MessageException e) {
+			// Expected
+		}
+
+		assertNotNull(Message.fromByteBuffer(readOnly(messageBytes), true));
+	}
+
+	@Test
+	public void testDisabledBySettings() throws Exception {
+		FieldUtils.writeField(Settings.getInstance(), "crc32cMessageChecksumsEnabled", false, true);
+
+		// Even if peer offers CRC32C checksums, we don't use them
+		Peer peer = new RemotePeer(true);
+		assertFalse(peer.canUseCrc32cChecksums());
+
+		byte[] signature = randomBytes(64);
+		byte[] data = randomBytes(CHUNK_SIZE);
+
+		byte[] messageBytes = chunkMessage(signature, data).toBytes(peer.canUseCrc32cChecksums());
+		assertArrayEquals(sha256Checksum(signature, data), checksum(messageBytes));
+	}
+
+	@Test
+	public void testCorruptedPayloadRejected() throws Exception {
+		for (boolean useCrc32cChecksum : new boolean[] { false, true }) {
+			byte[] messageBytes = chunkMessage(randomBytes(64), randomBytes(CHUNK_SIZE)).toBytes(useCrc32cChecksum);
+			messageBytes[messageBytes.length / 2] ^= 0x01;
+
+			try {
+				Message.fromByteBuffer(readOnly(messageBytes), true);
+				fail("Corrupted message should be rejected");
+			} catch (MessageException e) {
+				// Expected
+			}
+		}
+	}
+
+	private ArbitraryDataFileMessage chunkMessage(byte[] signature, byte[] data) throws DataException {
+		ArbitraryDataFileMessage message = new ArbitraryDataFileMessage(signature, new ArbitraryDataFile(data, signature, false));
+		message.setId(MESSAGE_ID);
+		return message;
+	}
+
+	private static byte[] checksum(byte[] messageBytes) {
+		return Arrays.copyOfRange(messageBytes, CHECKSUM_OFFSET, CHECKSUM_OFFSET + CHECKSUM_LENGTH);
+	}
+
+	private static byte[] payload(byte[] signature, byte[] data) {
+		return ByteBuffer.allocate(signature.length + 4 + data.length).put(signature).putInt(data.length).put(data).array();
+	}
+
+	private static byte[] sha256Checksum(byte[] signature, byte[] data) {
+		return Arrays.copyOf(Crypto.digest(payload(signature, data)), CHECKSUM_LENGTH);
+	}
+
+	private static byte[] crc32cChecksum(byte[] signature, byte[] data) {
+		return crc32c(payload(signature, data));
+	}
+
+	private static byte[] crc32c(byte[] data) {
+		CRC32C crc32c = new CRC32C();
+		crc32c.update(data);
+		return Ints.toByteArray((int) crc32c.getValue());
+	}
+
+	private static ByteBuffer readOnly(byte[] bytes) {
+		return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+	}
+
+	private byte[] randomBytes(int length) {
+		byte[] bytes = new byte[length];
+		this.random.nextBytes(bytes);
+		return bytes;
+	}
+
+}
@@ -0,0 +1,416 @@
+package org.qortal.test.network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.network.MessageDispatcher;
+import org.qortal.network.MessageDispatcher.MessageTypeStats;
+import org.qortal.network.MessageDispatcher.TypePolicy;
+import org.qortal.network.message.MessageType;
+import org.qortal.repository.DataException;
+import org.qortal.test.common.Common;
+import org.qortal.utils.ExecuteProduceConsume.Task;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class MessageDispatcherTests extends Common {
+
+	/** Loopback frames are message type ID then a long */
+	private static final int FRAME_LENGTH = 1 + 8;
+
+	private static class TestTask implements Task {
+		private final String name;
+		private final Runnable work;
+
+		public TestTask(String name, Runnable work) {
+			this.name = name;
+			this.work = work;
+		}
+
+		@Override
+		public String getName() {
+			return this.name;
+		}
+
+		@Override
+		public void perform() {
+			this.work.run();
+		}
+	}
+
+	private ExecutorService executor;
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+
+		this.executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void afterTest() throws InterruptedException {
+		this.executor.shutdownNow();
+		this.executor.awaitTermination(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testShedding() throws InterruptedException {
+		MessageDispatcher dispatcher = new MessageDispatcher("test", this.executor, 1, type -> new TypePolicy(3, 1, 1));
+
+		CountDownLatch startedLatch = new CountDownLatch(1);
+		CountDownLatch releaseLatch = new CountDownLatch(1);
+		List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+		List<Integer> shed = Collections.synchronizedList(new ArrayList<>());
+
+		// First task holds up only runner while others are queued
+		dispatcher.submit(MessageType.TRANSACTION, new TestTask("1", () -> {
+			startedLatch.countDown();
+			awaitQuietly(releaseLatch);
+			handled.add(1);
+		}), () -> shed.add(1));
+
+		assertTrue(startedLatch.await(5, TimeUnit.SECONDS));
+
+		for (int i = 2; i <= 5; ++i) {
+			final int id = i;
+			dispatcher.submit(MessageType.TRANSACTION, new TestTask(String.valueOf(id), () -> handled.add(id)), () -> shed.add(id));
+		}
+
+		// Oldest queued task is shed
+		assertEquals(List.of(2), shed);
+		assertEquals(3, dispatcher.getQueuedCount());
+
+		releaseLatch.countDown();
+
+		assertTrue(waitFor(() -> handled.size() == 4));
+		assertEquals(List.of(1, 3, 4, 5), handled);
+
+		MessageTypeStats stats = getStats(dispatcher, MessageType.TRANSACTION);
+		assertEquals(4L, stats.handled);
+		assertEquals(1L, stats.shed);
+		assertEquals(0, stats.queued);
+		assertTrue(stats.maxHandlingTime >= 0L);
+	}
+
+	@Test
+	public void testConcurrencyLimit() throws InterruptedException {
+		final int limitedConcurrency = 2;
+		MessageDispatcher dispatcher = new MessageDispatcher("test", this.executor, 8,
+				type -> new TypePolicy(100, type == MessageType.TRANSACTION ? limitedConcurrency : Integer.MAX_VALUE, 1));
+
+		AtomicInteger concurrency = new AtomicInteger();
+		AtomicInteger maxConcurrency = new AtomicInteger();
+		AtomicInteger handledCount = new AtomicInteger();
+
+		for (int i = 0; i < 20; ++i)
+			dispatcher.submit(MessageType.TRANSACTION, new TestTask("limited", () -> {
+				maxConcurrency.accumulateAndGet(concurrency.incrementAndGet(), Math::max);
+				sleepQuietly(20L);
+				concurrency.decrementAndGet();
+				handledCount.incrementAndGet();
+			}), null);
+
+		// Other types are still handled while limited type is busy
+		CountDownLatch otherLatch = new CountDownLatch(1);
+		dispatcher.submit(MessageType.GET_BLOCK_SUMMARIES, new TestTask("other", otherLatch::countDown), null);
+		assertTrue(otherLatch.await(1, TimeUnit.SECONDS));
+
+		assertTrue(waitFor(() -> handledCount.get() == 20));
+		assertEquals(limitedConcurrency, maxConcurrency.get());
+	}
+
+	@Test
+	public void testWeights() throws InterruptedException {
+		MessageDispatcher dispatcher = new MessageDispatcher("test", this.executor, 1,
+				type -> new TypePolicy(100, Integer.MAX_VALUE, type == MessageType.GET_BLOCK_SUMMARIES ? 4 : 1));
+
+		CountDownLatch startedLatch = new CountDownLatch(1);
+		CountDownLatch releaseLatch = new CountDownLatch(1);
+		List<MessageType> handled = Collections.synchronizedList(new ArrayList<>());
+
+		dispatcher.submit(MessageType.PING, new TestTask("blocker", () -> {
+			startedLatch.countDown();
+			awaitQuietly(releaseLatch);
+		}), null);
+		assertTrue(startedLatch.await(5, TimeUnit.SECONDS));
+
+		// Flood of one type queued before the other
+		for (int i = 0; i < 50; ++i)
+			dispatcher.submit(MessageType.TRANSACTION, new TestTask("flood", () -> handled.add(MessageType.TRANSACTION)), null);
+
+		for (int i = 0; i < 50; ++i)
+			dispatcher.submit(MessageType.GET_BLOCK_SUMMARIES, new TestTask("sync", () -> handled.add(MessageType.GET_BLOCK_SUMMARIES)), null);
+
+		releaseLatch.countDown();
+		assertTrue(waitFor(() -> handled.size() == 100));
+
+		// Turns are shared 4:1 while both types are queued
+		long syncTurns = handled.subList(0, 50).stream().filter(type -> type == MessageType.GET_BLOCK_SUMMARIES).count();
+		assertTrue(String.format("%d sync turns out of first 50", syncTurns), syncTurns >= 38 && syncTurns <= 42);
+	}
+
+	@Test
+	public void testShutdown() throws InterruptedException {
+		MessageDispatcher dispatcher = new MessageDispatcher("test", this.executor, 1, type -> new TypePolicy(10, 1, 1));
+		dispatcher.shutdown();
+
+		AtomicInteger handledCount = new AtomicInteger();
+		AtomicInteger shedCount = new AtomicInteger();
+		dispatcher.submit(MessageType.PING, new TestTask("late", handledCount::incrementAndGet), shedCount::incrementAndGet);
+
+		Thread.sleep(100L);
+		assertEquals(0, handledCount.get());
+		assertEquals(1, shedCount.get());
+	}
+
+	/**
+	 * Loopback peers flood transaction messages while another loopback peer sends block summary requests,
+	 * using message type policies from default settings.
+	 */
+	@Test
+	public void testFloodIsolation() throws Exception {
+		final int floodPeerCount = 8;
+		final int requestCount = 50;
+		final int handlerThreads = 4;
+
+		MessageDispatcher dispatcher = new MessageDispatcher("test", this.executor, handlerThreads, TypePolicy::fromSettings);
+
+		try (LoopbackServer server = new LoopbackServer(dispatcher)) {
+			List<SocketChannel> floodChannels = new ArrayList<>();
+			for (int i = 0; i < floodPeerCount; ++i)
+				floodChannels.add(server.connect());
+
+			SocketChannel requestChannel = server.connect();
+
+			// Flood peers send transactions as fast as possible
+			Thread floodThread = new Thread(() -> {
+				ByteBuffer frames = ByteBuffer.allocate(FRAME_LENGTH * 100);
+				while (frames.hasRemaining())
+					frames.put((byte) MessageType.TRANSACTION.value).putLong(0L);
+
+				try {
+					while (!Thread.currentThread().isInterrupted())
+						for (SocketChannel floodChannel : floodChannels) {
+							frames.rewind();
+							floodChannel.write(frames);
+						}
+				} catch (IOException e) {
+					// Closed
+				}
+			}, "Flood");
+			floodThread.setDaemon(true);
+			floodThread.start();
+
+			// Let flood build up
+			assertTrue(waitFor(() -> {
+				MessageTypeStats stats = getStats(dispatcher, MessageType.TRANSACTION);
+				return stats != null && stats.shed > 0;
+			}));
+
+			List<Long> latencies = new ArrayList<>();
+			ByteBuffer request = ByteBuffer.allocate(FRAME_LENGTH);
+			ByteBuffer reply = ByteBuffer.allocate(FRAME_LENGTH);
+
+			for (int i = 0; i < requestCount; ++i) {
+				long sentNanos = System.nanoTime();
+
+				request.clear();
+				request.put((byte) MessageType.GET_BLOCK_SUMMARIES.value).putLong(sentNanos).flip();
+				while (request.hasRemaining())
+					requestChannel.write(request);
+
+				reply.clear();
+				while (reply.hasRemaining())
+					if (requestChannel.read(reply) < 0)
+						fail("Request connection closed");
+
+				reply.flip();
+				assertEquals(MessageType.BLOCK_SUMMARIES_V2.value, reply.get());
+				assertEquals(sentNanos, reply.getLong());
+
+				latencies.add(System.nanoTime() - sentNanos);
+
+				Thread.sleep(20L);
+			}
+
+			floodThread.interrupt();
+			for (SocketChannel floodChannel : floodChannels)
+				floodChannel.close();
+			floodThread.join(1000L);
+
+			Collections.sort(latencies);
+			long medianLatency = latencies.get(latencies.size() / 2) / 1_000_000L;
+			long p95Latency = latencies.get(latencies.size() * 95 / 100) / 1_000_000L;
+
+			MessageTypeStats floodStats = getStats(dispatcher, MessageType.TRANSACTION);
+			MessageTypeStats requestStats = getStats(dispatcher, MessageType.GET_BLOCK_SUMMARIES);
+
+			System.out.println(String.format("GET_BLOCK_SUMMARIES replies during flood from %d loopback peers: median %d ms, 95th percentile %d ms, max queue time %d ms",
+					floodPeerCount, medianLatency, p95Latency, requestStats.maxQueueTime));
+			System.out.println(String.format("TRANSACTION flood: %d handled, %d shed, average queue time %d ms, average handling time %d ms",
+					floodStats.handled, floodStats.shed, floodStats.averageQueueTime, floodStats.averageHandlingTime));
+
+			// Flood is shed, but requests aren't, and aren't stuck behind flood
+			assertTrue(floodStats.shed > 0);
+			assertEquals(0L, requestStats.shed);
+			assertEquals(requestCount, requestStats.handled);
+			assertTrue(String.format("95th percentile reply latency %d ms", p95Latency), p95Latency < 250L);
+		} finally {
+			dispatcher.shutdown();
+		}
+	}
+
+	/** Accepts loopback connections, reading frames and dispatching them as message tasks, like Network's I/O loop. */
+	private static class LoopbackServer implements AutoCloseable {
+		private final MessageDispatcher dispatcher;
+		private final ServerSocketChannel serverChannel;
+		private final Selector selector;
+		private final Thread thread;
+
+		public LoopbackServer(MessageDispatcher dispatcher) throws IOException {
+			this.dispatcher = dispatcher;
+			this.serverChannel = ServerSocketChannel.open();
+			this.serverChannel.bind(new InetSocketAddress("127.0.0.1", 0));
+			this.selector = Selector.open();
+
+			this.thread = new Thread(this::run, "LoopbackServer");
+			this.thread.setDaemon(true);
+			this.thread.start();
+		}
+
+		public SocketChannel connect() throws IOException {
+			SocketChannel clientChannel = SocketChannel.open(this.serverChannel.getLocalAddress());
+
+			SocketChannel acceptedChannel = this.serverChannel.accept();
+			acceptedChannel.configureBlocking(false);
+
+			// Registration blocks while the selector is selecting
+			synchronized (this) {
+				this.selector.wakeup();
+				acceptedChannel.register(this.selector, SelectionKey.OP_READ, ByteBuffer.allocate(FRAME_LENGTH * 1024));
+			}
+
+			return clientChannel;
+		}
+
+		private void run() {
+			try {
+				while (this.selector.isOpen()) {
+					this.selector.select(100L);
+
+					// Let connect() register new channels
+					synchronized (this) {
+					}
+
+					for (SelectionKey selectionKey : this.selector.selectedKeys()) {
+						SocketChannel channel = (SocketChannel) selectionKey.channel();
+						ByteBuffer byteBuffer = (ByteBuffer) selectionKey.attachment();
+
+						if (channel.read(byteBuffer) < 0) {
+							selectionKey.cancel();
+							continue;
+						}
+
+						byteBuffer.flip();
+						while (byteBuffer.remaining() >= FRAME_LENGTH)
+							this.dispatch(channel, MessageType.valueOf(byteBuffer.get()), byteBuffer.getLong());
+						byteBuffer.compact();
+					}
+
+					this.selector.selectedKeys().clear();
+				}
+			} catch (IOException | RuntimeException e) {
+				// Closed
+			}
+		}
+
+		private void dispatch(SocketChannel channel, MessageType messageType, long value) {
+			if (messageType == MessageType.GET_BLOCK_SUMMARIES) {
+				// Reply straight away
+				this.dispatcher.submit(messageType, new TestTask("request", () -> {
+					ByteBuffer reply = ByteBuffer.allocate(FRAME_LENGTH);
+					reply.put((byte) MessageType.BLOCK_SUMMARIES_V2.value).putLong(value).flip();
+
+					try {
+						synchronized (channel) {
+							while (reply.hasRemaining())
+								channel.write(reply);
+						}
+					} catch (IOException e) {
+						// Closed
+					}
+				}), null);
+				return;
+			}
+
+			// Simulate processing incoming transaction
+			this.dispatcher.submit(messageType, new TestTask("flood", () -> sleepQuietly(2L)), null);
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.selector.close();
+			this.serverChannel.close();
+
+			try {
+				this.thread.join(1000L);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static MessageTypeStats getStats(MessageDispatcher dispatcher, MessageType messageType) {
+		return dispatcher.getStats().stream().filter(stats -> stats.messageType == messageType).findFirst().orElse(null);
+	}
+
+	private interface Condition {
+		boolean isMet();
+	}
+
+	private static boolean waitFor(Condition condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000L;
+
+		while (!condition.isMet()) {
+			if (System.currentTimeMillis() > deadline)
+				return false;
+
+			Thread.sleep(10L);
+		}
+
+		return true;
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void sleepQuietly(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
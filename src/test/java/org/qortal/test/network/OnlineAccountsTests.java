@@ -1,21 +1,26 @@
 package org.qortal.test.network;
 
+import com.google.common.primitives.Bytes;
 import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
 import io.druid.extendedset.intset.ConciseSet;
 import org.apache.commons.lang3.reflect.FieldUtils;
+import org.apache.commons.lang3.reflect.MethodUtils;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.jsse.provider.BouncyCastleJsseProvider;
 import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.qortal.account.Account;
 import org.qortal.account.PrivateKeyAccount;
 import org.qortal.block.Block;
 import org.qortal.block.BlockChain;
 import org.qortal.controller.BlockMinter;
 import org.qortal.controller.OnlineAccountsManager;
+import org.qortal.crypto.MemoryPoW;
 import org.qortal.crypto.Qortal25519Extras;
+import org.qortal.data.account.RewardShareData;
 import org.qortal.data.block.BlockData;
 import org.qortal.data.network.OnlineAccountData;
 import org.qortal.network.message.OnlineAccountsV3Message;
@@ -27,6 +32,7 @@ import org.qortal.test.common.AccountUtils;
 import org.qortal.test.common.Common;
 import org.qortal.transform.Transformer;
 import org.qortal.utils.Base58;
+import org.qortal.utils.Groups;
 import org.qortal.utils.NTP;
 
 import java.io.ByteArrayOutputStream;
@@ -36,11 +42,13 @@ import java.security.Security;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
@@ -51,6 +59,8 @@ import static org.junit.Assert.fail;
 public class OnlineAccountsTests extends Common {
 
     private static final Random RANDOM = new Random();
+    /** Group created by Alice in test chain's genesis block */
+    private static final int DEV_GROUP_ID = 1;
     static {
         // This must go before any calls to LogManager/Logger
         System.setProperty("java.util.logging.manager", "org.apache.logging.log4j.jul.LogManager");
@@ -280,6 +290,100 @@ public class OnlineAccountsTests extends Common {
         }
     }
 
+    @Test
+    public void testProcessOnlineAccountsImportQueue() throws Exception {
+        try (final Repository repository = RepositoryManager.getRepository()) {
+            // Testnet MemoryPoW difficulty is low enough to compute nonces quickly
+            FieldUtils.writeField(Settings.getInstance(), "isTestNet", true, true);
+            List<BlockChain.IdsForHeight> originalMintingGroupIds = setMintingGroupIds(DEV_GROUP_ID);
+
+            try {
+                clearOnlineAccountCaches();
+
+                long onlineAccountsTimestamp = OnlineAccountsManager.getCurrentOnlineAccountTimestamp();
+
+                PrivateKeyAccount aliceRewardShare = Common.getTestAccount(repository, "alice-reward-share");
+                OnlineAccountData validAccount = buildOnlineAccount(aliceRewardShare, onlineAccountsTimestamp, computeNonce(aliceRewardShare, onlineAccountsTimestamp));
+
+                PrivateKeyAccount bobRewardShare = Common.getTestAccount(repository, "bob-reward-share");
+                OnlineAccountData invalidNonceAccount = buildOnlineAccount(bobRewardShare, onlineAccountsTimestamp, invalidNonce(bobRewardShare, onlineAccountsTimestamp));
+
+                PrivateKeyAccount unknownAccount = new PrivateKeyAccount(repository, randomPrivateKey());
+                OnlineAccountData unknownRewardShareAccount = buildOnlineAccount(unknownAccount, onlineAccountsTimestamp, computeNonce(unknownAccount, onlineAccountsTimestamp));
+
+                PrivateKeyAccount chloeRewardShare = Common.getTestAccount(repository, "chloe-reward-share");
+                long oldTimestamp = onlineAccountsTimestamp - 10 * OnlineAccountsManager.getOnlineTimestampModulus();
+                OnlineAccountData oldAccount = buildOnlineAccount(chloeRewardShare, oldTimestamp, computeNonce(chloeRewardShare, oldTimestamp));
+
+                Set<OnlineAccountData> onlineAccountsImportQueue = getOnlineAccountsImportQueue();
+                onlineAccountsImportQueue.addAll(List.of(validAccount, invalidNonceAccount, unknownRewardShareAccount, oldAccount));
+
+                processOnlineAccountsImportQueue();
+
+                assertTrue(onlineAccountsImportQueue.isEmpty());
+                assertEquals(Set.of(validAccount), getCurrentOnlineAccounts().get(onlineAccountsTimestamp));
+                assertFalse(getCurrentOnlineAccounts().containsKey(oldTimestamp));
+
+                // Already validated accounts are skipped
+                onlineAccountsImportQueue.add(validAccount);
+                processOnlineAccountsImportQueue();
+
+                assertTrue(onlineAccountsImportQueue.isEmpty());
+                assertEquals(Set.of(validAccount), getCurrentOnlineAccounts().get(onlineAccountsTimestamp));
+            } finally {
+                clearOnlineAccountCaches();
+                FieldUtils.writeField(BlockChain.getInstance(), "mintingGroupIds", originalMintingGroupIds, true);
+                FieldUtils.writeField(Settings.getInstance(), "isTestNet", false, true);
+            }
+        }
+    }
+
+    private static OnlineAccountData buildOnlineAccount(PrivateKeyAccount account, long onlineAccountsTimestamp, int nonce) {
+        byte[] signature = Qortal25519Extras.signForAggregation(account.getPrivateKey(), Longs.toByteArray(onlineAccountsTimestamp));
+        return new OnlineAccountData(onlineAccountsTimestamp, signature, account.getPublicKey(), nonce);
+    }
+
+    private static byte[] memoryPoWBytes(PrivateKeyAccount account, long onlineAccountsTimestamp) {
+        return Bytes.concat(account.getPublicKey(), Longs.toByteArray(onlineAccountsTimestamp));
+    }
+
+    private static int computeNonce(PrivateKeyAccount account, long onlineAccountsTimestamp) {
+        return MemoryPoW.compute2(memoryPoWBytes(account, onlineAccountsTimestamp), OnlineAccountsManager.POW_BUFFER_SIZE_TESTNET, OnlineAccountsManager.POW_DIFFICULTY_TESTNET);
+    }
+
+    private static int invalidNonce(PrivateKeyAccount account, long onlineAccountsTimestamp) {
+        byte[] bytes = memoryPoWBytes(account, onlineAccountsTimestamp);
+
+        int nonce = 0;
+        while (MemoryPoW.verify2(bytes, OnlineAccountsManager.POW_BUFFER_SIZE_TESTNET, OnlineAccountsManager.POW_DIFFICULTY_TESTNET, nonce))
+            ++nonce;
+
+        return nonce;
+    }
+
+    /** Sets minting groups for all heights, returning previous minting groups. */
+    @SuppressWarnings("unchecked")
+    private static List<BlockChain.IdsForHeight> setMintingGroupIds(int... groupIds) throws IllegalAccessException {
+        List<BlockChain.IdsForHeight> originalMintingGroupIds = (List<BlockChain.IdsForHeight>) FieldUtils.readField(BlockChain.getInstance(), "mintingGroupIds", true);
+
+        BlockChain.IdsForHeight idsForHeight = new BlockChain.IdsForHeight();
+        idsForHeight.height = 0;
+        idsForHeight.ids = Arrays.stream(groupIds).boxed().collect(Collectors.toList());
+        FieldUtils.writeField(BlockChain.getInstance(), "mintingGroupIds", List.of(idsForHeight), true);
+
+        return originalMintingGroupIds;
+    }
+
+    private static byte[] randomPrivateKey() {
+        byte[] privateKey = new byte[Transformer.PRIVATE_KEY_LENGTH];
+        RANDOM.nextBytes(privateKey);
+        return privateKey;
+    }
+
+    private static void processOnlineAccountsImportQueue() throws ReflectiveOperationException {
+        MethodUtils.invokeMethod(OnlineAccountsManager.getInstance(), true, "processOnlineAccountsImportQueue");
+    }
+
     @SuppressWarnings("unchecked")
     private static long setOnlineAccountsSignatureV2Height(long height) throws IllegalAccessException {
         Map<String, Long> featureTriggers = (Map<String, Long>) FieldUtils.readField(BlockChain.getInstance(), "featureTriggers", true);
@@ -304,9 +408,86 @@ public class OnlineAccountsTests extends Common {
         getCurrentOnlineAccounts().clear();
         getOnlineAccountsImportQueue().clear();
 
-        Map<Long, Map<Byte, byte[]>> currentOnlineAccountsHashes =
-                (Map<Long, Map<Byte, byte[]>>) FieldUtils.readField(OnlineAccountsManager.getInstance(), "currentOnlineAccountsHashes", true);
-        currentOnlineAccountsHashes.clear();
+        getCurrentOnlineAccountsHashes().clear();
+
+        Map<Long, Map<Byte, Integer>> currentOnlineAccountsHashCounts =
+                (Map<Long, Map<Byte, Integer>>) FieldUtils.readField(OnlineAccountsManager.getInstance(), "currentOnlineAccountsHashCounts", true);
+        currentOnlineAccountsHashCounts.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Long, Map<Byte, byte[]>> getCurrentOnlineAccountsHashes() throws IllegalAccessException {
+        return (Map<Long, Map<Byte, byte[]>>) FieldUtils.readField(OnlineAccountsManager.getInstance(), "currentOnlineAccountsHashes", true);
+    }
+
+    @Test
+    public void testIncrementalOnlineAccountsHashes() throws Exception {
+        final int rounds = 50;
+        final int operationsPerRound = 200;
+
+        OnlineAccountsManager onlineAccountsManager = OnlineAccountsManager.getInstance();
+
+        try {
+            for (int round = 0; round < rounds; ++round) {
+                // Seed is reported on failure so sequence can be replayed
+                long seed = RANDOM.nextLong();
+                Random random = new Random(seed);
+
+                clearOnlineAccountCaches();
+
+                // Few timestamps and public keys with few distinct leading bytes, so operations often affect the same hashes
+                long[] timestamps = { 1_000_000L, 2_000_000L, 3_000_000L };
+                List<byte[]> publicKeys = new ArrayList<>();
+                for (int i = 0; i < 40; ++i) {
+                    byte[] publicKey = new byte[Transformer.PUBLIC_KEY_LENGTH];
+                    random.nextBytes(publicKey);
+                    publicKey[0] = (byte) random.nextInt(4);
+                    publicKeys.add(publicKey);
+                }
+
+                for (int operation = 0; operation < operationsPerRound; ++operation) {
+                    long timestamp = timestamps[random.nextInt(timestamps.length)];
+                    byte[] publicKey = publicKeys.get(random.nextInt(publicKeys.size()));
+                    // Missing nonce, then later one with nonce, exercises replacement of inferior entries
+                    Integer nonce = random.nextInt(4) == 0 ? null : random.nextInt(3);
+                    OnlineAccountData onlineAccountData = new OnlineAccountData(timestamp, new byte[Transformer.SIGNATURE_LENGTH], publicKey, nonce);
+
+                    switch (random.nextInt(3)) {
+                        case 0:
+                        case 1:
+                            MethodUtils.invokeMethod(onlineAccountsManager, true, "addAccounts", List.of(onlineAccountData));
+                            break;
+
+                        case 2:
+                            MethodUtils.invokeMethod(onlineAccountsManager, true, "removeCurrentOnlineAccount", onlineAccountData);
+                            break;
+                    }
+
+                    assertOnlineAccountsHashes(String.format("seed %d, operation %d", seed, operation));
+                }
+            }
+        } finally {
+            clearOnlineAccountCaches();
+        }
+    }
+
+    /** Asserts incrementally updated hashes match hashes rebuilt from current online accounts. */
+    private static void assertOnlineAccountsHashes(String message) throws IllegalAccessException {
+        Map<Long, Map<Byte, String>> rebuiltHashes = new HashMap<>();
+        for (var entry : getCurrentOnlineAccounts().entrySet())
+            for (OnlineAccountData onlineAccountData : entry.getValue()) {
+                byte[] publicKey = onlineAccountData.getPublicKey();
+
+                rebuiltHashes.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
+                        .compute(publicKey[0], (k, hash) -> Base58.encode(OnlineAccountsManager.xorByteArrayInPlace(hash == null ? null : Base58.decode(hash), publicKey)));
+            }
+
+        Map<Long, Map<Byte, String>> hashes = new HashMap<>();
+        for (var entry : getCurrentOnlineAccountsHashes().entrySet())
+            for (var hashEntry : entry.getValue().entrySet())
+                hashes.computeIfAbsent(entry.getKey(), k -> new HashMap<>()).put(hashEntry.getKey(), Base58.encode(hashEntry.getValue()));
+
+        assertEquals(message, rebuiltHashes, hashes);
     }
 
     @Test
@@ -362,6 +543,99 @@ public class OnlineAccountsTests extends Common {
         }
     }
 
+    @Test
+    public void benchmarkOnlineAccountsImportQueue() throws Exception {
+        if (!Boolean.getBoolean("runOnlineAccountsBenchmark"))
+            System.out.println("Skipping benchmark. Run manually with -DrunOnlineAccountsBenchmark=true");
+        Assume.assumeTrue(Boolean.getBoolean("runOnlineAccountsBenchmark"));
+
+        final int accountCount = 5000;
+        final int warmupIterations = 1;
+        final int measuredIterations = 3;
+
+        try (final Repository repository = RepositoryManager.getRepository()) {
+            long onlineAccountsTimestamp = OnlineAccountsManager.getCurrentOnlineAccountTimestamp();
+
+            // Half use a known reward-share, with different nonces so each needs full MemoryPoW verification,
+            // the other half are validly signed but unknown, so are rejected after reward-share lookup.
+            PrivateKeyAccount rewardShareAccount = Common.getTestAccount(repository, "alice-reward-share");
+
+            List<OnlineAccountData> onlineAccounts = new ArrayList<>(accountCount);
+            for (int i = 0; i < accountCount; ++i) {
+                PrivateKeyAccount account = i % 2 == 0 ? rewardShareAccount : new PrivateKeyAccount(repository, randomPrivateKey());
+                onlineAccounts.add(buildOnlineAccount(account, onlineAccountsTimestamp, i));
+            }
+
+            List<BlockChain.IdsForHeight> originalMintingGroupIds = setMintingGroupIds(DEV_GROUP_ID);
+
+            long perEntryNanos = 0L;
+            long batchedNanos = 0L;
+
+            try {
+                for (int i = 0; i < warmupIterations + measuredIterations; ++i) {
+                    clearOnlineAccountCaches();
+
+                    long beforePerEntry = System.nanoTime();
+                    int perEntryValidCount = validateOnlineAccountsPerEntry(repository, onlineAccounts);
+                    long perEntryDuration = System.nanoTime() - beforePerEntry;
+
+                    getOnlineAccountsImportQueue().addAll(onlineAccounts);
+
+                    long beforeBatched = System.nanoTime();
+                    processOnlineAccountsImportQueue();
+                    long batchedDuration = System.nanoTime() - beforeBatched;
+
+                    int batchedValidCount = getCurrentOnlineAccounts().getOrDefault(onlineAccountsTimestamp, Collections.emptySet()).size();
+                    assertEquals(perEntryValidCount, batchedValidCount);
+
+                    if (i >= warmupIterations) {
+                        perEntryNanos += perEntryDuration;
+                        batchedNanos += batchedDuration;
+                    }
+                }
+            } finally {
+                clearOnlineAccountCaches();
+                FieldUtils.writeField(BlockChain.getInstance(), "mintingGroupIds", originalMintingGroupIds, true);
+            }
+
+            double perEntryMillis = perEntryNanos / 1_000_000.0 / measuredIterations;
+            double batchedMillis = batchedNanos / 1_000_000.0 / measuredIterations;
+
+            System.out.println("Online accounts import queue benchmark");
+            System.out.println("Times are wall-clock milliseconds on this machine/JVM, not a stable JMH benchmark.");
+            System.out.printf("accounts=%d perEntry=%.3fms batched=%.3fms speedup=%.2fx%n",
+                    accountCount, perEntryMillis, batchedMillis, perEntryMillis / batchedMillis);
+        }
+    }
+
+    /** Validates online accounts one at a time, as the import queue used to, returning number of valid accounts. */
+    private static int validateOnlineAccountsPerEntry(Repository repository, List<OnlineAccountData> onlineAccounts) throws DataException {
+        int nextBlockHeight = repository.getBlockRepository().getBlockchainHeight() + 1;
+        List<String> mintingGroupMemberAddresses = Groups.getAllMembers(repository.getGroupRepository(),
+                Groups.getGroupIdsToMint(BlockChain.getInstance(), nextBlockHeight));
+        long[] workBuffer = new long[OnlineAccountsManager.POW_BUFFER_SIZE / 8];
+
+        int validCount = 0;
+        for (OnlineAccountData onlineAccountData : onlineAccounts) {
+            if (!Qortal25519Extras.verifyAggregated(onlineAccountData.getPublicKey(), onlineAccountData.getSignature(), Longs.toByteArray(onlineAccountData.getTimestamp())))
+                continue;
+
+            RewardShareData rewardShareData = repository.getAccountRepository().getRewardShare(onlineAccountData.getPublicKey());
+            if (rewardShareData == null || !mintingGroupMemberAddresses.contains(rewardShareData.getMinter()))
+                continue;
+
+            if (!new Account(repository, rewardShareData.getMinter()).canMint(true))
+                continue;
+
+            if (!OnlineAccountsManager.getInstance().verifyMemoryPoW(onlineAccountData, workBuffer))
+                continue;
+
+            ++validCount;
+        }
+
+        return validCount;
+    }
+
     @Test
     @Ignore(value = "For informational use")
     public void testOnlineAccountNonceCompression() throws IOException {
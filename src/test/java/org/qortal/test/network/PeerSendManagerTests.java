@@ -0,0 +1,351 @@
+package org.qortal.test.network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.qortal.data.network.PeerData;
+import org.qortal.network.Peer;
+import org.qortal.network.PeerAddress;
+import org.qortal.network.PeerSendManager;
+import org.qortal.network.PeerSendScheduler;
+import org.qortal.network.message.Message;
+import org.qortal.network.message.MessageType;
+import org.qortal.repository.DataException;
+import org.qortal.test.common.Common;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class PeerSendManagerTests extends Common {
+
+	private static final int CHUNK_SIZE = 512 * 1024;
+
+	/** Stands in for a QDN chunk, without needing data on disk */
+	private static class ChunkMessage extends Message {
+		public ChunkMessage(int id, byte[] data) {
+			super(id, MessageType.ARBITRARY_DATA_FILE);
+
+			this.dataBytes = data;
+			this.checksumBytes = Message.generateChecksum(data);
+		}
+	}
+
+	/** Peer connected via loopback socket, which writes messages straight to its socket. */
+	private static class LoopbackPeer extends Peer {
+		private final SocketChannel socketChannel;
+		private final List<Integer> sentMessageIds = Collections.synchronizedList(new ArrayList<>());
+
+		public LoopbackPeer(SocketChannel socketChannel) throws IOException {
+			super(new PeerData(PeerAddress.fromSocket(socketChannel.socket())), Peer.NETWORKDATA);
+			this.socketChannel = socketChannel;
+		}
+
+		@Override
+		public SocketChannel getSocketChannel() {
+			return this.socketChannel;
+		}
+
+		@Override
+		public boolean sendPreSerializedMessage(int messageId, MessageType messageType, byte[] serializedBytes, int timeout) throws IOException {
+			ByteBuffer byteBuffer = ByteBuffer.wrap(serializedBytes);
+
+			synchronized (this.socketChannel) {
+				while (byteBuffer.hasRemaining())
+					this.socketChannel.write(byteBuffer);
+			}
+
+			this.sentMessageIds.add(messageId);
+			return true;
+		}
+	}
+
+	/** Accepts loopback connections and discards, but counts, whatever they send. */
+	private static class LoopbackSink implements AutoCloseable {
+		private final ServerSocketChannel serverChannel;
+		private final Selector selector;
+		private final Thread thread;
+		private final AtomicLong bytesReceived = new AtomicLong();
+
+		public LoopbackSink() throws IOException {
+			this.serverChannel = ServerSocketChannel.open();
+			this.serverChannel.bind(new InetSocketAddress("127.0.0.1", 0), 1024);
+			this.selector = Selector.open();
+
+			this.thread = new Thread(this::run, "LoopbackSink");
+			this.thread.setDaemon(true);
+			this.thread.start();
+		}
+
+		public LoopbackPeer connect() throws IOException {
+			SocketChannel clientChannel = SocketChannel.open(this.serverChannel.getLocalAddress());
+
+			SocketChannel acceptedChannel = this.serverChannel.accept();
+			acceptedChannel.configureBlocking(false);
+
+			// Registration blocks while the selector is selecting
+			synchronized (this) {
+				this.selector.wakeup();
+				acceptedChannel.register(this.selector, SelectionKey.OP_READ);
+			}
+
+			return new LoopbackPeer(clientChannel);
+		}
+
+		public long getBytesReceived() {
+			return this.bytesReceived.get();
+		}
+
+		private void run() {
+			ByteBuffer byteBuffer = ByteBuffer.allocateDirect(256 * 1024);
+
+			try {
+				while (this.selector.isOpen()) {
+					this.selector.select(100L);
+
+					// Let connect() register new channels
+					synchronized (this) {
+					}
+
+					for (SelectionKey selectionKey : this.selector.selectedKeys()) {
+						byteBuffer.clear();
+						int bytesRead = ((SocketChannel) selectionKey.channel()).read(byteBuffer);
+
+						if (bytesRead > 0)
+							this.bytesReceived.addAndGet(bytesRead);
+						else if (bytesRead < 0)
+							selectionKey.cancel();
+					}
+
+					this.selector.selectedKeys().clear();
+				}
+			} catch (IOException | RuntimeException e) {
+				// Closed
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.selector.close();
+			this.serverChannel.close();
+
+			try {
+				this.thread.join(1000L);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private PeerSendScheduler scheduler;
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+
+		this.scheduler = new PeerSendScheduler(8, 4);
+	}
+
+	@After
+	public void afterTest() {
+		this.scheduler.shutdown();
+	}
+
+	@Test
+	public void testQueuedHashes() throws Exception {
+		final int chunkCount = 20;
+		byte[] chunk = new byte[CHUNK_SIZE];
+
+		try (LoopbackSink sink = new LoopbackSink()) {
+			LoopbackPeer peer = sink.connect();
+			PeerSendManager sendManager = new PeerSendManager(peer, true, this.scheduler);
+
+			CountDownLatch releaseLatch = new CountDownLatch(1);
+
+			for (int i = 0; i < chunkCount; ++i) {
+				final int id = i;
+				sendManager.queueMessageFactory(() -> {
+					awaitQuietly(releaseLatch);
+					return new ChunkMessage(id, chunk);
+				}, CHUNK_SIZE, "hash-" + i);
+			}
+
+			// Hashes are tracked until sent
+			assertTrue(sendManager.isHashQueued("hash-0"));
+			assertTrue(sendManager.isHashQueued("hash-" + (chunkCount - 1)));
+
+			releaseLatch.countDown();
+
+			assertTrue(waitFor(() -> peer.sentMessageIds.size() == chunkCount));
+			assertTrue(waitFor(() -> sendManager.getTrackedHashCount() == 0));
+			assertFalse(sendManager.isHashQueued("hash-0"));
+
+			final long expectedBytes = (long) chunkCount * new ChunkMessage(0, chunk).toBytes().length;
+			assertTrue(waitFor(() -> sink.getBytesReceived() == expectedBytes));
+
+			sendManager.shutdown();
+		}
+	}
+
+	@Test
+	public void testPriority() throws Exception {
+		try (LoopbackSink sink = new LoopbackSink()) {
+			LoopbackPeer peer = sink.connect();
+			// Blockchain peer, so only one disk I/O turn at a time
+			PeerSendManager sendManager = new PeerSendManager(peer, false, this.scheduler);
+
+			CountDownLatch loadingLatch = new CountDownLatch(1);
+			CountDownLatch releaseLatch = new CountDownLatch(1);
+
+			// First message holds up disk I/O while we queue the others
+			sendManager.queueMessageFactory(() -> {
+				loadingLatch.countDown();
+				awaitQuietly(releaseLatch);
+				return new ChunkMessage(1, new byte[16]);
+			}, 16);
+
+			assertTrue(loadingLatch.await(5, TimeUnit.SECONDS));
+
+			sendManager.queueMessageWithPriority(PeerSendManager.NO_PRIORITY, new ChunkMessage(2, new byte[16]), null);
+			sendManager.queueMessageWithPriority(PeerSendManager.MEDIUM_PRIORITY, new ChunkMessage(3, new byte[16]), null);
+			sendManager.queueMessageWithPriority(PeerSendManager.HIGH_PRIORITY, new ChunkMessage(4, new byte[16]), null);
+
+			releaseLatch.countDown();
+
+			assertTrue(waitFor(() -> peer.sentMessageIds.size() == 4));
+			assertEquals(List.of(1, 4, 3, 2), peer.sentMessageIds);
+
+			sendManager.shutdown();
+		}
+	}
+
+	@Test
+	public void testSharedThreads() throws Exception {
+		final int peerCount = 300;
+
+		// Serializing messages might start network threads
+		new ChunkMessage(1, new byte[16]).toBytes();
+		int threadsBefore = Thread.activeCount();
+
+		try (LoopbackSink sink = new LoopbackSink()) {
+			List<PeerSendManager> sendManagers = new ArrayList<>();
+			for (int i = 0; i < peerCount; ++i)
+				sendManagers.add(new PeerSendManager(sink.connect(), i % 2 == 0, this.scheduler));
+
+			for (PeerSendManager sendManager : sendManagers)
+				sendManager.queueMessage(new ChunkMessage(1, new byte[1024]));
+
+			assertTrue(waitFor(() -> sendManagers.stream().allMatch(sendManager -> ((LoopbackPeer) sendManager.getPeer()).sentMessageIds.size() == 1)));
+
+			// Only the sink's thread is new, as peers share scheduler's threads
+			assertTrue(Thread.activeCount() - threadsBefore <= 1);
+
+			for (PeerSendManager sendManager : sendManagers) {
+				sendManager.shutdown();
+				sendManager.getPeer().getSocketChannel().close();
+			}
+		}
+	}
+
+	@Test
+	public void testShutdown() throws Exception {
+		try (LoopbackSink sink = new LoopbackSink()) {
+			LoopbackPeer peer = sink.connect();
+			PeerSendManager sendManager = new PeerSendManager(peer, true, this.scheduler);
+
+			sendManager.shutdown();
+			sendManager.queueMessage(new ChunkMessage(1, new byte[16]), "hash");
+
+			Thread.sleep(200L);
+			assertTrue(peer.sentMessageIds.isEmpty());
+		}
+	}
+
+	@Ignore(value = "For informational use")
+	@Test
+	public void testLoopbackThroughput() throws Exception {
+		final int peerCount = 300;
+		final int chunksPerPeer = 20;
+		byte[] chunk = new byte[CHUNK_SIZE];
+
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		long memoryBefore = runtime.totalMemory() - runtime.freeMemory();
+		int threadsBefore = Thread.activeCount();
+
+		try (LoopbackSink sink = new LoopbackSink()) {
+			List<PeerSendManager> sendManagers = new ArrayList<>();
+			for (int i = 0; i < peerCount; ++i)
+				sendManagers.add(new PeerSendManager(sink.connect(), true, this.scheduler));
+
+			long startTime = System.nanoTime();
+
+			// Chunks are "loaded from disk" lazily, as with QDN
+			for (int c = 0; c < chunksPerPeer; ++c)
+				for (PeerSendManager sendManager : sendManagers) {
+					final int id = c;
+					sendManager.queueMessageFactory(() -> new ChunkMessage(id, chunk), CHUNK_SIZE);
+				}
+
+			long peakMemory = 0;
+			int peakThreads = 0;
+			while (!sendManagers.stream().allMatch(sendManager -> ((LoopbackPeer) sendManager.getPeer()).sentMessageIds.size() == chunksPerPeer)) {
+				peakMemory = Math.max(peakMemory, runtime.totalMemory() - runtime.freeMemory());
+				peakThreads = Math.max(peakThreads, Thread.activeCount());
+				Thread.sleep(10L);
+			}
+
+			long duration = System.nanoTime() - startTime;
+			long totalChunks = (long) peerCount * chunksPerPeer;
+
+			System.out.println(String.format("%d loopback peers: %d extra threads (peak), %d MB extra heap (peak), %d chunks in %d ms = %d chunks/s, %d MB/s",
+					peerCount, peakThreads - threadsBefore, (peakMemory - memoryBefore) / 1024 / 1024,
+					totalChunks, duration / 1_000_000L, totalChunks * 1_000_000_000L / duration,
+					sink.getBytesReceived() * 1_000_000_000L / duration / 1024 / 1024));
+
+			for (PeerSendManager sendManager : sendManagers) {
+				sendManager.shutdown();
+				sendManager.getPeer().getSocketChannel().close();
+			}
+		}
+	}
+
+	private interface Condition {
+		boolean isMet();
+	}
+
+	private static boolean waitFor(Condition condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000L;
+
+		while (!condition.isMet()) {
+			if (System.currentTimeMillis() > deadline)
+				return false;
+
+			Thread.sleep(10L);
+		}
+
+		return true;
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
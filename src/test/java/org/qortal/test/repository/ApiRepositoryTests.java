@@ -0,0 +1,230 @@
+package org.qortal.test.repository;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.qortal.controller.BlockMinter;
+import org.qortal.data.account.AccountData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryBusyException;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.repository.hsqldb.HSQLDBRepository;
+import org.qortal.settings.Settings;
+import org.qortal.test.common.AccountUtils;
+import org.qortal.test.common.Common;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class ApiRepositoryTests extends Common {
+
+	/** Deliberately expensive query, standing in for a heavy API search */
+	private static final String HEAVY_SQL = "SELECT COUNT(*) FROM TestNumbers AS a, TestNumbers AS b, TestNumbers AS c, TestNumbers AS d WHERE a.n < ?";
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@Test
+	public void testReadOnly() throws DataException, IllegalAccessException {
+		this.useApiPool(2, 1000L, 0);
+
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
+			assertEquals(1, repository.getBlockRepository().getBlockchainHeight());
+
+			try {
+				repository.getAccountRepository().ensureAccount(new AccountData(AccountUtils.createRandomAccount(repository).getAddress()));
+				fail("API repository sessions should be read-only");
+			} catch (DataException e) {
+				// Expected
+			}
+		}
+	}
+
+	@Test
+	public void testSaturation() throws DataException, IllegalAccessException {
+		this.useApiPool(2, 200L, 0);
+
+		Repository repository1 = RepositoryManager.getApiRepository();
+		Repository repository2 = RepositoryManager.getApiRepository();
+
+		long startTime = System.currentTimeMillis();
+		try {
+			RepositoryManager.getApiRepository().close();
+			fail("API repository sessions should be saturated");
+		} catch (RepositoryBusyException e) {
+			// Expected, after waiting
+			assertTrue(System.currentTimeMillis() - startTime >= 200L);
+		}
+
+		// Core sessions are unaffected
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			assertEquals(1, repository.getBlockRepository().getBlockchainHeight());
+		}
+
+		// Returning a session allows another
+		repository1.close();
+		try (final Repository repository = RepositoryManager.getApiRepository()) {
+			assertEquals(1, repository.getBlockRepository().getBlockchainHeight());
+		}
+
+		repository2.close();
+	}
+
+	@Test
+	public void testFailedCloseReleasesSession() throws DataException, IllegalAccessException {
+		this.useApiPool(1, 200L, 0);
+
+		Repository repository = RepositoryManager.getApiRepository();
+
+		// Returning connection to pool fails
+		Connection connection = (Connection) FieldUtils.readField(repository, "connection", true);
+		Connection failingConnection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+				(proxy, method, args) -> {
+					if (method.getName().equals("close")) {
+						connection.close();
+						throw new SQLException("Simulated close failure");
+					}
+
+					try {
+						return method.invoke(connection, args);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+				});
+		FieldUtils.writeField(repository, "connection", failingConnection, true);
+
+		try {
+			repository.close();
+			fail("Repository close should have failed");
+		} catch (DataException e) {
+			// Expected
+		}
+
+		// Session is still released, so another is available
+		try (final Repository otherRepository = RepositoryManager.getApiRepository()) {
+			assertEquals(1, otherRepository.getBlockRepository().getBlockchainHeight());
+		}
+	}
+
+	@Test
+	public void testQueryTimeout() throws DataException, IllegalAccessException, SQLException {
+		this.useApiPool(2, 1000L, 1);
+
+		try (final HSQLDBRepository repository = (HSQLDBRepository) RepositoryManager.getApiRepository()) {
+			long startTime = System.currentTimeMillis();
+
+			try (ResultSet resultSet = repository.checkedExecute(HEAVY_SQL, 100)) {
+				fail(String.format("Query should have timed out, but returned %d", resultSet.getLong(1)));
+			} catch (SQLTimeoutException e) {
+				// Expected
+				assertTrue(System.currentTimeMillis() - startTime < 10000L);
+			}
+
+			// Session is still usable
+			assertEquals(1, repository.getBlockRepository().getBlockchainHeight());
+		}
+	}
+
+	@Ignore(value = "For informational use")
+	@Test
+	public void testBlockProcessingUnderApiLoad() throws DataException, IllegalAccessException, InterruptedException {
+		final int readerCount = 16;
+		final int blockCount = 100;
+
+		// API readers sharing the main pool
+		this.useApiPool(0, 1000L, 0);
+		String sharedResults = this.mintUnderApiLoad(readerCount, blockCount);
+
+		// API readers with their own, smaller, pool
+		this.useApiPool(2, 1000L, 0);
+		String separateResults = this.mintUnderApiLoad(readerCount, blockCount);
+
+		System.out.println(String.format("%d API readers, shared pool: %s", readerCount, sharedResults));
+		System.out.println(String.format("%d API readers, separate pool: %s", readerCount, separateResults));
+	}
+
+	private String mintUnderApiLoad(int readerCount, int blockCount) throws DataException, InterruptedException {
+		AtomicBoolean isRunning = new AtomicBoolean(true);
+		AtomicLong queryCount = new AtomicLong();
+		AtomicLong rejectedCount = new AtomicLong();
+
+		ExecutorService readers = Executors.newFixedThreadPool(readerCount);
+		for (int i = 0; i < readerCount; ++i)
+			readers.execute(() -> {
+				while (isRunning.get()) {
+					try (final HSQLDBRepository repository = (HSQLDBRepository) RepositoryManager.getApiRepository()) {
+						try (ResultSet resultSet = repository.checkedExecute(HEAVY_SQL, 1)) {
+							if (resultSet != null)
+								queryCount.incrementAndGet();
+						}
+					} catch (RepositoryBusyException e) {
+						rejectedCount.incrementAndGet();
+					} catch (DataException | SQLException e) {
+						fail(e.getMessage());
+					}
+				}
+			});
+
+		List<Long> blockTimes = new ArrayList<>(blockCount);
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			for (int i = 0; i < blockCount; ++i) {
+				long startTime = System.nanoTime();
+				BlockMinter.mintTestingBlock(repository, Common.getTestAccount(repository, "alice-reward-share"));
+				blockTimes.add((System.nanoTime() - startTime) / 1000L);
+			}
+		} finally {
+			isRunning.set(false);
+			readers.shutdown();
+			readers.awaitTermination(1, TimeUnit.MINUTES);
+		}
+
+		Collections.sort(blockTimes);
+		long totalTime = blockTimes.stream().mapToLong(Long::longValue).sum();
+
+		return String.format("block processing mean %d us, p50 %d us, p95 %d us, max %d us; %d API queries, %d rejected",
+				totalTime / blockCount, blockTimes.get(blockCount / 2), blockTimes.get(blockCount * 95 / 100), blockTimes.get(blockCount - 1),
+				queryCount.get(), rejectedCount.get());
+	}
+
+	/** Recreates repository with API pool settings, as the pool is set up when the repository is opened. */
+	private void useApiPool(int poolSize, long queueTimeout, int queryTimeout) throws DataException, IllegalAccessException {
+		FieldUtils.writeField(Settings.getInstance(), "apiRepositoryConnectionPoolSize", poolSize, true);
+		FieldUtils.writeField(Settings.getInstance(), "apiRepositoryQueueTimeout", queueTimeout, true);
+		FieldUtils.writeField(Settings.getInstance(), "apiRepositoryQueryTimeout", queryTimeout, true);
+
+		Common.closeRepository();
+		Common.setRepository(true);
+		Common.resetBlockchain();
+
+		try (final HSQLDBRepository repository = (HSQLDBRepository) RepositoryManager.getRepository()) {
+			repository.prepareStatement("CREATE TABLE TestNumbers (n INT NOT NULL PRIMARY KEY)").execute();
+
+			for (int n = 0; n < 100; ++n)
+				repository.prepareStatement(String.format("INSERT INTO TestNumbers VALUES (%d)", n)).execute();
+
+			repository.saveChanges();
+		} catch (SQLException e) {
+			throw new DataException("Unable to create test table", e);
+		}
+	}
+
+}
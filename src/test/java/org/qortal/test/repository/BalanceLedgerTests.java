@@ -0,0 +1,199 @@
+package org.qortal.test.repository;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.account.Account;
+import org.qortal.account.PrivateKeyAccount;
+import org.qortal.asset.Asset;
+import org.qortal.block.Block;
+import org.qortal.controller.OnlineAccountsManager;
+import org.qortal.data.account.AccountBalanceData;
+import org.qortal.data.transaction.BaseTransactionData;
+import org.qortal.data.transaction.PaymentTransactionData;
+import org.qortal.data.transaction.TransactionData;
+import org.qortal.group.Group;
+import org.qortal.repository.AccountRepository;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.repository.hsqldb.HSQLDBRepository;
+import org.qortal.settings.Settings;
+import org.qortal.test.common.AccountUtils;
+import org.qortal.test.common.BlockArchiveUtils;
+import org.qortal.test.common.BlockUtils;
+import org.qortal.test.common.Common;
+import org.qortal.transaction.Transaction;
+import org.qortal.transform.TransformationException;
+import org.qortal.utils.NTP;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BalanceLedgerTests extends Common {
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useSettings("test-settings-v2-block-archive.json");
+		NTP.setFixedOffset(Settings.getInstance().getTestNtpOffset());
+		BlockArchiveUtils.deleteArchiveDirectory();
+	}
+
+	@After
+	public void afterTest() throws IllegalAccessException {
+		BlockArchiveUtils.deleteArchiveDirectory();
+		this.setBalanceLedger(true);
+	}
+
+	@Test
+	public void testPendingBalances() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			AccountRepository accountRepository = repository.getAccountRepository();
+			PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+			String newAddress = AccountUtils.createRandomAccount(repository).getAddress();
+
+			long aliceBalance = alice.getConfirmedBalance(Asset.QORT);
+
+			repository.setBalanceLedger(true);
+
+			// Reads see pending changes
+			accountRepository.modifyAssetBalance(alice.getAddress(), Asset.QORT, -1000L);
+			accountRepository.modifyAssetBalance(alice.getAddress(), Asset.QORT, 300L);
+			assertEquals(aliceBalance - 700L, alice.getConfirmedBalance(Asset.QORT));
+
+			// Reducing a balance that doesn't exist does nothing
+			accountRepository.modifyAssetBalance(newAddress, Asset.QORT, -500L);
+			assertNull(accountRepository.getBalance(newAddress, Asset.QORT));
+
+			// Increasing a balance creates account
+			accountRepository.modifyAssetBalance(newAddress, Asset.QORT, 500L);
+			assertNotNull(accountRepository.getAccount(newAddress));
+
+			// Queries that use AccountBalances see pending changes
+			List<AccountBalanceData> balances = accountRepository.getBalances(List.of(newAddress), Asset.QORT);
+			assertEquals(1, balances.size());
+			assertEquals(500L, balances.get(0).getBalance());
+
+			// Zero balances are kept
+			accountRepository.modifyAssetBalance(newAddress, Asset.QORT, -500L);
+
+			repository.setBalanceLedger(false);
+
+			assertEquals(aliceBalance - 700L, alice.getConfirmedBalance(Asset.QORT));
+			assertEquals(0L, accountRepository.getBalance(newAddress, Asset.QORT).getBalance());
+		}
+	}
+
+	@Test
+	public void testDiscardedBalances() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			Account alice = Common.getTestAccount(repository, "alice");
+			long aliceBalance = alice.getConfirmedBalance(Asset.QORT);
+
+			repository.setBalanceLedger(true);
+			alice.modifyAssetBalance(Asset.QORT, -1000L);
+			repository.discardChanges();
+
+			assertEquals(aliceBalance, alice.getConfirmedBalance(Asset.QORT));
+
+			repository.setBalanceLedger(false);
+			assertEquals(aliceBalance, alice.getConfirmedBalance(Asset.QORT));
+		}
+	}
+
+	@Test
+	public void testBrieflyNegativeBalanceRejected() throws DataException, IllegalAccessException {
+		for (boolean useBalanceLedger : new boolean[] { false, true }) {
+			this.setBalanceLedger(useBalanceLedger);
+
+			try (final Repository repository = RepositoryManager.getRepository()) {
+				PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+				PrivateKeyAccount bob = Common.getTestAccount(repository, "bob");
+				PrivateKeyAccount mintingAccount = Common.getTestAccount(repository, "alice-reward-share");
+
+				long bobBalance = bob.getConfirmedBalance(Asset.QORT);
+				final int height = repository.getBlockRepository().getBlockchainHeight();
+
+				OnlineAccountsManager.getInstance().ensureTestingAccountsOnline(mintingAccount);
+				Block block = Block.mint(repository, repository.getBlockRepository().getLastBlock(), mintingAccount);
+				long timestamp = block.getBlockData().getTimestamp() - 1000L;
+
+				// Bob pays more than he has, then is paid back by Alice, so his balance is only negative in between
+				block.addTransaction(signedPayment(repository, bob, alice.getAddress(), bobBalance + 1L, timestamp));
+				block.addTransaction(signedPayment(repository, alice, bob.getAddress(), bobBalance * 2, timestamp + 1));
+				block.sign();
+
+				try {
+					block.process();
+					fail(String.format("Block with briefly negative balance should fail to process, %s balance ledger",
+							useBalanceLedger ? "with" : "without"));
+				} catch (DataException e) {
+					// Expected
+				}
+
+				repository.discardChanges();
+
+				assertEquals(height, repository.getBlockRepository().getBlockchainHeight());
+				assertEquals(bobBalance, bob.getConfirmedBalance(Asset.QORT));
+			}
+		}
+	}
+
+	@Test
+	public void testReplayArchivedBlocks() throws DataException, InterruptedException, TransformationException, IOException,
+			IllegalAccessException, NoSuchAlgorithmException, SQLException {
+		try (final HSQLDBRepository repository = (HSQLDBRepository) RepositoryManager.getRepository()) {
+			BlockArchiveUtils.mintBlocks(repository, 100);
+
+			final int height = repository.getBlockRepository().getBlockchainHeight();
+			BlockArchiveUtils.archiveBlocks(repository, height);
+
+			// Test blocks aren't minted with real online accounts nonces, so skip their validation
+			FieldUtils.writeField(Settings.getInstance(), "singleNodeTestnet", true, true);
+
+			// Orphan and replay archived blocks without ledger
+			this.setBalanceLedger(false);
+			BlockUtils.orphanToBlock(repository, 1);
+			String orphanedStateHash = BlockArchiveUtils.stateHash(repository);
+			long unledgeredTime = BlockArchiveUtils.replayArchivedBlocks(repository, height);
+			String processedStateHash = BlockArchiveUtils.stateHash(repository);
+
+			// Orphan and replay them again with ledger
+			this.setBalanceLedger(true);
+			BlockUtils.orphanToBlock(repository, 1);
+			assertEquals(orphanedStateHash, BlockArchiveUtils.stateHash(repository));
+			long ledgeredTime = BlockArchiveUtils.replayArchivedBlocks(repository, height);
+			assertEquals(processedStateHash, BlockArchiveUtils.stateHash(repository));
+
+			assertEquals(height, repository.getBlockRepository().getBlockchainHeight());
+
+			System.out.println(String.format("Processing %d blocks: %d ms without balance ledger, %d ms with balance ledger",
+					height - 1, unledgeredTime / 1000000L, ledgeredTime / 1000000L));
+		}
+	}
+
+	private static TransactionData signedPayment(Repository repository, PrivateKeyAccount sender, String recipient, long amount, long timestamp) throws DataException {
+		BaseTransactionData baseTransactionData = new BaseTransactionData(timestamp, Group.NO_GROUP, sender.getLastReference(), sender.getPublicKey(), 0L, null);
+		TransactionData transactionData = new PaymentTransactionData(baseTransactionData, recipient, amount);
+
+		Transaction transaction = Transaction.fromData(repository, transactionData);
+		transaction.sign(sender);
+		transaction.setInitialApprovalStatus();
+
+		// Save as unconfirmed, bypassing validation
+		repository.getTransactionRepository().save(transactionData);
+		repository.getTransactionRepository().unconfirmTransaction(transactionData);
+
+		return transactionData;
+	}
+
+	private void setBalanceLedger(boolean enabled) throws IllegalAccessException {
+		FieldUtils.writeField(Settings.getInstance(), "blockBalanceLedgerEnabled", enabled, true);
+	}
+
+}
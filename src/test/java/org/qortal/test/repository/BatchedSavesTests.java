@@ -0,0 +1,98 @@
+package org.qortal.test.repository;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.qortal.repository.DataException;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.repository.hsqldb.HSQLDBRepository;
+import org.qortal.settings.Settings;
+import org.qortal.test.common.BlockArchiveUtils;
+import org.qortal.test.common.BlockUtils;
+import org.qortal.test.common.Common;
+import org.qortal.transform.TransformationException;
+import org.qortal.utils.NTP;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+
+import static org.junit.Assert.*;
+
+public class BatchedSavesTests extends Common {
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useSettings("test-settings-v2-block-archive.json");
+		NTP.setFixedOffset(Settings.getInstance().getTestNtpOffset());
+		BlockArchiveUtils.deleteArchiveDirectory();
+	}
+
+	@After
+	public void afterTest() throws DataException, IllegalAccessException {
+		BlockArchiveUtils.deleteArchiveDirectory();
+		this.setBatching(true);
+	}
+
+	@Test
+	public void testReplayArchivedBlocks() throws DataException, InterruptedException, TransformationException, IOException,
+			IllegalAccessException, NoSuchAlgorithmException, SQLException {
+		this.orphanAndReplayArchivedBlocks(false);
+	}
+
+	@Ignore(value = "For informational use")
+	@Test
+	public void testReplayArchivedBlocksTimings() throws DataException, InterruptedException, TransformationException, IOException,
+			IllegalAccessException, NoSuchAlgorithmException, SQLException {
+		this.orphanAndReplayArchivedBlocks(true);
+	}
+
+	private void orphanAndReplayArchivedBlocks(boolean showTimings) throws DataException, InterruptedException, TransformationException, IOException,
+			IllegalAccessException, NoSuchAlgorithmException, SQLException {
+		try (final HSQLDBRepository repository = (HSQLDBRepository) RepositoryManager.getRepository()) {
+			BlockArchiveUtils.mintBlocks(repository, 100);
+
+			final int height = repository.getBlockRepository().getBlockchainHeight();
+			BlockArchiveUtils.archiveBlocks(repository, height);
+
+			// Test blocks aren't minted with real online accounts nonces, so skip their validation
+			FieldUtils.writeField(Settings.getInstance(), "singleNodeTestnet", true, true);
+
+			// Orphan and replay archived blocks without batching
+			this.setBatching(false);
+			long startTime = System.nanoTime();
+			BlockUtils.orphanToBlock(repository, 1);
+			long unbatchedOrphanTime = System.nanoTime() - startTime;
+			String unbatchedOrphanedStateHash = BlockArchiveUtils.stateHash(repository);
+			long unbatchedTime = BlockArchiveUtils.replayArchivedBlocks(repository, height);
+			String unbatchedStateHash = BlockArchiveUtils.stateHash(repository);
+
+			// Do it all again with batching
+			this.setBatching(true);
+			startTime = System.nanoTime();
+			BlockUtils.orphanToBlock(repository, 1);
+			long batchedOrphanTime = System.nanoTime() - startTime;
+			String batchedOrphanedStateHash = BlockArchiveUtils.stateHash(repository);
+			long batchedTime = BlockArchiveUtils.replayArchivedBlocks(repository, height);
+			String batchedStateHash = BlockArchiveUtils.stateHash(repository);
+
+			assertEquals(height, repository.getBlockRepository().getBlockchainHeight());
+			assertEquals(unbatchedOrphanedStateHash, batchedOrphanedStateHash);
+			assertEquals(unbatchedStateHash, batchedStateHash);
+
+			if (showTimings) {
+				System.out.println(String.format("Orphaning %d blocks: %d ms without batching, %d ms with batching",
+						height - 1, unbatchedOrphanTime / 1000000L, batchedOrphanTime / 1000000L));
+				System.out.println(String.format("Processing %d blocks: %d ms without batching, %d ms with batching",
+						height - 1, unbatchedTime / 1000000L, batchedTime / 1000000L));
+			}
+		}
+	}
+
+	private void setBatching(boolean enabled) throws IllegalAccessException {
+		FieldUtils.writeField(Settings.getInstance(), "blockSaveBatchingEnabled", enabled, true);
+	}
+
+}
@@ -0,0 +1,182 @@
+package org.qortal.test.repository;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.controller.Synchronizer;
+import org.qortal.data.account.AccountData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.repository.hsqldb.HSQLDBMaintenanceScheduler;
+import org.qortal.repository.hsqldb.HSQLDBRepository;
+import org.qortal.test.common.Common;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class MaintenanceSchedulerTests extends Common {
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@After
+	public void afterTest() throws IllegalAccessException {
+		this.setSynchronizing(false);
+	}
+
+	@Test
+	public void testMaintenance() throws DataException, TimeoutException {
+		HSQLDBMaintenanceScheduler scheduler = HSQLDBMaintenanceScheduler.getInstance();
+		long writerAcquisitions = scheduler.getStats().writerAcquisitions;
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			repository.performPeriodicMaintenance(10000L);
+		}
+
+		HSQLDBMaintenanceScheduler.MaintenanceStats stats = scheduler.getStats();
+		HSQLDBMaintenanceScheduler.MaintenanceProgress progress = stats.maintenance;
+		assertNotNull(progress);
+		assertFalse(progress.running);
+		assertNull(progress.error);
+		assertNotNull(progress.completedTimestamp);
+		assertNotNull(stats.lastCheckpointTimestamp);
+
+		// Checkpoint, each table, then checkpoint again
+		assertTrue(progress.totalSteps > 2);
+		assertEquals(progress.totalSteps, progress.stepsCompleted);
+		assertEquals(writerAcquisitions + progress.totalSteps, stats.writerAcquisitions);
+
+		// Repository still usable
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			assertEquals(1, repository.getBlockRepository().getBlockchainHeight());
+		}
+	}
+
+	@Test
+	public void testDeferredWhileSynchronizing() throws DataException, IllegalAccessException {
+		HSQLDBMaintenanceScheduler scheduler = HSQLDBMaintenanceScheduler.getInstance();
+		long deferredSynchronizing = scheduler.getStats().deferredSynchronizing;
+		long writerTimeouts = scheduler.getStats().writerTimeouts;
+
+		this.setSynchronizing(true);
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			repository.performPeriodicMaintenance(500L);
+			fail("Maintenance shouldn't happen while synchronizing");
+		} catch (TimeoutException e) {
+			// Expected
+		}
+
+		HSQLDBMaintenanceScheduler.MaintenanceStats stats = scheduler.getStats();
+		assertTrue(stats.deferredSynchronizing > deferredSynchronizing);
+		assertEquals(writerTimeouts + 1, stats.writerTimeouts);
+		assertFalse(stats.maintenance.running);
+		assertEquals(0, stats.maintenance.stepsCompleted);
+		assertNotNull(stats.maintenance.error);
+	}
+
+	@Test
+	public void testConcurrentWriters() throws DataException, TimeoutException, InterruptedException {
+		final int writerCount = 8;
+
+		HSQLDBMaintenanceScheduler scheduler = HSQLDBMaintenanceScheduler.getInstance();
+
+		AtomicBoolean isRunning = new AtomicBoolean(true);
+		AtomicLongArray writeCounts = new AtomicLongArray(writerCount);
+		AtomicReference<Throwable> writerError = new AtomicReference<>();
+
+		// Writers keep transactions open across statements, so there's almost always one in progress
+		ExecutorService writers = Executors.newFixedThreadPool(writerCount);
+		for (int w = 0; w < writerCount; ++w) {
+			final int writer = w;
+
+			writers.execute(() -> {
+				Random random = new Random(writer);
+				int n = 0;
+
+				try {
+					while (isRunning.get()) {
+						try (final Repository repository = RepositoryManager.getRepository()) {
+							repository.getAccountRepository().ensureAccount(new AccountData(String.format("test-%d-%d", writer, n++)));
+							Thread.sleep(random.nextInt(20));
+							repository.getAccountRepository().ensureAccount(new AccountData(String.format("test-%d-%d", writer, n++)));
+							repository.saveChanges();
+						}
+
+						writeCounts.incrementAndGet(writer);
+					}
+				} catch (Throwable t) {
+					writerError.compareAndSet(null, t);
+				}
+			});
+		}
+
+		try {
+			// Let writers get going
+			Thread.sleep(500L);
+
+			long[] countsBefore = new long[writerCount];
+			for (int w = 0; w < writerCount; ++w)
+				countsBefore[w] = writeCounts.get(w);
+
+			long drains = scheduler.getStats().drains;
+
+			// Maintenance gets its turn, despite writers...
+			try (final Repository repository = RepositoryManager.getRepository()) {
+				repository.performPeriodicMaintenance(30000L);
+				repository.backup(true, "backup", 30000L);
+			}
+
+			// ...because it held back new transactions while writers finished theirs
+			HSQLDBMaintenanceScheduler.MaintenanceStats stats = scheduler.getStats();
+			assertTrue(stats.drains > drains);
+			assertNull(stats.maintenance.error);
+			assertEquals(stats.maintenance.totalSteps, stats.maintenance.stepsCompleted);
+
+			// ...and writers weren't starved either
+			for (int w = 0; w < writerCount; ++w)
+				assertTrue(String.format("writer %d starved", w), writeCounts.get(w) > countsBefore[w]);
+
+			// New transactions are only held back briefly
+			assertTrue(String.format("queries waited up to %d us", stats.maxReaderWaitTime), stats.maxReaderWaitTime < 5_000_000L);
+		} finally {
+			isRunning.set(false);
+			writers.shutdown();
+		}
+
+		// No deadlock
+		assertTrue("writers didn't finish", writers.awaitTermination(30, TimeUnit.SECONDS));
+		assertNull(writerError.get());
+
+		// All writes saved
+		long totalWrites = 0;
+		for (int w = 0; w < writerCount; ++w)
+			totalWrites += writeCounts.get(w) * 2;
+
+		try (final HSQLDBRepository repository = (HSQLDBRepository) RepositoryManager.getRepository();
+				ResultSet resultSet = repository.checkedExecute("SELECT COUNT(*) FROM Accounts WHERE account LIKE 'test-%'")) {
+			assertEquals(totalWrites, resultSet.getLong(1));
+		} catch (SQLException e) {
+			throw new DataException("Unable to count test writes", e);
+		}
+	}
+
+	private void setSynchronizing(boolean isSynchronizing) throws IllegalAccessException {
+		FieldUtils.writeField(Synchronizer.getInstance(), "isSynchronizing", isSynchronizing, true);
+	}
+
+}
@@ -0,0 +1,178 @@
+package org.qortal.test.repository;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.qortal.controller.BlockMinter;
+import org.qortal.repository.DataException;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.repository.hsqldb.HSQLDBQueryProfiler;
+import org.qortal.repository.hsqldb.HSQLDBRepository;
+import org.qortal.settings.Settings;
+import org.qortal.test.common.Common;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class QueryProfilerTests extends Common {
+
+	private static final String BALANCE_SQL = "SELECT balance FROM AccountBalances WHERE account = ? AND asset_id = ?";
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+		HSQLDBQueryProfiler.getInstance().reset();
+	}
+
+	@After
+	public void afterTest() throws IllegalAccessException {
+		this.setProfiling(false);
+		HSQLDBQueryProfiler.getInstance().reset();
+	}
+
+	@Test
+	public void testPercentiles() {
+		HSQLDBQueryProfiler profiler = HSQLDBQueryProfiler.getInstance();
+
+		// 1 to 1000 microseconds
+		for (long micros = 1; micros <= 1000; ++micros)
+			profiler.record("test", micros * 1000L, micros == 1000 ? 5000L : 0, 2);
+
+		List<HSQLDBQueryProfiler.QueryStats> queryStats = profiler.getStats();
+		assertEquals(1, queryStats.size());
+
+		HSQLDBQueryProfiler.QueryStats stats = queryStats.get(0);
+		assertEquals("test", stats.sql);
+		assertEquals(1000, stats.calls);
+		assertEquals(500500, stats.totalTime);
+		assertEquals(500, stats.meanTime);
+		assertEquals(2000, stats.rows);
+		assertEquals(1000, stats.maxTime);
+		assertEquals(5, stats.gateWaitTime);
+		assertEquals(5, stats.maxGateWaitTime);
+
+		// Percentiles are accurate to within 12.5%, and never understated
+		assertPercentile(500, stats.p50Time);
+		assertPercentile(900, stats.p90Time);
+		assertPercentile(990, stats.p99Time);
+	}
+
+	@Test
+	public void testReset() {
+		HSQLDBQueryProfiler profiler = HSQLDBQueryProfiler.getInstance();
+
+		profiler.record("test", 1000L, 0, 1);
+		assertEquals(1, profiler.getStats().size());
+
+		profiler.reset();
+		assertTrue(profiler.getStats().isEmpty());
+	}
+
+	@Test
+	public void testDisabled() throws DataException, SQLException {
+		try (final HSQLDBRepository repository = (HSQLDBRepository) RepositoryManager.getRepository()) {
+			try (ResultSet resultSet = repository.checkedExecute("SELECT account FROM Accounts")) {
+				assertNotNull(resultSet);
+			}
+		}
+
+		assertTrue(HSQLDBQueryProfiler.getInstance().getStats().isEmpty());
+	}
+
+	@Test
+	public void testQueries() throws DataException, SQLException, IllegalAccessException {
+		this.setProfiling(true);
+
+		try (final HSQLDBRepository repository = (HSQLDBRepository) RepositoryManager.getRepository()) {
+			final String sql = "SELECT account FROM Accounts";
+
+			long expectedRows;
+			try (ResultSet resultSet = repository.checkedExecute("SELECT COUNT(*) FROM Accounts")) {
+				expectedRows = resultSet.getLong(1);
+			}
+			assertTrue(expectedRows > 1);
+
+			// Rows are counted as they're read, so read all of them, then only the first
+			for (int i = 0; i < 2; ++i)
+				try (ResultSet resultSet = repository.checkedExecute(sql)) {
+					assertNotNull(resultSet);
+					while (resultSet.next()) {
+						// Just counting
+					}
+				}
+
+			try (ResultSet resultSet = repository.checkedExecute(sql)) {
+				assertNotNull(resultSet);
+			}
+
+			HSQLDBQueryProfiler.QueryStats stats = findStats(sql);
+			assertNotNull(stats);
+			assertEquals(3, stats.calls);
+			assertEquals(2 * expectedRows + 1, stats.rows);
+
+			// Writes, whether saved directly or batched during block processing
+			BlockMinter.mintTestingBlock(repository, Common.getTestAccount(repository, "alice-reward-share"));
+
+			stats = HSQLDBQueryProfiler.getInstance().getStats().stream()
+					.filter(queryStats -> queryStats.sql.startsWith("INSERT INTO Blocks "))
+					.findFirst()
+					.orElse(null);
+			assertNotNull(stats);
+			assertEquals(1, stats.calls);
+			assertTrue(stats.rows >= 1);
+		}
+	}
+
+	@Ignore(value = "For informational use")
+	@Test
+	public void testOverhead() throws DataException, SQLException, IllegalAccessException {
+		final int queryCount = 200000;
+
+		for (int round = 0; round < 3; ++round) {
+			this.setProfiling(false);
+			long disabledTime = runQueries(queryCount);
+
+			this.setProfiling(true);
+			long enabledTime = runQueries(queryCount);
+
+			System.out.println(String.format("%d queries: %d ms without profiling, %d ms with profiling (%.1f%% overhead)",
+					queryCount, disabledTime / 1000000L, enabledTime / 1000000L, (enabledTime - disabledTime) * 100.0 / disabledTime));
+		}
+	}
+
+	private static long runQueries(int queryCount) throws DataException, SQLException {
+		try (final HSQLDBRepository repository = (HSQLDBRepository) RepositoryManager.getRepository()) {
+			String address = Common.getTestAccount(repository, "alice").getAddress();
+
+			long startTime = System.nanoTime();
+
+			for (int i = 0; i < queryCount; ++i)
+				try (ResultSet resultSet = repository.checkedExecute(BALANCE_SQL, address, 0L)) {
+					assertNotNull(resultSet);
+				}
+
+			return System.nanoTime() - startTime;
+		}
+	}
+
+	private static HSQLDBQueryProfiler.QueryStats findStats(String sql) {
+		return HSQLDBQueryProfiler.getInstance().getStats().stream()
+				.filter(queryStats -> queryStats.sql.equals(sql))
+				.findFirst()
+				.orElse(null);
+	}
+
+	private static void assertPercentile(long expected, long actual) {
+		assertTrue(String.format("expected about %d, was %d", expected, actual), actual >= expected && actual <= expected * 1.125);
+	}
+
+	private void setProfiling(boolean enabled) throws IllegalAccessException {
+		FieldUtils.writeField(Settings.getInstance(), "repositoryProfilingEnabled", enabled, true);
+	}
+
+}
@@ -0,0 +1,67 @@
+package org.qortal.test.repository;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.repository.DataException;
+import org.qortal.repository.ReindexManager;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.repository.hsqldb.HSQLDBRepository;
+import org.qortal.settings.Settings;
+import org.qortal.test.common.BlockArchiveUtils;
+import org.qortal.test.common.Common;
+import org.qortal.transform.TransformationException;
+import org.qortal.utils.NTP;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+
+import static org.junit.Assert.*;
+
+public class ReindexTests extends Common {
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useSettings("test-settings-v2-block-archive.json");
+		NTP.setFixedOffset(Settings.getInstance().getTestNtpOffset());
+		BlockArchiveUtils.deleteArchiveDirectory();
+	}
+
+	@After
+	public void afterTest() throws DataException {
+		BlockArchiveUtils.deleteArchiveDirectory();
+	}
+
+	@Test
+	public void testReindex() throws DataException, InterruptedException, TransformationException, IOException,
+			IllegalAccessException, NoSuchAlgorithmException, SQLException {
+		final int height;
+		final String expectedStateHash;
+
+		try (final HSQLDBRepository repository = (HSQLDBRepository) RepositoryManager.getRepository()) {
+			BlockArchiveUtils.mintBlocks(repository, 500);
+
+			height = repository.getBlockRepository().getBlockchainHeight();
+			expectedStateHash = BlockArchiveUtils.stateHash(repository);
+
+			BlockArchiveUtils.archiveBlocks(repository, height);
+		}
+
+		// Test blocks aren't minted with real online accounts nonces, so skip their validation
+		FieldUtils.writeField(Settings.getInstance(), "singleNodeTestnet", true, true);
+
+		long startTime = System.nanoTime();
+		new ReindexManager().reindex();
+		long reindexTime = System.nanoTime() - startTime;
+
+		try (final HSQLDBRepository repository = (HSQLDBRepository) RepositoryManager.getRepository()) {
+			assertEquals(height, repository.getBlockRepository().getBlockchainHeight());
+			assertEquals(expectedStateHash, BlockArchiveUtils.stateHash(repository));
+		}
+
+		System.out.println(String.format("Reindexing %d blocks took %d ms", height - 1, reindexTime / 1000000L));
+	}
+
+}
@@ -3,28 +3,36 @@ package org.qortal.test.serialization;
 import com.google.common.hash.HashCode;
 import io.druid.extendedset.intset.ConciseSet;
 import org.junit.Before;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.qortal.account.PrivateKeyAccount;
+import org.qortal.block.Block;
 import org.qortal.data.transaction.TransactionData;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
 import org.qortal.repository.RepositoryManager;
+import org.qortal.test.common.BlockUtils;
 import org.qortal.test.common.Common;
 import org.qortal.test.common.TransactionUtils;
 import org.qortal.transaction.Transaction;
 import org.qortal.transform.TransformationException;
+import org.qortal.transform.block.BlockTransformation;
+import org.qortal.transform.block.BlockTransformer;
 import org.qortal.transform.transaction.TransactionTransformer;
 import org.qortal.utils.Base58;
 import org.qortal.utils.Serialization;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.math.BigDecimal;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class SerializationTests extends Common {
 
@@ -77,6 +85,182 @@ public class SerializationTests extends Common {
 		}
 	}
 
+	@Test
+	public void testTransactionByteBuffers() throws DataException, TransformationException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount signingAccount = Common.getTestAccount(repository, "alice");
+
+			for (Transaction.TransactionType txType : Transaction.TransactionType.values()) {
+				switch (txType) {
+					case GENESIS:
+					case ACCOUNT_FLAGS:
+					case PUBLICIZE:
+					case AIRDROP:
+					case ENABLE_FORGING:
+						continue;
+
+					default:
+						// fall-through
+				}
+
+				TransactionData transactionData = TransactionUtils.randomTransaction(repository, signingAccount, txType, true);
+				Transaction transaction = Transaction.fromData(repository, transactionData);
+				transaction.sign(signingAccount);
+
+				// Freshly serialized
+				transactionData.setSerializedBytes(null);
+				byte[] serializedTransaction = TransactionTransformer.toBytes(transactionData);
+				final int length = TransactionTransformer.getDataLength(transactionData);
+				assertEquals(String.format("Serialized %s transaction length differs from declared length", txType.name()), length, serializedTransaction.length);
+
+				// Cached copy
+				byte[] cachedTransaction = TransactionTransformer.toBytes(transactionData);
+				assertNotSame(serializedTransaction, cachedTransaction);
+				assertArrayEquals(String.format("Cached %s transaction bytes differ", txType.name()), serializedTransaction, cachedTransaction);
+
+				// Modifying returned bytes doesn't affect cache
+				cachedTransaction[0] ^= (byte) 0xff;
+				assertArrayEquals(serializedTransaction, TransactionTransformer.toBytes(transactionData));
+
+				// Caller-supplied buffer, part-way through
+				ByteBuffer byteBuffer = ByteBuffer.allocate(10 + length);
+				byteBuffer.position(10);
+				TransactionTransformer.toBytes(transactionData, byteBuffer);
+				assertFalse(byteBuffer.hasRemaining());
+				assertArrayEquals(String.format("Buffered %s transaction bytes differ", txType.name()), serializedTransaction, Arrays.copyOfRange(byteBuffer.array(), 10, byteBuffer.capacity()));
+
+				// Buffer too short
+				try {
+					TransactionTransformer.toBytes(transactionData, ByteBuffer.allocate(length - 1));
+					fail(String.format("Serializing %s transaction into short buffer should fail", txType.name()));
+				} catch (TransformationException e) {
+					// Expected
+				}
+
+				// Changing a serialized property discards cached bytes
+				final long fee = transactionData.getFee();
+				transactionData.setFee(fee + 1);
+				assertFalse(Arrays.equals(serializedTransaction, TransactionTransformer.toBytes(transactionData)));
+				transactionData.setFee(fee);
+				assertArrayEquals(serializedTransaction, TransactionTransformer.toBytes(transactionData));
+
+				// Signing bytes are unaffected by caching
+				byte[] signingBytes = TransactionTransformer.toBytesForSigning(transactionData);
+				transactionData.setSerializedBytes(null);
+				assertArrayEquals(signingBytes, TransactionTransformer.toBytesForSigning(transactionData));
+			}
+		}
+	}
+
+	@Test
+	public void testBlockByteBuffers() throws DataException, TransformationException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount signingAccount = Common.getTestAccount(repository, "alice");
+
+			for (Transaction.TransactionType txType : new Transaction.TransactionType[] { Transaction.TransactionType.PAYMENT,
+					Transaction.TransactionType.TRANSFER_ASSET, Transaction.TransactionType.REGISTER_NAME }) {
+				TransactionData transactionData = TransactionUtils.randomTransaction(repository, signingAccount, txType, true);
+				TransactionUtils.signAndImportValid(repository, transactionData, signingAccount);
+			}
+
+			BlockUtils.mintBlock(repository);
+
+			Block block = new Block(repository, repository.getBlockRepository().getLastBlock());
+			assertEquals(3, block.getBlockData().getTransactionCount());
+
+			// V1
+			byte[] bytes = BlockTransformer.toBytes(block);
+			assertEquals(BlockTransformer.getDataLength(block), bytes.length);
+
+			ByteBuffer byteBuffer = ByteBuffer.allocate(bytes.length);
+			BlockTransformer.toBytes(block, byteBuffer);
+			assertArrayEquals(bytes, byteBuffer.array());
+
+			BlockTransformation blockTransformation = BlockTransformer.fromBytes(bytes);
+			BlockUtils.assertEqual(block.getBlockData(), blockTransformation.getBlockData());
+			assertBlockTransactions(block, blockTransformation);
+
+			// V2
+			bytes = BlockTransformer.toBytesV2(block);
+			assertEquals(BlockTransformer.getDataLengthV2(block), bytes.length);
+
+			byteBuffer = ByteBuffer.allocate(bytes.length);
+			BlockTransformer.toBytesV2(block, byteBuffer);
+			assertArrayEquals(bytes, byteBuffer.array());
+
+			blockTransformation = BlockTransformer.fromByteBufferV2(ByteBuffer.wrap(bytes));
+			BlockUtils.assertEqual(block.getBlockData(), blockTransformation.getBlockData());
+			assertBlockTransactions(block, blockTransformation);
+
+			// Same bytes from freshly loaded block, with nothing cached
+			Block reloadedBlock = new Block(repository, repository.getBlockRepository().getLastBlock());
+			assertArrayEquals(bytes, BlockTransformer.toBytesV2(reloadedBlock));
+		}
+	}
+
+	@Ignore(value = "For informational use")
+	@Test
+	public void testBlockAllocations() throws DataException, TransformationException {
+		// Spread across accounts to stay within unconfirmed transactions limit
+		final String[] accountNames = { "alice", "bob", "chloe", "dilbert" };
+		final int transactionsPerAccount = 20;
+		final int rounds = 1000;
+
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		final long threadId = Thread.currentThread().getId();
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			for (String accountName : accountNames) {
+				PrivateKeyAccount signingAccount = Common.getTestAccount(repository, accountName);
+
+				for (int i = 0; i < transactionsPerAccount; ++i) {
+					TransactionData transactionData = TransactionUtils.randomTransaction(repository, signingAccount, Transaction.TransactionType.PAYMENT, true);
+					TransactionUtils.signAndImportValid(repository, transactionData, signingAccount);
+				}
+			}
+
+			BlockUtils.mintBlock(repository);
+
+			Block block = new Block(repository, repository.getBlockRepository().getLastBlock());
+			List<TransactionData> transactions = new ArrayList<>();
+			for (Transaction transaction : block.getTransactions())
+				transactions.add(transaction.getTransactionData());
+
+			final int blockLength = BlockTransformer.toBytesV2(block).length;
+
+			for (int pass = 0; pass < 3; ++pass) {
+				// Transactions serialized from scratch each time
+				long startAllocated = threadMXBean.getThreadAllocatedBytes(threadId);
+				for (int r = 0; r < rounds; ++r) {
+					for (TransactionData transactionData : transactions)
+						transactionData.setSerializedBytes(null);
+
+					BlockTransformer.toBytesV2(block);
+				}
+				long uncachedAllocated = (threadMXBean.getThreadAllocatedBytes(threadId) - startAllocated) / rounds;
+
+				// Transactions' cached bytes reused
+				startAllocated = threadMXBean.getThreadAllocatedBytes(threadId);
+				for (int r = 0; r < rounds; ++r)
+					BlockTransformer.toBytesV2(block);
+				long cachedAllocated = (threadMXBean.getThreadAllocatedBytes(threadId) - startAllocated) / rounds;
+
+				System.out.println(String.format("%d-byte block with %d transactions: %d bytes allocated per serialization, %d bytes with cached transactions",
+						blockLength, transactions.size(), uncachedAllocated, cachedAllocated));
+			}
+		}
+	}
+
+	private static void assertBlockTransactions(Block block, BlockTransformation blockTransformation) throws DataException, TransformationException {
+		List<Transaction> transactions = block.getTransactions();
+		List<TransactionData> deserializedTransactions = blockTransformation.getTransactions();
+		assertEquals(transactions.size(), deserializedTransactions.size());
+
+		for (int i = 0; i < transactions.size(); ++i)
+			assertArrayEquals(TransactionTransformer.toBytes(transactions.get(i).getTransactionData()),
+					TransactionTransformer.toBytes(deserializedTransactions.get(i)));
+	}
+
 	@Test
 	public void testAccountBitMap() {
 		Random random = new Random();
@@ -0,0 +1,239 @@
+package org.qortal.test.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.qortal.utils.SevenZ;
+import org.qortal.utils.SplitXZ;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class SplitXZTests {
+
+    private Path tempDir;
+
+    @Before
+    public void beforeTest() throws IOException {
+        this.tempDir = Files.createTempDirectory("splitxz");
+    }
+
+    @After
+    public void afterTest() throws IOException {
+        FileUtils.deleteDirectory(this.tempDir.toFile());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path inputPath = this.tempDir.resolve("bootstrap");
+        this.createDirectory(inputPath, 40 * 1024 * 1024L);
+
+        Path archivePath = this.tempDir.resolve("bootstrap.7z");
+        SplitXZ.compress(archivePath.toString(), inputPath.toFile());
+        assertTrue(SplitXZ.isSplitXZ(archivePath));
+
+        Path outputPath = this.tempDir.resolve("output");
+        SplitXZ.decompress(archivePath.toString(), outputPath.toFile());
+
+        assertDirectoriesEqual(inputPath, outputPath.resolve("bootstrap"));
+    }
+
+    @Test
+    public void testLegacyArchive() throws IOException {
+        Path inputPath = this.tempDir.resolve("bootstrap");
+        this.createDirectory(inputPath, 1024 * 1024L);
+        // The legacy format doesn't keep empty directories
+        Files.delete(inputPath.resolve("empty"));
+
+        // Legacy 7z archives aren't mistaken for the split format, and can still be extracted
+        Path archivePath = this.tempDir.resolve("bootstrap.7z");
+        SevenZ.compress(archivePath.toString(), inputPath.toFile());
+        assertFalse(SplitXZ.isSplitXZ(archivePath));
+
+        Path outputPath = this.tempDir.resolve("output");
+        SevenZ.decompress(archivePath.toString(), outputPath.toFile());
+
+        assertDirectoriesEqual(inputPath, outputPath.resolve("bootstrap"));
+    }
+
+    @Test
+    public void testCorruptBlock() throws IOException {
+        Path inputPath = this.tempDir.resolve("bootstrap");
+        this.createDirectory(inputPath, 1024 * 1024L);
+
+        Path archivePath = this.tempDir.resolve("bootstrap.7z");
+        SplitXZ.compress(archivePath.toString(), inputPath.toFile());
+
+        // Flip a byte inside the first block
+        try (RandomAccessFile file = new RandomAccessFile(archivePath.toFile(), "rw")) {
+            file.seek(100);
+            int b = file.read();
+            file.seek(100);
+            file.write(b ^ 0xFF);
+        }
+
+        try {
+            SplitXZ.decompress(archivePath.toString(), this.tempDir.resolve("output").toFile());
+            fail("Corrupt archive should not be extracted");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("corrupt"));
+        }
+    }
+
+    @Test
+    public void testTruncatedArchive() throws IOException {
+        Path inputPath = this.tempDir.resolve("bootstrap");
+        this.createDirectory(inputPath, 1024 * 1024L);
+
+        Path archivePath = this.tempDir.resolve("bootstrap.7z");
+        SplitXZ.compress(archivePath.toString(), inputPath.toFile());
+
+        // e.g. an interrupted download
+        try (RandomAccessFile file = new RandomAccessFile(archivePath.toFile(), "rw")) {
+            file.setLength(file.length() / 2);
+        }
+
+        try {
+            SplitXZ.decompress(archivePath.toString(), this.tempDir.resolve("output").toFile());
+            fail("Truncated archive should not be extracted");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    @Ignore(value = "For informational use")
+    public void testThroughput() throws IOException {
+        Path inputPath = this.tempDir.resolve("bootstrap");
+        this.createDirectory(inputPath, 1024 * 1024 * 1024L);
+
+        Path legacyPath = this.tempDir.resolve("legacy.7z");
+        long startTime = System.currentTimeMillis();
+        SevenZ.compress(legacyPath.toString(), inputPath.toFile());
+        long legacyCompressTime = System.currentTimeMillis() - startTime;
+
+        startTime = System.currentTimeMillis();
+        SevenZ.decompress(legacyPath.toString(), this.tempDir.resolve("legacy").toFile());
+        long legacyDecompressTime = System.currentTimeMillis() - startTime;
+
+        Path splitPath = this.tempDir.resolve("split.7z");
+        startTime = System.currentTimeMillis();
+        SplitXZ.compress(splitPath.toString(), inputPath.toFile());
+        long splitCompressTime = System.currentTimeMillis() - startTime;
+
+        startTime = System.currentTimeMillis();
+        SplitXZ.decompress(splitPath.toString(), this.tempDir.resolve("split").toFile());
+        long splitDecompressTime = System.currentTimeMillis() - startTime;
+
+        assertDirectoriesEqual(inputPath, this.tempDir.resolve("split").resolve("bootstrap"));
+
+        System.out.println(String.format("Legacy: %d bytes, compressed in %d ms, extracted in %d ms",
+                Files.size(legacyPath), legacyCompressTime, legacyDecompressTime));
+        System.out.println(String.format("Split XZ: %d bytes, compressed in %d ms, extracted in %d ms (%d cores)",
+                Files.size(splitPath), splitCompressTime, splitDecompressTime, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Creates a directory resembling a database backup: a few large files, some small ones
+     * and an archive folder, with a mix of compressible and random data.
+     */
+    private void createDirectory(Path path, long totalSize) throws IOException {
+        Path archivePath = path.resolve("archive");
+        Files.createDirectories(archivePath);
+        Files.createDirectories(path.resolve("empty"));
+
+        Random random = new Random(1234L);
+        long remaining = totalSize;
+
+        this.writeFile(path.resolve("blockchain.script"), Math.min(remaining, 64 * 1024L), random);
+        remaining -= Math.min(remaining, 64 * 1024L);
+
+        this.writeFile(path.resolve("blockchain.properties"), 0, random);
+
+        for (int i = 0; remaining > 0; i++) {
+            long size = Math.min(remaining, i % 2 == 0 ? totalSize / 4 : totalSize / 32);
+            Path filePath = i % 2 == 0
+                    ? path.resolve(String.format("blockchain.data.%d", i))
+                    : archivePath.resolve(String.format("%d-%d.dat", i * 1000, i * 1000 + 999));
+            this.writeFile(filePath, size, random);
+            remaining -= size;
+        }
+
+        // Long names need extended tar headers
+        String longName = Stream.generate(() -> "x").limit(150).collect(Collectors.joining());
+        this.writeFile(archivePath.resolve(longName), 1000, random);
+    }
+
+    private void writeFile(Path path, long size, Random random) throws IOException {
+        byte[] chunk = new byte[64 * 1024];
+
+        try (OutputStream out = Files.newOutputStream(path)) {
+            for (long written = 0; written < size; written += chunk.length) {
+                if (random.nextBoolean()) {
+                    random.nextBytes(chunk);
+                } else {
+                    byte[] text = String.format("row %d,%d;", written, random.nextInt(100)).getBytes(StandardCharsets.UTF_8);
+                    for (int i = 0; i < chunk.length; i++) {
+                        chunk[i] = text[i % text.length];
+                    }
+                }
+                out.write(chunk, 0, (int) Math.min(chunk.length, size - written));
+            }
+        }
+    }
+
+    private static void assertDirectoriesEqual(Path expectedPath, Path actualPath) throws IOException {
+        List<Path> expectedPaths = listRelative(expectedPath);
+        assertEquals(expectedPaths, listRelative(actualPath));
+
+        for (Path relativePath : expectedPaths) {
+            Path expected = expectedPath.resolve(relativePath);
+            Path actual = actualPath.resolve(relativePath);
+            assertEquals(relativePath.toString(), Files.isDirectory(expected), Files.isDirectory(actual));
+            if (Files.isRegularFile(expected)) {
+                assertTrue(relativePath.toString(), contentEquals(expected, actual));
+            }
+        }
+    }
+
+    /** Compares files' contents a buffer at a time, as some are too large to read into memory. */
+    private static boolean contentEquals(Path expected, Path actual) throws IOException {
+        if (Files.size(expected) != Files.size(actual))
+            return false;
+
+        try (InputStream expectedStream = Files.newInputStream(expected); InputStream actualStream = Files.newInputStream(actual)) {
+            byte[] expectedBuffer = new byte[64 * 1024];
+            byte[] actualBuffer = new byte[64 * 1024];
+
+            int bytesRead;
+            while ((bytesRead = expectedStream.readNBytes(expectedBuffer, 0, expectedBuffer.length)) > 0) {
+                if (actualStream.readNBytes(actualBuffer, 0, bytesRead) != bytesRead
+                        || !Arrays.equals(expectedBuffer, 0, bytesRead, actualBuffer, 0, bytesRead))
+                    return false;
+            }
+
+            return true;
+        }
+    }
+
+    private static List<Path> listRelative(Path path) throws IOException {
+        try (Stream<Path> paths = Files.walk(path)) {
+            return paths.map(path::relativize).sorted().collect(Collectors.toList());
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+#!/usr/bin/env python3
+
+"""
+Compare two JMH JSON result files, e.g. from:
+
+    mvn -Pbenchmark test-compile exec:exec -Djmh.args="-rf json -rff baseline.json"
+
+and flag benchmarks that have got slower.
+
+A benchmark counts as regressed when its score is worse by more than the threshold
+AND the two scores' error margins don't overlap, so noisy benchmarks aren't flagged.
+
+Exits with status 1 if any benchmark regressed, so can be used in scripts.
+"""
+
+import argparse
+import json
+import math
+import sys
+
+
+def load_results(filename):
+    with open(filename) as f:
+        results = json.load(f)
+
+    by_key = {}
+    for result in results:
+        params = result.get('params') or {}
+        param_string = ','.join(f"{name}={value}" for name, value in sorted(params.items()))
+        key = (result['benchmark'], result['mode'], param_string)
+        by_key[key] = result['primaryMetric']
+
+    return by_key
+
+
+def error_of(metric):
+    try:
+        error = float(metric.get('scoreError', 0))
+    except (TypeError, ValueError):
+        return 0.0
+
+    # JMH reports NaN error with too few iterations
+    return 0.0 if math.isnan(error) else error
+
+
+def short_name(benchmark):
+    # org.qortal.benchmark.TransformerBenchmark.blockToBytes -> TransformerBenchmark.blockToBytes
+    return '.'.join(benchmark.split('.')[-2:])
+
+
+def main():
+    parser = argparse.ArgumentParser(description='Compare two JMH JSON result files and flag regressions.')
+    parser.add_argument('baseline', help='JMH JSON results to compare against')
+    parser.add_argument('current', help='JMH JSON results to check')
+    parser.add_argument('-t', '--threshold', type=float, default=10.0,
+                        help='percentage change that counts as a regression (default: 10)')
+    args = parser.parse_args()
+
+    baseline = load_results(args.baseline)
+    current = load_results(args.current)
+
+    regressions = 0
+    rows = []
+
+    for key in sorted(set(baseline) | set(current)):
+        benchmark, mode, params = key
+        name = short_name(benchmark) + (f" [{params}]" if params else '')
+
+        if key not in baseline:
+            rows.append((name, mode, '', '', 'new'))
+            continue
+
+        if key not in current:
+            rows.append((name, mode, '', '', 'missing'))
+            continue
+
+        old, new = baseline[key], current[key]
+        old_score, new_score = float(old['score']), float(new['score'])
+        unit = new.get('scoreUnit', '')
+
+        if old_score == 0:
+            rows.append((name, mode, f"{old_score:.3f}", f"{new_score:.3f} {unit}", ''))
+            continue
+
+        # Throughput: higher is better. Everything else (avgt, sample, ss) is time: lower is better.
+        change = (new_score - old_score) / old_score * 100.0
+        worse = -change if mode == 'thrpt' else change
+
+        overlapping = abs(new_score - old_score) <= error_of(old) + error_of(new)
+
+        if worse > args.threshold and not overlapping:
+            status = 'REGRESSION'
+            regressions += 1
+        elif -worse > args.threshold and not overlapping:
+            status = 'improved'
+        else:
+            status = ''
+
+        rows.append((name, mode, f"{old_score:.3f}", f"{new_score:.3f} {unit}", f"{change:+.1f}% {status}".strip()))
+
+    headers = ('Benchmark', 'Mode', 'Baseline', 'Current', 'Change')
+    widths = [max(len(str(row[i])) for row in rows + [headers]) for i in range(len(headers))]
+
+    for row in [headers] + rows:
+        print('  '.join(str(cell).ljust(width) for cell, width in zip(row, widths)).rstrip())
+
+    if regressions:
+        print(f"\n{regressions} benchmark(s) regressed by more than {args.threshold:g}%")
+        sys.exit(1)
+
+
+if __name__ == '__main__':
+    main()